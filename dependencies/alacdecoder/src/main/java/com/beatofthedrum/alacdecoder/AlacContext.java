@@ -20,5 +20,7 @@ public class AlacContext
     int offset;
 	public boolean error;
 	public String error_message = "";
+    long[] block_start; // pcm position of each block, last element is the total
+    int[] block_offset; // file offset of each block
     byte[] read_buffer = new byte[1024 *80]; // sample big enough to hold any input for a single alac frame
 }
\ No newline at end of file
@@ -103,6 +103,8 @@ public class AlacUtils
 
 		ac.demux_res = demux_res;
 		ac.alac = alac;
+
+		build_seek_index(ac);
 		
 		return (ac);
 			
@@ -222,6 +224,11 @@ public class AlacUtils
 
     public static int AlacGetNumSamples(AlacContext ac)
     {
+		if (ac.block_start != null)
+		{
+			return (int) ac.block_start[ac.block_start.length - 1];
+		}
+
 		/* calculate output size */
 		int num_samples = 0;
 		int thissample_duration;
@@ -286,47 +293,82 @@ public class AlacUtils
 	}
 
     /**
-     * sets position in pcm samples
+     * Builds the tables used for seeking: pcm position each block starts at
+     * and its offset in the file. Durations come from stts, offsets from
+     * stsc and stco; a table is left null if the atoms are missing or
+     * don't cover all blocks.
      * @param ac alac context
-     * @param position position in pcm samples to go to
      */
-
-    public static void AlacSetPosition(AlacContext ac, long position) {
+    static void build_seek_index(AlacContext ac) {
         DemuxResT res = ac.demux_res;
+        if (res.sample_byte_size == null)
+            return;
+        int blocks = res.sample_byte_size.length;
 
-        int current_position = 0;
-        int current_sample = 0;
-        SampleDuration sample_info = new SampleDuration();
-        for (int i = 0; i < res.stsc.length; i++) {
-            ChunkInfo chunkInfo = res.stsc[i];
-            int last_chunk;
-
-            if (i < res.stsc.length - 1) {
-                last_chunk = res.stsc[i + 1].first_chunk;
-            } else {
-                last_chunk = res.stco.length;
+        long[] start = new long[blocks + 1];
+        int block = 0;
+        for (int i = 0; i < res.num_time_to_samples && block < blocks; i++) {
+            SampleInfo tts = res.time_to_sample[i];
+            for (int j = 0; j < tts.sample_count && block < blocks; j++) {
+                start[block + 1] = start[block] + tts.sample_duration;
+                block++;
             }
+        }
+        ac.block_start = block == blocks ? start : null;
+
+        ac.block_offset = null;
+        if (res.stco == null || res.stsc == null)
+            return;
+
+        int[] offsets = new int[blocks];
+        block = 0;
+        for (int i = 0; i < res.stsc.length && block < blocks; i++) {
+            ChunkInfo chunkInfo = res.stsc[i];
+            // chunks are numbered from 1, the run ends where the next one starts
+            int end_chunk = i < res.stsc.length - 1 ?
+                    res.stsc[i + 1].first_chunk : res.stco.length + 1;
 
-            for (int chunk = chunkInfo.first_chunk; chunk <= last_chunk; chunk++) {
+            for (int chunk = chunkInfo.first_chunk; chunk < end_chunk && chunk <= res.stco.length; chunk++) {
                 int pos = res.stco[chunk - 1];
-                int sample_count = chunkInfo.samples_per_chunk;
-                while (sample_count > 0) {
-                    int ret = get_sample_info(res, current_sample, sample_info);
-                    if (ret == 0) return;
-                    current_position += sample_info.sample_duration;
-                    if (position < current_position) {
-                        ac.input_stream.seek(pos);
-                        ac.current_sample_block = current_sample;
-                        ac.offset =
-                                (int) (position - (current_position - sample_info.sample_duration))
-                                        * AlacGetNumChannels(ac);
-                        return;
-                    }
-                    pos += sample_info.sample_byte_size;
-                    current_sample++;
-                    sample_count--;
+                for (int j = 0; j < chunkInfo.samples_per_chunk && block < blocks; j++) {
+                    offsets[block] = pos;
+                    pos += res.sample_byte_size[block];
+                    block++;
                 }
             }
         }
+        if (block == blocks)
+            ac.block_offset = offsets;
+    }
+
+    /**
+     * sets position in pcm samples
+     * @param ac alac context
+     * @param position position in pcm samples to go to
+     */
+
+    public static void AlacSetPosition(AlacContext ac, long position) {
+        long[] start = ac.block_start;
+        if (start == null || ac.block_offset == null)
+            return;
+
+        int blocks = start.length - 1;
+        if (position < 0 || position >= start[blocks])
+            return;
+
+        // first block that ends after position
+        int lo = 0;
+        int hi = blocks - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (start[mid + 1] > position)
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+
+        ac.input_stream.seek(ac.block_offset[lo]);
+        ac.current_sample_block = lo;
+        ac.offset = (int) (position - start[lo]) * AlacGetNumChannels(ac);
     }
-}
\ No newline at end of file
+}
@@ -308,8 +308,15 @@ public class MP4InputStream {
 		}
 
 		while(l<n) {
-			if(in!=null) l += in.skip((n-l));
-			else if(fin!=null) l += fin.skipBytes((int) (n-l));
+			long skipped = 0;
+			if(in!=null) {
+				skipped = in.skip((n-l));
+				// skip() may return 0 before the end, read() tells for sure
+				if(skipped<=0&&in.read()!=-1) skipped = 1;
+			}
+			else if(fin!=null) skipped = fin.skipBytes((int) Math.min(n-l, Integer.MAX_VALUE));
+			if(skipped<=0) throw new EOFException();
+			l += skipped;
 		}
 
 		offset += l;
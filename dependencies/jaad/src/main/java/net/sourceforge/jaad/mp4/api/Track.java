@@ -432,6 +432,32 @@ public abstract class Track {
         return 0;
     }
 
+    /**
+     * Returns start of every frame in pcm samples, based on stts data.
+     * The array has one extra element at the end holding the total duration,
+     * so it can be binary searched for the frame containing a sample.
+     * @return cumulative frame durations
+     */
+    public long[] getFrameStarts() {
+        final long[] counts = stts.getSampleCounts();
+        final long[] deltas = stts.getSampleDeltas();
+        final int frameCount = frames.size();
+        final long[] starts = new long[frameCount + 1];
+
+        int frame = 0;
+        for (int i = 0; i < counts.length && frame < frameCount; i++) {
+            for (long j = 0; j < counts[i] && frame < frameCount; j++) {
+                starts[frame + 1] = starts[frame] + deltas[i];
+                frame++;
+            }
+        }
+        // frames not covered by stts have no duration
+        for (; frame < frameCount; frame++)
+            starts[frame + 1] = starts[frame];
+
+        return starts;
+    }
+
     public int getLastFramePadding() {
         return lastFramePadding;
     }
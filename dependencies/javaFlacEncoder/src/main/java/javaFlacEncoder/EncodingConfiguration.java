@@ -92,6 +92,10 @@ public class EncodingConfiguration implements Cloneable {
    public static final int DEFAULT_MIN_LPC_ORDER = 1;
    /** Default maximum Rice partition order */
    public static final int DEFAULT_MAX_RICE_ORDER = 0;
+   /** Highest level accepted by setCompressionLevel(int) */
+   public static final int MAX_COMPRESSION_LEVEL = 8;
+   /** Compression level equal to the default settings of this class */
+   public static final int DEFAULT_COMPRESSION_LEVEL = 5;
 
 
    ChannelConfig channelConfig;
@@ -196,4 +200,64 @@ public class EncodingConfiguration implements Cloneable {
          MAX_LPC_ORDER:maximumLPCOrder;
    }
 
+   /**
+    * Set subframe type, channel configuration and LPC orders from a single
+    * compression level, in the spirit of the reference encoder's -0 to -8.
+    * Level 0 is the fastest, {@link EncodingConfiguration#MAX_COMPRESSION_LEVEL
+    * MAX_COMPRESSION_LEVEL} produces the smallest output and
+    * {@link EncodingConfiguration#DEFAULT_COMPRESSION_LEVEL
+    * DEFAULT_COMPRESSION_LEVEL} equals the defaults. Levels above 6 use LPC
+    * orders beyond the FLAC streamable subset. Values out of range are
+    * clamped.
+    * @param level compression level to use
+    */
+   public void setCompressionLevel(int level) {
+      level = (level < 0) ? 0:level;
+      level = (level > MAX_COMPRESSION_LEVEL) ? MAX_COMPRESSION_LEVEL:level;
+      minimumLPCOrder = DEFAULT_MIN_LPC_ORDER;
+      maximumLPCOrder = DEFAULT_MAX_LPC_ORDER;
+      switch(level) {
+         case 0:
+            subframeType = SubframeType.FIXED;
+            channelConfig = ChannelConfig.INDEPENDENT;
+            break;
+         case 1:
+            subframeType = SubframeType.FIXED;
+            channelConfig = ChannelConfig.ENCODER_CHOICE;
+            break;
+         case 2:
+            subframeType = SubframeType.FIXED;
+            channelConfig = ChannelConfig.EXHAUSTIVE;
+            break;
+         case 3:
+            subframeType = SubframeType.LPC;
+            channelConfig = ChannelConfig.ENCODER_CHOICE;
+            maximumLPCOrder = 6;
+            break;
+         case 4:
+            subframeType = SubframeType.LPC;
+            channelConfig = ChannelConfig.ENCODER_CHOICE;
+            maximumLPCOrder = 8;
+            break;
+         case 5:
+            subframeType = SubframeType.EXHAUSTIVE;
+            channelConfig = ChannelConfig.ENCODER_CHOICE;
+            break;
+         case 6:
+            subframeType = SubframeType.EXHAUSTIVE;
+            channelConfig = ChannelConfig.EXHAUSTIVE;
+            break;
+         case 7:
+            subframeType = SubframeType.EXHAUSTIVE;
+            channelConfig = ChannelConfig.EXHAUSTIVE;
+            maximumLPCOrder = 16;
+            break;
+         default:
+            subframeType = SubframeType.EXHAUSTIVE;
+            channelConfig = ChannelConfig.EXHAUSTIVE;
+            maximumLPCOrder = MAX_LPC_ORDER;
+            break;
+      }
+   }
+
 }
@@ -538,8 +538,8 @@ public class FLACEncoder {
                 break;
             }
         }
-        //block while requests remain!!!!
-        threadManager.blockWhileQueueExceeds(5);
+        //block while requests remain, but keep every thread supplied
+        threadManager.blockWhileQueueExceeds(Math.max(5, 2*MAX_THREADED_FRAMES));
         if(end) {
            threadManager.stop();
            threadManager.blockWhileQueueExceeds(0);
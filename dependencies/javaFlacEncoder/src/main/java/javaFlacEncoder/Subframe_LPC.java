@@ -404,7 +404,14 @@ public class Subframe_LPC extends Subframe {
         int baseIndex = start;
         int targetSampleBase = start+order*increment-increment;
         int tempOrder = order;
-        for(int i = order; i < count; i++) {
+        //side channels take one more bit. If the sum may not fit in an int,
+        //compute it like the decoder's "wide" restore does.
+        int orderBits = 32-Integer.numberOfLeadingZeros(order)-1;
+        boolean wide = frameSampleSize+1+precision+orderBits > 32;
+        if(wide)
+            computeErrorsWide(samples, count, start, increment, coeffs,
+                    order, shift, lpcSubframe._errors);
+        for(int i = order; !wide && i < count; i++) {
             int temp = 0;            
             targetSampleBase += increment;
             int sampleIndex = baseIndex;
@@ -497,4 +504,25 @@ public class Subframe_LPC extends Subframe {
         return totalSize;
     }
 
+    /**
+     * Same as the prediction loop in partialEncodeLPC(), but sums in a long
+     * so high bit depths do not overflow.
+     */
+    private static void computeErrorsWide(int[] samples, int count, int start,
+            int increment, int[] coeffs, int order, int shift, int[] errors) {
+        int baseIndex = start;
+        int targetSampleBase = start+order*increment-increment;
+        for(int i = order; i < count; i++) {
+            long temp = 0;
+            targetSampleBase += increment;
+            int sampleIndex = baseIndex;
+            baseIndex += increment;
+            for(int j = order; j > 0; j--) {
+                temp -= (long)coeffs[j]*samples[sampleIndex];
+                sampleIndex += increment;
+            }
+            errors[i] = samples[targetSampleBase]-(int)(temp >> shift);
+        }
+    }
+
 }
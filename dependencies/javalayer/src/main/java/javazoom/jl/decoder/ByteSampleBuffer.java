@@ -0,0 +1,104 @@
+/*
+ *-----------------------------------------------------------------------
+ *   This program is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU Library General Public License as published
+ *   by the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Library General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Library General Public
+ *   License along with this program; if not, write to the Free Software
+ *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ *----------------------------------------------------------------------
+ */
+
+package javazoom.jl.decoder;
+
+/**
+ * Output buffer that writes interleaved 16 bit little-endian PCM
+ * directly into a byte array supplied by the caller. Samples are
+ * clipped exactly like in {@link SampleBuffer}, so the bytes are
+ * identical to converting its short buffer.
+ */
+public class ByteSampleBuffer extends Obuffer {
+    private byte[] buffer;
+    private int offset;
+    private int[] bufferp;
+    private int channels;
+    private int frequency;
+
+    public ByteSampleBuffer(int sample_frequency, int number_of_channels) {
+        bufferp = new int[MAXCHANNELS];
+        channels = number_of_channels;
+        frequency = sample_frequency;
+    }
+
+    public int getChannelCount() {
+        return channels;
+    }
+
+    public int getSampleFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Sets the array the next frame is written to. At least
+     * <code>OBUFFERSIZE * 2</code> bytes must be available
+     * from <code>offset</code>.
+     */
+    public void setBuffer(byte[] buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        clear_buffer();
+    }
+
+    /**
+     * @return number of bytes written since the last clear
+     */
+    public int getBufferLength() {
+        return bufferp[0] - offset;
+    }
+
+    public void append(int channel, short value) {
+        int pos = bufferp[channel];
+        buffer[pos] = (byte) value;
+        buffer[pos + 1] = (byte) (value >>> 8);
+        bufferp[channel] = pos + (channels << 1);
+    }
+
+    public void appendSamples(int channel, float[] f) {
+        final byte[] buf = buffer;
+        final int step = channels << 1;
+        int pos = bufferp[channel];
+
+        for (int i = 0; i < 32; i++) {
+            float fs = f[i];
+            fs = (fs > 32767.0f ? 32767.0f
+                    : (fs < -32767.0f ? -32767.0f : fs));
+            int s = (int) fs;
+            buf[pos] = (byte) s;
+            buf[pos + 1] = (byte) (s >> 8);
+            pos += step;
+        }
+
+        bufferp[channel] = pos;
+    }
+
+    public void write_buffer(int val) {
+    }
+
+    public void close() {
+    }
+
+    public void clear_buffer() {
+        for (int i = 0; i < channels; ++i)
+            bufferp[i] = offset + (i << 1);
+    }
+
+    public void set_stop_flag() {
+    }
+}
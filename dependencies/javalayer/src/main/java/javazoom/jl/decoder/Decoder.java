@@ -142,6 +142,35 @@ public class Decoder implements DecoderErrors {
         return output;
     }
 
+    /**
+     * Decodes one frame straight into the caller's array as interleaved
+     * 16 bit little-endian PCM, skipping the intermediate SampleBuffer.
+     * The decoder must either have no output buffer yet or use a
+     * ByteSampleBuffer.
+     *
+     * @param header The header describing the frame to decode.
+     * @param stream The bistream that provides the bits for te body of the frame.
+     * @param buf    destination array, must have room for
+     *               <code>Obuffer.OBUFFERSIZE * 2</code> bytes from <code>offset</code>
+     * @param offset position of the first byte to write
+     * @return number of bytes written
+     */
+    public int decodeFrame(Header header, Bitstream stream, byte[] buf, int offset)
+            throws DecoderException {
+        if (!initialized && output == null) {
+            int channels = header.mode() == Header.SINGLE_CHANNEL ? 1 : 2;
+            output = new ByteSampleBuffer(header.frequency(), channels);
+        }
+
+        if (!(output instanceof ByteSampleBuffer))
+            throw new IllegalStateException("Output buffer is not a ByteSampleBuffer");
+
+        ByteSampleBuffer out = (ByteSampleBuffer) output;
+        out.setBuffer(buf, offset);
+        decodeFrame(header, stream);
+        return out.getBufferLength();
+    }
+
     /**
      * Changes the output buffer. This will take effect the next time
      * decodeFrame() is called.
@@ -215,11 +215,6 @@ final class LayerIIIDecoder implements FrameDecoder {
      * Decode one frame, filling the buffer with the output samples.
      */
 
-    // subband samples are buffered and passed to the
-    // SynthesisFilter in one go.
-    private float[] samples1 = new float[32];
-    private float[] samples2 = new float[32];
-
     public void decode() {
         int nSlots = header.slots();
         int flush_main;
@@ -292,29 +287,10 @@ final class LayerIIIDecoder implements FrameDecoder {
                     for (ss = 1; ss < SSLIMIT; ss += 2)
                         out_1d[sb18 + ss] = -out_1d[sb18 + ss];
 
-                if ((ch == 0) || (which_channels == OutputChannels.RIGHT_CHANNEL)) {
-                    for (ss = 0; ss < SSLIMIT; ss++) { // Polyphase synthesis
-                        sb = 0;
-                        for (sb18 = 0; sb18 < 576; sb18 += 18) {
-                            samples1[sb] = out_1d[sb18 + ss];
-                            //filter1.input_sample(out_1d[sb18+ss], sb);
-                            sb++;
-                        }
-                        filter1.input_samples(samples1);
-                        filter1.calculate_pcm_samples(buffer);
-                    }
-                } else {
-                    for (ss = 0; ss < SSLIMIT; ss++) { // Polyphase synthesis
-                        sb = 0;
-                        for (sb18 = 0; sb18 < 576; sb18 += 18) {
-                            samples2[sb] = out_1d[sb18 + ss];
-                            //filter2.input_sample(out_1d[sb18+ss], sb);
-                            sb++;
-                        }
-                        filter2.input_samples(samples2);
-                        filter2.calculate_pcm_samples(buffer);
-                    }
-
+                SynthesisFilter filter = ((ch == 0) || (which_channels == OutputChannels.RIGHT_CHANNEL)) ? filter1 : filter2;
+                for (ss = 0; ss < SSLIMIT; ss++) { // Polyphase synthesis
+                    filter.input_samples(out_1d, ss, SSLIMIT);
+                    filter.calculate_pcm_samples(buffer);
                 }
             }    // channels
         }    // granule
@@ -867,126 +843,136 @@ final class LayerIIIDecoder implements FrameDecoder {
 
         // Compute overall (global) scaling.
 
-        g_gain = (float) Math.pow(2.0, (0.25 * (gr_info.global_gain - 210.0)));
+        g_gain = global_gain_pow[gr_info.global_gain];
+
+        final int nz = nonzero[ch];
+        final int[] is = is_1d;
+        int quotien = 0;
+        int reste = 0;
+        float[] row = xr_1d[0];
 
-        for (j = 0; j < nonzero[ch]; j++) {
-            // Modif E.B 02/22/99
-            int reste = j % SSLIMIT;
-            int quotien = (int) ((j - reste) / SSLIMIT);
-            if (is_1d[j] == 0) xr_1d[quotien][reste] = 0.0f;
+        for (j = 0; j < nz; j++) {
+            int abv = is[j];
+            if (abv == 0) row[reste] = 0.0f;
             else {
-                int abv = is_1d[j];
                 // Pow Array fix (11/17/04)
                 if (abv < t_43.length) {
-                    if (is_1d[j] > 0) xr_1d[quotien][reste] = g_gain * t_43[abv];
+                    if (abv > 0) row[reste] = g_gain * t_43[abv];
                     else {
-                        if (-abv < t_43.length) xr_1d[quotien][reste] = -g_gain * t_43[-abv];
-                        else xr_1d[quotien][reste] = -g_gain * (float) Math.pow(-abv, d43);
+                        if (-abv < t_43.length) row[reste] = -g_gain * t_43[-abv];
+                        else row[reste] = -g_gain * (float) Math.pow(-abv, d43);
                     }
                 } else {
-                    if (is_1d[j] > 0) xr_1d[quotien][reste] = g_gain * (float) Math.pow(abv, d43);
-                    else xr_1d[quotien][reste] = -g_gain * (float) Math.pow(-abv, d43);
+                    row[reste] = g_gain * (float) Math.pow(abv, d43);
                 }
             }
+            if (++reste == SSLIMIT) {
+                reste = 0;
+                if (++quotien < SBLIMIT)
+                    row = xr_1d[quotien];
+            }
         }
 
         // apply formula per block type
-        for (j = 0; j < nonzero[ch]; j++) {
-            // Modif E.B 02/22/99
-            int reste = j % SSLIMIT;
-            int quotien = (int) ((j - reste) / SSLIMIT);
-
+        final boolean short_blocks = (gr_info.window_switching_flag != 0) && (gr_info.block_type == 2);
+        final boolean mixed = gr_info.mixed_block_flag != 0;
+        final int[] l = sfBandIndex[sfreq].l;
+        final int[] s = sfBandIndex[sfreq].s;
+        final int[] sf_l = scalefac[ch].l;
+        final int[][] sf_s = scalefac[ch].s;
+        quotien = 0;
+        reste = 0;
+        row = xr_1d[0];
+
+        for (j = 0; j < nz; j++) {
             if (index == next_cb_boundary) { /* Adjust critical band boundary */
-                if ((gr_info.window_switching_flag != 0) && (gr_info.block_type == 2)) {
-                    if (gr_info.mixed_block_flag != 0) {
+                if (short_blocks) {
+                    if (mixed) {
 
-                        if (index == sfBandIndex[sfreq].l[8]) {
-                            next_cb_boundary = sfBandIndex[sfreq].s[4];
+                        if (index == l[8]) {
+                            next_cb_boundary = s[4];
                             next_cb_boundary = (next_cb_boundary << 2) -
                                     next_cb_boundary;
                             cb = 3;
-                            cb_width = sfBandIndex[sfreq].s[4] -
-                                    sfBandIndex[sfreq].s[3];
+                            cb_width = s[4] - s[3];
 
-                            cb_begin = sfBandIndex[sfreq].s[3];
+                            cb_begin = s[3];
                             cb_begin = (cb_begin << 2) - cb_begin;
 
-                        } else if (index < sfBandIndex[sfreq].l[8]) {
+                        } else if (index < l[8]) {
 
-                            next_cb_boundary = sfBandIndex[sfreq].l[(++cb) + 1];
+                            next_cb_boundary = l[(++cb) + 1];
 
                         } else {
 
-                            next_cb_boundary = sfBandIndex[sfreq].s[(++cb) + 1];
+                            next_cb_boundary = s[(++cb) + 1];
                             next_cb_boundary = (next_cb_boundary << 2) -
                                     next_cb_boundary;
 
-                            cb_begin = sfBandIndex[sfreq].s[cb];
-                            cb_width = sfBandIndex[sfreq].s[cb + 1] -
-                                    cb_begin;
+                            cb_begin = s[cb];
+                            cb_width = s[cb + 1] - cb_begin;
                             cb_begin = (cb_begin << 2) - cb_begin;
                         }
 
                     } else {
 
-                        next_cb_boundary = sfBandIndex[sfreq].s[(++cb) + 1];
+                        next_cb_boundary = s[(++cb) + 1];
                         next_cb_boundary = (next_cb_boundary << 2) -
                                 next_cb_boundary;
 
-                        cb_begin = sfBandIndex[sfreq].s[cb];
-                        cb_width = sfBandIndex[sfreq].s[cb + 1] -
-                                cb_begin;
+                        cb_begin = s[cb];
+                        cb_width = s[cb + 1] - cb_begin;
                         cb_begin = (cb_begin << 2) - cb_begin;
                     }
 
                 } else { // long blocks
 
-                    next_cb_boundary = sfBandIndex[sfreq].l[(++cb) + 1];
+                    next_cb_boundary = l[(++cb) + 1];
 
                 }
             }
 
             // Do long/short dependent scaling operations
 
-            if ((gr_info.window_switching_flag != 0) &&
-                    (((gr_info.block_type == 2) && (gr_info.mixed_block_flag == 0)) ||
-                            ((gr_info.block_type == 2) && (gr_info.mixed_block_flag != 0) && (j >= 36)))) {
+            if (short_blocks && (!mixed || j >= 36)) {
 
                 t_index = (index - cb_begin) / cb_width;
                 /*            xr[sb][ss] *= pow(2.0, ((-2.0 * gr_info.subblock_gain[t_index])
                                             -(0.5 * (1.0 + gr_info.scalefac_scale)
                                               * scalefac[ch].s[t_index][cb]))); */
-                int idx = scalefac[ch].s[t_index][cb]
+                int idx = sf_s[t_index][cb]
                         << gr_info.scalefac_scale;
                 idx += (gr_info.subblock_gain[t_index] << 2);
 
-                xr_1d[quotien][reste] *= two_to_negative_half_pow[idx];
+                row[reste] *= two_to_negative_half_pow[idx];
 
             } else {   // LONG block types 0,1,3 & 1st 2 subbands of switched blocks
                 /*				xr[sb][ss] *= pow(2.0, -0.5 * (1.0+gr_info.scalefac_scale)
                                                              * (scalefac[ch].l[cb]
                                                              + gr_info.preflag * pretab[cb])); */
-                int idx = scalefac[ch].l[cb];
+                int idx = sf_l[cb];
 
                 if (gr_info.preflag != 0)
                     idx += pretab[cb];
 
                 idx = idx << gr_info.scalefac_scale;
-                xr_1d[quotien][reste] *= two_to_negative_half_pow[idx];
+                row[reste] *= two_to_negative_half_pow[idx];
             }
             index++;
+            if (++reste == SSLIMIT) {
+                reste = 0;
+                if (++quotien < SBLIMIT)
+                    row = xr_1d[quotien];
+            }
         }
 
-        for (j = nonzero[ch]; j < 576; j++) {
-            // Modif E.B 02/22/99
-            int reste = j % SSLIMIT;
-            int quotien = (int) ((j - reste) / SSLIMIT);
-            if (reste < 0) reste = 0;
-            if (quotien < 0) quotien = 0;
-            xr_1d[quotien][reste] = 0.0f;
+        // zero out the rest
+        for (; quotien < SBLIMIT; quotien++) {
+            row = xr_1d[quotien];
+            for (; reste < SSLIMIT; reste++)
+                row[reste] = 0.0f;
+            reste = 0;
         }
-
-        return;
     }
 
     /**
@@ -1007,12 +993,8 @@ final class LayerIIIDecoder implements FrameDecoder {
 
             if (gr_info.mixed_block_flag != 0) {
                 // NO REORDER FOR LOW 2 SUBBANDS
-                for (index = 0; index < 36; index++) {
-                    // Modif E.B 02/22/99
-                    int reste = index % SSLIMIT;
-                    int quotien = (int) ((index - reste) / SSLIMIT);
-                    out_1d[index] = xr_1d[quotien][reste];
-                }
+                System.arraycopy(xr_1d[0], 0, out_1d, 0, SSLIMIT);
+                System.arraycopy(xr_1d[1], 0, out_1d, SSLIMIT, SSLIMIT);
                 // REORDERING FOR REST SWITCHED SHORT
                 /*for( sfb=3,sfb_start=sfBandIndex[sfreq].s[3],
                          sfb_lines=sfBandIndex[sfreq].s[4] - sfb_start;
@@ -1062,12 +1044,8 @@ final class LayerIIIDecoder implements FrameDecoder {
                 }
             }
         } else {   // long blocks
-            for (index = 0; index < 576; index++) {
-                // Modif E.B 02/22/99
-                int reste = index % SSLIMIT;
-                int quotien = (int) ((index - reste) / SSLIMIT);
-                out_1d[index] = xr_1d[quotien][reste];
-            }
+            for (index = 0; index < SBLIMIT; index++)
+                System.arraycopy(xr_1d[index], 0, out_1d, index * SSLIMIT, SSLIMIT);
         }
     }
 
@@ -1084,11 +1062,7 @@ final class LayerIIIDecoder implements FrameDecoder {
         if (channels == 1) { // mono , bypass xr[0][][] to lr[0][][]
 
             for (sb = 0; sb < SBLIMIT; sb++)
-                for (ss = 0; ss < SSLIMIT; ss += 3) {
-                    lr[0][sb][ss] = ro[0][sb][ss];
-                    lr[0][sb][ss + 1] = ro[0][sb][ss + 1];
-                    lr[0][sb][ss + 2] = ro[0][sb][ss + 2];
-                }
+                System.arraycopy(ro[0][sb], 0, lr[0][sb], 0, SSLIMIT);
 
         } else {
 
@@ -1327,24 +1301,28 @@ final class LayerIIIDecoder implements FrameDecoder {
             } // if (i_stereo)
 
             i = 0;
-            for (sb = 0; sb < SBLIMIT; sb++)
+            for (sb = 0; sb < SBLIMIT; sb++) {
+                final float[] ro0 = ro[0][sb];
+                final float[] ro1 = ro[1][sb];
+                final float[] lr0 = lr[0][sb];
+                final float[] lr1 = lr[1][sb];
                 for (ss = 0; ss < SSLIMIT; ss++) {
                     if (is_pos[i] == 7) {
                         if (ms_stereo) {
-                            lr[0][sb][ss] = (ro[0][sb][ss] + ro[1][sb][ss]) * 0.707106781f;
-                            lr[1][sb][ss] = (ro[0][sb][ss] - ro[1][sb][ss]) * 0.707106781f;
+                            lr0[ss] = (ro0[ss] + ro1[ss]) * 0.707106781f;
+                            lr1[ss] = (ro0[ss] - ro1[ss]) * 0.707106781f;
                         } else {
-                            lr[0][sb][ss] = ro[0][sb][ss];
-                            lr[1][sb][ss] = ro[1][sb][ss];
+                            lr0[ss] = ro0[ss];
+                            lr1[ss] = ro1[ss];
                         }
                     } else if (i_stereo) {
 
                         if (lsf) {
-                            lr[0][sb][ss] = ro[0][sb][ss] * k[0][i];
-                            lr[1][sb][ss] = ro[0][sb][ss] * k[1][i];
+                            lr0[ss] = ro0[ss] * k[0][i];
+                            lr1[ss] = ro0[ss] * k[1][i];
                         } else {
-                            lr[1][sb][ss] = ro[0][sb][ss] / (float) (1 + is_ratio[i]);
-                            lr[0][sb][ss] = lr[1][sb][ss] * is_ratio[i];
+                            lr1[ss] = ro0[ss] / (float) (1 + is_ratio[i]);
+                            lr0[ss] = lr1[ss] * is_ratio[i];
                         }
                     }
                     /*				else {
@@ -1352,6 +1330,7 @@ final class LayerIIIDecoder implements FrameDecoder {
                          } */
                     i++;
                 }
+            }
 
         } // channels == 2
 
@@ -1393,74 +1372,61 @@ final class LayerIIIDecoder implements FrameDecoder {
      *
      */
 
-    // MDM: tsOutCopy and rawout do not need initializing, so the arrays
+    // MDM: rawout does not need initializing, so the array
     // can be reused.
-    float[] tsOutCopy = new float[18];
     float[] rawout = new float[36];
 
     private void hybrid(int ch, int gr) {
         int bt;
         int sb18;
         gr_info_s gr_info = (si.ch[ch].gr[gr]);
-        float[] tsOut;
-
-        float[][] prvblk;
+        final float[] prvblk = prevblck[ch];
+        final boolean mixed = (gr_info.window_switching_flag != 0) && (gr_info.mixed_block_flag != 0);
 
         for (sb18 = 0; sb18 < 576; sb18 += 18) {
-            bt = ((gr_info.window_switching_flag != 0) && (gr_info.mixed_block_flag != 0) &&
-                    (sb18 < 36)) ? 0 : gr_info.block_type;
-
-            tsOut = out_1d;
-            // Modif E.B 02/22/99
-            for (int cc = 0; cc < 18; cc++)
-                tsOutCopy[cc] = tsOut[cc + sb18];
-
-            inv_mdct(tsOutCopy, rawout, bt);
+            bt = (mixed && (sb18 < 36)) ? 0 : gr_info.block_type;
 
-
-            for (int cc = 0; cc < 18; cc++)
-                tsOut[cc + sb18] = tsOutCopy[cc];
-            // Fin Modif
+            // inv_mdct works in place on the 18 lines of this subband,
+            // they are overwritten by the overlap addition below
+            inv_mdct(out_1d, sb18, rawout, bt);
 
             // overlap addition
-            prvblk = prevblck;
-
-            tsOut[0 + sb18] = rawout[0] + prvblk[ch][sb18 + 0];
-            prvblk[ch][sb18 + 0] = rawout[18];
-            tsOut[1 + sb18] = rawout[1] + prvblk[ch][sb18 + 1];
-            prvblk[ch][sb18 + 1] = rawout[19];
-            tsOut[2 + sb18] = rawout[2] + prvblk[ch][sb18 + 2];
-            prvblk[ch][sb18 + 2] = rawout[20];
-            tsOut[3 + sb18] = rawout[3] + prvblk[ch][sb18 + 3];
-            prvblk[ch][sb18 + 3] = rawout[21];
-            tsOut[4 + sb18] = rawout[4] + prvblk[ch][sb18 + 4];
-            prvblk[ch][sb18 + 4] = rawout[22];
-            tsOut[5 + sb18] = rawout[5] + prvblk[ch][sb18 + 5];
-            prvblk[ch][sb18 + 5] = rawout[23];
-            tsOut[6 + sb18] = rawout[6] + prvblk[ch][sb18 + 6];
-            prvblk[ch][sb18 + 6] = rawout[24];
-            tsOut[7 + sb18] = rawout[7] + prvblk[ch][sb18 + 7];
-            prvblk[ch][sb18 + 7] = rawout[25];
-            tsOut[8 + sb18] = rawout[8] + prvblk[ch][sb18 + 8];
-            prvblk[ch][sb18 + 8] = rawout[26];
-            tsOut[9 + sb18] = rawout[9] + prvblk[ch][sb18 + 9];
-            prvblk[ch][sb18 + 9] = rawout[27];
-            tsOut[10 + sb18] = rawout[10] + prvblk[ch][sb18 + 10];
-            prvblk[ch][sb18 + 10] = rawout[28];
-            tsOut[11 + sb18] = rawout[11] + prvblk[ch][sb18 + 11];
-            prvblk[ch][sb18 + 11] = rawout[29];
-            tsOut[12 + sb18] = rawout[12] + prvblk[ch][sb18 + 12];
-            prvblk[ch][sb18 + 12] = rawout[30];
-            tsOut[13 + sb18] = rawout[13] + prvblk[ch][sb18 + 13];
-            prvblk[ch][sb18 + 13] = rawout[31];
-            tsOut[14 + sb18] = rawout[14] + prvblk[ch][sb18 + 14];
-            prvblk[ch][sb18 + 14] = rawout[32];
-            tsOut[15 + sb18] = rawout[15] + prvblk[ch][sb18 + 15];
-            prvblk[ch][sb18 + 15] = rawout[33];
-            tsOut[16 + sb18] = rawout[16] + prvblk[ch][sb18 + 16];
-            prvblk[ch][sb18 + 16] = rawout[34];
-            tsOut[17 + sb18] = rawout[17] + prvblk[ch][sb18 + 17];
-            prvblk[ch][sb18 + 17] = rawout[35];
+            out_1d[0 + sb18] = rawout[0] + prvblk[sb18 + 0];
+            prvblk[sb18 + 0] = rawout[18];
+            out_1d[1 + sb18] = rawout[1] + prvblk[sb18 + 1];
+            prvblk[sb18 + 1] = rawout[19];
+            out_1d[2 + sb18] = rawout[2] + prvblk[sb18 + 2];
+            prvblk[sb18 + 2] = rawout[20];
+            out_1d[3 + sb18] = rawout[3] + prvblk[sb18 + 3];
+            prvblk[sb18 + 3] = rawout[21];
+            out_1d[4 + sb18] = rawout[4] + prvblk[sb18 + 4];
+            prvblk[sb18 + 4] = rawout[22];
+            out_1d[5 + sb18] = rawout[5] + prvblk[sb18 + 5];
+            prvblk[sb18 + 5] = rawout[23];
+            out_1d[6 + sb18] = rawout[6] + prvblk[sb18 + 6];
+            prvblk[sb18 + 6] = rawout[24];
+            out_1d[7 + sb18] = rawout[7] + prvblk[sb18 + 7];
+            prvblk[sb18 + 7] = rawout[25];
+            out_1d[8 + sb18] = rawout[8] + prvblk[sb18 + 8];
+            prvblk[sb18 + 8] = rawout[26];
+            out_1d[9 + sb18] = rawout[9] + prvblk[sb18 + 9];
+            prvblk[sb18 + 9] = rawout[27];
+            out_1d[10 + sb18] = rawout[10] + prvblk[sb18 + 10];
+            prvblk[sb18 + 10] = rawout[28];
+            out_1d[11 + sb18] = rawout[11] + prvblk[sb18 + 11];
+            prvblk[sb18 + 11] = rawout[29];
+            out_1d[12 + sb18] = rawout[12] + prvblk[sb18 + 12];
+            prvblk[sb18 + 12] = rawout[30];
+            out_1d[13 + sb18] = rawout[13] + prvblk[sb18 + 13];
+            prvblk[sb18 + 13] = rawout[31];
+            out_1d[14 + sb18] = rawout[14] + prvblk[sb18 + 14];
+            prvblk[sb18 + 14] = rawout[32];
+            out_1d[15 + sb18] = rawout[15] + prvblk[sb18 + 15];
+            prvblk[sb18 + 15] = rawout[33];
+            out_1d[16 + sb18] = rawout[16] + prvblk[sb18 + 16];
+            prvblk[sb18 + 16] = rawout[34];
+            out_1d[17 + sb18] = rawout[17] + prvblk[sb18 + 17];
+            prvblk[sb18 + 17] = rawout[35];
         }
     }
 
@@ -1481,7 +1447,7 @@ final class LayerIIIDecoder implements FrameDecoder {
      * Fast INV_MDCT.
      */
 
-    public void inv_mdct(float[] in, float[] out, int block_type) {
+    public void inv_mdct(float[] in, int off, float[] out, int block_type) {
         float[] win_bt;
         int i;
 
@@ -1548,31 +1514,31 @@ final class LayerIIIDecoder implements FrameDecoder {
                 // 12 point IMDCT
                 // Begin 12 point IDCT
                 // Input aliasing for 12 pt IDCT
-                in[15 + i] += in[12 + i];
-                in[12 + i] += in[9 + i];
-                in[9 + i] += in[6 + i];
-                in[6 + i] += in[3 + i];
-                in[3 + i] += in[0 + i];
+                in[off + 15 + i] += in[off + 12 + i];
+                in[off + 12 + i] += in[off + 9 + i];
+                in[off + 9 + i] += in[off + 6 + i];
+                in[off + 6 + i] += in[off + 3 + i];
+                in[off + 3 + i] += in[off + 0 + i];
 
                 // Input aliasing on odd indices (for 6 point IDCT)
-                in[15 + i] += in[9 + i];
-                in[9 + i] += in[3 + i];
+                in[off + 15 + i] += in[off + 9 + i];
+                in[off + 9 + i] += in[off + 3 + i];
 
                 // 3 point IDCT on even indices
                 float pp1, pp2, sum;
-                pp2 = in[12 + i] * 0.500000000f;
-                pp1 = in[6 + i] * 0.866025403f;
-                sum = in[0 + i] + pp2;
-                tmpf_1 = in[0 + i] - in[12 + i];
+                pp2 = in[off + 12 + i] * 0.500000000f;
+                pp1 = in[off + 6 + i] * 0.866025403f;
+                sum = in[off + 0 + i] + pp2;
+                tmpf_1 = in[off + 0 + i] - in[off + 12 + i];
                 tmpf_0 = sum + pp1;
                 tmpf_2 = sum - pp1;
 
                 // End 3 point IDCT on even indices
                 // 3 point IDCT on odd indices (for 6 point IDCT)
-                pp2 = in[15 + i] * 0.500000000f;
-                pp1 = in[9 + i] * 0.866025403f;
-                sum = in[3 + i] + pp2;
-                tmpf_4 = in[3 + i] - in[15 + i];
+                pp2 = in[off + 15 + i] * 0.500000000f;
+                pp1 = in[off + 9 + i] * 0.866025403f;
+                sum = in[off + 3 + i] + pp2;
+                tmpf_4 = in[off + 3 + i] - in[off + 15 + i];
                 tmpf_5 = sum + pp1;
                 tmpf_3 = sum - pp1;
                 // End 3 point IDCT on odd indices
@@ -1641,34 +1607,34 @@ final class LayerIIIDecoder implements FrameDecoder {
         } else {
             // 36 point IDCT
             // input aliasing for 36 point IDCT
-            in[17] += in[16];
-            in[16] += in[15];
-            in[15] += in[14];
-            in[14] += in[13];
-            in[13] += in[12];
-            in[12] += in[11];
-            in[11] += in[10];
-            in[10] += in[9];
-            in[9] += in[8];
-            in[8] += in[7];
-            in[7] += in[6];
-            in[6] += in[5];
-            in[5] += in[4];
-            in[4] += in[3];
-            in[3] += in[2];
-            in[2] += in[1];
-            in[1] += in[0];
+            in[off + 17] += in[off + 16];
+            in[off + 16] += in[off + 15];
+            in[off + 15] += in[off + 14];
+            in[off + 14] += in[off + 13];
+            in[off + 13] += in[off + 12];
+            in[off + 12] += in[off + 11];
+            in[off + 11] += in[off + 10];
+            in[off + 10] += in[off + 9];
+            in[off + 9] += in[off + 8];
+            in[off + 8] += in[off + 7];
+            in[off + 7] += in[off + 6];
+            in[off + 6] += in[off + 5];
+            in[off + 5] += in[off + 4];
+            in[off + 4] += in[off + 3];
+            in[off + 3] += in[off + 2];
+            in[off + 2] += in[off + 1];
+            in[off + 1] += in[off + 0];
 
             // 18 point IDCT for odd indices
             // input aliasing for 18 point IDCT
-            in[17] += in[15];
-            in[15] += in[13];
-            in[13] += in[11];
-            in[11] += in[9];
-            in[9] += in[7];
-            in[7] += in[5];
-            in[5] += in[3];
-            in[3] += in[1];
+            in[off + 17] += in[off + 15];
+            in[off + 15] += in[off + 13];
+            in[off + 13] += in[off + 11];
+            in[off + 11] += in[off + 9];
+            in[off + 9] += in[off + 7];
+            in[off + 7] += in[off + 5];
+            in[off + 5] += in[off + 3];
+            in[off + 3] += in[off + 1];
 
             float tmp0, tmp1, tmp2, tmp3, tmp4, tmp0_, tmp1_, tmp2_, tmp3_;
             float tmp0o, tmp1o, tmp2o, tmp3o, tmp4o, tmp0_o, tmp1_o, tmp2_o, tmp3_o;
@@ -1687,41 +1653,41 @@ final class LayerIIIDecoder implements FrameDecoder {
             // 9 point IDCT on even indices
 
             // 5 points on odd indices (not realy an IDCT)
-            float i00 = in[0] + in[0];
-            float iip12 = i00 + in[12];
+            float i00 = in[off + 0] + in[off + 0];
+            float iip12 = i00 + in[off + 12];
 
-            tmp0 = iip12 + in[4] * 1.8793852415718f + in[8] * 1.532088886238f + in[16] * 0.34729635533386f;
-            tmp1 = i00 + in[4] - in[8] - in[12] - in[12] - in[16];
-            tmp2 = iip12 - in[4] * 0.34729635533386f - in[8] * 1.8793852415718f + in[16] * 1.532088886238f;
-            tmp3 = iip12 - in[4] * 1.532088886238f + in[8] * 0.34729635533386f - in[16] * 1.8793852415718f;
-            tmp4 = in[0] - in[4] + in[8] - in[12] + in[16];
+            tmp0 = iip12 + in[off + 4] * 1.8793852415718f + in[off + 8] * 1.532088886238f + in[off + 16] * 0.34729635533386f;
+            tmp1 = i00 + in[off + 4] - in[off + 8] - in[off + 12] - in[off + 12] - in[off + 16];
+            tmp2 = iip12 - in[off + 4] * 0.34729635533386f - in[off + 8] * 1.8793852415718f + in[off + 16] * 1.532088886238f;
+            tmp3 = iip12 - in[off + 4] * 1.532088886238f + in[off + 8] * 0.34729635533386f - in[off + 16] * 1.8793852415718f;
+            tmp4 = in[off + 0] - in[off + 4] + in[off + 8] - in[off + 12] + in[off + 16];
 
             // 4 points on even indices
-            float i66_ = in[6] * 1.732050808f;        // Sqrt[3]
+            float i66_ = in[off + 6] * 1.732050808f;        // Sqrt[3]
 
-            tmp0_ = in[2] * 1.9696155060244f + i66_ + in[10] * 1.2855752193731f + in[14] * 0.68404028665134f;
-            tmp1_ = (in[2] - in[10] - in[14]) * 1.732050808f;
-            tmp2_ = in[2] * 1.2855752193731f - i66_ - in[10] * 0.68404028665134f + in[14] * 1.9696155060244f;
-            tmp3_ = in[2] * 0.68404028665134f - i66_ + in[10] * 1.9696155060244f - in[14] * 1.2855752193731f;
+            tmp0_ = in[off + 2] * 1.9696155060244f + i66_ + in[off + 10] * 1.2855752193731f + in[off + 14] * 0.68404028665134f;
+            tmp1_ = (in[off + 2] - in[off + 10] - in[off + 14]) * 1.732050808f;
+            tmp2_ = in[off + 2] * 1.2855752193731f - i66_ - in[off + 10] * 0.68404028665134f + in[off + 14] * 1.9696155060244f;
+            tmp3_ = in[off + 2] * 0.68404028665134f - i66_ + in[off + 10] * 1.9696155060244f - in[off + 14] * 1.2855752193731f;
 
             // 9 point IDCT on odd indices
             // 5 points on odd indices (not realy an IDCT)
-            float i0 = in[0 + 1] + in[0 + 1];
-            float i0p12 = i0 + in[12 + 1];
+            float i0 = in[off + 0 + 1] + in[off + 0 + 1];
+            float i0p12 = i0 + in[off + 12 + 1];
 
-            tmp0o = i0p12 + in[4 + 1] * 1.8793852415718f + in[8 + 1] * 1.532088886238f + in[16 + 1] * 0.34729635533386f;
-            tmp1o = i0 + in[4 + 1] - in[8 + 1] - in[12 + 1] - in[12 + 1] - in[16 + 1];
-            tmp2o = i0p12 - in[4 + 1] * 0.34729635533386f - in[8 + 1] * 1.8793852415718f + in[16 + 1] * 1.532088886238f;
-            tmp3o = i0p12 - in[4 + 1] * 1.532088886238f + in[8 + 1] * 0.34729635533386f - in[16 + 1] * 1.8793852415718f;
-            tmp4o = (in[0 + 1] - in[4 + 1] + in[8 + 1] - in[12 + 1] + in[16 + 1]) * 0.707106781f; // Twiddled
+            tmp0o = i0p12 + in[off + 4 + 1] * 1.8793852415718f + in[off + 8 + 1] * 1.532088886238f + in[off + 16 + 1] * 0.34729635533386f;
+            tmp1o = i0 + in[off + 4 + 1] - in[off + 8 + 1] - in[off + 12 + 1] - in[off + 12 + 1] - in[off + 16 + 1];
+            tmp2o = i0p12 - in[off + 4 + 1] * 0.34729635533386f - in[off + 8 + 1] * 1.8793852415718f + in[off + 16 + 1] * 1.532088886238f;
+            tmp3o = i0p12 - in[off + 4 + 1] * 1.532088886238f + in[off + 8 + 1] * 0.34729635533386f - in[off + 16 + 1] * 1.8793852415718f;
+            tmp4o = (in[off + 0 + 1] - in[off + 4 + 1] + in[off + 8 + 1] - in[off + 12 + 1] + in[off + 16 + 1]) * 0.707106781f; // Twiddled
 
             // 4 points on even indices
-            float i6_ = in[6 + 1] * 1.732050808f;        // Sqrt[3]
+            float i6_ = in[off + 6 + 1] * 1.732050808f;        // Sqrt[3]
 
-            tmp0_o = in[2 + 1] * 1.9696155060244f + i6_ + in[10 + 1] * 1.2855752193731f + in[14 + 1] * 0.68404028665134f;
-            tmp1_o = (in[2 + 1] - in[10 + 1] - in[14 + 1]) * 1.732050808f;
-            tmp2_o = in[2 + 1] * 1.2855752193731f - i6_ - in[10 + 1] * 0.68404028665134f + in[14 + 1] * 1.9696155060244f;
-            tmp3_o = in[2 + 1] * 0.68404028665134f - i6_ + in[10 + 1] * 1.9696155060244f - in[14 + 1] * 1.2855752193731f;
+            tmp0_o = in[off + 2 + 1] * 1.9696155060244f + i6_ + in[off + 10 + 1] * 1.2855752193731f + in[off + 14 + 1] * 0.68404028665134f;
+            tmp1_o = (in[off + 2 + 1] - in[off + 10 + 1] - in[off + 14 + 1]) * 1.732050808f;
+            tmp2_o = in[off + 2 + 1] * 1.2855752193731f - i6_ - in[off + 10 + 1] * 0.68404028665134f + in[off + 14 + 1] * 1.9696155060244f;
+            tmp3_o = in[off + 2 + 1] * 0.68404028665134f - i6_ + in[off + 10 + 1] * 1.9696155060244f - in[off + 14 + 1] * 1.2855752193731f;
 
             // Twiddle factors on odd indices
             // and
@@ -1949,6 +1915,19 @@ final class LayerIIIDecoder implements FrameDecoder {
 
     public static final float t_43[] = create_t_43();
 
+    /**
+     * 2^(0.25 * (global_gain - 210)) for every 8 bit global_gain.
+     */
+    private static final float global_gain_pow[] = create_global_gain_pow();
+
+    static private float[] create_global_gain_pow() {
+        float[] gain = new float[256];
+        for (int i = 0; i < 256; i++) {
+            gain[i] = (float) Math.pow(2.0, (0.25 * (i - 210.0)));
+        }
+        return gain;
+    }
+
     static private float[] create_t_43() {
         float[] t43 = new float[8192];
         final double d43 = (4.0 / 3.0);
@@ -157,6 +157,16 @@ final class SynthesisFilter {
         }
     }
 
+    /**
+     * Inject 32 subband samples taken from <code>s</code> starting at
+     * <code>offset</code>, every <code>stride</code> elements.
+     */
+    public void input_samples(float[] s, int offset, int stride) {
+        for (int i = 0; i < 32; i++, offset += stride) {
+            samples[i] = s[offset] * eq[i];
+        }
+    }
+
     /**
      * Compute new values via a fast cosine transform.
      */
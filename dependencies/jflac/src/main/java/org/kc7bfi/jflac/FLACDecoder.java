@@ -185,6 +185,60 @@ public class FLACDecoder {
         return pcmData;
     }
 
+    /**
+     * Get the size of the PCM data of a frame.
+     *
+     * @param frame the frame
+     * @return the number of bytes {@link #decodeFrame(Frame, byte[], int)} writes
+     */
+    public int getFrameBytes(Frame frame) {
+        return frame.header.blockSize * channels * (streamInfo.getBitsPerSample() / 8);
+    }
+
+    /**
+     * Write the PCM data of the frame straight into an array, in the same
+     * format as {@link #decodeFrame(Frame, ByteData)}.
+     *
+     * @param frame  the frame to write
+     * @param buf    the destination, must have room for {@link #getFrameBytes(Frame)} bytes
+     * @param offset the position of the first byte to write
+     * @return the number of bytes written
+     */
+    public int decodeFrame(Frame frame, byte[] buf, int offset) {
+        int blockSize = frame.header.blockSize;
+        int bps = streamInfo.getBitsPerSample();
+        int pos = offset;
+        if (bps == 16 && channels == 2) {
+            int[] left = channelData[0].getOutput();
+            int[] right = channelData[1].getOutput();
+            for (int i = 0; i < blockSize; i++) {
+                int l = left[i];
+                int r = right[i];
+                buf[pos] = (byte) l;
+                buf[pos + 1] = (byte) (l >> 8);
+                buf[pos + 2] = (byte) r;
+                buf[pos + 3] = (byte) (r >> 8);
+                pos += 4;
+            }
+        } else if (bps == 8 || bps == 16 || bps == 24) {
+            int bytes = bps / 8;
+            int bias = bps == 8 ? 0x80 : 0;
+            int stride = channels * bytes;
+            for (int channel = 0; channel < channels; channel++) {
+                int[] output = channelData[channel].getOutput();
+                int p = offset + channel * bytes;
+                for (int i = 0; i < blockSize; i++, p += stride) {
+                    int val = output[i] + bias;
+                    buf[p] = (byte) val;
+                    if (bytes > 1) buf[p + 1] = (byte) (val >> 8);
+                    if (bytes > 2) buf[p + 2] = (byte) (val >> 16);
+                }
+            }
+            pos += blockSize * stride;
+        }
+        return pos - offset;
+    }
+
     /**
      * Read the FLAC stream info.
      *
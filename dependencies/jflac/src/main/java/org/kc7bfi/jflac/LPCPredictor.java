@@ -214,19 +214,132 @@ if(cmax <= 0.0) {
      * @param startAt        The starting position in the data array
      */
     public static void restoreSignal(int[] residual, int dataLen, int[] qlpCoeff, int order, int lpQuantization, int[] data, int startAt) {
-        //System.out.println("Q="+lpQuantization);
-        for (int i = 0; i < dataLen; i++) {
-            int sum = 0;
-            for (int j = 0; j < order; j++) {
-                sum += qlpCoeff[j] * data[startAt + i - j - 1];
+        // common orders are unrolled with the coefficients in locals
+        int end = startAt + dataLen;
+        switch (order) {
+            case 1: {
+                int c0 = qlpCoeff[0];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1]) >> lpQuantization);
+                }
+                break;
             }
-            //System.out.print((sum >> lpQuantization)+" ");
-            data[startAt + i] = residual[i] + (sum >> lpQuantization);
+            case 2: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1] + c1 * data[i - 2]) >> lpQuantization);
+                }
+                break;
+            }
+            case 3: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1] + c1 * data[i - 2] + c2 * data[i - 3]) >> lpQuantization);
+                }
+                break;
+            }
+            case 4: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1] + c1 * data[i - 2] + c2 * data[i - 3] +
+                            c3 * data[i - 4]) >> lpQuantization);
+                }
+                break;
+            }
+            case 5: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1] + c1 * data[i - 2] + c2 * data[i - 3] +
+                            c3 * data[i - 4] + c4 * data[i - 5]) >> lpQuantization);
+                }
+                break;
+            }
+            case 6: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1] + c1 * data[i - 2] + c2 * data[i - 3] +
+                            c3 * data[i - 4] + c4 * data[i - 5] + c5 * data[i - 6]) >> lpQuantization);
+                }
+                break;
+            }
+            case 7: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1] + c1 * data[i - 2] + c2 * data[i - 3] +
+                            c3 * data[i - 4] + c4 * data[i - 5] + c5 * data[i - 6] +
+                            c6 * data[i - 7]) >> lpQuantization);
+                }
+                break;
+            }
+            case 8: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6], c7 = qlpCoeff[7];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1] + c1 * data[i - 2] + c2 * data[i - 3] +
+                            c3 * data[i - 4] + c4 * data[i - 5] + c5 * data[i - 6] +
+                            c6 * data[i - 7] + c7 * data[i - 8]) >> lpQuantization);
+                }
+                break;
+            }
+            case 9: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6], c7 = qlpCoeff[7];
+                int c8 = qlpCoeff[8];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1] + c1 * data[i - 2] + c2 * data[i - 3] +
+                            c3 * data[i - 4] + c4 * data[i - 5] + c5 * data[i - 6] +
+                            c6 * data[i - 7] + c7 * data[i - 8] + c8 * data[i - 9]) >> lpQuantization);
+                }
+                break;
+            }
+            case 10: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6], c7 = qlpCoeff[7];
+                int c8 = qlpCoeff[8], c9 = qlpCoeff[9];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1] + c1 * data[i - 2] + c2 * data[i - 3] +
+                            c3 * data[i - 4] + c4 * data[i - 5] + c5 * data[i - 6] +
+                            c6 * data[i - 7] + c7 * data[i - 8] + c8 * data[i - 9] +
+                            c9 * data[i - 10]) >> lpQuantization);
+                }
+                break;
+            }
+            case 11: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6], c7 = qlpCoeff[7];
+                int c8 = qlpCoeff[8], c9 = qlpCoeff[9], c10 = qlpCoeff[10];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1] + c1 * data[i - 2] + c2 * data[i - 3] +
+                            c3 * data[i - 4] + c4 * data[i - 5] + c5 * data[i - 6] +
+                            c6 * data[i - 7] + c7 * data[i - 8] + c8 * data[i - 9] +
+                            c9 * data[i - 10] + c10 * data[i - 11]) >> lpQuantization);
+                }
+                break;
+            }
+            case 12: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6], c7 = qlpCoeff[7];
+                int c8 = qlpCoeff[8], c9 = qlpCoeff[9], c10 = qlpCoeff[10], c11 = qlpCoeff[11];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + ((c0 * data[i - 1] + c1 * data[i - 2] + c2 * data[i - 3] +
+                            c3 * data[i - 4] + c4 * data[i - 5] + c5 * data[i - 6] +
+                            c6 * data[i - 7] + c7 * data[i - 8] + c8 * data[i - 9] +
+                            c9 * data[i - 10] + c10 * data[i - 11] + c11 * data[i - 12]) >> lpQuantization);
+                }
+                break;
+            }
+            default:
+                for (int i = 0; i < dataLen; i++) {
+                    int sum = 0;
+                    for (int j = 0; j < order; j++) {
+                        sum += qlpCoeff[j] * data[startAt + i - j - 1];
+                    }
+                    data[startAt + i] = residual[i] + (sum >> lpQuantization);
+                }
         }
-        //System.out.println();
-        //for (int i = 0; i < dataLen+startAt; i++) System.out.print(data[i]+" "); System.out.println();
-        //for (int j = 0; j < order; j++) System.out.print(qlpCoeff[j]+" ");System.out.println();
-        //System.exit(1);
     }
 
     /**
@@ -241,14 +354,145 @@ if(cmax <= 0.0) {
      * @param startAt        The starting position in the data array
      */
     public static void restoreSignalWide(int[] residual, int dataLen, int[] qlpCoeff, int order, int lpQuantization, int[] data, int startAt) {
-        for (int i = 0; i < dataLen; i++) {
-            long sum = 0;
-            for (int j = 0; j < order; j++)
-                sum += (long) qlpCoeff[j] * (long) (data[startAt + i - j - 1]);
-            data[startAt + i] = residual[i] + (int) (sum >> lpQuantization);
+        int end = startAt + dataLen;
+        switch (order) {
+            case 1: {
+                int c0 = qlpCoeff[0];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1]) >> lpQuantization);
+                }
+                break;
+            }
+            case 2: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1] + (long) c1 * data[i - 2]) >> lpQuantization);
+                }
+                break;
+            }
+            case 3: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1] + (long) c1 * data[i - 2] +
+                            (long) c2 * data[i - 3]) >> lpQuantization);
+                }
+                break;
+            }
+            case 4: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1] + (long) c1 * data[i - 2] +
+                            (long) c2 * data[i - 3] + (long) c3 * data[i - 4]) >> lpQuantization);
+                }
+                break;
+            }
+            case 5: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1] + (long) c1 * data[i - 2] +
+                            (long) c2 * data[i - 3] + (long) c3 * data[i - 4] +
+                            (long) c4 * data[i - 5]) >> lpQuantization);
+                }
+                break;
+            }
+            case 6: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1] + (long) c1 * data[i - 2] +
+                            (long) c2 * data[i - 3] + (long) c3 * data[i - 4] +
+                            (long) c4 * data[i - 5] + (long) c5 * data[i - 6]) >> lpQuantization);
+                }
+                break;
+            }
+            case 7: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1] + (long) c1 * data[i - 2] +
+                            (long) c2 * data[i - 3] + (long) c3 * data[i - 4] +
+                            (long) c4 * data[i - 5] + (long) c5 * data[i - 6] +
+                            (long) c6 * data[i - 7]) >> lpQuantization);
+                }
+                break;
+            }
+            case 8: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6], c7 = qlpCoeff[7];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1] + (long) c1 * data[i - 2] +
+                            (long) c2 * data[i - 3] + (long) c3 * data[i - 4] +
+                            (long) c4 * data[i - 5] + (long) c5 * data[i - 6] +
+                            (long) c6 * data[i - 7] + (long) c7 * data[i - 8]) >> lpQuantization);
+                }
+                break;
+            }
+            case 9: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6], c7 = qlpCoeff[7];
+                int c8 = qlpCoeff[8];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1] + (long) c1 * data[i - 2] +
+                            (long) c2 * data[i - 3] + (long) c3 * data[i - 4] +
+                            (long) c4 * data[i - 5] + (long) c5 * data[i - 6] +
+                            (long) c6 * data[i - 7] + (long) c7 * data[i - 8] +
+                            (long) c8 * data[i - 9]) >> lpQuantization);
+                }
+                break;
+            }
+            case 10: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6], c7 = qlpCoeff[7];
+                int c8 = qlpCoeff[8], c9 = qlpCoeff[9];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1] + (long) c1 * data[i - 2] +
+                            (long) c2 * data[i - 3] + (long) c3 * data[i - 4] +
+                            (long) c4 * data[i - 5] + (long) c5 * data[i - 6] +
+                            (long) c6 * data[i - 7] + (long) c7 * data[i - 8] +
+                            (long) c8 * data[i - 9] + (long) c9 * data[i - 10]) >> lpQuantization);
+                }
+                break;
+            }
+            case 11: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6], c7 = qlpCoeff[7];
+                int c8 = qlpCoeff[8], c9 = qlpCoeff[9], c10 = qlpCoeff[10];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1] + (long) c1 * data[i - 2] +
+                            (long) c2 * data[i - 3] + (long) c3 * data[i - 4] +
+                            (long) c4 * data[i - 5] + (long) c5 * data[i - 6] +
+                            (long) c6 * data[i - 7] + (long) c7 * data[i - 8] +
+                            (long) c8 * data[i - 9] + (long) c9 * data[i - 10] +
+                            (long) c10 * data[i - 11]) >> lpQuantization);
+                }
+                break;
+            }
+            case 12: {
+                int c0 = qlpCoeff[0], c1 = qlpCoeff[1], c2 = qlpCoeff[2], c3 = qlpCoeff[3];
+                int c4 = qlpCoeff[4], c5 = qlpCoeff[5], c6 = qlpCoeff[6], c7 = qlpCoeff[7];
+                int c8 = qlpCoeff[8], c9 = qlpCoeff[9], c10 = qlpCoeff[10], c11 = qlpCoeff[11];
+                for (int i = startAt; i < end; i++) {
+                    data[i] = residual[i - startAt] + (int) (((long) c0 * data[i - 1] + (long) c1 * data[i - 2] +
+                            (long) c2 * data[i - 3] + (long) c3 * data[i - 4] +
+                            (long) c4 * data[i - 5] + (long) c5 * data[i - 6] +
+                            (long) c6 * data[i - 7] + (long) c7 * data[i - 8] +
+                            (long) c8 * data[i - 9] + (long) c9 * data[i - 10] +
+                            (long) c10 * data[i - 11] + (long) c11 * data[i - 12]) >> lpQuantization);
+                }
+                break;
+            }
+            default:
+                for (int i = 0; i < dataLen; i++) {
+                    long sum = 0;
+                    for (int j = 0; j < order; j++)
+                        sum += (long) qlpCoeff[j] * (long) (data[startAt + i - j - 1]);
+                    data[startAt + i] = residual[i] + (int) (sum >> lpQuantization);
+                }
         }
     }
 
+
     /*
     double FLAC__lpc_compute_expected_bits_per_residual_sample(double lpc_error, int total_samples)
     {
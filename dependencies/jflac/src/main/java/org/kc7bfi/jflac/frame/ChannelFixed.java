@@ -66,8 +66,10 @@ public class ChannelFixed extends Channel {
         EntropyPartitionedRice pr;
         switch (type) {
             case ENTROPY_CODING_METHOD_PARTITIONED_RICE:
+            case ENTROPY_CODING_METHOD_PARTITIONED_RICE2:
                 int u32 = is.readRawUInt(ENTROPY_CODING_METHOD_PARTITIONED_RICE_ORDER_LEN);
                 pr = new EntropyPartitionedRice();
+                pr.rice2 = type == ENTROPY_CODING_METHOD_PARTITIONED_RICE2;
                 entropyCodingMethod = pr;
                 pr.order = u32;
                 pr.contents = channelData.getPartitionedRiceContents();
@@ -291,10 +291,28 @@ public class BitInputStream {
      * @throws IOException Thrown if error reading input stream
      */
     public int readRawUInt(int bits) throws IOException {
-        int val = 0;
-        for (int i = 0; i < bits; i++) {
-            val = readBitToInt(val);
+        if (bits == 0) return 0;
+        while (availBits < bits) {
+            readFromStream();
         }
+
+        // at most 32 bits starting in the middle of a blurb span 5 blurbs
+        int end = getBit + bits;
+        int nbytes = (end + 7) >> 3;
+        long word = 0;
+        for (int i = 0; i < nbytes; i++) {
+            word = (word << 8) | (buffer[getByte + i] & 0xff);
+        }
+        int val = (int) ((word >>> ((nbytes << 3) - end)) & (0xffffffffL >>> (32 - bits)));
+
+        int consumed = end >> 3;
+        for (int i = 0; i < consumed; i++) {
+            readCRC16 = CRC16.update(buffer[getByte + i], readCRC16);
+        }
+        getByte += consumed;
+        getBit = end & 7;
+        availBits -= bits;
+        totalBitsRead += bits;
         return val;
     }
 
@@ -324,22 +342,11 @@ public class BitInputStream {
         if (bits == 0) {
             return 0;
         }
-        int uval = 0;
-        for (int i = 0; i < bits; i++) {
-            uval = readBitToInt(uval);
-        }
+        int uval = readRawUInt(bits);
 
         // fix the sign
-        int val;
         int bitsToleft = 32 - bits;
-        if (bitsToleft != 0) {
-            uval <<= bitsToleft;
-            val = uval;
-            val >>= bitsToleft;
-        } else {
-            val = uval;
-        }
-        return val;
+        return (uval << bitsToleft) >> bitsToleft;
     }
 
     /**
@@ -350,11 +357,11 @@ public class BitInputStream {
      * @throws IOException Thrown if error reading input stream
      */
     public long readRawULong(int bits) throws IOException {
-        long val = 0;
-        for (int i = 0; i < bits; i++) {
-            val = readBitToLong(val);
+        if (bits <= 32) {
+            return readRawUInt(bits) & 0xffffffffL;
         }
-        return val;
+        long hi = readRawUInt(bits - 32) & 0xffffffffL;
+        return (hi << 32) | (readRawUInt(32) & 0xffffffffL);
     }
 
     /**
@@ -406,9 +413,22 @@ public class BitInputStream {
      */
     public int readUnaryUnsigned() throws IOException {
         int val = 0;
+        // finish the current blurb bit by bit, then skip whole zero blurbs
+        while (getBit != 0) {
+            if (readBit() != 0) return val;
+            val++;
+        }
         while (true) {
-            int bit = readBit();
-            if (bit != 0) break;
+            if (availBits == 0) readFromStream();
+            byte blurb = buffer[getByte];
+            if (blurb != 0) break;
+            readCRC16 = CRC16.update(blurb, readCRC16);
+            getByte++;
+            availBits -= BITS_PER_BLURB;
+            totalBitsRead += BITS_PER_BLURB;
+            val += BITS_PER_BLURB;
+        }
+        while (readBit() == 0) {
             val++;
         }
         return val;
@@ -416,6 +436,10 @@ public class BitInputStream {
 
     /**
      * Read a Rice Signal Block.
+     * <p/>
+     * The buffer is read 64 bits at a time: the unary part is found by
+     * counting leading zeros of the word, the binary part is shifted out
+     * of the same word when it fits.
      *
      * @param vals      The values to be returned
      * @param pos       The starting position in the vals array
@@ -424,198 +448,100 @@ public class BitInputStream {
      * @throws IOException On read error
      */
     public void readRiceSignedBlock(int[] vals, int pos, int nvals, int parameter) throws IOException {
-        int j, valI = 0;
-        int cbits = 0, uval = 0, msbs = 0, lsbsLeft = 0;
-        byte blurb, saveBlurb;
-        int state = 0; // 0 = getting unary MSBs, 1 = getting binary LSBs
         if (nvals == 0) return;
-        int i = getByte;
-
-        long startBits = getByte * 8 + getBit;
-
-        // We unroll the main loop to take care of partially consumed blurbs here.
-        if (getBit > 0) {
-            saveBlurb = blurb = buffer[i];
-            cbits = getBit;
-            blurb <<= cbits;
-            while (true) {
-                if (state == 0) {
-                    if (blurb != 0) {
-                        for (j = 0; (blurb & BLURB_TOP_BIT_ONE) == 0; j++)
-                            blurb <<= 1;
-                        msbs += j;
-
-                        // dispose of the unary end bit
-                        blurb <<= 1;
-                        j++;
-                        cbits += j;
-                        uval = 0;
-                        lsbsLeft = parameter;
-                        state++;
-                        //totalBitsRead += msbs;
-                        if (cbits == BITS_PER_BLURB) {
-                            cbits = 0;
-                            readCRC16 = CRC16.update(saveBlurb, readCRC16);
-                            break;
-                        }
-                    } else {
-                        msbs += BITS_PER_BLURB - cbits;
-                        cbits = 0;
-                        readCRC16 = CRC16.update(saveBlurb, readCRC16);
-                        //totalBitsRead += msbs;
-                        break;
-                    }
-                } else {
-                    int availableBits = BITS_PER_BLURB - cbits;
-                    if (lsbsLeft >= availableBits) {
-                        uval <<= availableBits;
-                        uval |= ((blurb & 0xff) >> cbits);
-                        cbits = 0;
-                        readCRC16 = CRC16.update(saveBlurb, readCRC16);
-                        //totalBitsRead += availableBits;
-                        if (lsbsLeft == availableBits) {
-                            // compose the value
-                            uval |= (msbs << parameter);
-                            if ((uval & 1) != 0)
-                                vals[pos + valI++] = -((int) (uval >> 1)) - 1;
-                            else
-                                vals[pos + valI++] = (int) (uval >> 1);
-                            if (valI == nvals)
-                                break;
-                            msbs = 0;
-                            state = 0;
-                        }
-                        lsbsLeft -= availableBits;
-                        break;
-                    } else {
-                        uval <<= lsbsLeft;
-                        uval |= ((blurb & 0xff) >> (BITS_PER_BLURB - lsbsLeft));
-                        blurb <<= lsbsLeft;
-                        cbits += lsbsLeft;
-                        //totalBitsRead += lsbsLeft;
-                        // compose the value
-                        uval |= (msbs << parameter);
-                        if ((uval & 1) != 0)
-                            vals[pos + valI++] = -((int) (uval >> 1)) - 1;
-                        else
-                            vals[pos + valI++] = (int) (uval >> 1);
-                        if (valI == nvals) {
-                            // back up one if we exited the for loop because we
-                            // read all nvals but the end came in the middle of
-                            // a blurb
-                            i--;
-                            break;
-                        }
-                        msbs = 0;
-                        state = 0;
-                    }
+        boolean eof = false;
+        int crcByte = getByte; // first blurb that is not in the CRC yet
+        int bitPos = (getByte << BITS_PER_BLURB_LOG2) | getBit;
+        int startBit = bitPos;
+        int end = pos + nvals;
+
+        while (pos < end) {
+            if ((bitPos >> BITS_PER_BLURB_LOG2) + 16 > putByte && !eof) {
+                // commit what was read so far and get more data
+                crcByte = updateCRC16(crcByte, bitPos >> BITS_PER_BLURB_LOG2);
+                getByte = bitPos >> BITS_PER_BLURB_LOG2;
+                getBit = bitPos & 7;
+                availBits -= bitPos - startBit;
+                totalBitsRead += bitPos - startBit;
+                try {
+                    readFromStream();
+                } catch (EOFException e) {
+                    eof = true;
                 }
+                crcByte = getByte;
+                bitPos = (getByte << BITS_PER_BLURB_LOG2) | getBit;
+                startBit = bitPos;
             }
-            i++;
-            getByte = i;
-            getBit = cbits;
-            //totalConsumedBits = (i << BITS_PER_BLURB_LOG2) | cbits;
-            //totalBitsRead += (BITS_PER_BLURB) | cbits;
-        }
 
-        // Now that we are blurb-aligned the logic is slightly simpler
-        while (valI < nvals) {
-            for (; i < putByte && valI < nvals; i++) {
-                saveBlurb = blurb = buffer[i];
-                cbits = 0;
-                while (true) {
-                    if (state == 0) {
-                        if (blurb != 0) {
-                            for (j = 0; (blurb & BLURB_TOP_BIT_ONE) == 0; j++) blurb <<= 1;
-                            msbs += j;
-                            // dispose of the unary end bit
-                            blurb <<= 1;
-                            j++;
-                            cbits += j;
-                            uval = 0;
-                            lsbsLeft = parameter;
-                            state++;
-                            //totalBitsRead += msbs;
-                            if (cbits == BITS_PER_BLURB) {
-                                cbits = 0;
-                                readCRC16 = CRC16.update(saveBlurb, readCRC16);
-                                break;
-                            }
-                        } else {
-                            msbs += BITS_PER_BLURB - cbits;
-                            cbits = 0;
-                            readCRC16 = CRC16.update(saveBlurb, readCRC16);
-                            //totalBitsRead += msbs;
-                            break;
-                        }
-                    } else {
-                        int availableBits = BITS_PER_BLURB - cbits;
-                        if (lsbsLeft >= availableBits) {
-                            uval <<= availableBits;
-                            uval |= ((blurb & 0xff) >> cbits);
-                            cbits = 0;
-                            readCRC16 = CRC16.update(saveBlurb, readCRC16);
-                            //totalBitsRead += availableBits;
-                            if (lsbsLeft == availableBits) {
-                                // compose the value
-                                uval |= (msbs << parameter);
-                                if ((uval & 1) != 0)
-                                    vals[pos + valI++] = -((int) (uval >> 1)) - 1;
-                                else
-                                    vals[pos + valI++] = (int) (uval >> 1);
-                                if (valI == nvals)
-                                    break;
-                                msbs = 0;
-                                state = 0;
-                            }
-                            lsbsLeft -= availableBits;
-                            break;
-                        } else {
-                            uval <<= lsbsLeft;
-                            uval |= ((blurb & 0xff) >> (BITS_PER_BLURB - lsbsLeft));
-                            blurb <<= lsbsLeft;
-                            cbits += lsbsLeft;
-                            //totalBitsRead += lsbsLeft;
-                            // compose the value
-                            uval |= (msbs << parameter);
-                            if ((uval & 1) != 0)
-                                vals[pos + valI++] = -((int) (uval >> 1)) - 1;
-                            else
-                                vals[pos + valI++] = (int) (uval >> 1);
-                            if (valI == nvals) {
-                                // back up one if we exited the for loop because
-                                // we read all nvals but the end came in the
-                                // middle of a blurb
-                                i--;
-                                break;
-                            }
-                            msbs = 0;
-                            state = 0;
-                        }
-                    }
+            int shift = bitPos & 7;
+            long word = readWord(bitPos >> BITS_PER_BLURB_LOG2) << shift;
+            if (word != 0) {
+                int msbs = Long.numberOfLeadingZeros(word);
+                // the unary stop bit and the binary part
+                int used = msbs + 1 + parameter;
+                if (used <= 64 - shift) {
+                    int lsbs = parameter == 0 ? 0 : (int) ((word << (msbs + 1)) >>> (64 - parameter));
+                    bitPos += used;
+                    int uval = (msbs << parameter) | lsbs;
+                    vals[pos++] = (uval >>> 1) ^ -(uval & 1);
+                    continue;
                 }
             }
-            getByte = i;
-            getBit = cbits;
-            //totalConsumedBits = (i << BITS_PER_BLURB_LOG2) | cbits;
-            //totalBitsRead += (BITS_PER_BLURB) | cbits;
-            if (valI < nvals) {
-                long endBits = getByte * 8 + getBit;
-                //System.out.println("SE0 "+startBits+" "+endBits);
-                totalBitsRead += endBits - startBits;
-                availBits -= endBits - startBits;
-                readFromStream();
-                // these must be zero because we can only get here if we got to
-                // the end of the buffer
-                i = 0;
-                startBits = getByte * 8 + getBit;
-            }
+
+            // long unary run or the end of the data, go the slow way
+            crcByte = updateCRC16(crcByte, bitPos >> BITS_PER_BLURB_LOG2);
+            getByte = bitPos >> BITS_PER_BLURB_LOG2;
+            getBit = bitPos & 7;
+            availBits -= bitPos - startBit;
+            totalBitsRead += bitPos - startBit;
+            int msbs = readUnaryUnsigned();
+            int uval = (msbs << parameter) | readRawUInt(parameter);
+            vals[pos++] = (uval >>> 1) ^ -(uval & 1);
+            crcByte = getByte;
+            bitPos = (getByte << BITS_PER_BLURB_LOG2) | getBit;
+            startBit = bitPos;
         }
 
-        long endBits = getByte * 8 + getBit;
-        //System.out.println("SE1 "+startBits+" "+endBits);
-        totalBitsRead += endBits - startBits;
-        availBits -= endBits - startBits;
+        if (bitPos > putByte << BITS_PER_BLURB_LOG2) throw new EOFException();
+        updateCRC16(crcByte, bitPos >> BITS_PER_BLURB_LOG2);
+        getByte = bitPos >> BITS_PER_BLURB_LOG2;
+        getBit = bitPos & 7;
+        availBits -= bitPos - startBit;
+        totalBitsRead += bitPos - startBit;
+    }
+
+    /**
+     * @return 8 blurbs starting at index as a big-endian long, blurbs past
+     *         the end of the data are zero
+     */
+    private long readWord(int index) {
+        byte[] b = buffer;
+        if (index + 8 <= putByte) {
+            return ((long) (b[index] & 0xff) << 56) | ((long) (b[index + 1] & 0xff) << 48)
+                    | ((long) (b[index + 2] & 0xff) << 40) | ((long) (b[index + 3] & 0xff) << 32)
+                    | ((long) (b[index + 4] & 0xff) << 24) | ((b[index + 5] & 0xff) << 16)
+                    | ((b[index + 6] & 0xff) << 8) | (b[index + 7] & 0xff);
+        }
+        long word = 0;
+        for (int i = 0; i < 8; i++) {
+            word <<= 8;
+            if (index + i < putByte) word |= b[index + i] & 0xff;
+        }
+        return word;
+    }
+
+    /**
+     * Add blurbs [from, to) to the read CRC-16.
+     *
+     * @return to
+     */
+    private int updateCRC16(int from, int to) {
+        short crc = readCRC16;
+        for (int i = from; i < to; i++) {
+            crc = CRC16.update(buffer[i], crc);
+        }
+        readCRC16 = crc;
+        return to;
     }
 
     /**
@@ -226,6 +226,13 @@ public class StreamInfo extends Metadata {
         return sampleRate;
     }
 
+    /**
+     * @return Returns the MD5 signature of the unencoded audio data.
+     */
+    public byte[] getMD5Sum() {
+        return md5sum;
+    }
+
     /**
      * @return the Java Sound AudioFormat for this stream info.
      */
@@ -37,6 +37,17 @@ public class RandomAccessFile extends File {
         this.file = new java.io.RandomAccessFile(file, mode);
     }
 
+    /**
+     * Wraps an already opened file
+     *
+     * @param file   file name
+     * @param source opened file to read from
+     */
+    public RandomAccessFile(final java.io.File file, final java.io.RandomAccessFile source) {
+        this.f = file;
+        this.file = source;
+    }
+
     public void mark(int readlimit) throws IOException {
         markPosition = file.getFilePointer();
     }
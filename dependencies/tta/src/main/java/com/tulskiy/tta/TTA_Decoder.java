@@ -10,6 +10,8 @@ package com.tulskiy.tta;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 import static com.tulskiy.tta.Constants.*;
@@ -53,12 +55,35 @@ public class TTA_Decoder {
     int discard_bytes;
     private int smp_size;
 
+    /**
+     * Maps the whole file and closes the stream
+     */
     public TTA_Decoder(FileInputStream inputStream) {
+        this(map(inputStream));
+    }
+
+    /**
+     * @param input contents of the file, read from its position
+     */
+    public TTA_Decoder(ByteBuffer input) {
         fifo = new TTA_fifo();
-        fifo.io = inputStream;
+        fifo.io = input.slice();
         data = new byte[8];
     }
 
+    private static ByteBuffer map(FileInputStream inputStream) {
+        try {
+            FileChannel channel = inputStream.getChannel();
+            try {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new tta_exception(TTA_READ_ERROR, e);
+        }
+    }
+
     public TTA_info init_get_info(long pos) {
         TTA_info info = new TTA_info();
         // set start position if required
@@ -66,7 +91,6 @@ public class TTA_Decoder {
             fifo.seek(pos);
         }
 
-        fifo.reader_start();
         pos += read_tta_header(info);
 
         // check for supported formats
@@ -125,15 +149,11 @@ public class TTA_Decoder {
 
         size += 22; // sizeof TTA header
 
-        try {
-            int datasize = (int) (fifo.io.available() - size);
-            int origsize = info.samples * info.bps / 8 * info.nch;
-            double compress = (double) datasize / origsize;
-            info.bitrate = (int) (compress * info.sps *
-                info.nch * info.bps / 1000);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        int datasize = (int) (fifo.length() - size);
+        int origsize = info.samples * info.bps / 8 * info.nch;
+        double compress = (double) datasize / origsize;
+        info.bitrate = (int) (compress * info.sps *
+            info.nch * info.bps / 1000);
 
         return size;
     } // read_tta_header
@@ -144,14 +164,15 @@ public class TTA_Decoder {
         fifo.reader_reset();
 
         // id3v2 header must be at start
+        long start = fifo.position();
         byte[] header = new byte[3];
         fifo.read(header, 3);
         if (!"ID3".equals(new String(header))) {
-            fifo.pos = 0;
+            fifo.seek(start);
             return 0;
         }
 
-        fifo.pos += 2; // skip version bytes
+        fifo.seek(fifo.position() + 2); // skip version bytes
         if ((fifo.read_byte() & 0x10) != 0) size += 10;
 
         size += (fifo.read_byte() & 0x7f);
@@ -193,7 +214,6 @@ public class TTA_Decoder {
             if (pos >= 0) {
                 fifo.seek(pos);
             }
-            fifo.reader_start();
         }
 
         if (fnum == frames - 1)
@@ -346,6 +366,6 @@ public class TTA_Decoder {
     } // set_position
 
     public void close() throws IOException {
-        fifo.io.close();
+        fifo.io = null;
     }
 }
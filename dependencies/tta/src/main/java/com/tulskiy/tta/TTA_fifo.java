@@ -8,8 +8,7 @@
 
 package com.tulskiy.tta;
 
-import java.io.FileInputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import static com.tulskiy.tta.Constants.*;
 
@@ -18,15 +17,11 @@ import static com.tulskiy.tta.Constants.*;
  * Date: 5/30/11
  */
 class TTA_fifo {
-    public static final int TTA_FIFO_BUFFER_SIZE = 5120;
-
-    byte[] buffer = new byte[TTA_FIFO_BUFFER_SIZE];
-    int pos = buffer.length;
     private int bcount; // count of bits in cache
     private int bcache; // bit cache
     private int crc;
     int count;
-    FileInputStream io;
+    ByteBuffer io;
 
     void reader_reset() {
         // init crc32, reset counter
@@ -37,24 +32,15 @@ class TTA_fifo {
     }
 
     final short read_byte() {
-        try {
-            if (pos == buffer.length) {
-                if (io.read(buffer, 0, TTA_FIFO_BUFFER_SIZE) == -1) {
-                    System.out.println(io.getChannel().position());
-                    throw new tta_exception(TTACodecStatus.TTA_READ_ERROR);
-                }
-                pos = 0;
-            }
+        if (!io.hasRemaining())
+            throw new tta_exception(TTACodecStatus.TTA_READ_ERROR);
 
-            short val = (short) (buffer[pos++] & 0xFF);
-            // update crc32 and statistics
-            crc = (int) (crc32_table[((crc ^ val) & 0xFF)] ^ ((crc >> 8) & 0x0FFFFFFF));
-            count++;
+        short val = (short) (io.get() & 0xFF);
+        // update crc32 and statistics
+        crc = (int) (crc32_table[((crc ^ val) & 0xFF)] ^ ((crc >> 8) & 0x0FFFFFFF));
+        count++;
 
-            return val;
-        } catch (IOException e) {
-            throw new tta_exception(TTACodecStatus.TTA_READ_ERROR, e);
-        }
+        return val;
     }
 
     int read_uint16() {
@@ -91,15 +77,17 @@ class TTA_fifo {
     }
 
     void seek(long pos) {
-        try {
-            io.getChannel().position(pos);
-        } catch (IOException e) {
-            throw new tta_exception(TTACodecStatus.TTA_SEEK_ERROR, e);
-        }
+        if (pos < 0 || pos > io.limit())
+            throw new tta_exception(TTACodecStatus.TTA_SEEK_ERROR);
+        io.position((int) pos);
+    }
+
+    long position() {
+        return io.position();
     }
 
-    void reader_start() {
-        pos = buffer.length;
+    long length() {
+        return io.limit();
     }
 
     int get_value(TTA_adapt rice) {
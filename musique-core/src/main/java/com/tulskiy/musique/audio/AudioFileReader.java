@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.StringReader;
 import java.nio.charset.Charset;
+import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,10 +32,15 @@ import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.KeyNotFoundException;
 import org.jaudiotagger.tag.Tag;
 import org.jaudiotagger.tag.TagField;
+import org.jaudiotagger.tag.TagTextField;
+import org.jaudiotagger.tag.id3.AbstractID3v2Frame;
+import org.jaudiotagger.tag.id3.framebody.FrameBodyTXXX;
 import org.jaudiotagger.tag.mp4.field.Mp4DiscNoField;
+import org.jaudiotagger.tag.mp4.field.Mp4TagReverseDnsField;
 import org.jaudiotagger.tag.mp4.field.Mp4TrackField;
 
 import com.tulskiy.musique.audio.formats.cue.CUEParser;
+import com.tulskiy.musique.audio.replaygain.ReplayGain;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.musique.playlist.TrackData;
 
@@ -106,6 +112,36 @@ public abstract class AudioFileReader {
 
     		// TODO think about the way
         	trackData.setCueSheet(tag.getFirst("CUESHEET"));
+        	copyReplayGainFields(tag, track);
+        }
+    }
+
+    /**
+     * Reads replay gain from format specific fields:
+     * TXXX frames in ID3v2, freeform atoms in MP4, plain fields otherwise
+     */
+    protected void copyReplayGainFields(Tag tag, Track track) {
+        TrackData trackData = track.getTrackData();
+        Iterator<TagField> fields = tag.getFields();
+        while (fields.hasNext()) {
+            TagField field = fields.next();
+            String key;
+            String value;
+            if (field instanceof AbstractID3v2Frame &&
+                    ((AbstractID3v2Frame) field).getBody() instanceof FrameBodyTXXX) {
+                FrameBodyTXXX body = (FrameBodyTXXX) ((AbstractID3v2Frame) field).getBody();
+                key = body.getDescription();
+                value = body.getTextWithoutTrailingNulls();
+            } else if (field instanceof Mp4TagReverseDnsField) {
+                key = ((Mp4TagReverseDnsField) field).getDescriptor();
+                value = ((Mp4TagReverseDnsField) field).getContent();
+            } else if (field instanceof TagTextField) {
+                key = field.getId();
+                value = ((TagTextField) field).getContent();
+            } else {
+                continue;
+            }
+            ReplayGain.setTagValue(trackData, key, value);
         }
     }
 
@@ -25,7 +25,17 @@ import org.jaudiotagger.tag.FieldDataInvalidException;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.KeyNotFoundException;
 import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.flac.FlacTag;
+import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
+import org.jaudiotagger.tag.id3.ID3v24Frame;
+import org.jaudiotagger.tag.id3.ID3v24Frames;
+import org.jaudiotagger.tag.id3.framebody.FrameBodyTXXX;
+import org.jaudiotagger.tag.id3.valuepair.TextEncoding;
+import org.jaudiotagger.tag.mp4.Mp4Tag;
+import org.jaudiotagger.tag.mp4.field.Mp4TagReverseDnsField;
+import org.jaudiotagger.tag.vorbiscomment.VorbisCommentTag;
 
+import com.tulskiy.musique.audio.replaygain.ReplayGain;
 import com.tulskiy.musique.gui.model.FieldValues;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.musique.util.Util;
@@ -70,6 +80,7 @@ public abstract class AudioTagWriter {
 					}
 				}
 			}
+			copyReplayGainFields(tag, track);
     	}
     	catch (KeyNotFoundException knfe) {
     		throw new TagWriteException(knfe);
@@ -81,4 +92,31 @@ public abstract class AudioTagWriter {
 		track.getTrackData().removeEmptyTagFields();
     }
 
+    /**
+     * Writes known replay gain values to format specific fields,
+     * unknown values are left untouched
+     */
+    public void copyReplayGainFields(Tag tag, Track track) throws FieldDataInvalidException {
+        for (String key : ReplayGain.KEYS) {
+            String value = ReplayGain.getTagValue(track.getTrackData(), key);
+            if (value == null)
+                continue;
+
+            if (tag instanceof AbstractID3v2Tag) {
+                ID3v24Frame frame = new ID3v24Frame(ID3v24Frames.FRAME_ID_USER_DEFINED_INFO);
+                frame.setBody(new FrameBodyTXXX(TextEncoding.ISO_8859_1, key, value));
+                tag.setField(frame);
+            } else if (tag instanceof Mp4Tag) {
+                String name = key.toLowerCase();
+                tag.setField(new Mp4TagReverseDnsField(
+                        Mp4TagReverseDnsField.IDENTIFIER + ":com.apple.iTunes:" + name,
+                        "com.apple.iTunes", name, value));
+            } else if (tag instanceof FlacTag) {
+                ((FlacTag) tag).setField(key, value);
+            } else if (tag instanceof VorbisCommentTag) {
+                ((VorbisCommentTag) tag).setField(key, value);
+            }
+        }
+    }
+
 }
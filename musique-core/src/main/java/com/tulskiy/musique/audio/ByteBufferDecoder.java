@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decoder that can write PCM data straight into the player's buffer,
+ * so that decoded data does not have to be copied there from
+ * an intermediate array.
+ */
+public interface ByteBufferDecoder extends Decoder {
+    /**
+     * Decode chunk of PCM data into the buffer, starting at its
+     * current position. The position is advanced by the number of bytes
+     * written. Buffer will have at least as much space as the array passed
+     * to {@link #decode(byte[])} usually has, i.e. 65536 bytes.
+     *
+     * @param buf buffer for data, may be direct
+     * @return number of bytes written or -1 if end of stream is reached
+     */
+    public int decode(ByteBuffer buf);
+}
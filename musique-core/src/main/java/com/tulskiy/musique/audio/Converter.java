@@ -17,6 +17,7 @@
 
 package com.tulskiy.musique.audio;
 
+import com.tulskiy.musique.audio.formats.flac.FLACEncoder;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.musique.playlist.formatting.Parser;
 import com.tulskiy.musique.playlist.formatting.tokens.Expression;
@@ -28,30 +29,48 @@ import com.tulskiy.musique.util.AudioMath;
 
 import javax.swing.*;
 import java.io.File;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Converts tracks with one of the encoders.
+ * <p/>
+ * Every track is decoded and encoded on its own worker, by default
+ * there is one worker per core. When tracks are merged into one file,
+ * or several tracks would be saved to the same file, they are converted
+ * one by one on the calling thread. Parallel workers share the cores
+ * with the encoders, so an encoder that can use several threads gets
+ * its share of them unless configured otherwise.
+ *
  * Author: Denis Tulskiy
  * Date: Jul 27, 2010
  */
 public class Converter {
+    private static final int CHUNK_SIZE = 65536;
+
     private Logger logger = Logger.getLogger(getClass().getName());
     private Configuration config = Application.getInstance().getConfiguration();
     private Expression fileNameFormat;
-    private Encoder encoder;
-    private Decoder decoder;
-    private Track track;
-    private boolean stop;
-    private long cueTotalBytes;
-    private long currentByte;
-    private long currentSample;
+    private final Object outputLock = new Object();
+    private final Object writeLock = new Object();
+    private volatile boolean stop;
+    private volatile Track track;
+    private volatile File output;
+    private volatile int encoderThreads;
+    private final AtomicLong currentSample = new AtomicLong();
     private long totalSamples;
     private long startTime;
-    private long elapsed;
-    private double speed;
-    private double estimated;
-    private File output;
+    private volatile long elapsed;
+    private volatile double speed;
+    private volatile double estimated;
 
     public Converter() {
         String fileName = config.getString("converter.fileNameFormat", "%fileName%");
@@ -61,71 +80,147 @@ public class Converter {
     public void convert(List<Track> tracks) {
         stop = false;
         totalSamples = 0;
-        currentSample = 0;
+        currentSample.set(0);
         startTime = System.currentTimeMillis();
         boolean merge = config.getBoolean("converter.merge", false);
         for (Track track : tracks) {
             totalSamples += track.getTrackData().getTotalSamples();
         }
-        byte[] buf = new byte[65536];
-        for (Track track : tracks) {
-            if (stop)
-                break;
-            this.track = track;
-            if (!openDecoder()) {
-                currentSample += track.getTrackData().getTotalSamples();
-                continue;
-            }
-            if (!merge || encoder == null) {
-                if (!openEncoder()) {
-                    currentSample += track.getTrackData().getTotalSamples();
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = config.getInt("converter.threads", cores);
+        if (merge || threads <= 1 || tracks.size() <= 1 || hasSharedOutputs(tracks)) {
+            encoderThreads = cores;
+            convertSerial(tracks, merge);
+        } else {
+            threads = Math.min(threads, tracks.size());
+            encoderThreads = Math.max(1, cores / threads);
+            convertParallel(tracks, threads);
+        }
+    }
+
+    private void convertSerial(List<Track> tracks, boolean merge) {
+        byte[] buf = new byte[CHUNK_SIZE];
+        // conversion that owns the encoder of the merged file
+        Conversion merged = null;
+        boolean done = false;
+        try {
+            for (Track track : tracks) {
+                if (stop)
+                    break;
+                if (!merge) {
+                    convertTrack(track, buf);
                     continue;
                 }
+
+                Conversion conversion = new Conversion(track);
+                if (!conversion.openDecoder()) {
+                    skip(track);
+                    continue;
+                }
+                if (merged == null) {
+                    if (!conversion.openEncoder()) {
+                        conversion.closeDecoder();
+                        skip(track);
+                        continue;
+                    }
+                    merged = conversion;
+                } else {
+                    conversion.encoder = merged.encoder;
+                }
+                try {
+                    conversion.transcode(buf);
+                } finally {
+                    conversion.closeDecoder();
+                }
             }
-            int len;
-            boolean cueFinished = false;
-            while (!stop && !cueFinished) {
-                len = decoder.decode(buf);
+            // tracks only stop early when the conversion is stopped
+            done = !stop;
+        } finally {
+            if (merged != null)
+                merged.closeEncoder(done);
+        }
+    }
 
-                if (len == -1)
-                    break;
+    private void convertParallel(List<Track> tracks, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tracks.size()), new ThreadFactory() {
+            private int count = 0;
 
-                if (track.getTrackData().isCue()) {
-                    if (cueTotalBytes <= currentByte + len) {
-                        len = (int) (cueTotalBytes - currentByte);
-                        cueFinished = true;
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Converter " + ++count);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        for (final Track track : tracks) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (stop) {
+                        return;
+                    }
+                    try {
+                        convertTrack(track, new byte[CHUNK_SIZE]);
+                    } catch (Exception e) {
+                        logger.log(Level.WARNING, "Could not convert track " + track.getTrackData().getLocation(), e);
                     }
                 }
+            });
+        }
 
-                currentByte += len;
-                currentSample += AudioMath.bytesToSamples(len, decoder.getAudioFormat().getFrameSize());
-                updateStats();
-                if (len != 0)
-                    encoder.encode(buf, len);
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                if (stop)
+                    executor.shutdownNow();
             }
+        } catch (InterruptedException e) {
+            stop = true;
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            if (!merge) {
-                Track newTrack = track.copy();
-                newTrack.getTrackData().setLocation(output.toURI().toString());
-                encoder.close();
-                encoder = null;
+    /**
+     * Convert one track into its own file
+     */
+    private void convertTrack(Track track, byte[] buf) {
+        Conversion conversion = new Conversion(track);
+        if (!conversion.openDecoder()) {
+            skip(track);
+            return;
+        }
+        if (!conversion.openEncoder()) {
+            conversion.closeDecoder();
+            skip(track);
+            return;
+        }
+        boolean done = false;
+        try {
+            done = conversion.transcode(buf);
+        } finally {
+            conversion.closeDecoder();
+            conversion.closeEncoder(done);
+        }
 
+        if (done) {
+            Track newTrack = track.copy();
+            newTrack.getTrackData().setLocation(conversion.output.toURI().toString());
+            synchronized (writeLock) {
                 TrackIO.write(newTrack);
             }
-            decoder.close();
-            decoder = null;
         }
+    }
 
-        if (merge) {
-            encoder.close();
-            encoder = null;
-        }
+    private void skip(Track track) {
+        currentSample.addAndGet(track.getTrackData().getTotalSamples());
     }
 
-    private void updateStats() {
+    private void updateStats(int sampleRate) {
         elapsed = System.currentTimeMillis() - startTime;
-        speed = AudioMath.samplesToMillis(currentSample,
-                (int) decoder.getAudioFormat().getSampleRate()) /
+        speed = AudioMath.samplesToMillis(currentSample.get(), sampleRate) /
                 elapsed;
         estimated = totalSamples / speed;
     }
@@ -142,12 +237,15 @@ public class Converter {
         return speed;
     }
 
+    /**
+     * @return the track that was started last
+     */
     public Track getTrack() {
         return track;
     }
 
     public long getCurrentSample() {
-        return currentSample;
+        return currentSample.get();
     }
 
     public long getTotalSamples() {
@@ -158,29 +256,28 @@ public class Converter {
         stop = true;
     }
 
-    public boolean openDecoder() {
-        decoder = Codecs.getNewDecoder(track);
-
-        if (decoder == null || !decoder.open(track)) {
-            logger.info("Couldn't initialize decoder for track: " + track.getTrackData().getLocation());
-            return false;
-        }
-
-        cueTotalBytes = 0;
-        currentByte = 0;
-        if (track.getTrackData().isCue()) {
-            decoder.seekSample(track.getTrackData().getStartPosition());
-            cueTotalBytes = AudioMath.samplesToBytes(track.getTrackData().getTotalSamples(), decoder.getAudioFormat().getFrameSize());
-        }
-        return true;
+    /**
+     * @return output of the track that was started last
+     */
+    public File getOutput() {
+        return output;
     }
 
-    public boolean openEncoder() {
-        if (decoder == null) {
-            logger.severe("Need to initialize decoder before encoder!");
+    /**
+     * Several tracks that end up in the same file have to be converted
+     * in order, so that the last one wins like in serial conversion
+     */
+    private boolean hasSharedOutputs(List<Track> tracks) {
+        Set<File> files = new HashSet<File>();
+        for (Track track : tracks) {
+            File file = getOutputFile(track);
+            if (file != null && !files.add(file))
+                return true;
         }
+        return false;
+    }
 
-        logger.info("Converting track: " + track.getTrackData().getLocation());
+    private File getOutputFile(Track track) {
         File parent = null;
         if (config.getBoolean("converter.saveToSourceFolder", true)) {
             if (track.getTrackData().isFile()) {
@@ -191,57 +288,173 @@ public class Converter {
             parent = new File(path);
         }
 
-        if (parent == null || !parent.isDirectory()) {
-            logger.warning("Don't know where to save track: " + track.getTrackData().getLocation());
-            return false;
+        if (parent == null)
+            return null;
+
+        String format = config.getString("converter.encoder", "wav");
+        synchronized (outputLock) {
+            String fileName = String.valueOf(fileNameFormat.eval(track)) +
+                    "." + format;
+            return new File(parent, fileName);
+        }
+    }
+
+    /**
+     * State of a single track conversion
+     */
+    private class Conversion {
+        private Track track;
+        private Decoder decoder;
+        private Encoder encoder;
+        private File output;
+        private long cueTotalBytes;
+        private long currentByte;
+
+        Conversion(Track track) {
+            this.track = track;
+        }
+
+        boolean openDecoder() {
+            Converter.this.track = track;
+            decoder = Codecs.openNewDecoder(track);
+
+            if (decoder == null) {
+                logger.info("Couldn't initialize decoder for track: " + track.getTrackData().getLocation());
+                return false;
+            }
+
+            cueTotalBytes = 0;
+            currentByte = 0;
+            if (track.getTrackData().isCue()) {
+                decoder.seekSample(track.getTrackData().getStartPosition());
+                cueTotalBytes = AudioMath.samplesToBytes(track.getTrackData().getTotalSamples(), decoder.getAudioFormat().getFrameSize());
+            }
+            return true;
         }
 
-        if (!parent.canWrite()) {
-            logger.warning("Cannot write to folder: " + parent);
-            return false;
+        void closeDecoder() {
+            if (decoder != null) {
+                decoder.close();
+                decoder = null;
+            }
         }
-        //noinspection ResultOfMethodCallIgnored
-        parent.mkdirs();
 
-        String format = config.getString("converter.encoder", "wav");
-        String fileName = String.valueOf(fileNameFormat.eval(track)) +
-                "." + format;
-        output = new File(parent, fileName);
-
-        if (output.exists()) {
-            String action = config.getString("converter.actionWhenExists", "Ask");
-            if (action.equals("Ask")) {
-                int ret = JOptionPane.showConfirmDialog(null,
-                        "File " + output.getAbsolutePath() + " exists, overwrite?",
-                        "File exists, overwrite",
-                        JOptionPane.YES_NO_CANCEL_OPTION);
-
-                if (ret == JOptionPane.YES_OPTION) {
+        boolean openEncoder() {
+            logger.info("Converting track: " + track.getTrackData().getLocation());
+            File file = getOutputFile(track);
+            File parent = file == null ? null : file.getParentFile();
+
+            if (parent == null || !parent.isDirectory()) {
+                logger.warning("Don't know where to save track: " + track.getTrackData().getLocation());
+                return false;
+            }
+
+            if (!parent.canWrite()) {
+                logger.warning("Cannot write to folder: " + parent);
+                return false;
+            }
+            //noinspection ResultOfMethodCallIgnored
+            parent.mkdirs();
+
+            if (!prepareOutput(file)) {
+                return false;
+            }
+
+            output = file;
+            Converter.this.output = file;
+            logger.info("Saving track to file: " + output.getAbsolutePath());
+            String format = config.getString("converter.encoder", "wav");
+            encoder = Codecs.getNewEncoder(format);
+            if (encoder instanceof FLACEncoder)
+                ((FLACEncoder) encoder).setDefaultThreads(encoderThreads);
+            if (encoder == null || !encoder.open(output, decoder.getAudioFormat(), config)) {
+                logger.warning("Couldn't initialize encoder for track: " + track.getTrackData().getLocation());
+                closeEncoder(false);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Close the encoder, an output that is not complete is deleted
+         */
+        void closeEncoder(boolean keep) {
+            try {
+                if (encoder != null)
+                    encoder.close();
+            } finally {
+                encoder = null;
+                if (!keep && output != null && output.exists()) {
+                    logger.info("Removing incomplete file: " + output.getAbsolutePath());
                     //noinspection ResultOfMethodCallIgnored
                     output.delete();
-                } else if (ret == JOptionPane.NO_OPTION) {
-                    return false;
-                } else if (ret == JOptionPane.CANCEL_OPTION) {
-                    stop();
-                    return false;
                 }
-            } else if (action.equals("Overwrite")) {
-                //noinspection ResultOfMethodCallIgnored
-                output.delete();
-            } else if (action.equals("Skip")) {
-                return false;
             }
         }
-        logger.info("Saving track to file: " + output.getAbsolutePath());
-        encoder = Codecs.getEncoder(format);
-        if (!encoder.open(output, decoder.getAudioFormat(), config)) {
-            logger.warning("Couldn't initialize encoder for track: " + track.getTrackData().getLocation());
-            return false;
+
+        /**
+         * Apply converter.actionWhenExists, only one dialog is shown at a time
+         */
+        private boolean prepareOutput(File file) {
+            synchronized (outputLock) {
+                if (stop)
+                    return false;
+                if (file.exists()) {
+                    String action = config.getString("converter.actionWhenExists", "Ask");
+                    if (action.equals("Ask")) {
+                        int ret = JOptionPane.showConfirmDialog(null,
+                                "File " + file.getAbsolutePath() + " exists, overwrite?",
+                                "File exists, overwrite",
+                                JOptionPane.YES_NO_CANCEL_OPTION);
+
+                        if (ret == JOptionPane.YES_OPTION) {
+                            //noinspection ResultOfMethodCallIgnored
+                            file.delete();
+                        } else if (ret == JOptionPane.NO_OPTION) {
+                            return false;
+                        } else if (ret == JOptionPane.CANCEL_OPTION) {
+                            stop();
+                            return false;
+                        }
+                    } else if (action.equals("Overwrite")) {
+                        //noinspection ResultOfMethodCallIgnored
+                        file.delete();
+                    } else if (action.equals("Skip")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
         }
-        return true;
-    }
 
-    public File getOutput() {
-        return output;
+        /**
+         * @return true if the track was converted to the end
+         */
+        boolean transcode(byte[] buf) {
+            int frameSize = decoder.getAudioFormat().getFrameSize();
+            int sampleRate = (int) decoder.getAudioFormat().getSampleRate();
+            int len;
+            boolean cueFinished = false;
+            while (!stop && !cueFinished) {
+                len = decoder.decode(buf);
+
+                if (len == -1)
+                    return true;
+
+                if (track.getTrackData().isCue()) {
+                    if (cueTotalBytes <= currentByte + len) {
+                        len = (int) (cueTotalBytes - currentByte);
+                        cueFinished = true;
+                    }
+                }
+
+                currentByte += len;
+                currentSample.addAndGet(AudioMath.bytesToSamples(len, frameSize));
+                updateStats(sampleRate);
+                if (len != 0)
+                    encoder.encode(buf, len);
+            }
+            return cueFinished;
+        }
     }
 }
@@ -21,34 +21,83 @@ import com.tulskiy.musique.playlist.Track;
 import org.jaudiotagger.tag.FieldKey;
 
 import java.io.BufferedInputStream;
-import java.io.FilterInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URLConnection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Reads Icy/HTTP radio streams.
+ * <p/>
+ * Once the stream is read or peeked at, a separate thread reads the connection
+ * into a ring buffer of a few seconds and strips ICY metadata from the
+ * stream, so network hiccups do not stall the decoder. If the connection
+ * drops, it is reopened with growing delays and the new data is appended
+ * to the buffer; decoders resync on the next frame.
+ *
  * Author: Denis Tulskiy
  * Date: 4/10/11
  */
-public class IcyInputStream extends FilterInputStream {
+public class IcyInputStream extends InputStream {
     private static final Logger logger = Logger.getLogger(IcyInputStream.class.getName());
+    private static final int CHUNK_SIZE = 8192;
+    // assumed bitrate in kbps if the server does not send icy-br
+    private static final int DEFAULT_BITRATE = 320;
+    private static final long MIN_RECONNECT_DELAY = 500;
+    private static final long MAX_RECONNECT_DELAY = 10000;
+
+    private static volatile int bufferSeconds = 5;
+    private static volatile int reconnectAttempts = 5;
+    // stream that was opened to sniff the format, guarded by IcyInputStream.class
+    private static IcyInputStream primed;
 
+    private final StreamStats stats = StreamStats.getInstance();
     private Track track;
+    private String contentType;
+
+    // only used by the reader thread after it is started
+    private volatile URLConnection connection;
+    private volatile InputStream in;
     private int metaInt = 0;
     private int bytesRead = 0;
-    private URLConnection connection;
-    private String contentType;
+    private int bitrate;
+    private boolean finite;
+    // bytes of a finite stream that went into the buffer, to resume from
+    private long received;
+    private long length;
+
+    // ring buffer, guarded by this
+    private byte[] ring;
+    private int readPos;
+    private int size;
+    private boolean eof;
+    private boolean closed;
+    private boolean started;
+    private Thread thread;
 
+    /**
+     * Open the stream of the track. If the stream was already opened to
+     * find out its format and then {@link #prime() primed}, that
+     * connection is returned instead of opening a new one.
+     *
+     * @param track track with an http location
+     * @return opened stream or null if it could not connect
+     */
     public static IcyInputStream create(Track track) {
+        synchronized (IcyInputStream.class) {
+            IcyInputStream stream = primed;
+            if (stream != null && stream.track == track) {
+                primed = null;
+                if (!stream.isClosed())
+                    return stream;
+            }
+        }
         try {
-            URLConnection connection = track.getTrackData().getLocation().toURL().openConnection();
-            connection.setRequestProperty("Icy-Metadata", "1");
-            IcyInputStream icyInputStream = new IcyInputStream(new BufferedInputStream(connection.getInputStream()));
-            icyInputStream.setTrack(track);
-            icyInputStream.setConnection(connection);
-            icyInputStream.init();
+            IcyInputStream icyInputStream = new IcyInputStream(track);
+            icyInputStream.connect();
             return icyInputStream;
         } catch (IOException e) {
             logger.log(Level.WARNING, "Error opening Icy stream", e);
@@ -56,59 +105,162 @@ public class IcyInputStream extends FilterInputStream {
         return null;
     }
 
-    private IcyInputStream(InputStream in) {
-        super(in);
+    private IcyInputStream(Track track) {
+        this.track = track;
     }
 
-    private void setConnection(URLConnection connection) {
-        this.connection = connection;
+    /**
+     * @param seconds how much of the stream is read ahead
+     */
+    public static void setBufferSeconds(int seconds) {
+        bufferSeconds = Math.max(1, seconds);
     }
 
-    private void setTrack(Track track) {
-        this.track = track;
+    /**
+     * @param attempts how many times in a row to try to reconnect before giving up
+     */
+    public static void setReconnectAttempts(int attempts) {
+        reconnectAttempts = Math.max(0, attempts);
     }
 
     public String getContentType() {
         return contentType;
     }
 
-    public String readLine() {
-        try {
-            int ch = read();
+    /**
+     * Keep this stream for the next {@link #create(Track)} of the same
+     * track, so that the decoder reuses the connection. Only one stream
+     * is kept, the one primed before is closed.
+     */
+    public void prime() {
+        IcyInputStream old;
+        synchronized (IcyInputStream.class) {
+            old = primed;
+            primed = this;
+        }
+        if (old != null && old != this) {
+            try {
+                old.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
 
-            StringBuilder sb = new StringBuilder();
-            while (ch != '\n' && ch != '\r' && ch >= 0) {
-                sb.append((char) ch);
-                ch = read();
+    /**
+     * Copy the first bytes of the stream without consuming them. Waits
+     * until enough data arrived.
+     *
+     * @param b   destination array
+     * @param len how many bytes to copy
+     * @return number of bytes copied, less than len only if the stream ended
+     * @throws IOException if interrupted
+     */
+    public synchronized int peek(byte[] b, int len) throws IOException {
+        start();
+        if (ring == null)
+            return 0;
+        len = Math.min(len, ring.length);
+        while (size < len && !eof && !closed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
             }
+        }
+        int count = Math.min(len, size);
+        for (int i = 0; i < count; i++) {
+            b[i] = ring[(readPos + i) % ring.length];
+        }
+        return count;
+    }
 
-            if (ch == '\n' || ch == '\r') {
-                //noinspection ResultOfMethodCallIgnored
-                read();
+    private void connect() throws IOException {
+        URLConnection connection = track.getTrackData().getLocation().toURL().openConnection();
+        connection.setRequestProperty("Icy-Metadata", "1");
+        InputStream is = new BufferedInputStream(connection.getInputStream());
+        this.connection = connection;
+        bytesRead = 0;
+        init(is, true);
+        in = is;
+    }
+
+    /**
+     * Open the connection again after it dropped. A finite stream is
+     * continued from where it broke off, so that nothing is played twice
+     *
+     * @return false if the stream can not be continued
+     */
+    private boolean reconnect() throws IOException {
+        URLConnection connection = track.getTrackData().getLocation().toURL().openConnection();
+        if (finite) {
+            if (metaInt > 0 || !(connection instanceof HttpURLConnection))
+                return false;
+            connection.setRequestProperty("Range", "bytes=" + received + "-");
+            if (((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                ((HttpURLConnection) connection).disconnect();
+                return false;
             }
-            return sb.toString();
-        } catch (IOException e) {
-            logger.log(Level.WARNING, "Error reading Icy stream", e);
+        } else {
+            connection.setRequestProperty("Icy-Metadata", "1");
         }
-        return null;
+        InputStream is = new BufferedInputStream(connection.getInputStream());
+        this.connection = connection;
+        bytesRead = 0;
+        init(is, false);
+        in = is;
+        return true;
     }
 
+    private void disconnect() {
+        InputStream is = in;
+        in = null;
+        if (is != null) {
+            try {
+                is.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
 
-    private void init() {
+    private String readLine(InputStream in) throws IOException {
+        int ch = in.read();
+
+        StringBuilder sb = new StringBuilder();
+        while (ch != '\n' && ch != '\r' && ch >= 0) {
+            sb.append((char) ch);
+            ch = in.read();
+        }
+
+        if (ch == '\n' || ch == '\r') {
+            //noinspection ResultOfMethodCallIgnored
+            in.read();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Read the response headers
+     *
+     * @param first whether this is the first connection, only then
+     *              the station name and genre go to the track
+     */
+    private void init(InputStream in, boolean first) throws IOException {
         contentType = connection.getContentType();
         String metaIntString = "0";
+        String bitrateString = null;
         if (contentType.equals("unknown/unknown")) {
             //Java does not parse non-standart headers
             //used by SHOUTCast
             logger.fine("Reading SHOUTCast response");
-            String s = readLine();
+            String s = readLine(in);
             if (!s.equals("ICY 200 OK")) {
                 logger.warning("SHOUTCast invalid response: " + s);
                 return;
             }
 
             while (true) {
-                s = readLine();
+                s = readLine(in);
 
                 if (s.isEmpty()) {
                     break;
@@ -117,51 +269,140 @@ public class IcyInputStream extends FilterInputStream {
                 String[] ss = s.split(":");
                 if (ss[0].equals("icy-metaint")) {
                     metaIntString = ss[1];
-                } else if (ss[0].equals("icy-genre")) {
+                } else if (ss[0].equals("icy-genre") && first) {
                     track.getTrackData().addGenre(ss[1]);
-                } else if (ss[0].equals("icy-name")) {
+                } else if (ss[0].equals("icy-name") && first) {
                     track.getTrackData().addAlbum(ss[1]);
+                } else if (ss[0].equals("icy-br")) {
+                    bitrateString = ss[1];
                 } else if (ss[0].equals("content-type")) {
                     contentType = ss[1];
                 }
             }
         } else {
             metaIntString = connection.getHeaderField("icy-metaint");
-            track.getTrackData().addGenre(connection.getHeaderField("icy-genre"));
-            track.getTrackData().addAlbum(connection.getHeaderField("icy-name"));
+            bitrateString = connection.getHeaderField("icy-br");
+            if (first) {
+                track.getTrackData().addGenre(connection.getHeaderField("icy-genre"));
+                track.getTrackData().addAlbum(connection.getHeaderField("icy-name"));
+            }
         }
         try {
             metaInt = Integer.parseInt(metaIntString.trim());
             logger.fine("Reading metadata information every " + metaInt + " bytes");
-        } catch (NumberFormatException e) {
+        } catch (Exception e) {
             metaInt = 0;
         }
+        try {
+            bitrate = Integer.parseInt(bitrateString.trim().split(",")[0]);
+        } catch (Exception e) {
+            bitrate = DEFAULT_BITRATE;
+        }
+        // plain files over http end, radio streams do not
+        if (first) {
+            length = connection.getContentLength();
+            finite = length >= 0;
+        }
         logger.fine("Content type is: " + contentType);
     }
 
-    @Override
-    public int read(byte[] b, int off, int len) throws IOException {
-        if (metaInt > 0) {
-            int bytesToMeta = metaInt - bytesRead;
-            if (bytesToMeta == 0) {
-                readMeta();
+    private synchronized void start() {
+        if (thread != null || closed)
+            return;
+        int capacity = bufferSeconds * Math.max(bitrate, 32) * 1000 / 8;
+        ring = new byte[Math.max(capacity, CHUNK_SIZE)];
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readLoop();
+            }
+        }, "Icy Stream Reader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void readLoop() {
+        byte[] buf = new byte[CHUNK_SIZE];
+        int attempt = 0;
+        while (!isClosed()) {
+            try {
+                if (in == null) {
+                    if (!reconnect()) {
+                        logger.warning("Server can not resume " + track.getTrackData().getLocation() + ", giving up");
+                        break;
+                    }
+                    stats.reconnected();
+                    logger.info("Reconnected to " + track.getTrackData().getLocation());
+                }
+                InputStream is = in;
+                if (is == null)
+                    continue;
+                int len = readStream(is, buf);
+                if (len == -1) {
+                    // without metadata the length tells if the file is complete
+                    if (finite && (metaInt > 0 || received >= length))
+                        break;
+                    throw new EOFException("Server closed the stream");
+                }
+                attempt = 0;
+                stats.received(len);
+                received += len;
+                put(buf, len);
+            } catch (IOException e) {
+                disconnect();
+                if (isClosed())
+                    break;
+                if (attempt >= reconnectAttempts) {
+                    logger.log(Level.WARNING, "Giving up on stream " + track.getTrackData().getLocation(), e);
+                    break;
+                }
+                if (attempt == 0)
+                    stats.connectionLost();
+                long delay = Math.min(MAX_RECONNECT_DELAY, MIN_RECONNECT_DELAY << attempt);
+                attempt++;
+                logger.info("Stream connection lost (" + e.getMessage() + "), reconnecting in " + delay + " ms");
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    break;
+                }
             }
+        }
+        disconnect();
+        synchronized (this) {
+            eof = true;
+            notifyAll();
+        }
+    }
 
-            if (bytesToMeta > 0 && bytesToMeta < len) {
-                len = bytesToMeta;
+    private int readStream(InputStream in, byte[] buf) throws IOException {
+        int len = buf.length;
+        if (metaInt > 0) {
+            if (bytesRead == metaInt) {
+                readMeta(in);
             }
+            len = Math.min(len, metaInt - bytesRead);
         }
 
-        int read = super.read(b, off, len);
-        bytesRead += read;
+        int read = in.read(buf, 0, len);
+        if (read > 0)
+            bytesRead += read;
         return read;
     }
 
-    private void readMeta() throws IOException {
-        int size = read() * 16;
+    private void readMeta(InputStream in) throws IOException {
+        int size = in.read() * 16;
+        if (size < 0)
+            throw new EOFException("Stream ended in metadata");
         if (size > 1) {
             byte[] meta = new byte[size];
-            int i = super.read(meta, 0, size);
+            int i = 0;
+            while (i < size) {
+                int read = in.read(meta, i, size - i);
+                if (read == -1)
+                    throw new EOFException("Stream ended in metadata");
+                i += read;
+            }
             String metaString = new String(meta, 0, i, "UTF-8");
             String title = "StreamTitle='";
             if (metaString.startsWith(title)) {
@@ -171,11 +412,95 @@ public class IcyInputStream extends FilterInputStream {
                         track.getTrackData().setTagFieldValues(FieldKey.ARTIST, ss[0]);
                         track.getTrackData().setTagFieldValues(FieldKey.TITLE, ss[1]);
                     } else {
-                        track.getTrackData().setTagFieldValues(FieldKey.TITLE, ss[1]);
+                        track.getTrackData().setTagFieldValues(FieldKey.TITLE, ss[0]);
                     }
                 }
             }
         }
         bytesRead = 0;
     }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized void put(byte[] buf, int len) {
+        int off = 0;
+        while (len > 0 && !closed) {
+            while (size == ring.length && !closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            int writePos = (readPos + size) % ring.length;
+            int count = Math.min(len, Math.min(ring.length - size, ring.length - writePos));
+            System.arraycopy(buf, off, ring, writePos, count);
+            size += count;
+            off += count;
+            len -= count;
+            stats.setBufferFill(size * 100 / ring.length);
+            notifyAll();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int len = read(b, 0, 1);
+        return len == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        start();
+        if (size == 0 && !eof && !closed) {
+            if (started)
+                stats.stalled();
+            long time = System.nanoTime();
+            // after running dry, refill a quarter of the buffer, so that
+            // a slow connection does not stutter on every read
+            int wanted = started ? ring.length / 4 : 1;
+            while (size < wanted && !eof && !closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted");
+                }
+            }
+            if (started)
+                stats.stallTime(System.nanoTime() - time);
+        }
+        if (size == 0)
+            return -1;
+
+        // once playback started, running dry is a stall
+        started = true;
+        int count = Math.min(len, Math.min(size, ring.length - readPos));
+        System.arraycopy(ring, readPos, b, off, count);
+        readPos = (readPos + count) % ring.length;
+        size -= count;
+        stats.setBufferFill(size * 100 / ring.length);
+        notifyAll();
+        return count;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        // unblocks the reader thread
+        disconnect();
+    }
 }
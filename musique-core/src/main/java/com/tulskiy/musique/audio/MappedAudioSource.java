@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-only view of an audio file mapped into memory.
+ * <p/>
+ * Decoders get their input through one of the adapters: a positioned
+ * {@link InputStream}, a {@link RandomAccessFile} or a {@link ByteBuffer}
+ * slice. All of them read straight from the mapping, so small reads
+ * don't cost a system call each. Adapters don't own the source, the
+ * decoder has to close it when it's done.
+ * <p/>
+ * Mapping can be turned off with {@link #setEnabled(boolean)}. Adapters
+ * then read from the file as before, which keeps the file unlocked on
+ * platforms where mapped files can't be renamed or deleted.
+ */
+public class MappedAudioSource {
+    private static final Logger logger = Logger.getLogger(MappedAudioSource.class.getName());
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+    private static volatile boolean enabled = true;
+
+    private final File file;
+    private final FileInputStream fis;
+    private final FileChannel channel;
+    private final long length;
+    private MappedByteBuffer[] segments;
+
+    private MappedAudioSource(File file, boolean mapped) throws IOException {
+        this.file = file;
+        fis = new FileInputStream(file);
+        channel = fis.getChannel();
+        length = channel.size();
+        if (mapped) {
+            try {
+                segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+                for (int i = 0; i < segments.length; i++) {
+                    long start = (long) i << SEGMENT_BITS;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            start, Math.min(SEGMENT_SIZE, length - start));
+                }
+            } catch (IOException e) {
+                // out of address space, read the file instead
+                logger.log(Level.FINE, "Could not map " + file, e);
+                unmap();
+            }
+        }
+    }
+
+    /**
+     * Map the file
+     *
+     * @param file file to open
+     * @return source, mapped if it's enabled
+     * @throws IOException if file can not be opened
+     */
+    public static MappedAudioSource open(File file) throws IOException {
+        return new MappedAudioSource(file, enabled);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        MappedAudioSource.enabled = enabled;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public boolean isMapped() {
+        return segments != null;
+    }
+
+    /**
+     * @param position offset in the file
+     * @return unsigned byte or -1 at the end of file
+     * @throws IOException if source is closed
+     */
+    public int get(long position) throws IOException {
+        if (position >= length)
+            return -1;
+        if (segments == null) {
+            byte[] b = new byte[1];
+            return read(position, b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+        }
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & (SEGMENT_SIZE - 1))) & 0xFF;
+    }
+
+    /**
+     * Positional read, does not change any adapter's position
+     *
+     * @return number of bytes read or -1 at the end of file
+     * @throws IOException if source is closed
+     */
+    public int read(long position, byte[] b, int off, int len) throws IOException {
+        if (position >= length)
+            return len == 0 ? 0 : -1;
+        len = (int) Math.min(len, length - position);
+        if (segments == null) {
+            return channel.read(ByteBuffer.wrap(b, off, len), position);
+        }
+        int read = 0;
+        while (read < len) {
+            ByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)].duplicate();
+            segment.position((int) (position & (SEGMENT_SIZE - 1)));
+            int n = Math.min(len - read, segment.remaining());
+            segment.get(b, off + read, n);
+            read += n;
+            position += n;
+        }
+        return read;
+    }
+
+    /**
+     * @return buffer with the bytes of the region, shares memory with the
+     *         mapping when possible
+     * @throws IOException if the region could not be mapped
+     */
+    public ByteBuffer slice(long position, int size) throws IOException {
+        if (position < 0 || size < 0 || position + size > length)
+            throw new IllegalArgumentException("Region is outside of the file");
+        if (segments != null) {
+            int index = (int) (position >>> SEGMENT_BITS);
+            int start = (int) (position & (SEGMENT_SIZE - 1));
+            if (start + (long) size <= segments[index].capacity()) {
+                ByteBuffer buffer = segments[index].duplicate();
+                buffer.limit(start + size).position(start);
+                return buffer.slice();
+            }
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * @param position where the stream starts
+     * @return new stream, independent from other adapters
+     * @throws IOException if file could not be opened
+     */
+    public InputStream newInputStream(long position) throws IOException {
+        if (segments == null) {
+            FileInputStream in = new FileInputStream(file);
+            in.getChannel().position(position);
+            return in;
+        }
+        return new MappedInputStream(position);
+    }
+
+    /**
+     * @return new file, independent from other adapters
+     * @throws IOException if file could not be opened
+     */
+    public RandomAccessFile newRandomAccessFile() throws IOException {
+        if (segments == null) {
+            return new RandomAccessFile(file, "r");
+        }
+        return new MappedFile();
+    }
+
+    /**
+     * Release the mapping. Adapters must not be used after that
+     */
+    public void close() {
+        unmap();
+        try {
+            fis.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Error closing " + file, e);
+        }
+    }
+
+    private void unmap() {
+        if (segments == null)
+            return;
+        MappedByteBuffer[] buffers = segments;
+        segments = null;
+        for (MappedByteBuffer buffer : buffers) {
+            if (buffer != null)
+                clean(buffer);
+        }
+    }
+
+    /**
+     * Unmap right away instead of waiting for GC, otherwise some
+     * platforms keep the file locked and tags can't be written
+     */
+    private static void clean(MappedByteBuffer buffer) {
+        try {
+            // Java 9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception e) {
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null)
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (Exception ignored) {
+                // will be unmapped by GC
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (segments == null)
+            throw new IOException("Source is closed");
+    }
+
+    private class MappedInputStream extends InputStream {
+        private long position;
+        private long mark;
+
+        MappedInputStream(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ensureOpen();
+            int b = get(position);
+            if (b != -1)
+                position++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            int n = MappedAudioSource.this.read(position, b, off, len);
+            if (n > 0)
+                position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = Math.max(0, Math.min(n, length - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, length - position));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            mark = position;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            position = mark;
+        }
+    }
+
+    /**
+     * For libraries that only take a RandomAccessFile. The descriptor
+     * is opened by the superclass, but every read goes to the mapping.
+     */
+    private class MappedFile extends RandomAccessFile {
+        private long position;
+
+        MappedFile() throws FileNotFoundException {
+            super(file, "r");
+        }
+
+        @Override
+        public int read() throws IOException {
+            ensureOpen();
+            int b = get(position);
+            if (b != -1)
+                position++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            int n = MappedAudioSource.this.read(position, b, off, len);
+            if (n > 0)
+                position += n;
+            return n;
+        }
+
+        @Override
+        public int read(byte[] b) throws IOException {
+            return read(b, 0, b.length);
+        }
+
+        @Override
+        public int skipBytes(int n) throws IOException {
+            if (n <= 0)
+                return 0;
+            long newPosition = Math.min(length, position + n);
+            int skipped = (int) (newPosition - position);
+            position = newPosition;
+            return skipped;
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            if (pos < 0)
+                throw new IOException("Negative seek offset");
+            position = pos;
+        }
+
+        @Override
+        public long getFilePointer() throws IOException {
+            return position;
+        }
+
+        @Override
+        public long length() throws IOException {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters shared by all {@link IcyInputStream}s.
+ */
+public class StreamStats implements StreamStatsMBean {
+    public static final String OBJECT_NAME = "com.tulskiy.musique:type=NetworkStream";
+
+    private static final StreamStats instance = new StreamStats();
+
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong stallTime = new AtomicLong();
+    private final AtomicLong connectionsLost = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private volatile long resetTime = System.nanoTime();
+    private volatile int bufferFill;
+
+    public static StreamStats getInstance() {
+        return instance;
+    }
+
+    void received(int bytes) {
+        bytesReceived.addAndGet(bytes);
+    }
+
+    void stalled() {
+        stalls.incrementAndGet();
+    }
+
+    void stallTime(long nanos) {
+        stallTime.addAndGet(nanos);
+    }
+
+    void connectionLost() {
+        connectionsLost.incrementAndGet();
+    }
+
+    void reconnected() {
+        reconnects.incrementAndGet();
+    }
+
+    void setBufferFill(int percent) {
+        bufferFill = percent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getThroughput() {
+        long nanos = System.nanoTime() - resetTime;
+        return nanos <= 0 ? 0 : (long) (bytesReceived.get() * 1e9 / nanos);
+    }
+
+    public int getBufferFill() {
+        return bufferFill;
+    }
+
+    public long getStalls() {
+        return stalls.get();
+    }
+
+    public long getStallTime() {
+        return stallTime.get() / 1000000;
+    }
+
+    public long getConnectionsLost() {
+        return connectionsLost.get();
+    }
+
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    public void resetStatistics() {
+        bytesReceived.set(0);
+        stalls.set(0);
+        stallTime.set(0);
+        connectionsLost.set(0);
+        reconnects.set(0);
+        resetTime = System.nanoTime();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio;
+
+/**
+ * Network stream statistics, published over JMX.
+ *
+ * @see StreamStats
+ */
+public interface StreamStatsMBean {
+    /**
+     * @return bytes received from the network since start or the last reset
+     */
+    public long getBytesReceived();
+
+    /**
+     * @return average receive rate since start or the last reset, bytes per second
+     */
+    public long getThroughput();
+
+    /**
+     * @return how full the read-ahead buffer of the current stream is, in percent
+     */
+    public int getBufferFill();
+
+    /**
+     * @return number of times the decoder had to wait for the network
+     */
+    public long getStalls();
+
+    /**
+     * @return total time the decoder waited for the network, milliseconds
+     */
+    public long getStallTime();
+
+    /**
+     * @return number of lost connections
+     */
+    public long getConnectionsLost();
+
+    /**
+     * @return number of successful reconnects
+     */
+    public long getReconnects();
+
+    public void resetStatistics();
+}
@@ -18,10 +18,13 @@
 package com.tulskiy.musique.audio.formats.ape;
 
 import com.tulskiy.musique.audio.Decoder;
+import com.tulskiy.musique.audio.MappedAudioSource;
 import com.tulskiy.musique.playlist.Track;
 import davaguine.jmac.decoder.IAPEDecompress;
+import davaguine.jmac.info.APEInfo;
 import davaguine.jmac.tools.File;
 import davaguine.jmac.tools.JMACException;
+import davaguine.jmac.tools.RandomAccessFile;
 
 import javax.sound.sampled.AudioFormat;
 import java.io.IOException;
@@ -39,20 +42,27 @@ public class APEDecoder implements Decoder {
     private static final int BLOCKS_PER_DECODE = 4096 * 2;
     private int blockAlign;
     private Track track;
+    private MappedAudioSource source;
 
     public boolean open(Track track) {
         this.track = track;
+        boolean opened = false;
         try {
             logger.fine("Opening file: " + track.getTrackData().getFile());
-            File apeInputFile = File.createFile(track.getTrackData().getFile().getAbsolutePath(), "r");
-            decoder = IAPEDecompress.CreateIAPEDecompress(apeInputFile);
+            source = MappedAudioSource.open(track.getTrackData().getFile());
+            File apeInputFile = new RandomAccessFile(source.getFile(), source.newRandomAccessFile());
+            // CreateIAPEDecompress() rejects files without .ape extension
+            decoder = IAPEDecompress.CreateIAPEDecompressEx(new APEInfo(apeInputFile), -1, -1);
             blockAlign = decoder.getApeInfoBlockAlign();
-            return true;
+            opened = true;
         } catch (IOException e) {
             e.printStackTrace();
-            close();
+        } finally {
+            // JMACException is not checked, the source has to be closed anyway
+            if (!opened)
+                close();
         }
-        return false;
+        return opened;
     }
 
     public AudioFormat getAudioFormat() {
@@ -97,6 +107,10 @@ public class APEDecoder implements Decoder {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        if (source != null)
+            source.close();
+        source = null;
+        decoder = null;
     }
 
 }
@@ -17,6 +17,7 @@
 
 package com.tulskiy.musique.audio.formats.ape;
 
+import com.tulskiy.musique.audio.replaygain.ReplayGain;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.musique.playlist.TrackData;
 import com.tulskiy.musique.util.Util;
@@ -60,6 +61,9 @@ public class APETagProcessor {
             	setCustomMusiqueTagFieldValue(tag, trackData, FieldKey.RATING);
 
             	trackData.setCueSheet(tag.GetFieldString("CUESHEET"));
+            	for (String key : ReplayGain.KEYS) {
+            	    ReplayGain.setTagValue(trackData, key, tag.GetFieldString(key));
+            	}
                 if (tag.GetHasAPETag())
                     return tag.GetHasAPETag();
             }
@@ -97,6 +101,11 @@ public class APETagProcessor {
 
             // TODO review this hardcoded const
             tag.SetFieldString("CUESHEET", trackData.getCueSheet());
+            for (String key : ReplayGain.KEYS) {
+                String value = ReplayGain.getTagValue(trackData, key);
+                if (value != null)
+                    tag.SetFieldString(key, value);
+            }
 
             tag.Save();
     		
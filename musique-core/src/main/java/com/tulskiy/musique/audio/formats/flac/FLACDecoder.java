@@ -18,13 +18,13 @@
 package com.tulskiy.musique.audio.formats.flac;
 
 import com.tulskiy.musique.audio.Decoder;
+import com.tulskiy.musique.audio.MappedAudioSource;
 import com.tulskiy.musique.playlist.Track;
 import org.kc7bfi.jflac.frame.Frame;
 import org.kc7bfi.jflac.io.RandomFileInputStream;
 import org.kc7bfi.jflac.metadata.Metadata;
 import org.kc7bfi.jflac.metadata.SeekTable;
 import org.kc7bfi.jflac.metadata.StreamInfo;
-import org.kc7bfi.jflac.util.ByteData;
 
 import javax.sound.sampled.AudioFormat;
 import java.io.IOException;
@@ -35,17 +35,21 @@ import java.io.RandomAccessFile;
  * @Date: 12.06.2009
  */
 public class FLACDecoder implements Decoder {
+    private MappedAudioSource source;
     private RandomAccessFile inputFile;
     private StreamInfo streamInfo;
     private SeekTable seekTable;
     private org.kc7bfi.jflac.FLACDecoder decoder;
-    private ByteData byteData = new ByteData(0);
-    private int offset = -1;
+    // decoded frame that did not fit into the caller's buffer
+    private byte[] pending = new byte[0];
+    private int pendingPos;
+    private int pendingLen;
 
     public synchronized boolean open(Track track) {
         try {
             logger.fine("Opening file: " + track.getTrackData().getFile());
-            inputFile = new RandomAccessFile(track.getTrackData().getFile(), "r");
+            source = MappedAudioSource.open(track.getTrackData().getFile());
+            inputFile = source.newRandomAccessFile();
 //            ogg = iFile.getAudioHeader().getCodec().equals("Ogg FLAC");
 //            if (ogg) {
 //                oggDecoder = new OggFlacDecoder();
@@ -56,6 +60,11 @@ public class FLACDecoder implements Decoder {
             decoder = new org.kc7bfi.jflac.FLACDecoder(new RandomFileInputStream(inputFile));
             parseMetadata();
 //            }
+            if (streamInfo == null) {
+                logger.fine("No stream info in file: " + track.getTrackData().getFile());
+                close();
+                return false;
+            }
 
             return true;
         } catch (IOException e) {
@@ -84,6 +93,7 @@ public class FLACDecoder implements Decoder {
     }
 
     public void seekSample(long sample) {
+        pendingPos = pendingLen = 0;
         decoder.flush();
 //        if (ogg) {
 //            seekOgg(sample);
@@ -96,25 +106,39 @@ public class FLACDecoder implements Decoder {
 
     public int decode(byte[] buf) {
         try {
-            if (offset != -1) {
-                int len = byteData.getLen() - offset;
-                System.arraycopy(byteData.getData(), offset, buf, 0, len);
-                offset = -1;
-                return len;
-            }
-            Frame readFrame = decoder.readNextFrame();
-            if (readFrame == null) {
-                return -1;
+            while (true) {
+                if (pendingPos < pendingLen) {
+                    int len = Math.min(buf.length, pendingLen - pendingPos);
+                    System.arraycopy(pending, pendingPos, buf, 0, len);
+                    pendingPos += len;
+                    return len;
+                }
+                Frame frame = decoder.readNextFrame();
+                if (frame == null) {
+                    return -1;
+                }
+                if (decoder.getFrameBytes(frame) <= buf.length) {
+                    return decoder.decodeFrame(frame, buf, 0);
+                }
+                park(frame, 0);
             }
-            byteData.setData(buf);
-            decoder.decodeFrame(readFrame, byteData);
-            return byteData.getLen();
         } catch (IOException e) {
             e.printStackTrace();
         }
         return -1;
     }
 
+    /**
+     * Keep the decoded frame to return it from <code>offset</code> on
+     */
+    private void park(Frame frame, int offset) {
+        int size = decoder.getFrameBytes(frame);
+        if (pending.length < size)
+            pending = new byte[size];
+        pendingLen = decoder.decodeFrame(frame, pending, 0);
+        pendingPos = offset;
+    }
+
     public void close() {
         try {
             if (inputFile != null)
@@ -122,6 +146,8 @@ public class FLACDecoder implements Decoder {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        if (source != null)
+            source.close();
     }
 
     private void seekOgg(long target_sample) {
@@ -338,8 +364,7 @@ public class FLACDecoder implements Decoder {
                 if (frame.header.sampleNumber <= target_sample &&
                         target_sample <= frame.header.sampleNumber + frame.header.blockSize) {
 //                    System.out.println("Done seeking");
-                    offset = (int) (target_sample - frame.header.sampleNumber) * frame.header.channels * frame.header.bitsPerSample / 8;
-                    byteData = decoder.decodeFrame(frame, byteData);
+                    park(frame, (int) (target_sample - frame.header.sampleNumber) * frame.header.channels * frame.header.bitsPerSample / 8);
                     break;
                 }
                 /* our write callback will change the state when it gets to the target frame */
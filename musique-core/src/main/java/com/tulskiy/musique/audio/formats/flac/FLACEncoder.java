@@ -29,6 +29,11 @@ import java.io.File;
 import java.io.IOException;
 
 /**
+ * Options: <code>encoder.flac.level</code> (0-8),
+ * <code>encoder.flac.blockSize</code> and <code>encoder.flac.threads</code>.
+ * With more than one thread, whole blocks are handed to javaFlacEncoder's
+ * frame threads; the output is the same as with one thread.
+ * <p/>
  * Author: Denis Tulskiy
  * Date: 5/28/11
  */
@@ -39,25 +44,52 @@ public class FLACEncoder implements Encoder {
     private int[] buffer = new int[65536];
     private AudioFormat fmt;
     private int unencodedSamples;
+    private int threads;
+    private int defaultThreads = Runtime.getRuntime().availableProcessors();
+    private int batchSize;
+
+    /**
+     * @param threads number of threads to use when <code>encoder.flac.threads</code> is not set
+     */
+    public void setDefaultThreads(int threads) {
+        defaultThreads = threads;
+    }
 
     @Override
     public boolean open(File outputFile, AudioFormat fmt, Configuration options) {
         try {
             this.fmt = fmt;
+            int level = EncodingConfiguration.DEFAULT_COMPRESSION_LEVEL;
+            int blockSize = StreamConfiguration.DEFAULT_MAX_BLOCK_SIZE;
+            threads = defaultThreads;
+            if (options != null) {
+                level = options.getInt("encoder.flac.level", level);
+                blockSize = options.getInt("encoder.flac.blockSize", blockSize);
+                threads = options.getInt("encoder.flac.threads", threads);
+            }
+            threads = Math.max(1, threads);
+
             encoder = new javaFlacEncoder.FLACEncoder();
+            // frame threads are created by setStreamConfiguration()
+            encoder.MAX_THREADED_FRAMES = threads;
             StreamConfiguration streamConfiguration = new StreamConfiguration();
             streamConfiguration.setBitsPerSample(fmt.getSampleSizeInBits());
             streamConfiguration.setChannelCount(fmt.getChannels());
             streamConfiguration.setSampleRate((int) fmt.getSampleRate());
+            blockSize = streamConfiguration.setMaxBlockSize(blockSize);
+            streamConfiguration.setMinBlockSize(blockSize);
             encoder.setStreamConfiguration(streamConfiguration);
 
             EncodingConfiguration encodingConfiguration = new EncodingConfiguration();
+            encodingConfiguration.setCompressionLevel(level);
             encoder.setEncodingConfiguration(encodingConfiguration);
 
             outputStream = new FLACFileOutputStream(outputFile.getAbsolutePath());
             encoder.setOutputStream(outputStream);
             encoder.openFLACStream();
             unencodedSamples = 0;
+            // give every thread a block before encoding
+            batchSize = blockSize * threads;
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -72,7 +104,8 @@ public class FLACEncoder implements Encoder {
             int samples = length / fmt.getChannels();
             encoder.addSamples(buffer, samples);
             unencodedSamples += samples;
-            unencodedSamples -= encoder.encodeSamples(unencodedSamples, false);
+            if (encoder.fullBlockSamplesAvailableToEncode() >= batchSize)
+                unencodedSamples -= encodeSamples(unencodedSamples, false);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -80,11 +113,20 @@ public class FLACEncoder implements Encoder {
 
     @Override
     public void close() {
+        if (outputStream == null)
+            return;
         try {
-            encoder.encodeSamples(unencodedSamples, true);
+            encodeSamples(unencodedSamples, true);
             outputStream.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    private int encodeSamples(int count, boolean end) throws IOException {
+        if (threads > 1)
+            return encoder.t_encodeSamples(count, end);
+        else
+            return encoder.encodeSamples(count, end);
+    }
 }
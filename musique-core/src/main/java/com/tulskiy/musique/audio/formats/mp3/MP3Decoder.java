@@ -17,7 +17,9 @@
 
 package com.tulskiy.musique.audio.formats.mp3;
 
+import com.tulskiy.musique.audio.ByteBufferDecoder;
 import com.tulskiy.musique.audio.IcyInputStream;
+import com.tulskiy.musique.audio.MappedAudioSource;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.musique.playlist.TrackData;
 import com.tulskiy.musique.util.AudioMath;
@@ -27,22 +29,15 @@ import javax.sound.sampled.AudioFormat;
 import java.io.*;
 import java.net.URI;
 import java.net.URLDecoder;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
 
 /**
  * @Author: Denis Tulskiy
  * @Date: 12.06.2009
  */
-public class MP3Decoder implements com.tulskiy.musique.audio.Decoder {
+public class MP3Decoder implements ByteBufferDecoder {
     private static final int DECODE_AFTER_SEEK = 9;
-    private LinkedHashMap<File, SeekTable> seekTableCache = new LinkedHashMap<File, SeekTable>(10, 0.7f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<File, SeekTable> eldest) {
-            return size() > 10;
-        }
-    };
-
+    private MappedAudioSource source;
     private Bitstream bitstream;
     private javazoom.jl.decoder.Decoder decoder;
     private AudioFormat audioFormat;
@@ -57,6 +52,7 @@ public class MP3Decoder implements com.tulskiy.musique.audio.Decoder {
     private long currentSample;
     private boolean streaming = false;
     private int oldBitrate;
+    private byte[] frameBuffer = new byte[Obuffer.OBUFFERSIZE * 2];
 
     private Header skipFrame() throws BitstreamException {
         readFrame = bitstream.readFrame();
@@ -72,47 +68,39 @@ public class MP3Decoder implements com.tulskiy.musique.audio.Decoder {
         return (int) (samples / track.getTrackData().getSampleRate() / 60f);
     }
 
-    @SuppressWarnings({"ResultOfMethodCallIgnored"})
     private boolean createBitstream(long targetSample) {
         if (bitstream != null)
             bitstream.close();
         bitstream = null;
         try {
             File file = track.getTrackData().getFile();
-            FileInputStream fis = new FileInputStream(file);
 
             //so we compute target frame first
             targetSample += encDelay;
             int targetFrame = (int) ((double) targetSample / samplesPerFrame);
             sampleOffset = (int) (targetSample - targetFrame * samplesPerFrame) * audioFormat.getFrameSize();
 
-            //then we get the seek table or create it if needed
-            SeekTable seekTable = seekTableCache.get(file);
-            if (seekTable == null &&
-                    samplesToMinutes(totalSamples) > 10) {
-                seekTable = new SeekTable();
-                seekTableCache.put(file, seekTable);
-            }
-
+            //then we jump to the frame using the index
             int currentFrame = 0;
-            //if we have a point, use it
-            if (seekTable != null) {
-                SeekTable.SeekPoint seekPoint = seekTable.get(targetFrame - DECODE_AFTER_SEEK);
-                fis.skip(seekPoint.offset);
-                currentFrame = seekPoint.frame;
+            long offset = 0;
+            int startFrame = targetFrame - DECODE_AFTER_SEEK;
+            if (startFrame > 0) {
+                MP3FrameIndex index = MP3IndexCache.getInstance().get(file,
+                        samplesToMinutes(totalSamples) >= MP3IndexCache.PERSIST_MINUTES);
+                if (index != null && index.size() > 0) {
+                    currentFrame = Math.min(startFrame, index.size() - 1);
+                    offset = index.getOffset(currentFrame);
+                }
             }
 
             //then we create the bitstream
-            bitstream = new Bitstream(fis);
+            bitstream = new Bitstream(source.newInputStream(offset));
             decoder = new javazoom.jl.decoder.Decoder();
 
             readFrame = null;
-            for (int i = currentFrame; i < targetFrame - DECODE_AFTER_SEEK; i++) {
+            //only if there is no index
+            for (int i = currentFrame; i < startFrame; i++) {
                 skipFrame();
-                //store frame's position
-                if (seekTable != null && i % 10000 == 0) {
-                    seekTable.add(i, streamSize - bitstream.getPosition());
-                }
             }
 
             //decode some frames to warm up the decoder
@@ -120,7 +108,7 @@ public class MP3Decoder implements com.tulskiy.musique.audio.Decoder {
             for (int i = 0; i < framesToDecode; i++) {
                 readFrame = bitstream.readFrame();
                 if (readFrame != null)
-                    decoder.decodeFrame(readFrame, bitstream);
+                    decoder.decodeFrame(readFrame, bitstream, frameBuffer, 0);
                 bitstream.closeFrame();
             }
 
@@ -139,30 +127,38 @@ public class MP3Decoder implements com.tulskiy.musique.audio.Decoder {
             return false;
         this.track = track;
         TrackData trackData = track.getTrackData();
+        oldBitrate = trackData.getBitrate();
+        InputStream fis = null;
+        boolean opened = false;
         try {
             URI location = trackData.getLocation();
-            InputStream fis;
             if (trackData.isFile()) {
                 logger.fine("Opening file: " + trackData.getFile());
                 streaming = false;
-                fis = new FileInputStream(trackData.getFile());
-                streamSize = trackData.getFile().length();
+                source = MappedAudioSource.open(trackData.getFile());
+                fis = source.newInputStream(0);
+                streamSize = source.length();
             } else {
             	trackData.setCodec("MP3 Stream");
                 logger.fine("Opening stream: " + URLDecoder.decode(location.toString(), "utf8"));
                 streaming = true;
                 fis = IcyInputStream.create(track);
+                if (fis == null)
+                    return false;
                 decoder = new Decoder();
             }
             bitstream = new Bitstream(fis);
             Header header = bitstream.readFrame();
+            if (header == null) {
+                logger.fine("No audio frames in: " + location);
+                return false;
+            }
             encDelay = header.getEncDelay();
             int encPadding = header.getEncPadding();
             int sampleRate = header.frequency();
             int channels = header.mode() == Header.SINGLE_CHANNEL ? 1 : 2;
             trackData.setSampleRate(sampleRate);
             trackData.setChannels(channels);
-            oldBitrate = trackData.getBitrate();
             samplesPerFrame = (int) (header.ms_per_frame() * header.frequency() / 1000);
             audioFormat = new AudioFormat(sampleRate, 16, channels, true, false);
 
@@ -178,12 +174,34 @@ public class MP3Decoder implements com.tulskiy.musique.audio.Decoder {
             }
 
             currentSample = 0;
+            opened = true;
         } catch (Exception e) {
             e.printStackTrace();
-            return false;
+        } finally {
+            if (!opened)
+                closeSource(fis);
         }
 
-        return true;
+        return opened;
+    }
+
+    /**
+     * Release what a failed open left behind, the file must not stay mapped
+     */
+    private void closeSource(InputStream fis) {
+        if (bitstream != null) {
+            bitstream.close();
+            bitstream = null;
+        } else if (fis != null) {
+            try {
+                fis.close();
+            } catch (IOException ignored) {
+            }
+        }
+        if (source != null) {
+            source.close();
+            source = null;
+        }
     }
 
     public AudioFormat getAudioFormat() {
@@ -196,6 +214,10 @@ public class MP3Decoder implements com.tulskiy.musique.audio.Decoder {
     }
 
     public int decode(byte[] buf) {
+        return decode(ByteBuffer.wrap(buf));
+    }
+
+    public int decode(ByteBuffer buf) {
         try {
             readFrame = bitstream.readFrame();
 
@@ -208,9 +230,12 @@ public class MP3Decoder implements com.tulskiy.musique.audio.Decoder {
 
             if (!streaming && currentSample >= totalSamples)
                 return -1;
-            SampleBuffer output = (SampleBuffer) decoder.decodeFrame(readFrame, bitstream);
+            //decode straight into the caller's array if the whole frame fits
+            boolean direct = buf.hasArray() && buf.remaining() >= frameBuffer.length;
+            byte[] dest = direct ? buf.array() : frameBuffer;
+            int destOffset = direct ? buf.arrayOffset() + buf.position() : 0;
+            int dataLen = decoder.decodeFrame(readFrame, bitstream, dest, destOffset);
             bitstream.closeFrame();
-            int dataLen = output.getBufferLength() * 2;
             int len = dataLen - sampleOffset;
             if (dataLen == 0) {
                 return 0;
@@ -221,7 +246,13 @@ public class MP3Decoder implements com.tulskiy.musique.audio.Decoder {
             if (!streaming && currentSample > totalSamples) {
                 len -= AudioMath.samplesToBytes(currentSample - totalSamples, audioFormat.getFrameSize());
             }
-            toByteArray(output.getBuffer(), sampleOffset / 2, len / 2, buf);
+            if (direct) {
+                if (sampleOffset > 0 && len > 0)
+                    System.arraycopy(dest, destOffset + sampleOffset, dest, destOffset, len);
+                buf.position(buf.position() + len);
+            } else if (len > 0) {
+                buf.put(frameBuffer, sampleOffset, len);
+            }
             sampleOffset = 0;
             readFrame = null;
             return len;
@@ -236,17 +267,10 @@ public class MP3Decoder implements com.tulskiy.musique.audio.Decoder {
     public void close() {
         if (bitstream != null)
             bitstream.close();
+        if (source != null)
+            source.close();
+        source = null;
         track.getTrackData().setBitrate(oldBitrate);
         readFrame = null;
     }
-
-    private void toByteArray(short[] samples, int offs, int len, byte[] dest) {
-        int idx = 0;
-        short s;
-        while (len-- > 0) {
-            s = samples[offs++];
-            dest[idx++] = (byte) s;
-            dest[idx++] = (byte) (s >>> 8);
-        }
-    }
 }
@@ -107,6 +107,12 @@ public class MP3FileReader extends AudioFileReader {
 
             totalSamples -= enc_delay;
             trackData.setTotalSamples(totalSamples);
+
+            // long files get their seek index ready before they are played
+            if (trackData.getSampleRate() > 0 &&
+                    totalSamples / trackData.getSampleRate() / 60 >= MP3IndexCache.PERSIST_MINUTES) {
+                MP3IndexCache.getInstance().schedule(trackData.getFile());
+            }
         }
 
         // TODO review correctness of reading APETag only in case ID3 is missed
@@ -134,6 +140,7 @@ public class MP3FileReader extends AudioFileReader {
             for (FieldKey key : FieldKey.values()) {
                 setMusiqueTagFieldValues(track, key, v24Tag);
             }
+            copyReplayGainFields(v24Tag, track);
         } else if (tag instanceof ID3v1Tag) {
             ID3v1Tag id3v1Tag = (ID3v1Tag) tag;
             TrackData trackData = track.getTrackData();
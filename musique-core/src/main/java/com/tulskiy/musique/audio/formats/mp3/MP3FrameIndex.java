@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.formats.mp3;
+
+import javazoom.jl.decoder.Header;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Byte offsets of every audio frame of an mp3 file.
+ * <p/>
+ * Frames are found the same way {@link javazoom.jl.decoder.Bitstream}
+ * finds them, so frame numbers match what the decoder counts: ID3v2 tag
+ * and Xing/Info/VBRI frame are skipped, first audio frame is frame 0.
+ * Only headers are parsed, so scanning is limited by disk speed.
+ */
+class MP3FrameIndex {
+    private static final int MAGIC = 0x4d504958; // MPIX
+    private static final int VERSION = 1;
+
+    private final long fileSize;
+    private final long lastModified;
+    private final long[] offsets;
+
+    private MP3FrameIndex(long fileSize, long lastModified, long[] offsets) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.offsets = offsets;
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * @param frame frame number
+     * @return offset of the frame from the start of the file
+     */
+    public long getOffset(int frame) {
+        return offsets[frame];
+    }
+
+    /**
+     * @return true if the file has not changed since it was indexed
+     */
+    public boolean isValid(File file) {
+        return file.length() == fileSize && file.lastModified() == lastModified;
+    }
+
+    /**
+     * Scan the file for frame headers
+     *
+     * @param file mp3 file
+     * @return frame index or null if the stream can not be indexed, i.e.
+     *         it is free-format or broken
+     * @throws IOException if file could not be read
+     */
+    public static MP3FrameIndex scan(File file) throws IOException {
+        long lastModified = file.lastModified();
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            Reader in = new Reader(fis.getChannel());
+            long[] offsets = new long[1024];
+            int count = 0;
+
+            long pos = 0;
+            if (in.get(0) == 'I' && in.get(1) == 'D' && in.get(2) == '3') {
+                // same as Bitstream, no masking and no footer
+                byte[] size = new byte[4];
+                for (int i = 0; i < 4; i++) {
+                    size[i] = (byte) in.get(6 + i);
+                }
+                int tagSize = (size[0] << 21) + (size[1] << 14) + (size[2] << 7) + size[3];
+                pos = 10 + Math.max(0, tagSize);
+            }
+
+            int syncWord = -1;
+            boolean first = true;
+            while (true) {
+                // -1 is a valid value here, so the end is checked by position
+                while (pos + 4 <= in.length() && !isSync(in.getInt(pos), syncWord)) {
+                    pos++;
+                }
+                if (pos + 4 > in.length()) {
+                    break;
+                }
+                int header = in.getInt(pos);
+                int frameSize = frameSize(header);
+                if (frameSize <= 4) {
+                    // free format or bad bitrate, can't trust anything
+                    return null;
+                }
+                long next = pos + frameSize;
+                if (next > in.length()) {
+                    // truncated last frame
+                    break;
+                }
+                if (syncWord == -1) {
+                    // first frame has to be followed by a matching one,
+                    // otherwise it's garbage that looks like a header
+                    if (next != in.length() && !isSync(in.getInt(next), -1)) {
+                        pos += 4;
+                        continue;
+                    }
+                    syncWord = header & 0xFFF80CC0;
+                }
+                if (first) {
+                    first = false;
+                    if (isVBRHeader(in, pos, header)) {
+                        pos = next;
+                        continue;
+                    }
+                }
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = pos;
+                pos = next;
+            }
+            return new MP3FrameIndex(in.length(), lastModified, Arrays.copyOf(offsets, count));
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Same rules as Bitstream.isSyncMark(), with syncWord of -1
+     * meaning initial sync
+     */
+    private static boolean isSync(int header, int syncWord) {
+        boolean sync;
+        if (syncWord == -1) {
+            sync = (header & 0xFFE00000) == 0xFFE00000;
+        } else {
+            sync = (header & 0xFFF80C00) == (syncWord & 0xFFFFFF3F)
+                    && ((header & 0xC0) == 0xC0) == ((syncWord & 0xC0) == 0xC0);
+        }
+        return sync
+                && ((header >>> 10) & 3) != 3
+                && ((header >>> 17) & 3) != 0
+                && ((header >>> 19) & 3) != 1;
+    }
+
+    private static int version(int header) {
+        if (((header >>> 19) & 1) == 1)
+            return Header.MPEG1;
+        return ((header >>> 20) & 1) == 1 ? Header.MPEG2_LSF : Header.MPEG25_LSF;
+    }
+
+    /**
+     * @return size of the frame including the header
+     */
+    static int frameSize(int header) {
+        int version = version(header);
+        int layer = 4 - ((header >>> 17) & 3);
+        int bitrateIndex = (header >>> 12) & 0xF;
+        int padding = (header >>> 9) & 1;
+        int frequency = Header.frequencies[version][(header >>> 10) & 3];
+        int size;
+        if (layer == 1) {
+            size = (12 * Header.bitrates[version][0][bitrateIndex] / frequency + padding) << 2;
+        } else {
+            size = 144 * Header.bitrates[version][layer - 1][bitrateIndex] / frequency;
+            if (version != Header.MPEG1)
+                size >>= 1;
+            size += padding;
+        }
+        return size;
+    }
+
+    private static boolean isVBRHeader(Reader in, long pos, int header) throws IOException {
+        boolean mono = ((header >>> 6) & 3) == Header.SINGLE_CHANNEL;
+        int offset;
+        if (version(header) == Header.MPEG1) {
+            offset = mono ? 21 : 36;
+        } else {
+            offset = mono ? 13 : 21;
+        }
+        int tag = in.getInt(pos + offset);
+        return tag == 0x58696e67 // Xing
+                || tag == 0x496e666f // Info
+                || in.getInt(pos + 36) == 0x56425249; // VBRI
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(fileSize);
+        out.writeLong(lastModified);
+        out.writeInt(offsets.length);
+        long last = 0;
+        for (long offset : offsets) {
+            writeVarLong(out, offset - last);
+            last = offset;
+        }
+    }
+
+    /**
+     * @return index or null if data is not an index of a supported version
+     */
+    public static MP3FrameIndex read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            return null;
+        long fileSize = in.readLong();
+        long lastModified = in.readLong();
+        long[] offsets = new long[in.readInt()];
+        long last = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            last += readVarLong(in);
+            offsets[i] = last;
+        }
+        return new MP3FrameIndex(fileSize, lastModified, offsets);
+    }
+
+    // frames are rarely longer than 1.5K, so deltas mostly take two bytes
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Window over the file that only moves when a read falls outside of it
+     */
+    private static class Reader {
+        private final FileChannel channel;
+        private final long length;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private long start = 0;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.length = channel.size();
+            buffer.limit(0);
+        }
+
+        long length() {
+            return length;
+        }
+
+        /**
+         * @return unsigned byte or -1 past the end of file
+         */
+        int get(long pos) throws IOException {
+            if (!fill(pos, 1))
+                return -1;
+            return buffer.get((int) (pos - start)) & 0xFF;
+        }
+
+        /**
+         * @return big-endian int or -1 if there are less than 4 bytes left,
+         *         check {@link #length()} to tell it from data
+         */
+        int getInt(long pos) throws IOException {
+            if (!fill(pos, 4))
+                return -1;
+            return buffer.getInt((int) (pos - start));
+        }
+
+        private boolean fill(long pos, int bytes) throws IOException {
+            if (pos + bytes > length)
+                return false;
+            if (pos < start || pos + bytes > start + buffer.limit()) {
+                buffer.clear();
+                start = pos;
+                while (buffer.hasRemaining()
+                        && channel.read(buffer, start + buffer.position()) > 0) {
+                }
+                buffer.flip();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.formats.mp3;
+
+import com.tulskiy.musique.system.Application;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps frame indexes of recently used files in memory and indexes of
+ * long files on disk, so they are scanned only once. Disk entries are
+ * named after the file path and are deleted if size or modification
+ * time of the file has changed. When the directory grows over its limit,
+ * the entries that were not used for the longest time are deleted.
+ */
+class MP3IndexCache {
+    private static final Logger logger = Logger.getLogger(MP3IndexCache.class.getName());
+    private static final int MEMORY_ENTRIES = 10;
+    /**
+     * Files shorter than this are scanned on demand and not stored
+     */
+    static final int PERSIST_MINUTES = 10;
+    private static final long MAX_DISK_SIZE = 64 << 20;
+
+    private static MP3IndexCache instance;
+
+    private final File dir;
+    private final long maxDiskSize;
+    private final Map<File, MP3FrameIndex> memory = new LinkedHashMap<File, MP3FrameIndex>(MEMORY_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, MP3FrameIndex> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+    private final ConcurrentHashMap<File, FutureTask<MP3FrameIndex>> pending = new ConcurrentHashMap<File, FutureTask<MP3FrameIndex>>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "MP3 Index Thread");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    });
+
+    /**
+     * @param dir directory for indexes, null to keep them in memory only
+     */
+    MP3IndexCache(File dir) {
+        this(dir, MAX_DISK_SIZE);
+    }
+
+    /**
+     * @param dir         directory for indexes, null to keep them in memory only
+     * @param maxDiskSize limit for the size of the directory, in bytes
+     */
+    MP3IndexCache(File dir, long maxDiskSize) {
+        this.dir = dir;
+        this.maxDiskSize = maxDiskSize;
+    }
+
+    static synchronized MP3IndexCache getInstance() {
+        if (instance == null) {
+            File home = Application.getInstance().CONFIG_HOME;
+            instance = new MP3IndexCache(home != null ? new File(home, "mp3index") : null);
+        }
+        return instance;
+    }
+
+    /**
+     * Get index of the file, scanning it now if nobody has done it yet.
+     *
+     * @param file    mp3 file
+     * @param persist whether to store the index on disk
+     * @return index or null if file can't be indexed
+     */
+    public MP3FrameIndex get(File file, boolean persist) {
+        MP3FrameIndex index = getCached(file, persist);
+        if (index != null)
+            return index;
+        FutureTask<MP3FrameIndex> task = submit(file, persist);
+        // run it here if the background thread has not picked it up yet
+        task.run();
+        try {
+            return task.get();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not index " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Index the file in background, if it's not done yet
+     */
+    public void schedule(File file) {
+        if (pending.containsKey(file) || getCached(file, true) != null)
+            return;
+        executor.execute(submit(file, true));
+    }
+
+    private MP3FrameIndex getCached(File file, boolean persist) {
+        MP3FrameIndex index;
+        synchronized (memory) {
+            index = memory.get(file);
+        }
+        if (index == null && persist && dir != null) {
+            index = load(file);
+        }
+        if (index != null && !index.isValid(file)) {
+            index = null;
+        }
+        if (index != null) {
+            synchronized (memory) {
+                memory.put(file, index);
+            }
+        }
+        return index;
+    }
+
+    private FutureTask<MP3FrameIndex> submit(final File file, final boolean persist) {
+        FutureTask<MP3FrameIndex> task = new FutureTask<MP3FrameIndex>(new Callable<MP3FrameIndex>() {
+            @Override
+            public MP3FrameIndex call() throws Exception {
+                try {
+                    MP3FrameIndex index = getCached(file, persist);
+                    if (index == null) {
+                        long time = System.currentTimeMillis();
+                        index = MP3FrameIndex.scan(file);
+                        logger.fine("Indexed " + file + " in " + (System.currentTimeMillis() - time) + " ms");
+                        if (index != null) {
+                            synchronized (memory) {
+                                memory.put(file, index);
+                            }
+                            if (persist && dir != null)
+                                save(file, index);
+                        }
+                    }
+                    return index;
+                } finally {
+                    pending.remove(file);
+                }
+            }
+        });
+        FutureTask<MP3FrameIndex> existing = pending.putIfAbsent(file, task);
+        return existing != null ? existing : task;
+    }
+
+    @SuppressWarnings({"ResultOfMethodCallIgnored"})
+    private MP3FrameIndex load(File file) {
+        File indexFile = getIndexFile(file);
+        if (!indexFile.exists())
+            return null;
+        MP3FrameIndex index = null;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                index = MP3FrameIndex.read(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Could not read index " + indexFile, e);
+        }
+
+        if (index == null || !index.isValid(file)) {
+            // stale or broken, it would never be used again
+            indexFile.delete();
+            return null;
+        }
+        // pruning goes by modification time
+        indexFile.setLastModified(System.currentTimeMillis());
+        return index;
+    }
+
+    @SuppressWarnings({"ResultOfMethodCallIgnored"})
+    private void save(File file, MP3FrameIndex index) {
+        dir.mkdirs();
+        File indexFile = getIndexFile(file);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+            try {
+                index.write(out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not save index " + indexFile, e);
+            indexFile.delete();
+        }
+        prune();
+    }
+
+    /**
+     * Delete least recently used indexes until the directory fits into the limit
+     */
+    @SuppressWarnings({"ResultOfMethodCallIgnored"})
+    private void prune() {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".idx");
+            }
+        });
+        if (files == null)
+            return;
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxDiskSize)
+            return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                long m1 = o1.lastModified();
+                long m2 = o2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && total > maxDiskSize; i++) {
+            total -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    private File getIndexFile(File file) {
+        String name;
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            byte[] digest = md5.digest(file.getAbsolutePath().getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b & 0xFF));
+            }
+            name = sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            name = Integer.toHexString(file.getAbsolutePath().hashCode());
+        } catch (UnsupportedEncodingException e) {
+            name = Integer.toHexString(file.getAbsolutePath().hashCode());
+        }
+        return new File(dir, name + ".idx");
+    }
+}
@@ -119,6 +119,7 @@ public class MP3TagWriter extends AudioTagWriter {
 		
 		// workaround since track/tracktotal and disc/disctotal share same field
 		handleTrackDiscFields(tag, track);
+		copyReplayGainFields(tag, track);
 		
 		track.getTrackData().removeEmptyTagFields();
     }
@@ -53,7 +53,10 @@ public class AACDecoder implements com.tulskiy.musique.audio.Decoder {
         try {
             TrackData trackData = track.getTrackData();
             if (trackData.isStream()) {
-                in = new BufferedInputStream(IcyInputStream.create(track), BUFFER_SIZE);
+                IcyInputStream stream = IcyInputStream.create(track);
+                if (stream == null)
+                    return false;
+                in = new BufferedInputStream(stream, BUFFER_SIZE);
                 trackData.setCodec("AAC Stream");
             } else
                 in = new BufferedInputStream(new FileInputStream(trackData.getFile()), BUFFER_SIZE);
@@ -17,6 +17,7 @@
 
 package com.tulskiy.musique.audio.formats.mp4;
 
+import com.tulskiy.musique.audio.MappedAudioSource;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.musique.util.AudioMath;
 import net.sourceforge.jaad.aac.Decoder;
@@ -48,26 +49,37 @@ public class MP4Decoder implements com.tulskiy.musique.audio.Decoder {
     private int offset;
     private int bps = 2;
     private Frame frame;
+    private MappedAudioSource source;
     private RandomAccessFile in;
     private AudioTrack track;
+    private long[] frameStarts;
 
     @Override
     public boolean open(Track track) {
+        boolean opened = false;
         try {
-            in = new RandomAccessFile(track.getTrackData().getFile(), "r");
+            source = MappedAudioSource.open(track.getTrackData().getFile());
+            in = source.newRandomAccessFile();
 
             sampleBuffer = new SampleBuffer();
             sampleBuffer.setBigEndian(false);
+            openContainer();
             initDecoder(0);
-            return true;
+            opened = true;
         } catch (IOException e) {
             logger.log(Level.WARNING, "Error opening file " + track.getTrackData().getFile().getAbsolutePath(), e);
+        } finally {
+            if (!opened)
+                close();
         }
-        return false;
+        return opened;
     }
 
-    private void initDecoder(long sample) throws IOException {
-        in.seek(0);
+    /**
+     * Parses the container once per open file, seeks only
+     * reposition the track
+     */
+    private void openContainer() throws IOException {
         MP4Container cont = new MP4Container(in);
         Movie movie = cont.getMovie();
         List<net.sourceforge.jaad.mp4.api.Track> tracks = movie.getTracks(AudioTrack.AudioCodec.AAC);
@@ -77,23 +89,36 @@ public class MP4Decoder implements com.tulskiy.musique.audio.Decoder {
         }
 
         track = (AudioTrack) tracks.get(0);
-        decoder = new Decoder(track.getDecoderSpecificInfo());
         parseGaplessInfo(movie);
 
-        sample += gaplessDelay;
         totalSamples = track.getFrameCount();
+        frameStarts = track.getFrameStarts();
         bps = track.getSampleSize() / 8;
-        int target = 0;
-        currentSample = -1;
-        for (int i = 0; i < totalSamples; i++) {
-            target += track.getSampleDuration(i);
-            if (sample < target) {
-                currentSample = i;
-                break;
-            }
+        audioFormat = new AudioFormat((float) track.getSampleRate(), bps * 8, track.getChannelCount(), true, false);
+    }
+
+    /**
+     * @return first frame that ends after <code>sample</code>,
+     *         or <code>totalSamples</code> if there is none
+     */
+    private int findFrame(long sample) {
+        int lo = 0;
+        int hi = totalSamples;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (frameStarts[mid + 1] > sample)
+                hi = mid;
+            else
+                lo = mid + 1;
         }
+        return lo;
+    }
 
-        if (currentSample == -1) currentSample = totalSamples;
+    private void initDecoder(long sample) throws IOException {
+        decoder = new Decoder(track.getDecoderSpecificInfo());
+
+        sample += gaplessDelay;
+        currentSample = findFrame(sample);
 
         int preheat = 2;
         int s = currentSample - preheat;
@@ -105,9 +130,7 @@ public class MP4Decoder implements com.tulskiy.musique.audio.Decoder {
             decoder.decodeFrame(frame.getData(), sampleBuffer);
         }
 
-        offset = (int) (sample - (target - track.getSampleDuration(currentSample)));
-        if (audioFormat == null)
-            audioFormat = new AudioFormat((float) track.getSampleRate(), bps * 8, track.getChannelCount(), true, false);
+        offset = (int) (sample - frameStarts[currentSample]);
     }
 
     private void parseGaplessInfo(Movie movie) {
@@ -175,11 +198,15 @@ public class MP4Decoder implements com.tulskiy.musique.audio.Decoder {
     @Override
     public void close() {
         try {
-            in.close();
-            in = null;
-            decoder = null;
+            if (in != null)
+                in.close();
         } catch (IOException e) {
             logger.log(Level.WARNING, "Error closing file input stream", e);
         }
+        in = null;
+        decoder = null;
+        if (source != null)
+            source.close();
+        source = null;
     }
 }
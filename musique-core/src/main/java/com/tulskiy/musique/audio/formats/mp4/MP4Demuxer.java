@@ -40,11 +40,25 @@ public class MP4Demuxer implements Decoder {
         } else if ("Apple Lossless".equals(codec)) {
             decoder = alacDecoder;
         } else {
-            return false;
+            // the tags were not read as mp4, e.g. the file has a wrong extension
+            decoder = aacDecoder;
+            if (tryOpen(track))
+                return true;
+            decoder = alacDecoder;
         }
         return decoder.open(track);
     }
 
+    private boolean tryOpen(Track track) {
+        if (decoder.open(track))
+            return true;
+        try {
+            decoder.close();
+        } catch (Exception ignored) {
+        }
+        return false;
+    }
+
     @Override
     public AudioFormat getAudioFormat() {
         return decoder.getAudioFormat();
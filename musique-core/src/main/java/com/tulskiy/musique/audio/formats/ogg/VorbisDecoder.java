@@ -21,6 +21,7 @@ import com.jcraft.jorbis.Comment;
 import com.jcraft.jorbis.Info;
 import com.jcraft.jorbis.VorbisFile;
 import com.tulskiy.musique.audio.Decoder;
+import com.tulskiy.musique.audio.IcyInputStream;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.musique.playlist.TrackData;
 
@@ -28,11 +29,7 @@ import javax.sound.sampled.AudioFormat;
 
 import org.jaudiotagger.tag.FieldKey;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLDecoder;
 
 /**
@@ -56,17 +53,11 @@ public class VorbisDecoder implements Decoder {
                 streaming = false;
                 oldBitrate = trackData.getBitrate();
             } else if (trackData.isStream()) {
-                URL url = trackData.getLocation().toURL();
-                logger.fine("Opening stream: " + URLDecoder.decode(url.toString(), "utf8"));
-                URLConnection urlConnection = url.openConnection();
-                String contentType = urlConnection.getContentType();
-                if (!contentType.equals("application/ogg")) {
-                    logger.warning("Wrong content type: " + contentType);
+                logger.fine("Opening stream: " + URLDecoder.decode(trackData.getLocation().toString(), "utf8"));
+                IcyInputStream is = IcyInputStream.create(track);
+                if (is == null)
                     return false;
-                }
-                InputStream is = urlConnection.getInputStream();
-                BufferedInputStream bis = new BufferedInputStream(is);
-                vorbisFile = new VorbisFile(bis, null, 0);
+                vorbisFile = new VorbisFile(is, null, 0);
                 streaming = true;
                 reloadComments(track);
                 trackData.setCodec("OGG Vorbis Stream");
@@ -114,8 +105,9 @@ public class VorbisDecoder implements Decoder {
         int ret = vorbisFile.read(buf, buf.length);
         track.getTrackData().setBitrate(vorbisFile.bitrate_instant() / 1000);
         if (ret <= 0) {
-            //it's a stream, open it again
-            if (streaming) {
+            // the stream reconnects by itself and vorbisFile picks up
+            // the new headers, so only reopen if decoding failed
+            if (streaming && ret < 0) {
                 if (!open(track))
                     return -1;
                 else
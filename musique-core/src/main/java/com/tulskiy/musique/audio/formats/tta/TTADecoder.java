@@ -18,13 +18,12 @@
 package com.tulskiy.musique.audio.formats.tta;
 
 import com.tulskiy.musique.audio.Decoder;
+import com.tulskiy.musique.audio.MappedAudioSource;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.tta.TTA_Decoder;
 import com.tulskiy.tta.TTA_info;
 
 import javax.sound.sampled.AudioFormat;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.logging.Level;
 
@@ -37,21 +36,30 @@ public class TTADecoder implements Decoder {
     private AudioFormat fmt;
     private TTA_info info;
     private Track track;
+    private MappedAudioSource source;
 
     @Override
     public boolean open(Track track) {
         this.track = track;
+        boolean opened = false;
         try {
-            decoder = new TTA_Decoder(new FileInputStream(track.getTrackData().getFile()));
+            source = MappedAudioSource.open(track.getTrackData().getFile());
+            if (source.length() > Integer.MAX_VALUE)
+                throw new IOException("File is too large");
+            decoder = new TTA_Decoder(source.slice(0, (int) source.length()));
 
             info = decoder.init_get_info(0);
             fmt = new AudioFormat(info.sps, info.bps, info.nch, true, false);
 
-            return true;
-        } catch (FileNotFoundException e) {
-            logger.log(Level.WARNING, "File not found", e);
+            opened = true;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not open file", e);
+        } finally {
+            // tta_exception is not checked, the source has to be closed anyway
+            if (!opened)
+                close();
         }
-        return false;
+        return opened;
     }
 
     @Override
@@ -77,7 +85,8 @@ public class TTADecoder implements Decoder {
 
     @Override
     public void close() {
-        track.getTrackData().setBitrate(info.bitrate);
+        if (info != null)
+            track.getTrackData().setBitrate(info.bitrate);
         if (decoder != null)
             try {
                 decoder.close();
@@ -86,5 +95,8 @@ public class TTADecoder implements Decoder {
             }
         decoder = null;
         info = null;
+        if (source != null)
+            source.close();
+        source = null;
     }
 }
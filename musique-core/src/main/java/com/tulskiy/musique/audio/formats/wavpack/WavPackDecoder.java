@@ -18,13 +18,13 @@
 package com.tulskiy.musique.audio.formats.wavpack;
 
 import com.tulskiy.musique.audio.Decoder;
+import com.tulskiy.musique.audio.MappedAudioSource;
 import com.tulskiy.musique.playlist.Track;
 import com.wavpack.decoder.Defines;
 import com.wavpack.decoder.WavPackUtils;
 import com.wavpack.decoder.WavpackContext;
 
 import javax.sound.sampled.AudioFormat;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
@@ -40,12 +40,14 @@ public class WavPackDecoder implements Decoder {
     private int[] buffer = new int[BUFFER_SIZE];
     private int channels;
     private int bps;
+    private MappedAudioSource source;
     private RandomAccessFile ras;
 
     public boolean open(Track track) {
         try {
             logger.fine("Opening file: " + track.getTrackData().getFile());
-            ras = new RandomAccessFile(track.getTrackData().getFile(), "r");
+            source = MappedAudioSource.open(track.getTrackData().getFile());
+            ras = source.newRandomAccessFile();
             wpc = WavPackUtils.WavpackOpenFileInput(ras);
             if (wpc.isError()) {
                 logger.warning("WavPack error: " + wpc.getErrorMessage());
@@ -58,7 +60,7 @@ public class WavPackDecoder implements Decoder {
             long samplerate = WavPackUtils.WavpackGetSampleRate(wpc);
             audioFormat = new AudioFormat(samplerate, bps, channels, true, false);
             return true;
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
         return false;
@@ -88,6 +90,8 @@ public class WavPackDecoder implements Decoder {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        if (source != null)
+            source.close();
     }
 
     private void format_samples(long samcnt, byte[] buf) {
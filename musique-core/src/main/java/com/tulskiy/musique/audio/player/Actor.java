@@ -17,62 +17,302 @@
 
 package com.tulskiy.musique.audio.player;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import com.tulskiy.musique.playlist.Track;
+
+import java.lang.reflect.Method;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Processes messages one at a time, in the order they were sent.
+ * <p/>
+ * All actors share one executor, an actor only occupies a thread
+ * while it has messages to process. Virtual threads are used if the
+ * JVM has them. If a message is sent while a message of the same type
+ * is the last one waiting and the type allows it, the waiting one is
+ * replaced, so a burst of seeks from a dragged slider results in one seek.
+ *
  * Author: Denis Tulskiy
  * Date: 1/15/11
  */
 public abstract class Actor {
+    private static final ExecutorService executor = createExecutor();
     private Logger logger = Logger.getLogger(getClass().getName());
 
-    public enum Message {
-        // player messages
-        PLAY, PAUSE, STOP, FLUSH,
-        // buffer messages
-        OPEN, SEEK;
+    /**
+     * Immutable message with typed parameters
+     */
+    public static final class Message {
+        public enum Type {
+            // player messages
+            PLAY, PAUSE, STOP, FLUSH,
+            // buffer messages
+            OPEN, SEEK
+        }
 
-        private Object[] params;
+        public static final Message PLAY = new Message(Type.PLAY, null, -1);
+        public static final Message PAUSE = new Message(Type.PAUSE, null, -1);
+        public static final Message STOP = new Message(Type.STOP, null, -1);
+        public static final Message FLUSH = new Message(Type.FLUSH, null, -1);
 
-        public Object[] getParams() {
-            return params;
+        private final Type type;
+        private final Track track;
+        private final long sample;
+
+        private Message(Type type, Track track, long sample) {
+            this.type = type;
+            this.track = track;
+            this.sample = sample;
         }
 
-        public void setParams(Object[] params) {
-            this.params = params;
+        public static Message open(Track track) {
+            return new Message(Type.OPEN, track, -1);
+        }
+
+        public static Message seek(long sample) {
+            return new Message(Type.SEEK, null, sample);
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return track to open, only for {@link Type#OPEN}
+         */
+        public Track getTrack() {
+            return track;
+        }
+
+        /**
+         * @return sample to seek to, only for {@link Type#SEEK}
+         */
+        public long getSample() {
+            return sample;
+        }
+
+        /**
+         * @return true if only the latest of consecutive messages of
+         *         this type needs to be processed
+         */
+        public boolean isCoalescing() {
+            return type == Type.OPEN || type == Type.SEEK;
+        }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case OPEN:
+                    return type + " " + track;
+                case SEEK:
+                    return type + " " + sample;
+                default:
+                    return type.toString();
+            }
         }
     }
 
-    private BlockingQueue<Message> queue = new LinkedBlockingDeque<Message>();
+    private static class Envelope {
+        final Message message;
+        // when the first of the coalesced messages was sent
+        final long sent;
 
-    public synchronized void send(Message message, Object... params) {
-        message.setParams(params);
-        queue.add(message);
+        Envelope(Message message, long sent) {
+            this.message = message;
+            this.sent = sent;
+        }
     }
 
-    protected Actor() {
-        Thread messageThread = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                    while (true) {
-                        Message message = null;
-                        try {
-                            message = queue.take();
-                            process(message);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                            break;
-                        } catch (Exception e) {
-                            logger.log(Level.WARNING, "Error processing message " + message, e);
-                        }
+    private final String name;
+    private final Object mailboxLock = new Object();
+    private final LinkedList<Envelope> mailbox = new LinkedList<Envelope>();
+    private boolean scheduled;
+
+    // statistics, guarded by mailboxLock
+    private int maxQueueDepth;
+    private long processed;
+    private long coalesced;
+    private long totalLatency;
+    private long maxLatency;
+    private long totalProcessingTime;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                Envelope envelope;
+                synchronized (mailboxLock) {
+                    envelope = mailbox.poll();
+                    if (envelope == null) {
+                        scheduled = false;
+                        return;
                     }
+                }
+                long start = System.nanoTime();
+                try {
+                    process(envelope.message);
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Error processing message " + envelope.message, e);
+                }
+                long end = System.nanoTime();
+                processed(envelope, start, end);
+            }
+        }
+    };
+
+    protected Actor(String name) {
+        this.name = name;
+    }
+
+    public void send(Message message) {
+        synchronized (mailboxLock) {
+            long now = System.nanoTime();
+            Envelope last = mailbox.peekLast();
+            if (message.isCoalescing() && last != null
+                    && last.message.getType() == message.getType()) {
+                mailbox.removeLast();
+                coalesced++;
+                now = last.sent;
             }
-        }, "Actor Thread");
-        messageThread.start();
+            mailbox.add(new Envelope(message, now));
+            maxQueueDepth = Math.max(maxQueueDepth, mailbox.size());
+            if (scheduled)
+                return;
+            scheduled = true;
+        }
+        executor.execute(drain);
     }
 
     protected abstract void process(Message message);
+
+    /**
+     * @param type message type
+     * @return true if a message of this type is waiting in the queue
+     */
+    protected boolean isPending(Message.Type type) {
+        synchronized (mailboxLock) {
+            for (Envelope envelope : mailbox) {
+                if (envelope.message.getType() == type)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Called after a message has been processed
+     *
+     * @param message message
+     * @param latency time from sending the message until its processing
+     *                finished, in nanoseconds
+     */
+    protected void onProcessed(Message message, long latency) {
+    }
+
+    private void processed(Envelope envelope, long start, long end) {
+        synchronized (mailboxLock) {
+            processed++;
+            long latency = start - envelope.sent;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            totalProcessingTime += end - start;
+        }
+        onProcessed(envelope.message, end - envelope.sent);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of messages waiting to be processed
+     */
+    public int getQueueDepth() {
+        synchronized (mailboxLock) {
+            return mailbox.size();
+        }
+    }
+
+    public int getMaxQueueDepth() {
+        synchronized (mailboxLock) {
+            return maxQueueDepth;
+        }
+    }
+
+    public long getProcessedCount() {
+        synchronized (mailboxLock) {
+            return processed;
+        }
+    }
+
+    /**
+     * @return number of messages that were replaced by newer ones
+     */
+    public long getCoalescedCount() {
+        synchronized (mailboxLock) {
+            return coalesced;
+        }
+    }
+
+    /**
+     * @return average time messages wait in the queue, nanoseconds
+     */
+    public long getAverageLatency() {
+        synchronized (mailboxLock) {
+            return processed == 0 ? 0 : totalLatency / processed;
+        }
+    }
+
+    /**
+     * @return longest time a message waited in the queue, nanoseconds
+     */
+    public long getMaxLatency() {
+        synchronized (mailboxLock) {
+            return maxLatency;
+        }
+    }
+
+    /**
+     * @return average time spent processing a message, nanoseconds
+     */
+    public long getAverageProcessingTime() {
+        synchronized (mailboxLock) {
+            return processed == 0 ? 0 : totalProcessingTime / processed;
+        }
+    }
+
+    public void resetStatistics() {
+        synchronized (mailboxLock) {
+            maxQueueDepth = mailbox.size();
+            processed = 0;
+            coalesced = 0;
+            totalLatency = 0;
+            maxLatency = 0;
+            totalProcessingTime = 0;
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Java 21+
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Actor Thread " + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
 }
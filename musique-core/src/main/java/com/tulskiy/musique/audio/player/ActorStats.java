@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player;
+
+/**
+ * Read-only view of an actor's message queue for the JMX console.
+ */
+public class ActorStats implements ActorStatsMBean {
+    public static final String OBJECT_NAME = "com.tulskiy.musique:type=PlayerActor,name=";
+
+    private Actor actor;
+
+    public ActorStats(Actor actor) {
+        this.actor = actor;
+    }
+
+    public String getObjectName() {
+        return OBJECT_NAME + actor.getName();
+    }
+
+    public int getQueueDepth() {
+        return actor.getQueueDepth();
+    }
+
+    public int getMaxQueueDepth() {
+        return actor.getMaxQueueDepth();
+    }
+
+    public long getProcessedCount() {
+        return actor.getProcessedCount();
+    }
+
+    public long getCoalescedCount() {
+        return actor.getCoalescedCount();
+    }
+
+    public long getAverageLatency() {
+        return actor.getAverageLatency() / 1000;
+    }
+
+    public long getMaxLatency() {
+        return actor.getMaxLatency() / 1000;
+    }
+
+    public long getAverageProcessingTime() {
+        return actor.getAverageProcessingTime() / 1000;
+    }
+
+    public void resetStatistics() {
+        actor.resetStatistics();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player;
+
+/**
+ * Message queue statistics of a player actor, published over JMX.
+ *
+ * @see Actor
+ */
+public interface ActorStatsMBean {
+    /**
+     * @return number of messages waiting to be processed
+     */
+    public int getQueueDepth();
+
+    /**
+     * @return largest queue depth since start or the last reset
+     */
+    public int getMaxQueueDepth();
+
+    public long getProcessedCount();
+
+    /**
+     * @return number of messages replaced by newer ones of the same type
+     */
+    public long getCoalescedCount();
+
+    /**
+     * @return average time messages wait in the queue, microseconds
+     */
+    public long getAverageLatency();
+
+    /**
+     * @return longest time a message waited in the queue, microseconds
+     */
+    public long getMaxLatency();
+
+    /**
+     * @return average time spent processing a message, microseconds
+     */
+    public long getAverageProcessingTime();
+
+    public void resetStatistics();
+}
@@ -17,8 +17,10 @@
 
 package com.tulskiy.musique.audio.player;
 
+import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
+import com.tulskiy.musique.audio.ByteBufferDecoder;
 import com.tulskiy.musique.audio.Decoder;
 import com.tulskiy.musique.audio.player.io.Buffer;
 import com.tulskiy.musique.playlist.PlaybackOrder;
@@ -32,6 +34,7 @@ import com.tulskiy.musique.util.AudioMath;
  * Date: 1/15/11
  */
 public class BufferingThread extends Actor implements Runnable {
+    private static final int CHUNK_SIZE = 65536;
     private final Logger logger = Logger.getLogger(getClass().getName());
     private PlaybackOrder order;
 
@@ -46,28 +49,33 @@ public class BufferingThread extends Actor implements Runnable {
     private Buffer buffer;
     private PlayingThread playingThread;
     private boolean stopAfterCurrent = false;
+    // only written by the actor
+    private volatile long bufferSeeks;
+    private volatile long decoderSeeks;
+    private volatile long coalescedSeeks;
+    private final Prefetcher prefetcher = new Prefetcher();
+    // start of the current track decoded by the prefetcher
+    private byte[] prefetched;
+    private int prefetchedPos;
+    private int prefetchedLength;
 
     public BufferingThread(Buffer buffer, PlayingThread playingThread) {
+        super("Buffering");
         this.buffer = buffer;
         this.playingThread = playingThread;
     }
 
     @Override
     public void process(Message message) {
-        Object[] params = message.getParams();
-        switch (message) {
+        switch (message.getType()) {
             case OPEN:
-                if (params.length > 0 && params[0] instanceof Track) {
-                    Track track = (Track) params[0];
+                if (message.getTrack() != null) {
                     pause(true);
-                    open(track, true);
+                    open(message.getTrack(), true);
                 }
                 break;
             case SEEK:
-                if (params.length > 0 && params[0] instanceof Long) {
-                    Long sample = (Long) params[0];
-                    seek(sample);
-                }
+                seek(message.getSample());
                 break;
             case STOP:
                 stop(true);
@@ -78,7 +86,10 @@ public class BufferingThread extends Actor implements Runnable {
     @SuppressWarnings({"InfiniteLoopStatement"})
     @Override
     public void run() {
-        byte[] buf = new byte[65536];
+        byte[] buf = new byte[CHUNK_SIZE];
+        ByteBuffer slice = null;
+        byte[] data;
+        int offset;
         int len;
         while (true) {
             synchronized (lock) {
@@ -103,7 +114,24 @@ public class BufferingThread extends Actor implements Runnable {
                             continue;
                         }
 
-                        len = decoder.decode(buf);
+                        data = buf;
+                        offset = 0;
+                        if (prefetched != null) {
+                            slice = null;
+                            data = prefetched;
+                            offset = prefetchedPos;
+                            len = Math.min(CHUNK_SIZE, prefetchedLength - prefetchedPos);
+                            prefetchedPos += len;
+                            if (prefetchedPos >= prefetchedLength)
+                                prefetched = null;
+                        } else if (decoder instanceof ByteBufferDecoder) {
+                            // decode straight into the buffer
+                            slice = buffer.reserve(CHUNK_SIZE);
+                            len = ((ByteBufferDecoder) decoder).decode(slice);
+                        } else {
+                            slice = null;
+                            len = decoder.decode(buf);
+                        }
 
                         if (len == -1) {
                             nextTrack = null;
@@ -132,7 +160,10 @@ public class BufferingThread extends Actor implements Runnable {
 
                         currentByte += len;
 
-                        buffer.write(buf, 0, len);
+                        if (slice != null)
+                            buffer.commit(len);
+                        else
+                            buffer.write(data, offset, len);
                     }
                 } catch (Exception e) {
                     e.printStackTrace();
@@ -150,6 +181,8 @@ public class BufferingThread extends Actor implements Runnable {
             decoder.close();
         }
         decoder = null;
+        prefetched = null;
+        prefetcher.clear();
     }
 
     private void pause(boolean flush) {
@@ -187,19 +220,29 @@ public class BufferingThread extends Actor implements Runnable {
                     return;
                 }
             }
-            decoder = Codecs.getDecoder(track);
+            Prefetcher.Entry entry = prefetcher.take(track);
             currentTrack = track;
             currentByte = 0;
-
-            if (decoder == null || !decoder.open(track)) {
-                currentTrack = null;
-                stop(false);
-                return;
+            prefetched = null;
+            if (entry != null) {
+                // already opened and positioned
+                decoder = entry.getDecoder();
+                prefetched = entry.getData();
+                prefetchedPos = 0;
+                prefetchedLength = entry.getLength();
+                logger.fine("Using prefetched data");
+            } else {
+                decoder = Codecs.openDecoder(track);
+                if (decoder == null) {
+                    currentTrack = null;
+                    stop(false);
+                    return;
+                }
             }
 
             buffer.addNextTrack(currentTrack, decoder.getAudioFormat(), -1, forced);
 
-            if (trackData.getStartPosition() > 0)
+            if (entry == null && trackData.getStartPosition() > 0)
                 decoder.seekSample(trackData.getStartPosition());
             if (trackData.getSubsongIndex() > 0) {
                 cueTotalBytes = AudioMath.samplesToBytes(trackData.getTotalSamples(), decoder.getAudioFormat().getFrameSize());
@@ -208,6 +251,8 @@ public class BufferingThread extends Actor implements Runnable {
             }
 
             start();
+            if (order != null)
+                prefetcher.prefetch(order.peekNext(currentTrack, prefetcher.getTrackCount()));
             logger.fine("Finished opening track");
             if (forced)
                 playingThread.send(Message.FLUSH);
@@ -216,9 +261,24 @@ public class BufferingThread extends Actor implements Runnable {
     }
 
     public void seek(long sample) {
+        if (isPending(Message.Type.SEEK)) {
+            // a newer target is coming, do not waste time on this one
+            //noinspection NonAtomicOperationOnVolatileField
+            coalescedSeeks++;
+            return;
+        }
+        if (active && playingThread.seekInBuffer(sample)) {
+            // target was already decoded, playing thread skipped to it
+            //noinspection NonAtomicOperationOnVolatileField
+            bufferSeeks++;
+            return;
+        }
+        //noinspection NonAtomicOperationOnVolatileField
+        decoderSeeks++;
         boolean oldState = active;
         pause(true);
 
+        prefetched = null;
         if (decoder != null) {
             decoder.seekSample(currentTrack.getTrackData().getStartPosition() + sample);
             currentByte = AudioMath.samplesToBytes(sample, decoder.getAudioFormat().getFrameSize());
@@ -237,10 +297,43 @@ public class BufferingThread extends Actor implements Runnable {
         this.order = order;
     }
 
+    public Prefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
     public boolean isActive() {
         return active;
     }
 
+    /**
+     * @return number of seeks that were done by skipping decoded data
+     */
+    public long getBufferSeeks() {
+        return bufferSeeks;
+    }
+
+    /**
+     * @return number of seeks that flushed the buffer and seeked the decoder
+     */
+    public long getDecoderSeeks() {
+        return decoderSeeks;
+    }
+
+    /**
+     * @return number of seeks skipped because another one was queued
+     *         behind them. Seeks replaced in the queue itself are
+     *         counted by the actor statistics
+     */
+    public long getCoalescedSeeks() {
+        return coalescedSeeks;
+    }
+
+    public void resetSeekCounters() {
+        bufferSeeks = 0;
+        decoderSeeks = 0;
+        coalescedSeeks = 0;
+    }
+
     public void setStopAfterCurrent(boolean stopAfterCurrent) {
         this.stopAfterCurrent = stopAfterCurrent;
     }
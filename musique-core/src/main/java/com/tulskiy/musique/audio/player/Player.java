@@ -17,12 +17,30 @@
 
 package com.tulskiy.musique.audio.player;
 
+import com.tulskiy.musique.audio.IcyInputStream;
+import com.tulskiy.musique.audio.MappedAudioSource;
+import com.tulskiy.musique.audio.StreamStats;
+import com.tulskiy.musique.audio.player.dsp.DSPBank;
+import com.tulskiy.musique.audio.player.dsp.Equalizer;
+import com.tulskiy.musique.audio.player.dsp.ReplayGainProcessor;
+import com.tulskiy.musique.audio.player.dsp.Resampler;
 import com.tulskiy.musique.audio.player.io.AudioOutput;
 import com.tulskiy.musique.audio.player.io.Buffer;
+import com.tulskiy.musique.audio.player.io.BufferPolicy;
+import com.tulskiy.musique.audio.player.io.BufferStats;
 import com.tulskiy.musique.playlist.PlaybackOrder;
 import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.system.Application;
+import com.tulskiy.musique.system.configuration.Configuration;
 
+import javax.management.ObjectName;
+import javax.sound.sampled.AudioFormat;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.tulskiy.musique.audio.player.Actor.Message;
@@ -38,19 +56,199 @@ public class Player {
     private PlayingThread playingThread;
     private BufferingThread bufferingThread;
     private ArrayList<PlayerListener> listeners = new ArrayList<PlayerListener>();
+    private BufferPolicy bufferPolicy;
+    private BufferStats bufferStats;
+    private SeekStats seekStats;
+    private PrefetchStats prefetchStats;
+    private ReplayGainProcessor replayGain = new ReplayGainProcessor();
+    private volatile Equalizer equalizer;
 
     public Player() {
-        Buffer buffer = new Buffer(BUFFER_SIZE);
+        final Configuration config = Application.getInstance().getConfiguration();
+        Buffer buffer = new Buffer(config.getInt("player.bufferSize", BUFFER_SIZE),
+                config.getBoolean("player.directBuffer", false));
+        // decoding and playback loops live as long as the player and
+        // block on monitors, so they get their own platform threads,
+        // only commands go through the actors' shared executor
         playingThread = new PlayingThread(this, buffer);
         Thread t1 = new Thread(playingThread, "Playing Thread");
         t1.setPriority(Thread.MAX_PRIORITY);
         t1.start();
         bufferingThread = new BufferingThread(buffer, playingThread);
+        seekStats = new SeekStats(bufferingThread);
         new Thread(bufferingThread, "Buffer Thread").start();
+
+        bufferPolicy = new BufferPolicy(buffer);
+        config.addPropertyChangeListener("player.bufferSize", new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                bufferPolicy.setBaseSize(config.getInt(evt.getPropertyName(), BUFFER_SIZE));
+            }
+        });
+        config.addPropertyChangeListener("player.maxBufferSize", true, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                bufferPolicy.setMaxSize(config.getInt(evt.getPropertyName(), bufferPolicy.getBaseSize() * 8));
+            }
+        });
+        config.addPropertyChangeListener("player.adaptiveBuffer", true, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                bufferPolicy.setAdaptive(config.getBoolean(evt.getPropertyName(), true));
+            }
+        });
+        config.addPropertyChangeListener("player.crossfade", true, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                playingThread.setCrossfade(config.getInt(evt.getPropertyName(), 0));
+            }
+        });
+        config.addPropertyChangeListener("player.softwareVolume", true, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                getAudioOutput().setForceSoftwareVolume(config.getBoolean(evt.getPropertyName(), false));
+            }
+        });
+        PropertyChangeListener prefetchListener = new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                Prefetcher prefetcher = bufferingThread.getPrefetcher();
+                prefetcher.setSeconds(config.getInt("player.prefetch.seconds", 5));
+                prefetcher.setMaxMemory(config.getInt("player.prefetch.maxMemory", 16 << 20));
+                prefetcher.setReadAhead(config.getInt("player.prefetch.readAhead", 32 << 20));
+                prefetcher.setTrackCount(config.getInt("player.prefetch.tracks", 1));
+            }
+        };
+        config.addPropertyChangeListener("player.prefetch.seconds", prefetchListener);
+        config.addPropertyChangeListener("player.prefetch.maxMemory", prefetchListener);
+        config.addPropertyChangeListener("player.prefetch.readAhead", prefetchListener);
+        config.addPropertyChangeListener("player.prefetch.tracks", true, prefetchListener);
+        config.addPropertyChangeListener("player.mappedInput", true, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                MappedAudioSource.setEnabled(config.getBoolean(evt.getPropertyName(), true));
+            }
+        });
+        config.addPropertyChangeListener("player.stream.bufferSeconds", true, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                IcyInputStream.setBufferSeconds(config.getInt(evt.getPropertyName(), 5));
+            }
+        });
+        config.addPropertyChangeListener("player.stream.reconnectAttempts", true, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                IcyInputStream.setReconnectAttempts(config.getInt(evt.getPropertyName(), 5));
+            }
+        });
+        PropertyChangeListener formatListener = new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                AudioFormat fixed = null;
+                if (config.getBoolean("player.fixedFormat", false)) {
+                    fixed = new AudioFormat(config.getInt("player.outputSampleRate", 44100),
+                            config.getInt("player.outputBits", 16), 2, true, false);
+                }
+                playingThread.setFixedFormat(fixed);
+                playingThread.setResamplerQuality(config.getEnum("player.resampler", Resampler.Quality.SINC));
+            }
+        };
+        config.addPropertyChangeListener("player.outputSampleRate", formatListener);
+        config.addPropertyChangeListener("player.outputBits", formatListener);
+        config.addPropertyChangeListener("player.resampler", formatListener);
+        config.addPropertyChangeListener("player.fixedFormat", true, formatListener);
+
+        PropertyChangeListener replayGainListener = new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                replayGain.setMode(config.getEnum("replaygain.mode", ReplayGainProcessor.Mode.TRACK));
+                replayGain.setPreamp(config.getFloat("replaygain.preamp", 0));
+                replayGain.setPreventClipping(config.getBoolean("replaygain.preventClipping", true));
+                // keep it out of the chain when disabled, so that samples are not converted for nothing
+                getDSPBank().removeProcessor(replayGain);
+                if (config.getBoolean("replaygain.enabled", false))
+                    getDSPBank().addProcessor(replayGain);
+            }
+        };
+        config.addPropertyChangeListener("replaygain.mode", replayGainListener);
+        config.addPropertyChangeListener("replaygain.preamp", replayGainListener);
+        config.addPropertyChangeListener("replaygain.preventClipping", replayGainListener);
+        config.addPropertyChangeListener("replaygain.enabled", true, replayGainListener);
+        PropertyChangeListener equalizerListener = new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                Equalizer old = equalizer;
+                Equalizer eq = old;
+                int bands = config.getInt("equalizer.bands", 10);
+                if (eq == null || eq.getBandCount() != bands) {
+                    eq = new Equalizer(bands == 31 ? Equalizer.BANDS_31 : Equalizer.BANDS_10);
+                }
+                eq.setPreamp(config.getFloat("equalizer.preamp", 0));
+                eq.setGains(Equalizer.parseGains(config.getString("equalizer.gains", "")));
+                // only touch the chain when needed, re-adding resets filter state
+                DSPBank dspBank = getDSPBank();
+                boolean enabled = config.getBoolean("equalizer.enabled", false);
+                boolean present = Arrays.asList(dspBank.getProcessors()).contains(eq);
+                if (old != null && (old != eq || !enabled))
+                    dspBank.removeProcessor(old);
+                if (enabled && (old != eq || !present))
+                    dspBank.addProcessor(eq);
+                equalizer = eq;
+            }
+        };
+        config.addPropertyChangeListener("equalizer.bands", equalizerListener);
+        config.addPropertyChangeListener("equalizer.preamp", equalizerListener);
+        config.addPropertyChangeListener("equalizer.gains", equalizerListener);
+        config.addPropertyChangeListener("equalizer.enabled", true, equalizerListener);
+        addListener(new PlayerListener() {
+            @Override
+            public void onEvent(PlayerEvent e) {
+                if (e.getEventCode() == PlayerEvent.PlayerEventCode.FILE_OPENED)
+                    replayGain.setTrack(getTrack());
+                else if (e.getEventCode() == PlayerEvent.PlayerEventCode.SEEK_FINISHED)
+                    seekStats.seekFinished(getCurrentSample());
+            }
+        });
+
+        bufferStats = new BufferStats(buffer, playingThread.getOutput());
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    bufferStats, new ObjectName(BufferStats.OBJECT_NAME));
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not register buffer statistics", e);
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    seekStats, new ObjectName(SeekStats.OBJECT_NAME));
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not register seek statistics", e);
+        }
+        prefetchStats = new PrefetchStats(bufferingThread.getPrefetcher());
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    prefetchStats, new ObjectName(PrefetchStats.OBJECT_NAME));
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not register prefetch statistics", e);
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    StreamStats.getInstance(), new ObjectName(StreamStats.OBJECT_NAME));
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not register stream statistics", e);
+        }
+        for (Actor actor : new Actor[]{bufferingThread, playingThread}) {
+            ActorStats stats = new ActorStats(actor);
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                        stats, new ObjectName(stats.getObjectName()));
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Could not register actor statistics", e);
+            }
+        }
     }
 
     public void open(Track track) {
-        bufferingThread.send(Message.OPEN, track);
+        bufferingThread.send(Message.open(track));
     }
 
     public void play() {
@@ -60,7 +258,7 @@ public class Player {
                 next();
             } else {
                 if (getPlaybackOrder().trackPlayable(track))
-                    bufferingThread.send(Message.OPEN, track);
+                    bufferingThread.send(Message.open(track));
                 else
                     next();
             }
@@ -72,7 +270,8 @@ public class Player {
     }
 
     public void seek(long sample) {
-        bufferingThread.send(Message.SEEK, sample);
+        seekStats.seekRequested(sample);
+        bufferingThread.send(Message.seek(sample));
     }
 
     public void stop() {
@@ -101,6 +300,34 @@ public class Player {
         return playingThread.getOutput();
     }
 
+    public DSPBank getDSPBank() {
+        return playingThread.getDSPBank();
+    }
+
+    public ReplayGainProcessor getReplayGain() {
+        return replayGain;
+    }
+
+    public Equalizer getEqualizer() {
+        return equalizer;
+    }
+
+    public BufferPolicy getBufferPolicy() {
+        return bufferPolicy;
+    }
+
+    public BufferStats getBufferStats() {
+        return bufferStats;
+    }
+
+    public SeekStats getSeekStats() {
+        return seekStats;
+    }
+
+    public PrefetchStats getPrefetchStats() {
+        return prefetchStats;
+    }
+
     public void addListener(PlayerListener listener) {
         listeners.add(listener);
     }
@@ -17,12 +17,22 @@
 
 package com.tulskiy.musique.audio.player;
 
+import com.tulskiy.musique.audio.player.dsp.Crossfade;
+import com.tulskiy.musique.audio.player.dsp.DSPBank;
+import com.tulskiy.musique.audio.player.dsp.FormatConverter;
+import com.tulskiy.musique.audio.player.dsp.Resampler;
+import com.tulskiy.musique.audio.player.dsp.SampleConverter;
 import com.tulskiy.musique.audio.player.io.AudioOutput;
 import com.tulskiy.musique.audio.player.io.Buffer;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.musique.util.AudioMath;
 
 import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,26 +45,51 @@ import static com.tulskiy.musique.audio.player.PlayerEvent.PlayerEventCode;
 public class PlayingThread extends Actor implements Runnable {
     public final Logger logger = Logger.getLogger(getClass().getName());
     private static final int BUFFER_SIZE = AudioOutput.BUFFER_SIZE;
+    private static final long SEEK_TIMEOUT = 500;
 
     private AudioFormat format;
+    private int frameSize = 1;
     private Player player;
     private Buffer buffer;
     private final Object lock = new Object();
     private AudioOutput output = new AudioOutput();
+    private DSPBank dspBank = new DSPBank();
+    private Crossfade crossfade = new Crossfade();
+    private volatile int crossfadeMillis;
+    private FormatConverter converter = new FormatConverter();
+    private boolean converting;
+    private volatile AudioFormat fixedFormat;
+    private volatile Resampler.Quality resamplerQuality = Resampler.Quality.SINC;
     private Track currentTrack;
     private long currentByte;
     private boolean active = false;
     private double playbackTime;
     private long playbackBytes;
+    private final AtomicReference<SeekRequest> seekRequest = new AtomicReference<SeekRequest>();
+
+    private static class SeekRequest {
+        static final int PENDING = 0, TAKEN = 1, CANCELLED = 2;
+
+        final long sample;
+        final AtomicInteger state = new AtomicInteger(PENDING);
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean success;
+
+        SeekRequest(long sample) {
+            this.sample = sample;
+        }
+    }
 
     public PlayingThread(Player player, Buffer buffer) {
+        super("Playing");
         this.player = player;
         this.buffer = buffer;
+        output.setSoftwareVolume(dspBank.getVolumeControl());
     }
 
     @Override
     public void process(Message message) {
-        switch (message) {
+        switch (message.getType()) {
             case PAUSE:
                 setState(!active);
                 break;
@@ -71,6 +106,7 @@ public class PlayingThread extends Actor implements Runnable {
     }
 
     private void stop() {
+        crossfade.reset();
         output.flush();
         setState(false);
         output.close();
@@ -90,7 +126,6 @@ public class PlayingThread extends Actor implements Runnable {
     @SuppressWarnings({"InfiniteLoopStatement"})
     @Override
     public void run() {
-        byte[] buf = new byte[BUFFER_SIZE];
         while (true) {
             synchronized (lock) {
                 try {
@@ -105,17 +140,32 @@ public class PlayingThread extends Actor implements Runnable {
                     output.start();
                     player.fireEvent(PlayerEventCode.PLAYING_STARTED);
                     out : while (active) {
-                        int len = buffer.read(buf, 0, BUFFER_SIZE);
-                        while (len == -1) {
+                        SeekRequest request = seekRequest.getAndSet(null);
+                        if (request != null && request.state.compareAndSet(SeekRequest.PENDING, SeekRequest.TAKEN)) {
+                            request.success = skipTo(request.sample);
+                            request.done.countDown();
+                        }
+                        ByteBuffer buf = buffer.readSlice(checkCrossfade(readLength()), frameSize);
+                        while (buf == null) {
                             if (!openNext()) {
                                 stop();
                                 break out;
                             }
-                            len = buffer.read(buf, 0, BUFFER_SIZE);
+                            buf = buffer.readSlice(readLength(), frameSize);
                         }
+                        int len = buf.remaining();
                         currentByte += len;
                         playbackBytes += len;
-                        output.write(buf, 0, len);
+                        dspBank.process(buf);
+                        ByteBuffer data = converting ? converter.convert(buf) : buf;
+                        if (crossfade.isHolding()) {
+                            crossfade.hold(data);
+                        } else {
+                            if (crossfade.isMixing())
+                                crossfade.mix(data);
+                            output.write(data);
+                        }
+                        buffer.release(len);
                     }
                 } catch (Exception e) {
                     logger.log(Level.WARNING, "Exception while playing. Stopping now", e);
@@ -138,7 +188,25 @@ public class PlayingThread extends Actor implements Runnable {
                 output.flush();
             }
             format = nextEntry.format;
-            output.init(format);
+            frameSize = format.getFrameSize();
+            AudioFormat lineFormat = format;
+            AudioFormat fixed = fixedFormat;
+            converting = fixed != null && SampleConverter.isSupported(format);
+            if (converting) {
+                // keeps its state if the format is the same as before
+                converter.init(format, fixed, resamplerQuality);
+                if (nextEntry.forced)
+                    converter.reset();
+                lineFormat = fixed;
+            }
+            output.init(lineFormat);
+            dspBank.init(format);
+            if (crossfade.isHolding() && !nextEntry.forced) {
+                crossfade.startMixing();
+            } else {
+                // only allocates if format or length have changed
+                crossfade.init(lineFormat, (int) (lineFormat.getSampleRate() * crossfadeMillis / 1000));
+            }
             if (nextEntry.startSample >= 0) {
                 currentByte = AudioMath.samplesToBytes(nextEntry.startSample, format.getFrameSize());
                 player.fireEvent(PlayerEventCode.SEEK_FINISHED);
@@ -154,6 +222,118 @@ public class PlayingThread extends Actor implements Runnable {
         }
     }
 
+    /**
+     * Try to seek by skipping data that is already in the buffer.
+     * Called by the buffering thread, blocks until the playing thread
+     * has done it, or gives up if it does not respond in time.
+     *
+     * @param sample target sample, relative to the start of the track
+     * @return true if seek is finished, false if the decoder has to seek
+     */
+    public boolean seekInBuffer(long sample) {
+        if (!active)
+            return false;
+        SeekRequest request = new SeekRequest(sample);
+        seekRequest.set(request);
+        try {
+            if (request.done.await(SEEK_TIMEOUT, TimeUnit.MILLISECONDS))
+                return request.success;
+            if (request.state.compareAndSet(SeekRequest.PENDING, SeekRequest.CANCELLED)) {
+                seekRequest.compareAndSet(request, null);
+                return false;
+            }
+            // taken just now, it is going to be quick
+            request.done.await();
+            return request.success;
+        } catch (InterruptedException e) {
+            request.state.compareAndSet(SeekRequest.PENDING, SeekRequest.CANCELLED);
+            return request.state.get() == SeekRequest.TAKEN && request.success;
+        }
+    }
+
+    private boolean skipTo(long sample) {
+        if (format == null || currentTrack == null
+                || crossfade.isHolding() || crossfade.isMixing())
+            return false;
+        Buffer.NextEntry next = buffer.peekNextTrack();
+        if (next != null && next.forced) {
+            // buffer has been flushed for the next one
+            return false;
+        }
+        long skip = AudioMath.samplesToBytes(sample, frameSize) - currentByte;
+        int left = buffer.getBytesLeft();
+        long buffered = left >= 0 ? left : buffer.available();
+        if (skip < 0 || skip > buffered)
+            return false;
+
+        while (skip > 0) {
+            ByteBuffer buf = buffer.readSlice((int) Math.min(skip, BUFFER_SIZE), frameSize);
+            if (buf == null)
+                return false;
+            int len = buf.remaining();
+            buffer.release(len);
+            currentByte += len;
+            skip -= len;
+        }
+        output.flush();
+        if (converting)
+            converter.reset();
+        player.fireEvent(PlayerEventCode.SEEK_FINISHED);
+        return true;
+    }
+
+    /**
+     * Start holding the end of the track if it should be mixed
+     * with the next one, otherwise make sure not to read past
+     * the point where the crossfade starts
+     *
+     * @param len how much to read
+     * @return how much to read
+     */
+    private int checkCrossfade(int len) {
+        if (crossfade.getCapacity() == 0 || crossfade.isHolding() || crossfade.isMixing())
+            return len;
+        Buffer.NextEntry next = buffer.peekNextTrack();
+        if (next == null || next.track == null || next.forced
+                || next.startSample >= 0 || !sameLineFormat(next.format))
+            return len;
+
+        int left = buffer.getBytesLeft();
+        int fade = crossfade.getCapacity();
+        if (converting) {
+            // capacity is in output format, left is in source format
+            AudioFormat out = converter.getOutputFormat();
+            long frames = (long) fade / out.getFrameSize()
+                    * (long) format.getSampleRate() / (long) out.getSampleRate();
+            fade = (int) frames * frameSize;
+        }
+        if (left < 0) {
+            return len;
+        } else if (left <= fade) {
+            crossfade.startHolding();
+            return len;
+        } else {
+            return Math.min(len, left - fade);
+        }
+    }
+
+    /**
+     * @return true if next track will be played without reopening the line
+     */
+    private boolean sameLineFormat(AudioFormat next) {
+        if (converting) {
+            AudioFormat fixed = fixedFormat;
+            return fixed != null && fixed.matches(converter.getOutputFormat())
+                    && SampleConverter.isSupported(next);
+        } else {
+            return format.matches(next);
+        }
+    }
+
+    private int readLength() {
+        return converting ? Math.min(BUFFER_SIZE, converter.getMaxInput()) : BUFFER_SIZE;
+    }
+
     private void updatePlaybackTime() {
         if (format != null) {
             playbackTime = AudioMath.bytesToMillis(
@@ -170,6 +350,36 @@ public class PlayingThread extends Actor implements Runnable {
         return output;
     }
 
+    public DSPBank getDSPBank() {
+        return dspBank;
+    }
+
+    /**
+     * Crossfade can not be longer than the part of the track that is
+     * still in the buffer when the decoder reaches its end, so
+     * long crossfades need bigger buffer.
+     *
+     * @param crossfadeMillis length of the crossfade between tracks,
+     *                        0 to disable. Takes effect on the next track
+     */
+    public void setCrossfade(int crossfadeMillis) {
+        this.crossfadeMillis = Math.max(0, crossfadeMillis);
+    }
+
+    /**
+     * Convert every track to this format, so that the audio line
+     * is never reopened. Takes effect on the next track.
+     *
+     * @param fixedFormat format of the line or null to use format of the track
+     */
+    public void setFixedFormat(AudioFormat fixedFormat) {
+        this.fixedFormat = fixedFormat;
+    }
+
+    public void setResamplerQuality(Resampler.Quality resamplerQuality) {
+        this.resamplerQuality = resamplerQuality;
+    }
+
     public boolean isActive() {
         return active;
     }
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.player;
+
+/**
+ * Read-only view of the prefetch cache for the JMX console.
+ */
+public class PrefetchStats implements PrefetchStatsMBean {
+    public static final String OBJECT_NAME = "com.tulskiy.musique:type=Prefetch";
+
+    private final Prefetcher prefetcher;
+
+    public PrefetchStats(Prefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
+    public long getHits() {
+        return prefetcher.getHits();
+    }
+
+    public long getMisses() {
+        return prefetcher.getMisses();
+    }
+
+    public long getEvictions() {
+        return prefetcher.getEvictions();
+    }
+
+    public int getCachedTracks() {
+        return prefetcher.getCachedTracks();
+    }
+
+    public long getCachedBytes() {
+        return prefetcher.getCachedBytes();
+    }
+
+    public long getMaxMemory() {
+        return prefetcher.getMaxMemory();
+    }
+
+    public void resetStatistics() {
+        prefetcher.resetStatistics();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.player;
+
+/**
+ * Prefetch cache statistics, published over JMX.
+ *
+ * @see Prefetcher
+ */
+public interface PrefetchStatsMBean {
+    /**
+     * @return tracks that were opened from the cache
+     */
+    public long getHits();
+
+    /**
+     * @return tracks that had to be opened without the cache
+     */
+    public long getMisses();
+
+    /**
+     * @return tracks dropped to stay within the memory limit
+     */
+    public long getEvictions();
+
+    public int getCachedTracks();
+
+    /**
+     * @return decoded data held in the cache, bytes
+     */
+    public long getCachedBytes();
+
+    public long getMaxMemory();
+
+    public void resetStatistics();
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.player;
+
+import com.tulskiy.musique.audio.Decoder;
+import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.playlist.TrackData;
+import com.tulskiy.musique.system.Codecs;
+import com.tulskiy.musique.util.AudioMath;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Opens the tracks that are going to be played next and decodes their
+ * first seconds ahead of time, so that a slow disk or a network share
+ * does not leave a gap between tracks.
+ * <p/>
+ * Files are read through once to get them into the OS cache, then a
+ * new decoder is opened and the beginning of the track is decoded into
+ * memory. Everything runs on one low priority thread. When the decoded
+ * data takes more than the memory limit, the oldest tracks are evicted.
+ * Streams are not prefetched, that would open a second connection.
+ */
+public class Prefetcher {
+    private static final int CHUNK_SIZE = 65536;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * Opened decoder, positioned right after the decoded data
+     */
+    public static class Entry {
+        private final Track track;
+        private final Decoder decoder;
+        private final byte[] data;
+        private final int length;
+
+        Entry(Track track, Decoder decoder, byte[] data, int length) {
+            this.track = track;
+            this.decoder = decoder;
+            this.data = data;
+            this.length = length;
+        }
+
+        public Track getTrack() {
+            return track;
+        }
+
+        public Decoder getDecoder() {
+            return decoder;
+        }
+
+        /**
+         * @return decoded PCM from the start of the track, in the decoder's format
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * @return number of valid bytes in {@link #getData()}
+         */
+        public int getLength() {
+            return length;
+        }
+    }
+
+    // guarded by cache
+    private final LinkedHashMap<Track, Entry> cache = new LinkedHashMap<Track, Entry>();
+    private final Set<Track> wanted = new HashSet<Track>();
+    private final Set<Track> loading = new HashSet<Track>();
+    private long memory;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Prefetch Thread");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    });
+
+    private volatile int trackCount = 1;
+    private volatile int seconds = 5;
+    private volatile long maxMemory = 16 << 20;
+    private volatile long readAhead = 32 << 20;
+
+    // statistics
+    private volatile long hits;
+    private volatile long misses;
+    private volatile long evictions;
+
+    /**
+     * Forget everything except <code>tracks</code> and start loading the
+     * ones that are not cached yet
+     *
+     * @param tracks upcoming tracks, in the order they are going to be played
+     */
+    public void prefetch(List<Track> tracks) {
+        List<Track> load = new ArrayList<Track>();
+        synchronized (cache) {
+            wanted.clear();
+            for (Track track : tracks) {
+                if (wanted.size() >= trackCount)
+                    break;
+                if (!track.getTrackData().isFile())
+                    continue;
+                wanted.add(track);
+                if (!cache.containsKey(track) && loading.add(track))
+                    load.add(track);
+            }
+
+            Iterator<Map.Entry<Track, Entry>> it = cache.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next().getValue();
+                if (!wanted.contains(entry.track)) {
+                    it.remove();
+                    release(entry);
+                }
+            }
+        }
+
+        for (final Track track : load) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    load(track);
+                }
+            });
+        }
+    }
+
+    /**
+     * Remove the track from the cache. If the track is still being loaded,
+     * the result is discarded
+     *
+     * @param track track that is about to be played
+     * @return cached entry, or null if there was none
+     */
+    public Entry take(Track track) {
+        synchronized (cache) {
+            wanted.remove(track);
+            Entry entry = cache.remove(track);
+            if (entry != null) {
+                memory -= entry.length;
+                //noinspection NonAtomicOperationOnVolatileField
+                hits++;
+            } else if (trackCount > 0) {
+                //noinspection NonAtomicOperationOnVolatileField
+                misses++;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Drop all cached tracks and close their decoders
+     */
+    public void clear() {
+        synchronized (cache) {
+            wanted.clear();
+            for (Entry entry : cache.values()) {
+                release(entry);
+            }
+            cache.clear();
+        }
+    }
+
+    private void release(Entry entry) {
+        memory -= entry.length;
+        entry.decoder.close();
+    }
+
+    private boolean isWanted(Track track) {
+        synchronized (cache) {
+            return wanted.contains(track);
+        }
+    }
+
+    private void load(Track track) {
+        Entry entry = null;
+        try {
+            if (isWanted(track))
+                entry = decode(track);
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Could not prefetch " + track.getTrackData().getLocation(), e);
+        }
+
+        synchronized (cache) {
+            loading.remove(track);
+            if (entry == null)
+                return;
+            if (!wanted.contains(track)) {
+                entry.decoder.close();
+                return;
+            }
+            cache.put(track, entry);
+            memory += entry.length;
+            Iterator<Entry> it = cache.values().iterator();
+            while (memory > maxMemory && cache.size() > 1) {
+                release(it.next());
+                it.remove();
+                //noinspection NonAtomicOperationOnVolatileField
+                evictions++;
+            }
+        }
+    }
+
+    private Entry decode(Track track) throws IOException {
+        TrackData trackData = track.getTrackData();
+        if (!trackData.getFile().exists())
+            return null;
+        // a cue image is one big file, only its start would be read
+        if (!trackData.isCue())
+            readAhead(track, trackData.getFile());
+
+        Decoder decoder = Codecs.openNewDecoder(track);
+        if (decoder == null)
+            return null;
+        Entry entry = null;
+        try {
+            if (trackData.getStartPosition() > 0)
+                decoder.seekSample(trackData.getStartPosition());
+
+            AudioFormat fmt = decoder.getAudioFormat();
+            long limit = AudioMath.samplesToBytes((long) seconds * (int) fmt.getSampleRate(), fmt.getFrameSize());
+            limit = Math.min(limit, maxMemory);
+            byte[] buf = new byte[CHUNK_SIZE];
+            byte[] data = new byte[(int) limit + CHUNK_SIZE];
+            int length = 0;
+            while (length < limit) {
+                if (!isWanted(track))
+                    return null;
+                int len = decoder.decode(buf);
+                if (len == -1)
+                    break;
+                System.arraycopy(buf, 0, data, length, len);
+                length += len;
+            }
+            entry = new Entry(track, decoder, data, length);
+            return entry;
+        } finally {
+            // the decoder is handed over only with the entry
+            if (entry == null)
+                decoder.close();
+        }
+    }
+
+    /**
+     * Read the file once so that the decoder gets it from the OS cache
+     */
+    private void readAhead(Track track, File file) throws IOException {
+        long max = readAhead;
+        if (max <= 0)
+            return;
+        byte[] buf = new byte[CHUNK_SIZE];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            long total = 0;
+            int len;
+            while (total < max && isWanted(track) && (len = in.read(buf)) != -1) {
+                total += len;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return how many upcoming tracks are prefetched, 0 if disabled
+     */
+    public int getTrackCount() {
+        return trackCount;
+    }
+
+    public void setTrackCount(int trackCount) {
+        this.trackCount = Math.max(0, trackCount);
+        if (trackCount <= 0)
+            clear();
+    }
+
+    /**
+     * @return how many seconds are decoded for each track
+     */
+    public int getSeconds() {
+        return seconds;
+    }
+
+    public void setSeconds(int seconds) {
+        this.seconds = Math.max(0, seconds);
+    }
+
+    /**
+     * @return limit for the decoded data of all tracks, in bytes
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    public void setMaxMemory(long maxMemory) {
+        this.maxMemory = Math.max(0, maxMemory);
+    }
+
+    /**
+     * @return how many bytes of each file are read into the OS cache, 0 to disable
+     */
+    public long getReadAhead() {
+        return readAhead;
+    }
+
+    public void setReadAhead(long readAhead) {
+        this.readAhead = readAhead;
+    }
+
+    public int getCachedTracks() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * @return bytes of decoded data held right now
+     */
+    public long getCachedBytes() {
+        synchronized (cache) {
+            return memory;
+        }
+    }
+
+    /**
+     * @return number of tracks that were opened from the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of tracks that had to be opened without the cache
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of tracks dropped to stay within the memory limit
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.player;
+
+import com.tulskiy.musique.util.LatencyHistogram;
+
+/**
+ * Collects seek latency from the moment seek was requested until
+ * the player reports that it has finished.
+ */
+public class SeekStats implements SeekStatsMBean {
+    public static final String OBJECT_NAME = "com.tulskiy.musique:type=Seek";
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final BufferingThread bufferingThread;
+    private volatile long seekTime;
+    private volatile long seekSample = -1;
+
+    public SeekStats(BufferingThread bufferingThread) {
+        this.bufferingThread = bufferingThread;
+    }
+
+    /**
+     * Remember the latest seek request, earlier ones are going to be dropped
+     */
+    public void seekRequested(long sample) {
+        // sample is published last, see seekFinished()
+        seekTime = System.nanoTime();
+        seekSample = sample;
+    }
+
+    public void seekFinished(long sample) {
+        if (sample == seekSample) {
+            latency.record(System.nanoTime() - seekTime);
+            seekSample = -1;
+        }
+    }
+
+    public long getSeekCount() {
+        return getBufferSeeks() + getDecoderSeeks();
+    }
+
+    public long getBufferSeeks() {
+        return bufferingThread.getBufferSeeks();
+    }
+
+    public long getDecoderSeeks() {
+        return bufferingThread.getDecoderSeeks();
+    }
+
+    public long getCoalescedSeeks() {
+        return bufferingThread.getCoalescedSeeks();
+    }
+
+    public long getLatency50() {
+        return latency.getPercentile(50);
+    }
+
+    public long getLatency90() {
+        return latency.getPercentile(90);
+    }
+
+    public long getLatency99() {
+        return latency.getPercentile(99);
+    }
+
+    public long getMaxLatency() {
+        return latency.getMax();
+    }
+
+    public void resetStatistics() {
+        latency.reset();
+        bufferingThread.resetSeekCounters();
+    }
+}
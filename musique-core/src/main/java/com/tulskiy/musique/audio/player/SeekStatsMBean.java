@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.player;
+
+/**
+ * Seek statistics, published over JMX.
+ */
+public interface SeekStatsMBean {
+    public long getSeekCount();
+
+    /**
+     * @return seeks done by skipping already decoded data
+     */
+    public long getBufferSeeks();
+
+    /**
+     * @return seeks that had to go through the decoder
+     */
+    public long getDecoderSeeks();
+
+    /**
+     * @return seeks skipped because a newer one was already queued
+     */
+    public long getCoalescedSeeks();
+
+    /**
+     * @return median time from request to SEEK_FINISHED, microseconds
+     */
+    public long getLatency50();
+
+    public long getLatency90();
+
+    public long getLatency99();
+
+    public long getMaxLatency();
+
+    public void resetStatistics();
+}
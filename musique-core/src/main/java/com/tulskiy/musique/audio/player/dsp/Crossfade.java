@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.dsp;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+
+/**
+ * Mixes the end of one track with the beginning of the next.
+ * <p/>
+ * Playback thread first {@link #hold}s the last samples of the
+ * current track instead of writing them to the output, then mixes
+ * them into the first samples of the next track with {@link #mix}.
+ * Samples are mixed after DSP, so each track keeps its own replay
+ * gain. Storage is allocated in {@link #init}, holding and mixing
+ * do not allocate.
+ */
+public class Crossfade {
+    private AudioFormat format;
+    private int frameSize;
+    private int channels;
+    private float[][] tail = new float[0][0];
+    private float[][] head = new float[0][0];
+    private byte[] transfer = new byte[0];
+    private int capacity;
+    private int tailFrames;
+    private int position;
+    private boolean holding;
+
+    /**
+     * Prepare for the new format, drops held samples
+     *
+     * @param format format of the pcm data
+     * @param frames maximum length of the crossfade in frames
+     */
+    public void init(AudioFormat format, int frames) {
+        reset();
+        this.format = format;
+        if (!SampleConverter.isSupported(format)) {
+            capacity = 0;
+            return;
+        }
+        frameSize = format.getFrameSize();
+        channels = format.getChannels();
+        capacity = frames;
+        if (tail.length != channels || tail[0].length < frames) {
+            tail = new float[channels][frames];
+        }
+        if (head.length != channels) {
+            head = new float[channels][DSPBank.CHUNK_FRAMES];
+        }
+        if (transfer.length < DSPBank.CHUNK_FRAMES * frameSize) {
+            transfer = new byte[DSPBank.CHUNK_FRAMES * frameSize];
+        }
+    }
+
+    /**
+     * @return maximum length of the crossfade in bytes
+     */
+    public int getCapacity() {
+        return capacity * frameSize;
+    }
+
+    /**
+     * Start collecting samples of the current track
+     */
+    public void startHolding() {
+        holding = capacity > 0;
+        tailFrames = 0;
+        position = 0;
+    }
+
+    public boolean isHolding() {
+        return holding;
+    }
+
+    /**
+     * Store pcm data between buffer's position and limit.
+     * Buffer position is not changed. Data that does not fit is dropped.
+     */
+    public void hold(ByteBuffer buf) {
+        int frames = Math.min(buf.remaining() / frameSize, capacity - tailFrames);
+        int pos = buf.position();
+        int done = 0;
+        while (done < frames) {
+            int n = Math.min(DSPBank.CHUNK_FRAMES, frames - done);
+            byte[] pcm;
+            int off;
+            if (buf.hasArray()) {
+                pcm = buf.array();
+                off = buf.arrayOffset() + pos + done * frameSize;
+            } else {
+                buf.position(pos + done * frameSize);
+                buf.get(transfer, 0, n * frameSize);
+                pcm = transfer;
+                off = 0;
+            }
+            SampleConverter.toFloat(pcm, off, head, n, format);
+            for (int ch = 0; ch < channels; ch++) {
+                System.arraycopy(head[ch], 0, tail[ch], tailFrames, n);
+            }
+            tailFrames += n;
+            done += n;
+        }
+        buf.position(pos);
+    }
+
+    /**
+     * Stop holding, following calls to {@link #mix} will fade the
+     * held samples out
+     */
+    public void startMixing() {
+        holding = false;
+        position = 0;
+    }
+
+    public boolean isMixing() {
+        return !holding && position < tailFrames;
+    }
+
+    /**
+     * Mix held samples into the pcm data between buffer's position
+     * and limit, with equal power curves. Buffer position is not changed.
+     */
+    public void mix(ByteBuffer buf) {
+        int frames = Math.min(buf.remaining() / frameSize, tailFrames - position);
+        int pos = buf.position();
+        int done = 0;
+        while (done < frames) {
+            int n = Math.min(DSPBank.CHUNK_FRAMES, frames - done);
+            int bytePos = pos + done * frameSize;
+            byte[] pcm;
+            int off;
+            if (buf.hasArray()) {
+                pcm = buf.array();
+                off = buf.arrayOffset() + bytePos;
+            } else {
+                buf.position(bytePos);
+                buf.get(transfer, 0, n * frameSize);
+                pcm = transfer;
+                off = 0;
+            }
+            SampleConverter.toFloat(pcm, off, head, n, format);
+            double scale = Math.PI / 2 / tailFrames;
+            for (int i = 0; i < n; i++) {
+                double angle = (position + i) * scale;
+                float in = (float) Math.sin(angle);
+                float out = (float) Math.cos(angle);
+                for (int ch = 0; ch < channels; ch++) {
+                    head[ch][i] = head[ch][i] * in + tail[ch][position + i] * out;
+                }
+            }
+            SampleConverter.fromFloat(head, pcm, off, n, format);
+            if (!buf.hasArray()) {
+                buf.position(bytePos);
+                buf.put(transfer, 0, n * frameSize);
+            }
+            position += n;
+            done += n;
+        }
+        buf.position(pos);
+    }
+
+    /**
+     * Drop held samples
+     */
+    public void reset() {
+        holding = false;
+        tailFrames = 0;
+        position = 0;
+    }
+}
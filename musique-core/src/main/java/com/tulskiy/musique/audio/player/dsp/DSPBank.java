@@ -17,70 +17,184 @@
 
 package com.tulskiy.musique.audio.player.dsp;
 
-import java.util.ArrayList;
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
 /**
+ * Chain of processors that sits between the playback buffer and
+ * the audio output.
+ * <p/>
+ * PCM data is converted to planar float samples in chunks of
+ * {@link #CHUNK_FRAMES} frames, passed through every processor and
+ * converted back in place. All buffers are allocated on {@link #init},
+ * so steady state playback does not allocate anything.
+ * <p/>
+ * Processors can be added and removed from any thread, the list is
+ * copied on write and picked up on the next call to process.
+ * Software volume is always the last stage, it is skipped while the
+ * volume is at unity.
+ *
  * Author: Denis Tulskiy
  * Date: 26.07.2009
  */
 public class DSPBank {
-    private static final int DEFAULT_SAMPLES_SIZE = (int) (44100 * 4 * 0.2);
+    public static final int CHUNK_FRAMES = 4096;
+    private static final Processor[] EMPTY = new Processor[0];
+
     private final Logger logger = Logger.getLogger(getClass().getName());
 
-    private ArrayList<Processor> processors = new ArrayList<Processor>();
-    private int count;
-    private float[] samples = new float[DEFAULT_SAMPLES_SIZE];
+    private volatile Processor[] processors = EMPTY;
+    // processors that were initialized with current format,
+    // accessed only by playback thread
+    private Processor[] active = EMPTY;
+    private final VolumeControl volume = new VolumeControl();
+    private AudioFormat format;
+    private boolean supported;
+    private float[][] samples = new float[2][CHUNK_FRAMES];
+    private byte[] transfer = new byte[0];
+
+    public synchronized void addProcessor(Processor processor) {
+        Processor[] old = processors;
+        Processor[] p = new Processor[old.length + 1];
+        System.arraycopy(old, 0, p, 0, old.length);
+        p[old.length] = processor;
+        processors = p;
+    }
+
+    public synchronized void removeProcessor(Processor processor) {
+        Processor[] old = processors;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i] == processor) {
+                Processor[] p = new Processor[old.length - 1];
+                System.arraycopy(old, 0, p, 0, i);
+                System.arraycopy(old, i + 1, p, i, old.length - i - 1);
+                processors = p;
+                return;
+            }
+        }
+    }
 
-    public void addProcessor(Processor processor) {
-        processors.add(processor);
+    public Processor[] getProcessors() {
+        return processors.clone();
     }
 
-    public void removeProcessor(Processor processor) {
-        processors.remove(processor);
+    /**
+     * @return software volume applied after all processors
+     */
+    public VolumeControl getVolumeControl() {
+        return volume;
     }
 
-    public void process(byte[] pcm, int off, int len, int bps, boolean bigEndian) {
-        if (processors.size() == 0) {
+    /**
+     * Prepare for processing samples of new format.
+     * Must be called from the playback thread.
+     *
+     * @param format format of the pcm data
+     */
+    public void init(AudioFormat format) {
+        this.format = format;
+        supported = SampleConverter.isSupported(format);
+        if (!supported) {
+            logger.warning("DSP is not supported for format " + format + ", bypassing");
             return;
         }
 
-        int length = len / (bps >> 3);
-        if (samples.length < length) {
-            samples = new float[length + 100];
+        int channels = format.getChannels();
+        if (samples.length < channels) {
+            samples = new float[channels][CHUNK_FRAMES];
+        }
+        int chunkBytes = CHUNK_FRAMES * format.getFrameSize();
+        if (transfer.length < chunkBytes) {
+            transfer = new byte[chunkBytes];
         }
 
-        int j = 0;
-        for (int i = off; i < off + len; i += bps / 8) {
-            if (!bigEndian) {
-                samples[j++] = (float) ((pcm[i] & 0xFF | pcm[i + 1] << 8) / 32767.0);
-            } else {
-                samples[j++] = (float) ((pcm[i + 1] & 0xFF | pcm[i] << 8) / 32767.0);
+        active = processors;
+        for (Processor processor : active) {
+            processor.init(format);
+        }
+        volume.init(format);
+    }
+
+    /**
+     * Process data between buffer's position and limit in place.
+     * Buffer position is not changed.
+     *
+     * @param buf pcm data
+     */
+    public void process(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            process(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        } else if (prepare()) {
+            int pos = buf.position();
+            int len = buf.remaining();
+            int frameSize = format.getFrameSize();
+            int chunkBytes = CHUNK_FRAMES * frameSize;
+            for (int i = 0; i < len; i += chunkBytes) {
+                int n = Math.min(chunkBytes, len - i);
+                buf.position(pos + i);
+                buf.get(transfer, 0, n);
+                convert(transfer, 0, n / frameSize);
+                buf.position(pos + i);
+                buf.put(transfer, 0, n);
             }
+            buf.position(pos);
         }
+    }
 
-        for (int i = 0; i < processors.size(); i++) {
-            processors.get(i).process(samples, len);
+    /**
+     * Process pcm data in place
+     *
+     * @param pcm pcm data
+     * @param off offset in the array
+     * @param len length in bytes, should be multiple of frame size
+     */
+    public void process(byte[] pcm, int off, int len) {
+        if (!prepare()) {
+            return;
         }
 
-        j = 0;
-        for (int i = off; i < off + len; i += bps / 8) {
-            int v = (int) (samples[j] * 32767);
-            if (v > 32767) {
-                v = 32767;
-            }
-            if (v < -32768) {
-                v = -32768;
-            }
-            if (!bigEndian) {
-                pcm[i] = (byte) (v & 0xff);
-                pcm[i + 1] = (byte) (v >> 8 & 0xff);
-            } else {
-                pcm[i + 1] = (byte) (v & 0xff);
-                pcm[i] = (byte) ((v >> 8) & 0xff);
+        int frameSize = format.getFrameSize();
+        int frames = len / frameSize;
+        for (int i = 0; i < frames; i += CHUNK_FRAMES) {
+            convert(pcm, off + i * frameSize, Math.min(CHUNK_FRAMES, frames - i));
+        }
+    }
+
+    private boolean prepare() {
+        Processor[] p = processors;
+        if ((p.length == 0 && !volume.isActive()) || format == null || !supported) {
+            return false;
+        }
+
+        if (p != active) {
+            // init only processors that were added since last call
+            for (Processor processor : p) {
+                if (!contains(active, processor)) {
+                    processor.init(format);
+                }
             }
+            active = p;
+        }
+        return true;
+    }
+
+    private void convert(byte[] pcm, int off, int frames) {
+        int channels = format.getChannels();
+        SampleConverter.toFloat(pcm, off, samples, frames, format);
+        for (Processor processor : active) {
+            processor.process(samples, channels, frames);
+        }
+        volume.process(samples, channels, frames);
+        SampleConverter.fromFloat(samples, pcm, off, frames, format);
+    }
 
-            j++;
+    private static boolean contains(Processor[] array, Processor processor) {
+        for (Processor p : array) {
+            if (p == processor) {
+                return true;
+            }
         }
+        return false;
     }
 }
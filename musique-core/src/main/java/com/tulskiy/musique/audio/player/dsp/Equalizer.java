@@ -0,0 +1,460 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.dsp;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Arrays;
+
+/**
+ * Graphic/parametric equalizer made of cascaded peaking biquads.
+ * <p/>
+ * Filter coefficients for all common sample rates are computed on the
+ * thread that changes the settings and published as an immutable
+ * {@link Bank}. Playing thread only swaps the reference when it sees
+ * a new bank, so moving a slider never blocks or allocates in
+ * {@link #process(float[][], int, int)}.
+ */
+public class Equalizer implements Processor {
+    /**
+     * ISO octave bands
+     */
+    public static final float[] BANDS_10 = {
+            31.25f, 62.5f, 125, 250, 500, 1000, 2000, 4000, 8000, 16000
+    };
+
+    /**
+     * ISO 1/3 octave bands
+     */
+    public static final float[] BANDS_31 = {
+            20, 25, 31.5f, 40, 50, 63, 80, 100, 125, 160,
+            200, 250, 315, 400, 500, 630, 800, 1000, 1250, 1600,
+            2000, 2500, 3150, 4000, 5000, 6300, 8000, 10000, 12500, 16000,
+            20000
+    };
+
+    public static final float MAX_GAIN = 12;
+
+    static final int[] SAMPLE_RATES = {
+            8000, 11025, 16000, 22050, 32000, 44100, 48000,
+            88200, 96000, 176400, 192000
+    };
+
+    private static final int BLOCK = DSPBank.CHUNK_FRAMES;
+    private static final double DENORMAL = 1e-25;
+
+    private final int bands;
+    private final float[] frequencies;
+    private final float[] gains;
+    private final float[] q;
+    private float preamp;
+
+    private volatile Bank bank;
+    // sample rate of the stream, also included into every new bank
+    private volatile int sampleRate = 44100;
+
+    // owned by the playing thread
+    private Bank activeBank;
+    private Section section;
+    // x1, x2, y1, y2 of every band for every channel
+    private double[][] state;
+    // samples are filtered in double precision
+    private final double[] left = new double[BLOCK];
+    private final double[] right = new double[BLOCK];
+
+    /**
+     * Create equalizer with one octave wide bands if there are
+     * 10 frequencies, one third octave wide for 31, and so on.
+     *
+     * @param frequencies center frequencies of the bands, Hz
+     */
+    public Equalizer(float[] frequencies) {
+        this(frequencies, bandwidthToQ(Math.log(frequencies[frequencies.length - 1] / frequencies[0])
+                / Math.log(2) / (frequencies.length - 1)));
+    }
+
+    public Equalizer(float[] frequencies, float q) {
+        bands = frequencies.length;
+        this.frequencies = frequencies.clone();
+        this.gains = new float[bands];
+        this.q = new float[bands];
+        Arrays.fill(this.q, q);
+        state = new double[0][];
+        update();
+    }
+
+    /**
+     * @param octaves bandwidth of the filter in octaves
+     * @return Q of the filter with this bandwidth
+     */
+    public static float bandwidthToQ(double octaves) {
+        double p = Math.pow(2, octaves);
+        return (float) (Math.sqrt(p) / (p - 1));
+    }
+
+    public String getName() {
+        return "Equalizer";
+    }
+
+    public void init(AudioFormat format) {
+        int rate = (int) format.getSampleRate();
+        int channels = format.getChannels();
+        if (state.length != channels) {
+            state = new double[channels][bands * 4];
+        } else {
+            reset();
+        }
+        sampleRate = rate;
+        if (bank.get(rate) == null) {
+            update();
+        }
+        activeBank = null;
+        section = null;
+    }
+
+    public void process(float[][] samples, int channels, int frames) {
+        Bank b = bank;
+        if (b != activeBank) {
+            swap(b);
+        }
+        Section s = section;
+        if (s == null || (s.bands.length == 0 && s.scale == 1))
+            return;
+
+        float scale = s.scale;
+        int ch = 0;
+        // filter recursion is latency bound, two channels
+        // in one loop keep the cpu twice as busy
+        for (; ch + 1 < channels; ch += 2) {
+            float[] l = samples[ch];
+            float[] r = samples[ch + 1];
+            for (int off = 0; off < frames; off += BLOCK) {
+                int len = Math.min(BLOCK, frames - off);
+                load(l, off, left, len);
+                load(r, off, right, len);
+                filter(s, left, state[ch], right, state[ch + 1], len);
+                save(left, l, off, len, scale);
+                save(right, r, off, len, scale);
+            }
+        }
+        if (ch < channels) {
+            float[] x = samples[ch];
+            for (int off = 0; off < frames; off += BLOCK) {
+                int len = Math.min(BLOCK, frames - off);
+                load(x, off, left, len);
+                filter(s, left, state[ch], len);
+                save(left, x, off, len, scale);
+            }
+        }
+    }
+
+    private static void load(float[] src, int off, double[] dst, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[i] = src[off + i];
+        }
+    }
+
+    private static void save(double[] src, float[] dst, int off, int len, float scale) {
+        for (int i = 0; i < len; i++) {
+            dst[off + i] = (float) (src[i] * scale);
+        }
+    }
+
+    /*
+     * Direct form I: a2 * y2 does not depend on the previous
+     * output, so only one multiply-subtract is on the critical path
+     */
+    private static void filter(Section s, double[] x, double[] z, int frames) {
+        int[] active = s.bands;
+        double[] c = s.coefs;
+        for (int k = 0; k < active.length; k++) {
+            int o = k * 5;
+            double b0 = c[o], b1 = c[o + 1], b2 = c[o + 2], a1 = c[o + 3], a2 = c[o + 4];
+            int zo = active[k] * 4;
+            double x1 = z[zo], x2 = z[zo + 1], y1 = z[zo + 2], y2 = z[zo + 3];
+            for (int i = 0; i < frames; i++) {
+                double in = x[i];
+                double t = b0 * in + b1 * x1 + b2 * x2 - a2 * y2;
+                double out = t - a1 * y1;
+                x2 = x1;
+                x1 = in;
+                y2 = y1;
+                y1 = out;
+                x[i] = out;
+            }
+            store(z, zo, x1, x2, y1, y2);
+        }
+    }
+
+    private static void filter(Section s, double[] l, double[] zl, double[] r, double[] zr, int frames) {
+        int[] active = s.bands;
+        double[] c = s.coefs;
+        for (int k = 0; k < active.length; k++) {
+            int o = k * 5;
+            double b0 = c[o], b1 = c[o + 1], b2 = c[o + 2], a1 = c[o + 3], a2 = c[o + 4];
+            int zo = active[k] * 4;
+            double lx1 = zl[zo], lx2 = zl[zo + 1], ly1 = zl[zo + 2], ly2 = zl[zo + 3];
+            double rx1 = zr[zo], rx2 = zr[zo + 1], ry1 = zr[zo + 2], ry2 = zr[zo + 3];
+            for (int i = 0; i < frames; i++) {
+                double lin = l[i];
+                double rin = r[i];
+                double lt = b0 * lin + b1 * lx1 + b2 * lx2 - a2 * ly2;
+                double rt = b0 * rin + b1 * rx1 + b2 * rx2 - a2 * ry2;
+                double lout = lt - a1 * ly1;
+                double rout = rt - a1 * ry1;
+                lx2 = lx1;
+                lx1 = lin;
+                ly2 = ly1;
+                ly1 = lout;
+                rx2 = rx1;
+                rx1 = rin;
+                ry2 = ry1;
+                ry1 = rout;
+                l[i] = lout;
+                r[i] = rout;
+            }
+            store(zl, zo, lx1, lx2, ly1, ly2);
+            store(zr, zo, rx1, rx2, ry1, ry2);
+        }
+    }
+
+    private static void store(double[] z, int off, double x1, double x2, double y1, double y2) {
+        // flush decaying tails to zero, denormals are very slow
+        z[off] = x1;
+        z[off + 1] = x2;
+        z[off + 2] = Math.abs(y1) < DENORMAL ? 0 : y1;
+        z[off + 3] = Math.abs(y2) < DENORMAL ? 0 : y2;
+    }
+
+    private void swap(Bank b) {
+        Section next = b.get(sampleRate);
+        if (next == null) {
+            // init() has not published coefficients for this rate yet,
+            // keep the old ones until it does
+            return;
+        }
+        Section prev = section;
+        for (int band : next.bands) {
+            if (prev == null || !prev.active[band]) {
+                // band is switched on, do not start with stale state
+                for (double[] z : state) {
+                    Arrays.fill(z, band * 4, band * 4 + 4, 0);
+                }
+            }
+        }
+        section = next;
+        activeBank = b;
+    }
+
+    private void reset() {
+        for (double[] z : state) {
+            Arrays.fill(z, 0);
+        }
+    }
+
+    public int getBandCount() {
+        return bands;
+    }
+
+    public synchronized float getFrequency(int band) {
+        return frequencies[band];
+    }
+
+    public synchronized float getGain(int band) {
+        return gains[band];
+    }
+
+    public synchronized float getQ(int band) {
+        return q[band];
+    }
+
+    public synchronized float getPreamp() {
+        return preamp;
+    }
+
+    /**
+     * @param preamp gain applied after the filters, dB
+     */
+    public synchronized void setPreamp(float preamp) {
+        this.preamp = preamp;
+        update();
+    }
+
+    /**
+     * @param band band index
+     * @param gain gain in dB, clamped to +/-{@link #MAX_GAIN}
+     */
+    public synchronized void setGain(int band, float gain) {
+        gains[band] = clampGain(gain);
+        update();
+    }
+
+    /**
+     * Set gains of all bands at once, extra values are ignored,
+     * missing are treated as zero
+     */
+    public synchronized void setGains(float[] gains) {
+        for (int i = 0; i < bands; i++) {
+            this.gains[i] = i < gains.length ? clampGain(gains[i]) : 0;
+        }
+        update();
+    }
+
+    public synchronized float[] getGains() {
+        return gains.clone();
+    }
+
+    /**
+     * Change all parameters of one band
+     *
+     * @param band      band index
+     * @param frequency center frequency, Hz
+     * @param gain      gain, dB
+     * @param q         quality factor of the filter
+     */
+    public synchronized void setBand(int band, float frequency, float gain, float q) {
+        if (frequency <= 0 || q <= 0)
+            throw new IllegalArgumentException("Frequency and Q should be positive");
+        frequencies[band] = frequency;
+        gains[band] = clampGain(gain);
+        this.q[band] = q;
+        update();
+    }
+
+    /**
+     * Parse comma separated list of gains, as stored in configuration
+     */
+    public static float[] parseGains(String value) {
+        if (value == null || value.trim().length() == 0)
+            return new float[0];
+        String[] parts = value.split(",");
+        float[] gains = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                gains[i] = Float.parseFloat(parts[i].trim());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return gains;
+    }
+
+    public static String formatGains(float[] gains) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < gains.length; i++) {
+            if (i > 0)
+                sb.append(",");
+            sb.append(gains[i]);
+        }
+        return sb.toString();
+    }
+
+    private static float clampGain(float gain) {
+        return Math.max(-MAX_GAIN, Math.min(MAX_GAIN, gain));
+    }
+
+    /**
+     * Recompute coefficients and publish them to the playing thread
+     */
+    private synchronized void update() {
+        int rate = sampleRate;
+        int[] rates = SAMPLE_RATES;
+        if (Arrays.binarySearch(rates, rate) < 0) {
+            rates = Arrays.copyOf(rates, rates.length + 1);
+            rates[rates.length - 1] = rate;
+        }
+        Section[] sections = new Section[rates.length];
+        for (int i = 0; i < rates.length; i++) {
+            sections[i] = new Section(rates[i], frequencies, gains, q, preamp);
+        }
+        bank = new Bank(rates, sections);
+    }
+
+    Section getSection(int sampleRate) {
+        return bank.get(sampleRate);
+    }
+
+    /**
+     * Coefficients of all bands for all sample rates, immutable
+     */
+    static class Bank {
+        private final int[] rates;
+        private final Section[] sections;
+
+        Bank(int[] rates, Section[] sections) {
+            this.rates = rates;
+            this.sections = sections;
+        }
+
+        Section get(int sampleRate) {
+            for (int i = 0; i < rates.length; i++) {
+                if (rates[i] == sampleRate)
+                    return sections[i];
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Coefficients for one sample rate. Bands with zero gain
+     * or above Nyquist are left out.
+     */
+    static class Section {
+        final int[] bands;
+        final boolean[] active;
+        // b0, b1, b2, a1, a2 of each active band, normalized by a0
+        final double[] coefs;
+        final float scale;
+
+        Section(int sampleRate, float[] frequencies, float[] gains, float[] q, float preamp) {
+            active = new boolean[frequencies.length];
+            int count = 0;
+            for (int i = 0; i < frequencies.length; i++) {
+                if (gains[i] != 0 && frequencies[i] < sampleRate / 2 * 0.95) {
+                    active[i] = true;
+                    count++;
+                }
+            }
+            bands = new int[count];
+            coefs = new double[count * 5];
+            for (int i = 0, k = 0; i < frequencies.length; i++) {
+                if (!active[i])
+                    continue;
+                bands[k] = i;
+                peaking(sampleRate, frequencies[i], gains[i], q[i], coefs, k * 5);
+                k++;
+            }
+            scale = (float) Math.pow(10, preamp / 20);
+        }
+
+        /**
+         * Peaking EQ from RBJ's Audio EQ Cookbook
+         */
+        static void peaking(double sampleRate, double frequency, double gain, double q,
+                            double[] coefs, int off) {
+            double a = Math.pow(10, gain / 40);
+            double w0 = 2 * Math.PI * frequency / sampleRate;
+            double cos = Math.cos(w0);
+            double alpha = Math.sin(w0) / (2 * q);
+            double a0 = 1 + alpha / a;
+            coefs[off] = (1 + alpha * a) / a0;
+            coefs[off + 1] = -2 * cos / a0;
+            coefs[off + 2] = (1 - alpha * a) / a0;
+            coefs[off + 3] = -2 * cos / a0;
+            coefs[off + 4] = (1 - alpha / a) / a0;
+        }
+    }
+}
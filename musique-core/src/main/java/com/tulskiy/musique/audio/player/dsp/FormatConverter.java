@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.dsp;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Converts pcm data to a fixed output format: sample rate,
+ * sample size and number of channels. Used to keep the audio line
+ * open when tracks of different formats follow each other.
+ * <p/>
+ * Input is processed in chunks of at most {@link DSPBank#CHUNK_FRAMES}
+ * frames, all buffers are allocated on {@link #init}.
+ */
+public class FormatConverter {
+    private static final float MINUS_3DB = (float) Math.sqrt(0.5);
+
+    private AudioFormat inFormat;
+    private AudioFormat outFormat;
+    private Resampler.Quality quality;
+    private Resampler resampler;
+    private float[][] in = new float[0][0];
+    private float[][] mapped = new float[0][0];
+    private float[][] out = new float[0][0];
+    private byte[] transfer = new byte[0];
+    private byte[] bytes = new byte[0];
+    private ByteBuffer result;
+
+    /**
+     * Prepare for conversion. If formats and quality are the same as
+     * in the previous call, state is kept, so there is no gap between
+     * tracks.
+     *
+     * @param inFormat  format of the source
+     * @param outFormat format of the audio line
+     * @param quality   resampling quality
+     */
+    public void init(AudioFormat inFormat, AudioFormat outFormat, Resampler.Quality quality) {
+        if (!SampleConverter.isSupported(inFormat) || !SampleConverter.isSupported(outFormat))
+            throw new IllegalArgumentException("Can not convert " + inFormat + " to " + outFormat);
+        if (this.inFormat != null && this.inFormat.matches(inFormat)
+                && this.outFormat.matches(outFormat) && this.quality == quality)
+            return;
+
+        this.inFormat = inFormat;
+        this.outFormat = outFormat;
+        this.quality = quality;
+        int frames = DSPBank.CHUNK_FRAMES;
+        int inChannels = inFormat.getChannels();
+        int outChannels = outFormat.getChannels();
+        int inRate = (int) inFormat.getSampleRate();
+        int outRate = (int) outFormat.getSampleRate();
+        int outFrames = frames;
+        if (inRate != outRate) {
+            resampler = new Resampler(inRate, outRate, outChannels, frames, quality);
+            outFrames = resampler.getMaxOutput(frames);
+        } else {
+            resampler = null;
+        }
+
+        in = new float[inChannels][frames];
+        mapped = new float[outChannels][frames];
+        out = new float[outChannels][outFrames];
+        transfer = new byte[frames * inFormat.getFrameSize()];
+        bytes = new byte[outFrames * outFormat.getFrameSize()];
+        result = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Forget previous samples, e.g. after a seek
+     */
+    public void reset() {
+        if (resampler != null)
+            resampler.reset();
+    }
+
+    public AudioFormat getOutputFormat() {
+        return outFormat;
+    }
+
+    /**
+     * @return maximum number of input bytes {@link #convert} accepts
+     */
+    public int getMaxInput() {
+        return DSPBank.CHUNK_FRAMES * inFormat.getFrameSize();
+    }
+
+    /**
+     * Convert data between buffer's position and limit. Source
+     * buffer's position is not changed.
+     *
+     * @param buf pcm data, no more than {@link #getMaxInput()} bytes
+     * @return converted data, valid until the next call
+     */
+    public ByteBuffer convert(ByteBuffer buf) {
+        int frames = buf.remaining() / inFormat.getFrameSize();
+        if (frames > DSPBank.CHUNK_FRAMES)
+            throw new IllegalArgumentException("Too many frames: " + frames);
+        if (buf.hasArray()) {
+            SampleConverter.toFloat(buf.array(), buf.arrayOffset() + buf.position(), in, frames, inFormat);
+        } else {
+            int pos = buf.position();
+            buf.get(transfer, 0, frames * inFormat.getFrameSize());
+            buf.position(pos);
+            SampleConverter.toFloat(transfer, 0, in, frames, inFormat);
+        }
+
+        mapChannels(in, inFormat.getChannels(), mapped, outFormat.getChannels(), frames);
+
+        float[][] samples = mapped;
+        if (resampler != null) {
+            frames = resampler.process(mapped, frames, out);
+            samples = out;
+        }
+
+        SampleConverter.fromFloat(samples, bytes, 0, frames, outFormat);
+        result.clear();
+        result.limit(frames * outFormat.getFrameSize());
+        return result;
+    }
+
+    /**
+     * Mono is copied to every channel, 5.1 is downmixed to stereo,
+     * anything else to mono is averaged. Other layouts keep the
+     * channels they have in common and fill the rest with silence.
+     */
+    static void mapChannels(float[][] src, int srcChannels, float[][] dst, int dstChannels, int frames) {
+        if (srcChannels == dstChannels || srcChannels == 1) {
+            for (int ch = 0; ch < dstChannels; ch++) {
+                System.arraycopy(src[srcChannels == 1 ? 0 : ch], 0, dst[ch], 0, frames);
+            }
+        } else if (srcChannels == 6 && dstChannels == 2) {
+            // FL FR FC LFE BL BR
+            float scale = 1 / (1 + 2 * MINUS_3DB);
+            float[] l = dst[0], r = dst[1];
+            for (int i = 0; i < frames; i++) {
+                float c = src[2][i] * MINUS_3DB;
+                l[i] = (src[0][i] + c + src[4][i] * MINUS_3DB) * scale;
+                r[i] = (src[1][i] + c + src[5][i] * MINUS_3DB) * scale;
+            }
+        } else if (dstChannels == 1) {
+            float scale = 1f / srcChannels;
+            float[] m = dst[0];
+            for (int i = 0; i < frames; i++) {
+                float sum = 0;
+                for (int ch = 0; ch < srcChannels; ch++) {
+                    sum += src[ch][i];
+                }
+                m[i] = sum * scale;
+            }
+        } else {
+            for (int ch = 0; ch < dstChannels; ch++) {
+                if (ch < srcChannels)
+                    System.arraycopy(src[ch], 0, dst[ch], 0, frames);
+                else
+                    Arrays.fill(dst[ch], 0, frames, 0);
+            }
+        }
+    }
+}
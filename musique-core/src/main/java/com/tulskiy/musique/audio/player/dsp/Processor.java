@@ -17,12 +17,38 @@
 
 package com.tulskiy.musique.audio.player.dsp;
 
+import javax.sound.sampled.AudioFormat;
+
 /**
+ * A single stage of the DSP chain. Samples are passed in planar form:
+ * one float array per channel, normalized to [-1, 1]. Arrays can be
+ * longer than the number of frames, only the first {@code frames}
+ * values of the first {@code channels} arrays are valid.
+ * <p/>
+ * Processors are called from the playback thread and must not allocate
+ * or block in {@link #process(float[][], int, int)}.
+ *
  * @Author: Denis Tulskiy
  * @Date: 26.07.2009
  */
 public interface Processor {
     public String getName();
 
-    public void process(float[] samples, int len);
+    /**
+     * Called before the first call to process and every time
+     * the output format changes, i.e. when a new track or seek position
+     * is opened. Processors should reset their state here.
+     *
+     * @param format format of the samples that will be processed
+     */
+    public void init(AudioFormat format);
+
+    /**
+     * Process samples in place
+     *
+     * @param samples  planar sample buffers, one per channel
+     * @param channels number of channels
+     * @param frames   number of frames in each channel
+     */
+    public void process(float[][] samples, int channels, int frames);
 }
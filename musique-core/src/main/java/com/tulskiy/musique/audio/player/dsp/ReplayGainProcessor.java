@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.dsp;
+
+import com.tulskiy.musique.audio.replaygain.ReplayGain;
+import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.playlist.TrackData;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Applies track or album replay gain to the current track.
+ * <p/>
+ * If clipping prevention is on, gain is lowered so that the track peak
+ * stays at full scale. Tracks without replay gain are played unchanged.
+ */
+public class ReplayGainProcessor implements Processor {
+    public enum Mode {
+        TRACK, ALBUM
+    }
+
+    private volatile Mode mode = Mode.TRACK;
+    private volatile float preamp;
+    private volatile boolean preventClipping = true;
+    private volatile Track track;
+    private volatile float scale = 1;
+
+    public String getName() {
+        return "ReplayGain";
+    }
+
+    public void init(AudioFormat format) {
+    }
+
+    public void process(float[][] samples, int channels, int frames) {
+        float s = scale;
+        if (s == 1)
+            return;
+        for (int ch = 0; ch < channels; ch++) {
+            float[] x = samples[ch];
+            for (int i = 0; i < frames; i++) {
+                x[i] *= s;
+            }
+        }
+    }
+
+    /**
+     * Set the track that is being played now
+     */
+    public void setTrack(Track track) {
+        this.track = track;
+        update();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+        update();
+    }
+
+    public float getPreamp() {
+        return preamp;
+    }
+
+    /**
+     * @param preamp gain added to replay gain, dB
+     */
+    public void setPreamp(float preamp) {
+        this.preamp = preamp;
+        update();
+    }
+
+    public boolean isPreventClipping() {
+        return preventClipping;
+    }
+
+    public void setPreventClipping(boolean preventClipping) {
+        this.preventClipping = preventClipping;
+        update();
+    }
+
+    /**
+     * @return linear scale applied to the current track
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    private void update() {
+        Track t = track;
+        if (t == null) {
+            scale = 1;
+            return;
+        }
+
+        TrackData trackData = t.getTrackData();
+        float gain = trackData.getTrackGain();
+        float peak = trackData.getTrackPeak();
+        if (mode == Mode.ALBUM && !Float.isNaN(trackData.getAlbumGain())) {
+            gain = trackData.getAlbumGain();
+            peak = trackData.getAlbumPeak();
+        }
+
+        if (Float.isNaN(gain)) {
+            scale = 1;
+            return;
+        }
+
+        float s = ReplayGain.gainToScale(gain + preamp);
+        if (preventClipping && peak > 0 && s * peak > 1)
+            s = 1 / peak;
+        scale = s;
+    }
+}
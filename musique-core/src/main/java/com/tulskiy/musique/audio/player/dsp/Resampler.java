@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.dsp;
+
+import java.util.Arrays;
+
+/**
+ * Streaming sample rate converter for planar float samples.
+ * <p/>
+ * Ratio of the rates is reduced to <code>L/M</code> and every output
+ * sample is computed with one phase of a polyphase filter, all
+ * phases are computed in the constructor. {@link Quality#SINC} uses
+ * Kaiser windowed sinc, {@link Quality#LINEAR} is a two tap linear
+ * interpolator that uses the same machinery but is a lot cheaper.
+ * <p/>
+ * State is kept between calls, so consecutive tracks of the same
+ * format are converted without gaps.
+ */
+public class Resampler {
+    public enum Quality {
+        LINEAR, SINC
+    }
+
+    // taps of the sinc filter when upsampling, more when downsampling
+    static final int SINC_TAPS = 64;
+    private static final double KAISER_BETA = 8;
+    // passband edge relative to the lower Nyquist frequency
+    private static final double CUTOFF = 0.95;
+    private static final int MAX_PHASES = 1024;
+
+    private final int channels;
+    private final int maxFrames;
+    private final int up;
+    private final int down;
+    private final int taps;
+    private final int phases;
+    private final float[] filter;
+    private final float[][] history;
+    // position of the next output sample: index + phase / up
+    private int index;
+    private int phase;
+    private int fill;
+
+    /**
+     * @param inRate    input sample rate
+     * @param outRate   output sample rate
+     * @param channels  number of channels
+     * @param maxFrames maximum number of input frames per call
+     * @param quality   interpolation quality
+     */
+    public Resampler(int inRate, int outRate, int channels, int maxFrames, Quality quality) {
+        if (inRate <= 0 || outRate <= 0)
+            throw new IllegalArgumentException("Sample rate should be positive");
+        int gcd = gcd(inRate, outRate);
+        this.up = outRate / gcd;
+        this.down = inRate / gcd;
+        this.channels = channels;
+        this.maxFrames = maxFrames;
+        this.phases = Math.min(up, MAX_PHASES);
+
+        if (quality == Quality.LINEAR) {
+            taps = 2;
+            filter = new float[phases * taps];
+            for (int p = 0; p < phases; p++) {
+                float f = (float) p / phases;
+                filter[p * 2] = 1 - f;
+                filter[p * 2 + 1] = f;
+            }
+        } else {
+            // cutoff relative to input Nyquist, lower when downsampling
+            double fc = Math.min(1, (double) up / down) * CUTOFF;
+            taps = (int) Math.ceil(SINC_TAPS / Math.min(1, (double) up / down) / 2) * 2;
+            filter = sinc(phases, taps, fc);
+        }
+
+        history = new float[channels][taps + maxFrames];
+        reset();
+    }
+
+    private static float[] sinc(int phases, int taps, double fc) {
+        float[] filter = new float[phases * taps];
+        int half = taps / 2;
+        double i0beta = bessel(KAISER_BETA);
+        for (int p = 0; p < phases; p++) {
+            double frac = (double) p / phases;
+            double sum = 0;
+            double[] h = new double[taps];
+            for (int j = 0; j < taps; j++) {
+                double x = j - (half - 1) - frac;
+                double w = x / half;
+                double window = w * w >= 1 ? 0 : bessel(KAISER_BETA * Math.sqrt(1 - w * w)) / i0beta;
+                double s = x == 0 ? 1 : Math.sin(Math.PI * fc * x) / (Math.PI * fc * x);
+                h[j] = fc * s * window;
+                sum += h[j];
+            }
+            // unity gain at DC for every phase
+            for (int j = 0; j < taps; j++) {
+                filter[p * taps + j] = (float) (h[j] / sum);
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Modified Bessel function of the first kind, order 0
+     */
+    private static double bessel(double x) {
+        double sum = 1;
+        double term = 1;
+        for (int k = 1; k < 50; k++) {
+            term *= (x / 2 / k) * (x / 2 / k);
+            sum += term;
+            if (term < sum * 1e-12)
+                break;
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * @param frames number of input frames
+     * @return maximum number of frames one call to process can produce
+     */
+    public int getMaxOutput(int frames) {
+        return (int) ((long) (frames + taps) * up / down) + 2;
+    }
+
+    /**
+     * Convert a block of samples
+     *
+     * @param in     input samples
+     * @param frames number of input frames, no more than maxFrames
+     * @param out    output samples, should have room for
+     *               {@link #getMaxOutput(int)} frames
+     * @return number of output frames
+     */
+    public int process(float[][] in, int frames, float[][] out) {
+        if (frames > maxFrames)
+            throw new IllegalArgumentException("Too many frames: " + frames);
+        for (int ch = 0; ch < channels; ch++) {
+            System.arraycopy(in[ch], 0, history[ch], fill, frames);
+        }
+        fill += frames;
+
+        int half = taps / 2;
+        int produced = 0;
+        int idx = index;
+        int ph = phase;
+        // need taps / 2 samples after the current position
+        while (idx + half < fill) {
+            int base = idx - half + 1;
+            int offset = (int) ((long) ph * phases / up) * taps;
+            for (int ch = 0; ch < channels; ch++) {
+                float[] x = history[ch];
+                float sum = 0;
+                for (int j = 0; j < taps; j++) {
+                    sum += filter[offset + j] * x[base + j];
+                }
+                out[ch][produced] = sum;
+            }
+            produced++;
+            ph += down;
+            idx += ph / up;
+            ph %= up;
+        }
+
+        // keep what is needed for the next outputs
+        int keep = Math.min(idx - half + 1, fill);
+        for (int ch = 0; ch < channels; ch++) {
+            System.arraycopy(history[ch], keep, history[ch], 0, fill - keep);
+        }
+        fill -= keep;
+        index = idx - keep;
+        phase = ph;
+        return produced;
+    }
+
+    /**
+     * Forget previous samples
+     */
+    public void reset() {
+        for (float[] h : history) {
+            Arrays.fill(h, 0);
+        }
+        // first output is centered on the first input sample
+        index = taps / 2 - 1;
+        fill = index;
+        phase = 0;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.dsp;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Converts interleaved integer PCM to planar float samples and back.
+ * <p/>
+ * Format dispatch is done once per call, every format has its own loop
+ * without branches inside, so JIT can unroll them. Channels are
+ * processed one at a time, so output arrays are written sequentially.
+ * <p/>
+ * Supported formats are 8 bit signed and unsigned, 16, 24 and 32 bit
+ * signed, little and big endian. Conversion of 8, 16 and 24 bit samples
+ * is lossless. 32 bit samples are limited by float precision to 24 bits.
+ */
+public class SampleConverter {
+    private static final float S8 = 1f / 128;
+    private static final float S16 = 1f / 32768;
+    private static final float S24 = 1f / 8388608;
+    private static final float S32 = 1f / 2147483648f;
+
+    private static final float MAX8 = 127f / 128;
+    private static final float MAX16 = 32767f / 32768;
+    private static final float MAX24 = 8388607f / 8388608;
+    // largest float below 1.0, (1 - 2^-31) rounds up to 1
+    private static final float MAX32 = 1f - 1f / 16777216;
+
+    public static boolean isSupported(AudioFormat fmt) {
+        AudioFormat.Encoding enc = fmt.getEncoding();
+        int bits = fmt.getSampleSizeInBits();
+        if (enc == AudioFormat.Encoding.PCM_UNSIGNED)
+            return bits == 8;
+        return enc == AudioFormat.Encoding.PCM_SIGNED &&
+                (bits == 8 || bits == 16 || bits == 24 || bits == 32) &&
+                fmt.getFrameSize() == fmt.getChannels() * (bits >> 3);
+    }
+
+    /**
+     * Converts interleaved PCM to planar float samples
+     *
+     * @param src    pcm data
+     * @param off    offset in the pcm data
+     * @param dst    destination arrays, one per channel
+     * @param frames number of frames to convert
+     * @param fmt    format of the pcm data
+     */
+    public static void toFloat(byte[] src, int off, float[][] dst, int frames, AudioFormat fmt) {
+        int channels = fmt.getChannels();
+        int frameSize = fmt.getFrameSize();
+        boolean bigEndian = fmt.isBigEndian();
+        switch (fmt.getSampleSizeInBits()) {
+            case 8:
+                if (fmt.getEncoding() == AudioFormat.Encoding.PCM_UNSIGNED)
+                    u8ToFloat(src, off, dst, frames, channels, frameSize);
+                else
+                    s8ToFloat(src, off, dst, frames, channels, frameSize);
+                break;
+            case 16:
+                if (bigEndian)
+                    s16beToFloat(src, off, dst, frames, channels, frameSize);
+                else
+                    s16leToFloat(src, off, dst, frames, channels, frameSize);
+                break;
+            case 24:
+                if (bigEndian)
+                    s24beToFloat(src, off, dst, frames, channels, frameSize);
+                else
+                    s24leToFloat(src, off, dst, frames, channels, frameSize);
+                break;
+            case 32:
+                if (bigEndian)
+                    s32beToFloat(src, off, dst, frames, channels, frameSize);
+                else
+                    s32leToFloat(src, off, dst, frames, channels, frameSize);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported format: " + fmt);
+        }
+    }
+
+    /**
+     * Converts planar float samples back to interleaved PCM.
+     * Values out of [-1, 1] range are clipped.
+     *
+     * @param src    source arrays, one per channel
+     * @param dst    pcm data
+     * @param off    offset in the pcm data
+     * @param frames number of frames to convert
+     * @param fmt    format of the pcm data
+     */
+    public static void fromFloat(float[][] src, byte[] dst, int off, int frames, AudioFormat fmt) {
+        int channels = fmt.getChannels();
+        int frameSize = fmt.getFrameSize();
+        boolean bigEndian = fmt.isBigEndian();
+        switch (fmt.getSampleSizeInBits()) {
+            case 8:
+                if (fmt.getEncoding() == AudioFormat.Encoding.PCM_UNSIGNED)
+                    floatToU8(src, dst, off, frames, channels, frameSize);
+                else
+                    floatToS8(src, dst, off, frames, channels, frameSize);
+                break;
+            case 16:
+                if (bigEndian)
+                    floatToS16be(src, dst, off, frames, channels, frameSize);
+                else
+                    floatToS16le(src, dst, off, frames, channels, frameSize);
+                break;
+            case 24:
+                if (bigEndian)
+                    floatToS24be(src, dst, off, frames, channels, frameSize);
+                else
+                    floatToS24le(src, dst, off, frames, channels, frameSize);
+                break;
+            case 32:
+                if (bigEndian)
+                    floatToS32be(src, dst, off, frames, channels, frameSize);
+                else
+                    floatToS32le(src, dst, off, frames, channels, frameSize);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported format: " + fmt);
+        }
+    }
+
+    private static void u8ToFloat(byte[] src, int off, float[][] dst, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = dst[ch];
+            for (int i = 0, p = off + ch; i < frames; i++, p += frameSize) {
+                out[i] = ((src[p] & 0xFF) - 128) * S8;
+            }
+        }
+    }
+
+    private static void s8ToFloat(byte[] src, int off, float[][] dst, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = dst[ch];
+            for (int i = 0, p = off + ch; i < frames; i++, p += frameSize) {
+                out[i] = src[p] * S8;
+            }
+        }
+    }
+
+    private static void s16leToFloat(byte[] src, int off, float[][] dst, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = dst[ch];
+            for (int i = 0, p = off + ch * 2; i < frames; i++, p += frameSize) {
+                out[i] = ((src[p] & 0xFF) | (src[p + 1] << 8)) * S16;
+            }
+        }
+    }
+
+    private static void s16beToFloat(byte[] src, int off, float[][] dst, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = dst[ch];
+            for (int i = 0, p = off + ch * 2; i < frames; i++, p += frameSize) {
+                out[i] = ((src[p] << 8) | (src[p + 1] & 0xFF)) * S16;
+            }
+        }
+    }
+
+    private static void s24leToFloat(byte[] src, int off, float[][] dst, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = dst[ch];
+            for (int i = 0, p = off + ch * 3; i < frames; i++, p += frameSize) {
+                out[i] = ((src[p] & 0xFF) | ((src[p + 1] & 0xFF) << 8) | (src[p + 2] << 16)) * S24;
+            }
+        }
+    }
+
+    private static void s24beToFloat(byte[] src, int off, float[][] dst, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = dst[ch];
+            for (int i = 0, p = off + ch * 3; i < frames; i++, p += frameSize) {
+                out[i] = ((src[p] << 16) | ((src[p + 1] & 0xFF) << 8) | (src[p + 2] & 0xFF)) * S24;
+            }
+        }
+    }
+
+    private static void s32leToFloat(byte[] src, int off, float[][] dst, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = dst[ch];
+            for (int i = 0, p = off + ch * 4; i < frames; i++, p += frameSize) {
+                out[i] = ((src[p] & 0xFF) | ((src[p + 1] & 0xFF) << 8) |
+                        ((src[p + 2] & 0xFF) << 16) | (src[p + 3] << 24)) * S32;
+            }
+        }
+    }
+
+    private static void s32beToFloat(byte[] src, int off, float[][] dst, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = dst[ch];
+            for (int i = 0, p = off + ch * 4; i < frames; i++, p += frameSize) {
+                out[i] = ((src[p] << 24) | ((src[p + 1] & 0xFF) << 16) |
+                        ((src[p + 2] & 0xFF) << 8) | (src[p + 3] & 0xFF)) * S32;
+            }
+        }
+    }
+
+    private static void floatToU8(float[][] src, byte[] dst, int off, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = src[ch];
+            for (int i = 0, p = off + ch; i < frames; i++, p += frameSize) {
+                int v = (int) (Math.max(-1f, Math.min(MAX8, in[i])) * 128);
+                dst[p] = (byte) (v + 128);
+            }
+        }
+    }
+
+    private static void floatToS8(float[][] src, byte[] dst, int off, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = src[ch];
+            for (int i = 0, p = off + ch; i < frames; i++, p += frameSize) {
+                dst[p] = (byte) (Math.max(-1f, Math.min(MAX8, in[i])) * 128);
+            }
+        }
+    }
+
+    private static void floatToS16le(float[][] src, byte[] dst, int off, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = src[ch];
+            for (int i = 0, p = off + ch * 2; i < frames; i++, p += frameSize) {
+                int v = (int) (Math.max(-1f, Math.min(MAX16, in[i])) * 32768);
+                dst[p] = (byte) v;
+                dst[p + 1] = (byte) (v >> 8);
+            }
+        }
+    }
+
+    private static void floatToS16be(float[][] src, byte[] dst, int off, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = src[ch];
+            for (int i = 0, p = off + ch * 2; i < frames; i++, p += frameSize) {
+                int v = (int) (Math.max(-1f, Math.min(MAX16, in[i])) * 32768);
+                dst[p] = (byte) (v >> 8);
+                dst[p + 1] = (byte) v;
+            }
+        }
+    }
+
+    private static void floatToS24le(float[][] src, byte[] dst, int off, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = src[ch];
+            for (int i = 0, p = off + ch * 3; i < frames; i++, p += frameSize) {
+                int v = (int) (Math.max(-1f, Math.min(MAX24, in[i])) * 8388608);
+                dst[p] = (byte) v;
+                dst[p + 1] = (byte) (v >> 8);
+                dst[p + 2] = (byte) (v >> 16);
+            }
+        }
+    }
+
+    private static void floatToS24be(float[][] src, byte[] dst, int off, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = src[ch];
+            for (int i = 0, p = off + ch * 3; i < frames; i++, p += frameSize) {
+                int v = (int) (Math.max(-1f, Math.min(MAX24, in[i])) * 8388608);
+                dst[p] = (byte) (v >> 16);
+                dst[p + 1] = (byte) (v >> 8);
+                dst[p + 2] = (byte) v;
+            }
+        }
+    }
+
+    private static void floatToS32le(float[][] src, byte[] dst, int off, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = src[ch];
+            for (int i = 0, p = off + ch * 4; i < frames; i++, p += frameSize) {
+                int v = (int) (Math.max(-1f, Math.min(MAX32, in[i])) * 2147483648f);
+                dst[p] = (byte) v;
+                dst[p + 1] = (byte) (v >> 8);
+                dst[p + 2] = (byte) (v >> 16);
+                dst[p + 3] = (byte) (v >> 24);
+            }
+        }
+    }
+
+    private static void floatToS32be(float[][] src, byte[] dst, int off, int frames, int channels, int frameSize) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = src[ch];
+            for (int i = 0, p = off + ch * 4; i < frames; i++, p += frameSize) {
+                int v = (int) (Math.max(-1f, Math.min(MAX32, in[i])) * 2147483648f);
+                dst[p] = (byte) (v >> 24);
+                dst[p + 1] = (byte) (v >> 16);
+                dst[p + 2] = (byte) (v >> 8);
+                dst[p + 3] = (byte) v;
+            }
+        }
+    }
+}
@@ -19,24 +19,76 @@ package com.tulskiy.musique.audio.player.dsp;
 
 import com.tulskiy.musique.audio.player.PlayerListener;
 
+import javax.sound.sampled.AudioFormat;
 import java.util.ArrayList;
 
 /**
+ * Software volume. Changes of the volume are applied as a short
+ * linear ramp, so moving the slider does not click.
+ *
  * @Author: Denis Tulskiy
  * @Date: 26.07.2009
  */
 public class VolumeControl implements Processor {
+    // length of the ramp between two volume levels, avoids zipper noise
+    public static final int RAMP_MILLIS = 30;
+
     private static ArrayList<PlayerListener> listeners = new ArrayList<PlayerListener>();
-    private double value;
+    private volatile float value = 1;
+
+    // owned by the playback thread
+    private float gain = 1;
+    private float rampTarget = 1;
+    private float step;
+    private int rampLeft;
+    private int rampFrames = 44100 * RAMP_MILLIS / 1000;
 
     public String getName() {
         return "Fader";
     }
 
-    public void process(float[] samples, int len) {
-        for (int i = 0; i < len; i++) {
-            samples[i] *= value;
+    public void init(AudioFormat format) {
+        rampFrames = Math.max(1, (int) (format.getSampleRate() * RAMP_MILLIS / 1000));
+        // nothing has been played yet, no need to ramp
+        gain = rampTarget = value;
+        rampLeft = 0;
+    }
+
+    public void process(float[][] samples, int channels, int frames) {
+        float v = value;
+        if (v != rampTarget) {
+            rampTarget = v;
+            rampLeft = rampFrames;
+            step = (v - gain) / rampFrames;
+        }
+
+        int ramp = Math.min(rampLeft, frames);
+        for (int ch = 0; ch < channels; ch++) {
+            float[] s = samples[ch];
+            float g = gain;
+            for (int i = 0; i < ramp; i++) {
+                g += step;
+                s[i] *= g;
+            }
+            if (ramp == rampLeft)
+                g = rampTarget;
+            if (g != 1) {
+                for (int i = ramp; i < frames; i++) {
+                    s[i] *= g;
+                }
+            }
         }
+
+        rampLeft -= ramp;
+        gain = rampLeft == 0 ? rampTarget : gain + step * ramp;
+    }
+
+    /**
+     * @return true if the gain is not unity now or soon will not be,
+     *         i.e. samples need processing
+     */
+    public boolean isActive() {
+        return value != 1 || gain != 1;
     }
 
     public void addActionListener(PlayerListener listener) {
@@ -44,6 +96,10 @@ public class VolumeControl implements Processor {
     }
 
     public void setVolume(double value) {
-        this.value = value;
+        this.value = (float) value;
+    }
+
+    public float getVolume() {
+        return value;
     }
 }
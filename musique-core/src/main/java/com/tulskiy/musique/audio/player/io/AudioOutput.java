@@ -17,7 +17,10 @@
 
 package com.tulskiy.musique.audio.player.io;
 
+import com.tulskiy.musique.audio.player.dsp.VolumeControl;
+
 import javax.sound.sampled.*;
+import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
 /**
@@ -29,17 +32,22 @@ public class AudioOutput {
     private final Logger logger = Logger.getLogger(getClass().getName());
 
     private SourceDataLine line;
-    private FloatControl volumeControl;
-    private boolean mixerChanged;
+    private volatile FloatControl volumeControl;
+    private boolean lineChanged;
     private Mixer mixer;
     private float volume = 1f;
     private boolean linearVolume = false;
+    // used when the line has no volume control or it is forced
+    private VolumeControl softwareVolume;
+    private boolean forceSoftwareVolume;
+    private byte[] transfer;
+    private int bufferSize = BUFFER_SIZE;
 
     public void init(AudioFormat fmt) throws LineUnavailableException {
         //if it is same format and the line is opened, do nothing
         if (line != null && line.isOpen()) {
-            if (mixerChanged || !line.getFormat().matches(fmt)) {
-                mixerChanged = false;
+            if (lineChanged || !line.getFormat().matches(fmt)) {
+                lineChanged = false;
                 line.drain();
                 line.close();
                 line = null;
@@ -48,7 +56,7 @@ public class AudioOutput {
             }
         }
         logger.fine("Audio format: " + fmt);
-        DataLine.Info info = new DataLine.Info(SourceDataLine.class, fmt, BUFFER_SIZE);
+        DataLine.Info info = new DataLine.Info(SourceDataLine.class, fmt, bufferSize);
         logger.fine("Dataline info: " + info);
         if (mixer != null && mixer.isLineSupported(info)) {
             line = (SourceDataLine) mixer.getLine(info);
@@ -58,17 +66,17 @@ public class AudioOutput {
             mixer = null;
         }
         logger.fine("Line: " + line);
-        line.open(fmt, BUFFER_SIZE);
+        line.open(fmt, bufferSize);
         line.start();
+        volumeControl = null;
         if (line.isControlSupported(FloatControl.Type.VOLUME)) {
             volumeControl = (FloatControl) line.getControl(FloatControl.Type.VOLUME);
-            volumeControl.setValue(volume * volumeControl.getMaximum());
             linearVolume = true;
         } else if (line.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
             volumeControl = (FloatControl) line.getControl(FloatControl.Type.MASTER_GAIN);
-            volumeControl.setValue(linearToDb(volume));
             linearVolume = false;
         }
+        setVolume(volume);
     }
 
     public void stop() {
@@ -100,18 +108,49 @@ public class AudioOutput {
         line.write(buf, offset, len);
     }
 
+    /**
+     * Write all remaining bytes of the buffer to the line.
+     * Heap buffers are written without copying, data from direct
+     * buffers has to go through an intermediate array since
+     * SourceDataLine only accepts arrays.
+     *
+     * @param buf data to write
+     */
+    public void write(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            int len = buf.remaining();
+            line.write(buf.array(), buf.arrayOffset() + buf.position(), len);
+            buf.position(buf.position() + len);
+        } else {
+            if (transfer == null)
+                transfer = new byte[BUFFER_SIZE];
+            while (buf.hasRemaining()) {
+                int len = Math.min(transfer.length, buf.remaining());
+                buf.get(transfer, 0, len);
+                line.write(transfer, 0, len);
+            }
+        }
+    }
+
     public void setVolume(float volume) {
         this.volume = volume;
-        if (volumeControl != null) {
-            if (linearVolume)
-                volumeControl.setValue(volumeControl.getMaximum() * volume);
-            else
-                volumeControl.setValue(linearToDb(volume));
+        // line can be reopened by the playing thread meanwhile
+        FloatControl control = volumeControl;
+        if (forceSoftwareVolume || control == null) {
+            if (softwareVolume != null)
+                softwareVolume.setVolume(volume);
+            return;
         }
+        if (softwareVolume != null)
+            softwareVolume.setVolume(1);
+        if (linearVolume)
+            control.setValue(control.getMaximum() * volume);
+        else
+            control.setValue(Math.max(control.getMinimum(), linearToDb(volume)));
     }
 
     public float getVolume(boolean actual) {
-        if (actual && volumeControl != null) {
+        if (actual && !isSoftwareVolume()) {
             if (linearVolume)
                 return this.volumeControl.getValue() / volumeControl.getMaximum();
             else
@@ -120,6 +159,31 @@ public class AudioOutput {
             return volume;
     }
 
+    /**
+     * @return true if volume is applied to samples instead of the line
+     */
+    public boolean isSoftwareVolume() {
+        return forceSoftwareVolume || volumeControl == null;
+    }
+
+    /**
+     * Always use software volume, even if the line has volume control.
+     * Some mixers expose controls that do nothing or click.
+     */
+    public void setForceSoftwareVolume(boolean forceSoftwareVolume) {
+        this.forceSoftwareVolume = forceSoftwareVolume;
+        setVolume(volume);
+    }
+
+    /**
+     * @param softwareVolume gain stage to use when the line can not
+     *                       change the volume
+     */
+    public void setSoftwareVolume(VolumeControl softwareVolume) {
+        this.softwareVolume = softwareVolume;
+        setVolume(volume);
+    }
+
     private float linearToDb(double volume) {
         return (float) (20 * Math.log10(volume));
     }
@@ -133,7 +197,7 @@ public class AudioOutput {
             mixer = null;
         else
             mixer = AudioSystem.getMixer(info);
-        mixerChanged = true;
+        lineChanged = true;
     }
 
     public Mixer.Info getMixer() {
@@ -151,7 +215,31 @@ public class AudioOutput {
         if (line != null)
             return line.available();
         else
-            return BUFFER_SIZE;
+            return bufferSize;
+    }
+
+    /**
+     * @return actual size of the line's buffer, or requested
+     *         size if the line is not open
+     */
+    public int getBufferSize() {
+        if (line != null && line.isOpen())
+            return line.getBufferSize();
+        else
+            return bufferSize;
+    }
+
+    /**
+     * Set size of the line's buffer. The line will be reopened
+     * with the new size when the next track starts.
+     *
+     * @param bufferSize size in bytes
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize > 0 && bufferSize != this.bufferSize) {
+            this.bufferSize = bufferSize;
+            lineChanged = true;
+        }
     }
 
     public void drain() {
@@ -20,23 +20,44 @@ package com.tulskiy.musique.audio.player.io;
 import com.tulskiy.musique.playlist.Track;
 
 import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Author: Denis Tulskiy
  * Date: 1/15/11
  */
 public class Buffer {
-    private RingBuffer buffer;
+    public static final int HISTOGRAM_BUCKETS = 10;
+
+    private LockFreeRingBuffer buffer;
     private BlockingQueue<NextEntry> trackQueue = new LinkedBlockingDeque<NextEntry>();
     private Queue<Integer> when = new LinkedList<Integer>();
     private int bytesLeft = 0;
 
+    private BufferPolicy policy;
+    // whether data has been flowing since the last flush
+    private volatile boolean flowing = false;
+    private volatile long underruns = 0;
+    private AtomicLongArray fillHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+    // reader's copy of a frame that wraps around the end of the ring
+    private ByteBuffer frame;
+    private boolean frameCopied;
+
     public Buffer(int size) {
-        buffer = new RingBuffer(size);
+        this(size, false);
+    }
+
+    /**
+     * @param size   size of the buffer in bytes
+     * @param direct whether to keep the data outside of java heap
+     */
+    public Buffer(int size, boolean direct) {
+        buffer = new LockFreeRingBuffer(size, direct);
     }
 
     public Buffer() {
@@ -47,7 +68,30 @@ public class Buffer {
         buffer.put(b, off, len);
     }
 
+    /**
+     * Get a slice of free space for decoder to write to directly.
+     * Must be followed by {@link #commit(int)}.
+     *
+     * @param len size of the slice
+     * @return slice positioned at its start
+     * @see LockFreeRingBuffer#reserve(int)
+     */
+    public ByteBuffer reserve(int len) {
+        return buffer.reserve(len);
+    }
+
+    /**
+     * Publish <code>len</code> bytes written to the last reserved slice
+     *
+     * @param len number of bytes written
+     */
+    public void commit(int len) {
+        buffer.commit(len);
+    }
+
     public void addNextTrack(Track track, AudioFormat format, long startSample, boolean forced) {
+        if (policy != null && track != null && startSample == -1)
+            policy.trackOpened(track);
         int bytesLeft = available();
         for (Integer left : when) {
             bytesLeft -= left;
@@ -76,16 +120,119 @@ public class Buffer {
         return nextEntry;
     }
 
+    /**
+     * @return next queued track, without taking it from the queue,
+     *         or null if the decoder has not reached the end of current track
+     */
+    public NextEntry peekNextTrack() {
+        return trackQueue.peek();
+    }
+
+    /**
+     * Only known when the next track is queued, see {@link #peekNextTrack()}
+     *
+     * @return number of bytes left in the current track, or -1 if unknown
+     */
+    public int getBytesLeft() {
+        return bytesLeft;
+    }
+
     public int read(byte[] b, int off, int len) {
         if (bytesLeft > 0) {
             if (bytesLeft < len) {
                 len = bytesLeft;
             }
-            bytesLeft -= len;
         } else if (bytesLeft == 0) {
             return -1;
         }
-        return buffer.get(b, off, len);
+        beforeRead();
+        int read = buffer.get(b, off, len);
+        if (read > 0)
+            flowing = true;
+        if (bytesLeft > 0 && read > 0)
+            bytesLeft -= read;
+        return read;
+    }
+
+    /**
+     * Get a slice of data to read directly from the buffer memory.
+     * Must be followed by {@link #release(int)}.
+     *
+     * @param len maximum number of bytes to read
+     * @return slice positioned at its start or null if current track has ended
+     * @see LockFreeRingBuffer#getSlice(int)
+     */
+    public ByteBuffer readSlice(int len) {
+        return readSlice(len, 1);
+    }
+
+    /**
+     * Same as {@link #readSlice(int)}, but the slice always holds a whole
+     * number of frames, as required by the audio line and DSP.
+     * If a frame is split by the end of the ring, it is copied out
+     * to a separate buffer.
+     *
+     * @param len       maximum number of bytes to read
+     * @param frameSize frame size in bytes
+     * @return slice positioned at its start or null if current track has ended
+     */
+    public ByteBuffer readSlice(int len, int frameSize) {
+        if (bytesLeft > 0) {
+            if (bytesLeft < len) {
+                len = bytesLeft;
+            }
+        } else if (bytesLeft == 0) {
+            return null;
+        }
+        beforeRead();
+        ByteBuffer slice = buffer.getSlice(len);
+        if (slice != null) {
+            flowing = true;
+            int rem = slice.remaining() % frameSize;
+            if (rem != 0) {
+                if (slice.remaining() == rem) {
+                    slice = readSplitFrame(frameSize);
+                } else {
+                    slice.limit(slice.limit() - rem);
+                }
+            }
+        }
+        if (bytesLeft > 0 && slice != null)
+            bytesLeft -= slice.remaining();
+        return slice;
+    }
+
+    private ByteBuffer readSplitFrame(int frameSize) {
+        if (frame == null || frame.capacity() != frameSize)
+            frame = ByteBuffer.allocate(frameSize);
+        frame.clear();
+        byte[] b = frame.array();
+        int n = 0;
+        while (n < frameSize) {
+            int read = buffer.get(b, n, frameSize - n);
+            if (read == -1)
+                break;
+            n += read;
+        }
+        if (n == 0)
+            return null;
+        frame.limit(n);
+        frameCopied = true;
+        return frame;
+    }
+
+    /**
+     * Give the space of the last slice back to the writer
+     *
+     * @param len number of bytes consumed
+     */
+    public void release(int len) {
+        if (frameCopied) {
+            // already taken out of the ring by readSplitFrame
+            frameCopied = false;
+        } else {
+            buffer.release(len);
+        }
     }
 
     public synchronized int available() {
@@ -97,9 +244,75 @@ public class Buffer {
     }
 
     public void flush() {
+        flowing = false;
         buffer.empty();
     }
 
+    /**
+     * Change size of the buffer, takes effect next time the buffer
+     * runs empty, e.g. after a flush.
+     *
+     * @param size new size in bytes
+     * @see LockFreeRingBuffer#resize(int)
+     */
+    public void resize(int size) {
+        buffer.resize(size);
+    }
+
+    public BufferPolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(BufferPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @return number of times reader found the buffer empty while
+     *         data was supposed to be flowing
+     */
+    public long getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * Fill level of the buffer sampled on every read.
+     * Bucket <code>i</code> counts reads that found the buffer
+     * filled between <code>i * 100 / HISTOGRAM_BUCKETS</code> and
+     * <code>(i + 1) * 100 / HISTOGRAM_BUCKETS</code> percent.
+     *
+     * @return copy of the histogram
+     */
+    public long[] getFillHistogram() {
+        long[] ret = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = fillHistogram.get(i);
+        }
+        return ret;
+    }
+
+    public void resetStatistics() {
+        underruns = 0;
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            fillHistogram.set(i, 0);
+        }
+    }
+
+    private void beforeRead() {
+        int available = buffer.getAvailable();
+        int size = buffer.size();
+        int bucket = (int) ((long) available * HISTOGRAM_BUCKETS / size);
+        fillHistogram.incrementAndGet(Math.min(bucket, HISTOGRAM_BUCKETS - 1));
+
+        if (available == 0 && flowing && !buffer.isEOF()) {
+            // only the reading thread updates it
+            //noinspection NonAtomicOperationOnVolatileField
+            underruns++;
+            if (policy != null)
+                policy.underrun();
+        }
+    }
+
     public class NextEntry {
         public Track track;
         public AudioFormat format;
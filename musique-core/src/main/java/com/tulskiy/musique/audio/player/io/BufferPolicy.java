@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.io;
+
+import com.tulskiy.musique.playlist.Track;
+
+import java.util.logging.Logger;
+
+/**
+ * Decides how big the playback buffer should be.
+ * <p/>
+ * Buffer starts with the base size. If adaptive sizing is on, every
+ * underrun doubles the size up to the maximum, which mostly happens
+ * with network streams. When a local file is opened and playback of local
+ * files has not underrun since the last change, the buffer goes back
+ * to the base size to save memory.
+ */
+public class BufferPolicy {
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    private final Buffer buffer;
+    private int baseSize;
+    private int maxSize;
+    private boolean adaptive = true;
+
+    private int currentSize;
+    private volatile boolean stream;
+    private volatile boolean localUnderrun;
+
+    public BufferPolicy(Buffer buffer) {
+        this.buffer = buffer;
+        baseSize = buffer.size();
+        maxSize = baseSize * 8;
+        currentSize = baseSize;
+        buffer.setPolicy(this);
+    }
+
+    /**
+     * Called by the buffer when a new track is queued
+     *
+     * @param track track that is going to be decoded next
+     */
+    synchronized void trackOpened(Track track) {
+        stream = track.getTrackData().isStream();
+        if (!stream && !localUnderrun && currentSize > baseSize) {
+            logger.fine("Shrinking buffer back to " + baseSize + " bytes");
+            setCurrentSize(baseSize);
+        }
+    }
+
+    /**
+     * Called by the buffer when reader finds it empty
+     */
+    synchronized void underrun() {
+        if (!stream)
+            localUnderrun = true;
+        if (adaptive && currentSize < maxSize) {
+            int size = (int) Math.min((long) currentSize * 2, maxSize);
+            logger.fine("Buffer underrun, growing buffer to " + size + " bytes");
+            setCurrentSize(size);
+        }
+    }
+
+    private synchronized void setCurrentSize(int size) {
+        if (size != currentSize) {
+            currentSize = size;
+            localUnderrun = false;
+            buffer.resize(size);
+        }
+    }
+
+    public int getBaseSize() {
+        return baseSize;
+    }
+
+    public synchronized void setBaseSize(int baseSize) {
+        if (baseSize <= 0)
+            return;
+        this.baseSize = baseSize;
+        if (maxSize < baseSize)
+            maxSize = baseSize;
+        if (!adaptive || currentSize < baseSize)
+            setCurrentSize(baseSize);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(maxSize, baseSize);
+        if (currentSize > this.maxSize)
+            setCurrentSize(this.maxSize);
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public synchronized void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        if (!adaptive)
+            setCurrentSize(baseSize);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.io;
+
+/**
+ * Read-only view of the playback buffer state for the status bar
+ * and the JMX console.
+ */
+public class BufferStats implements BufferStatsMBean {
+    public static final String OBJECT_NAME = "com.tulskiy.musique:type=PlaybackBuffer";
+
+    private Buffer buffer;
+    private AudioOutput output;
+
+    public BufferStats(Buffer buffer, AudioOutput output) {
+        this.buffer = buffer;
+        this.output = output;
+    }
+
+    public int getBufferSize() {
+        return buffer.size();
+    }
+
+    public int getLineBufferSize() {
+        return output.getBufferSize();
+    }
+
+    public int getFillLevel() {
+        return (int) ((long) buffer.available() * 100 / buffer.size());
+    }
+
+    public long getUnderruns() {
+        return buffer.getUnderruns();
+    }
+
+    public long[] getFillHistogram() {
+        return buffer.getFillHistogram();
+    }
+
+    public void resetStatistics() {
+        buffer.resetStatistics();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.io;
+
+/**
+ * Playback buffer statistics, published over JMX.
+ *
+ * @see BufferStats
+ */
+public interface BufferStatsMBean {
+    /**
+     * @return current size of the playback buffer in bytes
+     */
+    public int getBufferSize();
+
+    /**
+     * @return size of the audio line's buffer in bytes
+     */
+    public int getLineBufferSize();
+
+    /**
+     * @return how full the playback buffer is, in percent
+     */
+    public int getFillLevel();
+
+    /**
+     * @return number of underruns since start or the last reset
+     */
+    public long getUnderruns();
+
+    /**
+     * @return fill level histogram, see {@link Buffer#getFillHistogram()}
+     */
+    public long[] getFillHistogram();
+
+    public void resetStatistics();
+}
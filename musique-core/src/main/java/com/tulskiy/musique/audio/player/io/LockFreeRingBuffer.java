@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer/single-consumer ring buffer for PCM data.
+ * <p/>
+ * One thread writes, one thread reads. Neither side takes a lock: the read
+ * and write positions are monotonically growing counters that each side
+ * publishes with a volatile write, and the capacity is a power of two so
+ * wrap-around is a mask instead of a division. A thread only parks when
+ * the buffer is really empty (reader) or full (writer) and is unparked by
+ * the other side as soon as it makes progress.
+ * <p/>
+ * Besides copying with {@link #put} and {@link #get}, both sides can work
+ * on the buffer memory directly: writer gets a contiguous slice with
+ * {@link #reserve}, fills it and publishes it with {@link #commit}, reader
+ * gets a slice with {@link #getSlice} and gives it back with
+ * {@link #release}. To keep reserved slices contiguous, the storage has
+ * an overhang of {@link #MAX_SLICE} bytes after the end of the ring, the
+ * part of a slice that lands there is moved to the beginning on commit.
+ * <p/>
+ * {@link #empty()} may be called from a third thread, it discards everything
+ * that was written so far and wakes up both sides.
+ * <p/>
+ * Capacity can be changed with {@link #resize}. The new storage is
+ * allocated by the writer the next time it finds the buffer empty, since
+ * that is the only moment the reader can not be looking at the old one.
+ *
+ * @see RingBuffer the old monitor-based implementation
+ */
+public class LockFreeRingBuffer extends LockFreeRingBufferFields {
+    public static final int MAX_SLICE = 65536;
+
+    private final boolean direct;
+    private volatile Storage storage;
+    private volatile int requestedCapacity;
+
+    // reader's state
+    private long sliceHead;
+
+    // writer's state
+    private long reservedTail;
+
+    /**
+     * Creates a heap buffer which can hold at least <code>size</code> bytes.
+     * Size is rounded up to the next power of two.
+     *
+     * @param size minimal size of the buffer
+     */
+    public LockFreeRingBuffer(int size) {
+        this(size, false);
+    }
+
+    /**
+     * Creates a buffer which can hold at least <code>size</code> bytes.
+     * Size is rounded up to the next power of two.
+     *
+     * @param size   minimal size of the buffer
+     * @param direct whether to allocate the storage outside of java heap
+     */
+    public LockFreeRingBuffer(int size, boolean direct) {
+        this.direct = direct;
+        storage = new Storage(checkSize(size), direct);
+        requestedCapacity = storage.capacity;
+    }
+
+    private static int checkSize(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("Buffer size must be positive: " + size);
+        return nextPowerOfTwo(size);
+    }
+
+    static int nextPowerOfTwo(int size) {
+        int n = Integer.highestOneBit(size);
+        return n == size ? n : n << 1;
+    }
+
+    /**
+     * @return capacity of the buffer
+     */
+    public int size() {
+        return storage.capacity;
+    }
+
+    /**
+     * Change capacity of the buffer. Takes effect when writer finds
+     * the buffer empty, data is never discarded because of resize.
+     *
+     * @param size minimal size of the buffer, rounded up to the next
+     *             power of two
+     */
+    public void resize(int size) {
+        requestedCapacity = checkSize(size);
+    }
+
+    /**
+     * @return true if storage is allocated outside of java heap
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @return number of bytes that can be read without blocking
+     */
+    public int getAvailable() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * @return number of bytes that can be written without blocking
+     */
+    public int putAvailable() {
+        return size() - getAvailable();
+    }
+
+    /**
+     * Write data to the buffer. Blocks until all bytes are written.
+     *
+     * @param data   source array
+     * @param offset offset in the source array
+     * @param len    number of bytes to write
+     */
+    public void put(byte[] data, int offset, int len) {
+        if (len == 0) return;
+        eof = false;
+
+        while (len > 0) {
+            Storage s = writerStorage();
+            long t = tail;
+            int free = (int) (s.capacity - (t - head));
+            if (free == 0) {
+                waitForSpace(s, 1);
+                continue;
+            }
+
+            int l = Math.min(len, free);
+            int pos = (int) t & s.mask;
+            int first = Math.min(l, s.capacity - pos);
+            s.copyIn(data, offset, pos, first);
+            if (first < l)
+                s.copyIn(data, offset + first, 0, l - first);
+
+            tail = t + l;
+            offset += l;
+            len -= l;
+            wakeUp(reader);
+        }
+    }
+
+    /**
+     * Get a contiguous slice of free space to write to. Blocks until
+     * <code>len</code> bytes are free. The returned buffer is positioned
+     * at the start of the slice and its limit is set to the end of it.
+     * It is reused, so it is only valid until the next call to this method.
+     * Data written to the slice becomes visible to the reader
+     * after {@link #commit}.
+     *
+     * @param len size of the slice, not greater than {@link #MAX_SLICE}
+     *            or the capacity of the buffer
+     * @return buffer positioned at the start of the slice
+     */
+    public ByteBuffer reserve(int len) {
+        eof = false;
+        Storage s;
+        while (true) {
+            s = writerStorage();
+            if (len > s.overhang)
+                throw new IllegalArgumentException("Slice is too big: " + len);
+            if (s.capacity - (tail - head) >= len)
+                break;
+            waitForSpace(s, len);
+        }
+
+        reservedTail = tail;
+        int pos = (int) reservedTail & s.mask;
+        s.writeView.limit(pos + len).position(pos);
+        return s.writeView;
+    }
+
+    /**
+     * Publish data written to the slice returned by the last {@link #reserve}.
+     *
+     * @param len number of bytes written to the slice
+     */
+    public void commit(int len) {
+        if (len <= 0) return;
+        Storage s = storage;
+        int pos = (int) reservedTail & s.mask;
+        int wrapped = pos + len - s.capacity;
+        if (wrapped > 0) {
+            // move the part written to the overhang to the beginning
+            s.unwrap(wrapped);
+        }
+        tail = reservedTail + len;
+        wakeUp(reader);
+    }
+
+    /**
+     * Read data from the buffer. Blocks while the buffer is empty,
+     * unless end of stream has been reached.
+     *
+     * @param data   destination array
+     * @param offset offset in the destination array
+     * @param len    maximum number of bytes to read
+     * @return number of bytes read or -1 if buffer is empty and EOF is set
+     */
+    public int get(byte[] data, int offset, int len) {
+        if (len == 0) return 0;
+
+        while (true) {
+            long h = awaitData();
+            if (h == -1)
+                return -1;
+
+            Storage s = storage;
+            int l = available(s, h, len);
+            int pos = (int) h & s.mask;
+            int first = Math.min(l, s.capacity - pos);
+            s.copyOut(pos, data, offset, first);
+            if (first < l)
+                s.copyOut(0, data, offset + first, l - first);
+
+            // empty() could have moved head while we were copying,
+            // in this case the data we copied is already discarded
+            if (!casHead(h, h + l))
+                continue;
+
+            wakeUp(writer);
+            return l;
+        }
+    }
+
+    /**
+     * Get a contiguous slice of data to read from. Blocks while the
+     * buffer is empty, unless end of stream has been reached. The slice
+     * may be shorter than requested when data wraps around the end of
+     * the ring. The returned buffer is reused, so it is only valid until
+     * the next call to this method. The space is not given back to the
+     * writer until {@link #release} is called.
+     *
+     * @param len maximum size of the slice
+     * @return buffer positioned at the start of the slice or null if
+     *         buffer is empty and EOF is set
+     */
+    public ByteBuffer getSlice(int len) {
+        long h = awaitData();
+        if (h == -1)
+            return null;
+
+        Storage s = storage;
+        sliceHead = h;
+        int pos = (int) h & s.mask;
+        int l = Math.min(available(s, h, len), s.capacity - pos);
+        s.readView.limit(pos + l).position(pos);
+        return s.readView;
+    }
+
+    /**
+     * Give the space of the slice returned by the last {@link #getSlice}
+     * back to the writer.
+     *
+     * @param len number of bytes consumed from the slice
+     */
+    public void release(int len) {
+        // if empty() happened in between, the slice is already discarded
+        if (casHead(sliceHead, sliceHead + len))
+            wakeUp(writer);
+    }
+
+    /**
+     * Discard all buffered data and set EOF status.
+     */
+    public void empty() {
+        while (true) {
+            long h = head;
+            if (casHead(h, tail))
+                break;
+        }
+        eof = true;
+        wakeUp(reader);
+        wakeUp(writer);
+    }
+
+    /**
+     * @return True if EOF.
+     */
+    public boolean isEOF() {
+        return eof;
+    }
+
+    /**
+     * @param eof The eof to set.
+     */
+    public void setEOF(boolean eof) {
+        this.eof = eof;
+        if (eof)
+            wakeUp(reader);
+    }
+
+    /**
+     * Wait until there is something to read.
+     *
+     * @return read position the data starts at or -1 if buffer is empty
+     *         and EOF is set
+     */
+    private long awaitData() {
+        while (true) {
+            // read eof before tail, so that data written before
+            // setting eof is not lost
+            boolean end = eof;
+            long h = head;
+            if (tail > h)
+                return h;
+            if (end)
+                return -1;
+            reader = Thread.currentThread();
+            // re-check after publishing ourselves, writer might have
+            // added some data before it could see us
+            if (tail == head && !eof)
+                LockSupport.park(this);
+            reader = null;
+        }
+    }
+
+    /**
+     * Number of bytes reader can take starting from h. If empty() has
+     * moved head in the meantime, this can be anything, so it is clamped
+     * to the capacity to keep copying within the storage.
+     */
+    private int available(Storage s, long h, int len) {
+        return (int) Math.min(Math.min(tail - h, s.capacity), len);
+    }
+
+    private void waitForSpace(Storage s, int len) {
+        writer = Thread.currentThread();
+        if (s.capacity - (tail - head) < len)
+            LockSupport.park(this);
+        writer = null;
+    }
+
+    /**
+     * Storage for the writer, swaps in the storage of requested
+     * capacity if the buffer is empty.
+     */
+    private Storage writerStorage() {
+        Storage s = storage;
+        int capacity = requestedCapacity;
+        if (capacity != s.capacity && tail == head) {
+            s = new Storage(capacity, direct);
+            // tail is published after this, so reader will
+            // see the new storage with the new data
+            storage = s;
+        }
+        return s;
+    }
+
+    private static void wakeUp(Thread thread) {
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    private static class Storage {
+        final int capacity;
+        final int mask;
+        final int overhang;
+        /**
+         * Backing array, null if the buffer is direct
+         */
+        final byte[] array;
+        final ByteBuffer readView;
+        final ByteBuffer writeView;
+        final ByteBuffer wrapView;
+
+        Storage(int capacity, boolean direct) {
+            this.capacity = capacity;
+            mask = capacity - 1;
+            overhang = Math.min(capacity, MAX_SLICE);
+            ByteBuffer buffer;
+            if (direct) {
+                buffer = ByteBuffer.allocateDirect(capacity + overhang);
+                array = null;
+            } else {
+                buffer = ByteBuffer.allocate(capacity + overhang);
+                array = buffer.array();
+            }
+            readView = buffer.duplicate();
+            writeView = buffer.duplicate();
+            wrapView = buffer.duplicate();
+        }
+
+        void copyIn(byte[] data, int offset, int pos, int len) {
+            if (array != null) {
+                System.arraycopy(data, offset, array, pos, len);
+            } else {
+                writeView.limit(pos + len).position(pos);
+                writeView.put(data, offset, len);
+            }
+        }
+
+        void copyOut(int pos, byte[] data, int offset, int len) {
+            if (array != null) {
+                System.arraycopy(array, pos, data, offset, len);
+            } else {
+                readView.limit(pos + len).position(pos);
+                readView.get(data, offset, len);
+            }
+        }
+
+        void unwrap(int len) {
+            if (array != null) {
+                System.arraycopy(array, capacity, array, 0, len);
+            } else {
+                writeView.limit(capacity + len).position(capacity);
+                wrapView.clear();
+                wrapView.put(writeView);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.io;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Field layout for {@link LockFreeRingBuffer}. JVM does not reorder fields
+ * across the class hierarchy, so the padding declared at each level keeps
+ * the read position, the write position and the rest of the buffer state
+ * on separate cache lines and reader and writer do not invalidate
+ * each other's lines on every update.
+ */
+@SuppressWarnings("unused")
+abstract class LockFreeRingBufferFields extends LockFreeRingBufferHead {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    /**
+     * Write position, only the producer moves it.
+     */
+    protected volatile long tail;
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+
+    protected volatile boolean eof;
+    protected volatile Thread reader;
+    protected volatile Thread writer;
+}
+
+@SuppressWarnings("unused")
+abstract class LockFreeRingBufferPad {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class LockFreeRingBufferHead extends LockFreeRingBufferPad {
+    private static final AtomicLongFieldUpdater<LockFreeRingBufferHead> HEAD =
+            AtomicLongFieldUpdater.newUpdater(LockFreeRingBufferHead.class, "head");
+
+    /**
+     * Read position, moved by the consumer and by {@link LockFreeRingBuffer#empty()}.
+     */
+    protected volatile long head;
+
+    protected final boolean casHead(long expect, long update) {
+        return HEAD.compareAndSet(this, expect, update);
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.replaygain;
+
+/**
+ * Integrated loudness meter as described in EBU R128 / ITU-R BS.1770.
+ * <p/>
+ * Samples are K-weighted, mean square is measured in 400 ms blocks
+ * with 75% overlap, blocks are gated at -70 LUFS absolute and -10 LU
+ * relative. Block loudness is kept in a histogram with 0.1 LU
+ * resolution instead of a list of blocks, so memory use does not depend
+ * on track length and histograms of several tracks can be added up to
+ * measure the whole album.
+ * <p/>
+ * Peak is the sample peak, true peak would need oversampling
+ * which is not worth it for replay gain.
+ */
+public class LoudnessMeter {
+    private static final double MIN_LOUDNESS = -70;
+    private static final int HISTOGRAM_SIZE = 1000;
+    private static final double[] HISTOGRAM_ENERGY = new double[HISTOGRAM_SIZE];
+    private static final double ABSOLUTE_GATE = loudnessToEnergy(MIN_LOUDNESS);
+
+    static {
+        for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+            HISTOGRAM_ENERGY[i] = loudnessToEnergy(MIN_LOUDNESS + (i + 0.5) / 10);
+        }
+    }
+
+    private final int channels;
+    private final double[] weights;
+    // K-weighting: high shelf followed by high pass
+    private final double sb0, sb1, sb2, sa1, sa2;
+    private final double ha1, ha2;
+    // x1, x2, y1, y2 of both filters for every channel
+    private final double[][] state;
+
+    private final int subBlockSize;
+    private int subBlockFill;
+    private final double[] subBlocks = new double[4];
+    private long subBlockCount;
+
+    private final long[] histogram = new long[HISTOGRAM_SIZE];
+    private float peak;
+
+    public LoudnessMeter(int sampleRate, int channels) {
+        this.channels = channels;
+        weights = new double[channels];
+        for (int i = 0; i < channels; i++) {
+            // 5.1: LFE is skipped, surround channels are +1.5 dB
+            if (channels == 6 && i == 3)
+                weights[i] = 0;
+            else if (channels == 6 && i > 3)
+                weights[i] = 1.41;
+            else
+                weights[i] = 1;
+        }
+
+        double f0 = 1681.974450955533;
+        double g = 3.999843853973347;
+        double q = 0.7071752369554196;
+        double k = Math.tan(Math.PI * f0 / sampleRate);
+        double vh = Math.pow(10, g / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        sb0 = (vh + vb * k / q + k * k) / a0;
+        sb1 = 2 * (k * k - vh) / a0;
+        sb2 = (vh - vb * k / q + k * k) / a0;
+        sa1 = 2 * (k * k - 1) / a0;
+        sa2 = (1 - k / q + k * k) / a0;
+
+        f0 = 38.13547087602444;
+        q = 0.5003270373238773;
+        k = Math.tan(Math.PI * f0 / sampleRate);
+        a0 = 1 + k / q + k * k;
+        ha1 = 2 * (k * k - 1) / a0;
+        ha2 = (1 - k / q + k * k) / a0;
+
+        state = new double[channels][8];
+        subBlockSize = Math.max(1, sampleRate / 10);
+    }
+
+    /**
+     * Feed planar samples to the meter
+     *
+     * @param samples samples, one array per channel
+     * @param frames  number of frames
+     */
+    public void process(float[][] samples, int frames) {
+        int off = 0;
+        while (off < frames) {
+            int n = Math.min(frames - off, subBlockSize - subBlockFill);
+            double sum = 0;
+            for (int ch = 0; ch < channels; ch++) {
+                if (weights[ch] != 0)
+                    sum += weights[ch] * filter(samples[ch], off, n, state[ch]);
+                else
+                    updatePeak(samples[ch], off, n);
+            }
+            subBlocks[(int) (subBlockCount & 3)] += sum;
+            subBlockFill += n;
+            off += n;
+            if (subBlockFill == subBlockSize) {
+                finishSubBlock();
+            }
+        }
+    }
+
+    private double filter(float[] x, int off, int n, double[] s) {
+        double x1 = s[0], x2 = s[1], y1 = s[2], y2 = s[3];
+        double z1 = s[4], z2 = s[5], w1 = s[6], w2 = s[7];
+        double sum = 0;
+        float max = peak;
+        for (int i = off; i < off + n; i++) {
+            float in = x[i];
+            max = Math.max(max, Math.abs(in));
+            double y = sb0 * in + sb1 * x1 + sb2 * x2 - sa1 * y1 - sa2 * y2;
+            x2 = x1;
+            x1 = in;
+            y2 = y1;
+            y1 = y;
+            double w = y - 2 * z1 + z2 - ha1 * w1 - ha2 * w2;
+            z2 = z1;
+            z1 = y;
+            w2 = w1;
+            w1 = w;
+            sum += w * w;
+        }
+        peak = max;
+        s[0] = x1;
+        s[1] = x2;
+        s[2] = y1;
+        s[3] = y2;
+        s[4] = z1;
+        s[5] = z2;
+        s[6] = w1;
+        s[7] = w2;
+        return sum;
+    }
+
+    private void updatePeak(float[] x, int off, int n) {
+        float max = peak;
+        for (int i = off; i < off + n; i++) {
+            max = Math.max(max, Math.abs(x[i]));
+        }
+        peak = max;
+    }
+
+    private void finishSubBlock() {
+        subBlockCount++;
+        subBlockFill = 0;
+        if (subBlockCount >= 4) {
+            double energy = (subBlocks[0] + subBlocks[1] + subBlocks[2] + subBlocks[3]) / (4 * subBlockSize);
+            if (energy >= ABSOLUTE_GATE) {
+                histogram[histogramIndex(energy)]++;
+            }
+        }
+        subBlocks[(int) (subBlockCount & 3)] = 0;
+    }
+
+    /**
+     * @return integrated loudness in LUFS or negative infinity
+     *         if the track is silent
+     */
+    public double getIntegratedLoudness() {
+        return getIntegratedLoudness(this);
+    }
+
+    /**
+     * @return sample peak, 1.0 is full scale
+     */
+    public float getPeak() {
+        return peak;
+    }
+
+    /**
+     * Integrated loudness of several meters together, i.e. album loudness
+     *
+     * @param meters meters of all tracks, nulls are skipped
+     * @return integrated loudness in LUFS or negative infinity
+     *         if all tracks are silent
+     */
+    public static double getIntegratedLoudness(LoudnessMeter... meters) {
+        long[] total = new long[HISTOGRAM_SIZE];
+        for (LoudnessMeter meter : meters) {
+            if (meter != null) {
+                for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+                    total[i] += meter.histogram[i];
+                }
+            }
+        }
+
+        double sum = 0;
+        long count = 0;
+        for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+            sum += total[i] * HISTOGRAM_ENERGY[i];
+            count += total[i];
+        }
+        if (count == 0)
+            return Double.NEGATIVE_INFINITY;
+
+        double relativeGate = energyToLoudness(sum / count) - 10;
+        int start = Math.max(0, (int) Math.ceil((relativeGate - MIN_LOUDNESS) * 10));
+        sum = 0;
+        count = 0;
+        for (int i = start; i < HISTOGRAM_SIZE; i++) {
+            sum += total[i] * HISTOGRAM_ENERGY[i];
+            count += total[i];
+        }
+        if (count == 0)
+            return Double.NEGATIVE_INFINITY;
+        return energyToLoudness(sum / count);
+    }
+
+    public static float getPeak(LoudnessMeter... meters) {
+        float peak = 0;
+        for (LoudnessMeter meter : meters) {
+            if (meter != null)
+                peak = Math.max(peak, meter.peak);
+        }
+        return peak;
+    }
+
+    private static int histogramIndex(double energy) {
+        int index = (int) ((energyToLoudness(energy) - MIN_LOUDNESS) * 10);
+        return Math.max(0, Math.min(HISTOGRAM_SIZE - 1, index));
+    }
+
+    private static double loudnessToEnergy(double loudness) {
+        return Math.pow(10, (loudness + 0.691) / 10);
+    }
+
+    private static double energyToLoudness(double energy) {
+        return -0.691 + 10 * Math.log10(energy);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.replaygain;
+
+import com.tulskiy.musique.playlist.TrackData;
+
+import java.util.Locale;
+
+/**
+ * ReplayGain 2.0 constants and conversion between {@link TrackData}
+ * values and tag strings.
+ * <p/>
+ * Tag names are the same for all formats, ID3v2 stores them in TXXX
+ * frames, MP4 in iTunes freeform atoms, APE and Vorbis comments as is.
+ */
+public class ReplayGain {
+    /**
+     * Target loudness, LUFS
+     */
+    public static final float REFERENCE_LOUDNESS = -18;
+    /**
+     * Gains are clamped to this range, dB
+     */
+    public static final float MAX_GAIN = 51;
+
+    public static final String TRACK_GAIN = "REPLAYGAIN_TRACK_GAIN";
+    public static final String TRACK_PEAK = "REPLAYGAIN_TRACK_PEAK";
+    public static final String ALBUM_GAIN = "REPLAYGAIN_ALBUM_GAIN";
+    public static final String ALBUM_PEAK = "REPLAYGAIN_ALBUM_PEAK";
+
+    public static final String[] KEYS = {TRACK_GAIN, TRACK_PEAK, ALBUM_GAIN, ALBUM_PEAK};
+
+    /**
+     * @param loudness integrated loudness, LUFS
+     * @return gain needed to bring the loudness to the reference level, dB
+     */
+    public static float loudnessToGain(double loudness) {
+        if (Double.isInfinite(loudness) || Double.isNaN(loudness))
+            return MAX_GAIN;
+        return (float) Math.max(-MAX_GAIN, Math.min(MAX_GAIN, REFERENCE_LOUDNESS - loudness));
+    }
+
+    /**
+     * @param key one of {@link #KEYS}, case insensitive
+     * @return value formatted for the tag or null if the value is unknown
+     */
+    public static String getTagValue(TrackData trackData, String key) {
+        if (TRACK_GAIN.equalsIgnoreCase(key))
+            return formatGain(trackData.getTrackGain());
+        if (TRACK_PEAK.equalsIgnoreCase(key))
+            return formatPeak(trackData.getTrackPeak());
+        if (ALBUM_GAIN.equalsIgnoreCase(key))
+            return formatGain(trackData.getAlbumGain());
+        if (ALBUM_PEAK.equalsIgnoreCase(key))
+            return formatPeak(trackData.getAlbumPeak());
+        return null;
+    }
+
+    /**
+     * Parse tag value and store it in track data
+     *
+     * @param key   one of {@link #KEYS}, case insensitive
+     * @param value tag value, like "-6.50 dB" or "0.988"
+     * @return true if the key is a replay gain key
+     */
+    public static boolean setTagValue(TrackData trackData, String key, String value) {
+        float v = parse(value);
+        if (TRACK_GAIN.equalsIgnoreCase(key))
+            trackData.setTrackGain(v);
+        else if (TRACK_PEAK.equalsIgnoreCase(key))
+            trackData.setTrackPeak(v);
+        else if (ALBUM_GAIN.equalsIgnoreCase(key))
+            trackData.setAlbumGain(v);
+        else if (ALBUM_PEAK.equalsIgnoreCase(key))
+            trackData.setAlbumPeak(v);
+        else
+            return false;
+        return true;
+    }
+
+    public static String formatGain(float gain) {
+        if (Float.isNaN(gain))
+            return null;
+        return String.format(Locale.US, "%.2f dB", gain);
+    }
+
+    public static String formatPeak(float peak) {
+        if (Float.isNaN(peak))
+            return null;
+        return String.format(Locale.US, "%.6f", peak);
+    }
+
+    public static float parse(String value) {
+        if (value == null)
+            return Float.NaN;
+        value = value.trim();
+        if (value.regionMatches(true, Math.max(0, value.length() - 2), "dB", 0, 2))
+            value = value.substring(0, value.length() - 2).trim();
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+
+    /**
+     * @param gain gain, dB
+     * @return linear scale factor
+     */
+    public static float gainToScale(float gain) {
+        return (float) Math.pow(10, gain / 20);
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.replaygain;
+
+import com.tulskiy.musique.audio.Decoder;
+import com.tulskiy.musique.audio.player.dsp.SampleConverter;
+import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.playlist.TrackData;
+import com.tulskiy.musique.system.Application;
+import com.tulskiy.musique.system.Codecs;
+import com.tulskiy.musique.system.TrackIO;
+import com.tulskiy.musique.system.configuration.Configuration;
+import com.tulskiy.musique.util.AudioMath;
+import com.tulskiy.musique.util.Util;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scans tracks and computes ReplayGain 2.0 track and album gain and peak.
+ * <p/>
+ * Every track is decoded on its own worker, by default there is one
+ * worker per core. Tracks are grouped by album artist and album, when
+ * the last track of an album is done, album values are computed and
+ * all tracks of the album are saved to {@link TrackData} and to tags.
+ * <p/>
+ * Scan can be resumed: albums where every track already has album gain
+ * are skipped, so after abort or crash only unfinished albums are
+ * scanned again.
+ */
+public class ReplayGainScanner {
+    private static final int CHUNK_SIZE = 65536;
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final int threads;
+    private final boolean writeTags;
+    private final Object writeLock = new Object();
+
+    private volatile boolean stop;
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger scanned = new AtomicInteger();
+    private final AtomicLong samples = new AtomicLong();
+    private volatile Track track;
+
+    public ReplayGainScanner() {
+        Configuration config = Application.getInstance().getConfiguration();
+        threads = config.getInt("replaygain.scanner.threads", Runtime.getRuntime().availableProcessors());
+        writeTags = config.getBoolean("replaygain.scanner.writeTags", true);
+    }
+
+    /**
+     * @param threads   number of worker threads
+     * @param writeTags whether to write results to file tags
+     */
+    public ReplayGainScanner(int threads, boolean writeTags) {
+        this.threads = threads;
+        this.writeTags = writeTags;
+    }
+
+    /**
+     * Scan tracks, blocks until all tracks are done or {@link #stop()}
+     * is called
+     *
+     * @param tracks tracks to scan
+     * @param force  whether to scan again albums that already have gain
+     */
+    public void scan(List<Track> tracks, boolean force) {
+        stop = false;
+        scanned.set(0);
+        samples.set(0);
+
+        Map<String, Album> albums = new LinkedHashMap<String, Album>();
+        for (Track track : tracks) {
+            TrackData trackData = track.getTrackData();
+            if (!trackData.isFile())
+                continue;
+            String key = albumKey(trackData);
+            Album album = albums.get(key);
+            if (album == null) {
+                album = new Album();
+                albums.put(key, album);
+            }
+            album.tracks.add(track);
+        }
+
+        List<Album> queue = new ArrayList<Album>();
+        for (Album album : albums.values()) {
+            if (force || !album.isScanned())
+                queue.add(album);
+        }
+
+        int count = 0;
+        for (Album album : queue) {
+            count += album.tracks.size();
+        }
+        total.set(count);
+        if (count == 0)
+            return;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ReplayGain Scanner " + ++count);
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+
+        for (final Album album : queue) {
+            album.meters = new LoudnessMeter[album.tracks.size()];
+            album.remaining = new AtomicInteger(album.tracks.size());
+            for (int i = 0; i < album.tracks.size(); i++) {
+                final int index = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (stop)
+                            return;
+                        Track track = album.tracks.get(index);
+                        ReplayGainScanner.this.track = track;
+                        try {
+                            album.meters[index] = measure(track);
+                        } catch (Exception e) {
+                            logger.log(Level.WARNING, "Could not scan track " + track.getTrackData().getLocation(), e);
+                        }
+                        scanned.incrementAndGet();
+                        if (album.remaining.decrementAndGet() == 0 && !stop) {
+                            save(album);
+                        }
+                    }
+                });
+            }
+        }
+
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                if (stop)
+                    executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            stop = true;
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Decode the track and measure its loudness
+     *
+     * @param track track to measure
+     * @return meter or null if track could not be decoded or scan was stopped
+     */
+    public LoudnessMeter measure(Track track) {
+        TrackData trackData = track.getTrackData();
+        Decoder decoder = Codecs.openNewDecoder(track);
+        if (decoder == null) {
+            logger.info("Couldn't initialize decoder for track: " + trackData.getLocation());
+            return null;
+        }
+
+        try {
+            AudioFormat fmt = decoder.getAudioFormat();
+            if (!SampleConverter.isSupported(fmt)) {
+                logger.info("Unsupported format " + fmt + " for track: " + trackData.getLocation());
+                return null;
+            }
+
+            int frameSize = fmt.getFrameSize();
+            long bytesLeft = -1;
+            if (trackData.isCue()) {
+                decoder.seekSample(trackData.getStartPosition());
+                bytesLeft = AudioMath.samplesToBytes(trackData.getTotalSamples(), frameSize);
+            }
+
+            LoudnessMeter meter = new LoudnessMeter((int) fmt.getSampleRate(), fmt.getChannels());
+            byte[] buf = new byte[CHUNK_SIZE];
+            float[][] pcm = new float[fmt.getChannels()][CHUNK_SIZE / frameSize];
+            while (!stop && bytesLeft != 0) {
+                int len = decoder.decode(buf);
+                if (len == -1)
+                    break;
+                if (bytesLeft > 0) {
+                    len = (int) Math.min(len, bytesLeft);
+                    bytesLeft -= len;
+                }
+                int frames = len / frameSize;
+                SampleConverter.toFloat(buf, 0, pcm, frames, fmt);
+                meter.process(pcm, frames);
+                samples.addAndGet(frames);
+            }
+            return stop ? null : meter;
+        } finally {
+            decoder.close();
+        }
+    }
+
+    private void save(Album album) {
+        double loudness = LoudnessMeter.getIntegratedLoudness(album.meters);
+        float albumGain = ReplayGain.loudnessToGain(loudness);
+        float albumPeak = LoudnessMeter.getPeak(album.meters);
+
+        // tag writers are not thread safe
+        synchronized (writeLock) {
+            for (int i = 0; i < album.tracks.size(); i++) {
+                LoudnessMeter meter = album.meters[i];
+                if (meter == null)
+                    continue;
+                Track track = album.tracks.get(i);
+                TrackData trackData = track.getTrackData();
+                trackData.setTrackGain(ReplayGain.loudnessToGain(meter.getIntegratedLoudness()));
+                trackData.setTrackPeak(meter.getPeak());
+                trackData.setAlbumGain(albumGain);
+                trackData.setAlbumPeak(albumPeak);
+                if (writeTags)
+                    TrackIO.write(track);
+            }
+        }
+    }
+
+    private String albumKey(TrackData trackData) {
+        String album = trackData.getAlbum();
+        if (Util.isEmpty(album)) {
+            // every track without album is an album on its own
+            return trackData.getLocation() + "#" + trackData.getSubsongIndex();
+        }
+        return trackData.getAlbumArtist() + "\u0000" + album;
+    }
+
+    public void stop() {
+        stop = true;
+    }
+
+    public Track getTrack() {
+        return track;
+    }
+
+    /**
+     * @return number of tracks to scan
+     */
+    public int getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return number of tracks scanned so far
+     */
+    public int getScanned() {
+        return scanned.get();
+    }
+
+    /**
+     * @return number of samples decoded so far
+     */
+    public long getSamples() {
+        return samples.get();
+    }
+
+    private static class Album {
+        List<Track> tracks = new ArrayList<Track>();
+        LoudnessMeter[] meters;
+        AtomicInteger remaining;
+
+        boolean isScanned() {
+            for (Track track : tracks) {
+                if (Float.isNaN(track.getTrackData().getAlbumGain()))
+                    return false;
+            }
+            return true;
+        }
+    }
+}
@@ -18,27 +18,16 @@
 package com.tulskiy.musique.gui;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 
 import javax.swing.SwingWorker;
 
-import org.jaudiotagger.tag.FieldKey;
-
-import com.tulskiy.musique.gui.model.FieldValues;
 import com.tulskiy.musique.playlist.Playlist;
-import com.tulskiy.musique.playlist.Track;
-import com.tulskiy.musique.util.Util;
 
 /**
 * Author: Denis Tulskiy
 * Date: 11/12/10
 */
 public abstract class SearchWorker extends SwingWorker<Playlist, Integer> {
-    private final FieldKey[] fields = FieldKey.values();
-    // TODO apply correct search metas, looking through all fields at the moment
-//    {
-//            "artist", "title", "album", "albumArtist", "fileName"
-//    };
     private Playlist playlist;
     private String search;
     private boolean fillEmpty;
@@ -54,43 +43,10 @@ public abstract class SearchWorker extends SwingWorker<Playlist, Integer> {
     protected Playlist doInBackground() throws Exception {
         Playlist newPlaylist = new Playlist();
 
-        String str = search.toLowerCase().trim();
-        String[] text = str.split("\\s+");
-        if (!str.isEmpty() && text.length > 0) {
-            for (int i = 0, playlistSize = playlist.size(); i < playlistSize; i++) {
-                Track track = playlist.get(i);
-
-                boolean hasText[] = new boolean[text.length];
-                for (FieldKey field : fields) {
-                    FieldValues values = track.getTrackData().getTagFieldValues(field);
-                    if (values != null) {
-        				for (int k = 0; k < values.size(); k++) {
-        					String value = values.get(k);
-		                    if (!Util.isEmpty(value)) {
-		                        value = value.toLowerCase();
-		                        String[] vals = value.split("\\s+");
-		                        for (String val : vals) {
-		                            for (int j = 0, textLength = text.length; j < textLength; j++) {
-		                                String s = text[j];
-		                                if (val.startsWith(s)) {
-		                                    hasText[j] = true;
-		                                }
-		                            }
-		                        }
-		                    }
-		                }
-                    }
-                }
-
-                boolean toAdd = true;
-                for (boolean b : hasText) {
-                    toAdd &= b;
-                }
-
-                if (toAdd) {
-                    newPlaylist.add(track);
-                    viewToModelList.add(i);
-                }
+        if (!search.trim().isEmpty()) {
+            for (int index : playlist.getSearchIndex().search(search)) {
+                newPlaylist.add(playlist.get(index));
+                viewToModelList.add(index);
             }
         } else if (fillEmpty) {
             newPlaylist.addAll(playlist);
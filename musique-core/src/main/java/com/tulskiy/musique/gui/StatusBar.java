@@ -20,6 +20,7 @@ package com.tulskiy.musique.gui;
 import com.tulskiy.musique.audio.player.Player;
 import com.tulskiy.musique.audio.player.PlayerEvent;
 import com.tulskiy.musique.audio.player.PlayerListener;
+import com.tulskiy.musique.audio.player.io.BufferStats;
 import com.tulskiy.musique.images.Images;
 import com.tulskiy.musique.playlist.formatting.Parser;
 import com.tulskiy.musique.playlist.formatting.tokens.Expression;
@@ -78,6 +79,9 @@ public class StatusBar extends JPanel {
             public void actionPerformed(ActionEvent e) {
                 if (player.isPlaying()) {
                     info.setText((String) statusFormat.eval(player.getTrack()));
+                    BufferStats stats = player.getBufferStats();
+                    info.setToolTipText(String.format("Buffer: %d%% of %d KB, underruns: %d",
+                            stats.getFillLevel(), stats.getBufferSize() / 1024, stats.getUnderruns()));
                 }
             }
         });
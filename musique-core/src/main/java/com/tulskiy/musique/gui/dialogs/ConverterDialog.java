@@ -57,7 +57,7 @@ public class ConverterDialog extends JDialog {
         coders.put("OGG Vorbis", createVorbisSettings());
         coders.put("WavPack", createWavpackSettings());
         coders.put("Monkey's Audio", createAPESettings());
-        coders.put("FLAC", null);
+        coders.put("FLAC", createFLACSettings());
 
         final JComboBox encoder = new JComboBox(coders.keySet().toArray());
 
@@ -319,6 +319,35 @@ public class ConverterDialog extends JDialog {
         return panel;
     }
 
+    private JComponent createFLACSettings() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setName("FLAC Encoder");
+        panel.add(new JLabel("Compression Level"), BorderLayout.PAGE_START);
+        final JSlider slider = new JSlider(0, 8);
+        slider.setMajorTickSpacing(1);
+        slider.setPaintLabels(true);
+        slider.setPaintTicks(true);
+        slider.setSnapToTicks(true);
+        Hashtable<Integer, JLabel> labels = new Hashtable<Integer, JLabel>();
+        labels.put(0, new JLabel("Fast"));
+        labels.put(5, new JLabel("Normal"));
+        labels.put(8, new JLabel("Best"));
+        slider.setLabelTable(labels);
+        slider.setValue(config.getInt("encoder.flac.level", 5));
+        Box box = Box.createVerticalBox();
+        box.add(slider);
+        box.add(Box.createVerticalGlue());
+        panel.add(box, BorderLayout.CENTER);
+
+        panel.addPropertyChangeListener("accept", new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                config.setInt("encoder.flac.level", slider.getValue());
+            }
+        });
+        return panel;
+    }
+
     class ConvertTask extends Task {
         Converter converter = new Converter();
         private List<Track> tracks;
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.gui.dialogs;
+
+import com.tulskiy.musique.audio.player.dsp.Equalizer;
+import com.tulskiy.musique.system.Application;
+import com.tulskiy.musique.system.configuration.Configuration;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+/**
+ * Sliders for equalizer bands. All changes go to configuration,
+ * player picks them up from there.
+ */
+public class EqualizerDialog extends JDialog {
+    // sliders work in tenths of dB
+    private static final int SCALE = 10;
+
+    private Configuration config = Application.getInstance().getConfiguration();
+    private JPanel sliders = new JPanel();
+    private JSlider preamp;
+    private JSlider[] bands;
+
+    public EqualizerDialog(JComponent owner) {
+        super(SwingUtilities.windowForComponent(owner), "Equalizer", ModalityType.MODELESS);
+        setLayout(new BorderLayout());
+
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        final JCheckBox enabled = new JCheckBox("Enabled", config.getBoolean("equalizer.enabled", false));
+        enabled.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                config.setBoolean("equalizer.enabled", enabled.isSelected());
+            }
+        });
+        top.add(enabled);
+
+        final JComboBox bandCount = new JComboBox(new String[]{"10 bands", "31 bands"});
+        bandCount.setSelectedIndex(config.getInt("equalizer.bands", 10) == 31 ? 1 : 0);
+        bandCount.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int count = bandCount.getSelectedIndex() == 1 ? 31 : 10;
+                if (count != config.getInt("equalizer.bands", 10)) {
+                    config.setString("equalizer.gains", "");
+                    config.setInt("equalizer.bands", count);
+                    createSliders();
+                }
+            }
+        });
+        top.add(bandCount);
+
+        JButton reset = new JButton("Reset");
+        reset.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                config.setFloat("equalizer.preamp", 0);
+                config.setString("equalizer.gains", "");
+                createSliders();
+            }
+        });
+        top.add(reset);
+        add(top, BorderLayout.NORTH);
+
+        sliders.setLayout(new BoxLayout(sliders, BoxLayout.LINE_AXIS));
+        sliders.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        add(new JScrollPane(sliders,
+                JScrollPane.VERTICAL_SCROLLBAR_NEVER,
+                JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED), BorderLayout.CENTER);
+        createSliders();
+
+        pack();
+        setLocationRelativeTo(SwingUtilities.windowForComponent(owner));
+    }
+
+    private void createSliders() {
+        sliders.removeAll();
+        float[] frequencies = config.getInt("equalizer.bands", 10) == 31 ?
+                Equalizer.BANDS_31 : Equalizer.BANDS_10;
+        float[] gains = Equalizer.parseGains(config.getString("equalizer.gains", ""));
+
+        ChangeListener listener = new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                if (e.getSource() == preamp) {
+                    config.setFloat("equalizer.preamp", (float) preamp.getValue() / SCALE);
+                } else {
+                    float[] values = new float[bands.length];
+                    for (int i = 0; i < bands.length; i++) {
+                        values[i] = (float) bands[i].getValue() / SCALE;
+                    }
+                    config.setString("equalizer.gains", Equalizer.formatGains(values));
+                }
+            }
+        };
+
+        preamp = createSlider("Preamp", config.getFloat("equalizer.preamp", 0), listener);
+        sliders.add(Box.createHorizontalStrut(10));
+        bands = new JSlider[frequencies.length];
+        for (int i = 0; i < frequencies.length; i++) {
+            float f = frequencies[i];
+            String name = f >= 1000 ? Math.round(f / 100) / 10f + "k" : String.valueOf(Math.round(f));
+            bands[i] = createSlider(name.replace(".0k", "k"), i < gains.length ? gains[i] : 0, listener);
+        }
+        sliders.revalidate();
+        sliders.repaint();
+    }
+
+    private JSlider createSlider(String name, float value, ChangeListener listener) {
+        int max = (int) Equalizer.MAX_GAIN * SCALE;
+        JSlider slider = new JSlider(JSlider.VERTICAL, -max, max, Math.round(value * SCALE));
+        slider.setToolTipText(name);
+        slider.addChangeListener(listener);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(slider, BorderLayout.CENTER);
+        JLabel label = new JLabel(name, SwingConstants.CENTER);
+        label.setFont(label.getFont().deriveFont(10f));
+        panel.add(label, BorderLayout.SOUTH);
+        panel.setPreferredSize(new Dimension(36, 180));
+        sliders.add(panel);
+        return slider;
+    }
+}
@@ -85,7 +85,7 @@ public class SearchDialog extends JDialog {
                 int[] rows = table.getSelectedRows();
                 int[] toSelect = new int[rows.length];
                 for (int i = 0; i < rows.length; i++) {
-                    toSelect[i] = viewToModel.get(rows[i]);
+                    toSelect[i] = playlist.getGroups().toRow(viewToModel.get(rows[i]));
                 }
                 playlistTable.clearSelection();
                 if (toSelect.length > 0)
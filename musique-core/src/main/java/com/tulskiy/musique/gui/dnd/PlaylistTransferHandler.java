@@ -20,6 +20,7 @@ package com.tulskiy.musique.gui.dnd;
 import com.tulskiy.musique.gui.dialogs.ProgressDialog;
 import com.tulskiy.musique.gui.dialogs.Task;
 import com.tulskiy.musique.gui.playlist.PlaylistTable;
+import com.tulskiy.musique.playlist.GroupIndex;
 import com.tulskiy.musique.playlist.Playlist;
 import com.tulskiy.musique.playlist.Track;
 
@@ -98,15 +99,16 @@ public class PlaylistTransferHandler extends TransferHandler {
             }
 
             Playlist playlist = table.getPlaylist();
+            GroupIndex groups = playlist.getGroups();
             int insertRow = 0;
             if (support.isDrop()) {
                 JTable.DropLocation dl = (JTable.DropLocation) support.getDropLocation();
                 int index = dl.getRow();
-                if (index == playlist.size()) {
+                if (index == groups.getRowCount()) {
                     //corner case
-                    insertRow = index;
+                    insertRow = playlist.size();
                 } else {
-                    insertRow = table.convertRowIndexToModel(index);
+                    insertRow = toInsertIndex(groups, table.convertRowIndexToModel(index));
                 }
             }
 
@@ -134,7 +136,7 @@ public class PlaylistTransferHandler extends TransferHandler {
                 } else {
                     int selectedRow = table.getSelectedRow();
                     if (selectedRow != -1)
-                        insertRow = selectedRow + 1;
+                        insertRow = toInsertIndex(groups, selectedRow + 1);
                     else
                         insertRow = -1;
                 }
@@ -144,7 +146,8 @@ public class PlaylistTransferHandler extends TransferHandler {
 
                 playlist.addAll(insertRow, tracks);
                 playlist.firePlaylistChanged();
-                table.setRowSelectionInterval(insertRow, insertRow + tracks.size() - 1);
+                table.setRowSelectionInterval(groups.toRow(insertRow),
+                        groups.toRow(insertRow + tracks.size() - 1));
                 tracks.clear();
                 return true;
             }
@@ -159,6 +162,18 @@ public class PlaylistTransferHandler extends TransferHandler {
         return false;
     }
 
+    /**
+     * Tracks dropped on a group header go before the first track of the group
+     */
+    private int toInsertIndex(GroupIndex groups, int row) {
+        if (row < 0)
+            return row;
+        if (row >= groups.getRowCount())
+            return table.getPlaylist().size();
+        int index = groups.toIndex(row);
+        return index != -1 ? index : groups.toIndex(row + 1);
+    }
+
     @Override
     protected void exportDone(JComponent source, Transferable data, int action) {
         try {
@@ -33,6 +33,7 @@ import javax.swing.KeyStroke;
 
 import com.tulskiy.musique.audio.AudioFileReader;
 import com.tulskiy.musique.audio.player.Player;
+import com.tulskiy.musique.audio.replaygain.ReplayGainScanner;
 import com.tulskiy.musique.gui.dialogs.ConverterDialog;
 import com.tulskiy.musique.gui.dialogs.FileOperations;
 import com.tulskiy.musique.gui.dialogs.ProgressDialog;
@@ -175,6 +176,45 @@ public class TracksMenu extends Menu {
                 new ConverterDialog(parent, tracks).setVisible(true);
             }
         });
+        tableMenu.add("Scan ReplayGain").addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                ProgressDialog dialog = new ProgressDialog(parent, "Scanning ReplayGain");
+                dialog.show(new Task() {
+                    ReplayGainScanner scanner = new ReplayGainScanner();
+
+                    @Override
+                    public String getStatus() {
+                        Track track = scanner.getTrack();
+                        if (track == null)
+                            return null;
+                        return "Scanning: " + track.getTrackData().getFile().getName();
+                    }
+
+                    @Override
+                    public void abort() {
+                        scanner.stop();
+                    }
+
+                    @Override
+                    public void start() {
+                        scanner.scan(tracks, false);
+                        playlist.firePlaylistChanged();
+                    }
+
+                    @Override
+                    public boolean isIndeterminate() {
+                        return false;
+                    }
+
+                    @Override
+                    public float getProgress() {
+                        int total = scanner.getTotal();
+                        return total == 0 ? 0 : (float) scanner.getScanned() / total;
+                    }
+                });
+            }
+        });
         tableMenu.add(fileOps);
 
         for (MenuCallback callback : menus) {
@@ -57,6 +57,7 @@ import javax.swing.table.TableColumnModel;
 import com.tulskiy.musique.audio.player.Player;
 import com.tulskiy.musique.audio.player.PlayerEvent;
 import com.tulskiy.musique.audio.player.PlayerListener;
+import com.tulskiy.musique.gui.dialogs.EqualizerDialog;
 import com.tulskiy.musique.gui.dialogs.OptionsDialog;
 import com.tulskiy.musique.gui.dialogs.PlaybackQueueDialog;
 import com.tulskiy.musique.gui.dialogs.ProgressDialog;
@@ -123,9 +124,9 @@ public class PlaylistPanel extends JPanel {
         if (lastPlayed != null) {
             PlaylistTable table = tabs.getSelectedTable();
             if (table != null) {
-                int index = table.getPlaylist().indexOf(lastPlayed);
-                if (index != -1)
-                    table.setRowSelectionInterval(index, index);
+                int row = table.getTrackRow(lastPlayed);
+                if (row != -1)
+                    table.setRowSelectionInterval(row, row);
             }
         }
 
@@ -137,8 +138,8 @@ public class PlaylistPanel extends JPanel {
                 if (player.isPlaying()) {
                     PlaylistTable table = tabs.getSelectedTable();
                     if (table != null) {
-                        int index = table.getPlaylist().indexOf(player.getTrack());
-                        ((AbstractTableModel) table.getModel()).fireTableRowsUpdated(index, index);
+                        int row = table.getTrackRow(player.getTrack());
+                        ((AbstractTableModel) table.getModel()).fireTableRowsUpdated(row, row);
                     }
                 }
             }
@@ -316,8 +317,8 @@ public class PlaylistPanel extends JPanel {
                 int row = table.rowAtPoint(table.getVisibleRect().getLocation());
                 Track firstVisibleTrack;
                 do {
-                    firstVisibleTrack = playlist.get(row++);
-                } while (firstVisibleTrack.getTrackData().getLocation() == null);
+                    firstVisibleTrack = table.getTrackAt(row++);
+                } while (firstVisibleTrack instanceof SeparatorTrack);
 
                 JMenuItem src = (JMenuItem) e.getSource();
                 Integer index = (Integer) src.getClientProperty("index");
@@ -333,9 +334,9 @@ public class PlaylistPanel extends JPanel {
                     }
                 }
 
-                int firstVisibleIndex = playlist.indexOf(firstVisibleTrack);
-                if (firstVisibleIndex != -1) {
-                    Rectangle cellRect = table.getCellRect(firstVisibleIndex, 0, true);
+                int firstVisibleRow = table.getTrackRow(firstVisibleTrack);
+                if (firstVisibleRow != -1) {
+                    Rectangle cellRect = table.getCellRect(firstVisibleRow, 0, true);
                     Rectangle visibleRect = table.getVisibleRect();
                     cellRect.setSize(visibleRect.width, visibleRect.height);
                     table.scrollRectToVisible(cellRect);
@@ -391,6 +392,7 @@ public class PlaylistPanel extends JPanel {
                                 config.getString("playlist.sortString", ""));
                         if (ret != null) {
                             playlist.sort(ret.toString(), false);
+                            playlist.firePlaylistChanged();
                             config.setString("playlist.sortString", ret.toString());
                         }
 
@@ -405,6 +407,7 @@ public class PlaylistPanel extends JPanel {
                         break;
                     default:
                         playlist.sort(sortValues[index], false);
+                        playlist.firePlaylistChanged();
                 }
             }
         };
@@ -503,6 +506,13 @@ public class PlaylistPanel extends JPanel {
             }
         });
 
+        playbackMenu.add("Equalizer").addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                new EqualizerDialog(comp).setVisible(true);
+            }
+        });
+
         playbackMenu.addSeparator();
 
         playbackMenu.add(tableAction("showNowPlaying", "Scroll to Now Playing"));
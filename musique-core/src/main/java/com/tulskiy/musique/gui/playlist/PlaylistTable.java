@@ -245,9 +245,9 @@ public class PlaylistTable extends GroupTable {
                         }
                         break;
                     case STOPPED:
-                        int index = playlist.indexOf(player.getTrack());
-                        if (index != -1)
-                            setRowSelectionInterval(index, index);
+                        int row = getTrackRow(player.getTrack());
+                        if (row != -1)
+                            setRowSelectionInterval(row, row);
                         break;
                 }
             }
@@ -334,9 +334,12 @@ public class PlaylistTable extends GroupTable {
 
     public void adjustLastSongAfterDelete(ArrayList<Track> songs) {
         if (songs.contains(player.getTrack())) {
-            int index = getSelectionModel().getMinSelectionIndex();
-            if (index < playlist.size()) {
-                player.getPlaybackOrder().setLastPlayed(playlist.get(index));
+            int row = getSelectionModel().getMinSelectionIndex();
+            Track track = getTrackAt(row);
+            if (track instanceof Separator)
+                track = getTrackAt(row + 1);
+            if (track != null) {
+                player.getPlaybackOrder().setLastPlayed(track);
             }
         }
     }
@@ -412,19 +415,33 @@ public class PlaylistTable extends GroupTable {
     }
 
     public void scrollToSong(Track track) {
-        int index = playlist.indexOf(track);
-        if (index != -1) {
-            scrollToRow(index);
-            setRowSelectionInterval(index, index);
+        int row = getTrackRow(track);
+        if (row != -1) {
+            scrollToRow(row);
+            setRowSelectionInterval(row, row);
         }
     }
 
+    /**
+     * @return track or group header shown in the row, null if there is no such row
+     */
+    public Track getTrackAt(int row) {
+        return playlist.getGroups().getRow(row);
+    }
+
+    /**
+     * @return row of the track, -1 if it is not in the playlist
+     */
+    public int getTrackRow(Track track) {
+        return playlist.getGroups().toRow(playlist.indexOf(track));
+    }
+
     public ArrayList<Track> getSelectedSongs() {
         int[] rows = getSelectedRows();
         ArrayList<Track> tracks = new ArrayList<Track>();
         for (int row : rows) {
-            Track track = playlist.get(row);
-            if (!(track instanceof Separator)) {
+            Track track = getTrackAt(row);
+            if (track != null && !(track instanceof Separator)) {
                 tracks.add(track);
             }
         }
@@ -647,7 +664,7 @@ public class PlaylistTable extends GroupTable {
 
     class PlaylistModel extends AbstractTableModel {
         public int getRowCount() {
-            return playlist == null ? 0 : playlist.size();
+            return playlist == null ? 0 : playlist.getGroups().getRowCount();
         }
 
         public int getColumnCount() {
@@ -660,7 +677,7 @@ public class PlaylistTable extends GroupTable {
         }
 
         public Object getValueAt(int rowIndex, int columnIndex) {
-            Track track = playlist.get(rowIndex);
+            Track track = getTrackAt(rowIndex);
             if (track instanceof Separator)
                 return track;
             else
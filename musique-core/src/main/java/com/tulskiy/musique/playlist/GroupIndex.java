@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.playlist;
+
+import com.tulskiy.musique.gui.playlist.SeparatorTrack;
+import com.tulskiy.musique.playlist.formatting.tokens.Expression;
+import com.tulskiy.musique.util.Util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Group boundaries of a playlist, kept next to the tracks instead of
+ * separator rows inside the list.
+ * <p/>
+ * Playlist rows as the table shows them are group headers followed by
+ * their tracks. A group is a run of tracks that have the same value of
+ * the group expression, ignoring case. Values are cached per track, so
+ * after tracks are added, removed or moved only the new tracks are
+ * evaluated and the boundaries are found again in one pass. The index
+ * is brought up to date lazily, when it is used after the playlist has
+ * changed.
+ */
+public class GroupIndex {
+    private static final String UNKNOWN = "?";
+
+    private final Playlist playlist;
+    private Expression expression;
+    private HashMap<Track, String> values = new HashMap<Track, String>();
+    private int modCount;
+    private boolean valid;
+
+    // index of the first track of every group
+    private int[] starts = new int[0];
+    private SeparatorTrack[] separators = new SeparatorTrack[0];
+    private int size;
+
+    GroupIndex(Playlist playlist) {
+        this.playlist = playlist;
+    }
+
+    void setExpression(Expression expression) {
+        this.expression = expression;
+        invalidate();
+    }
+
+    /**
+     * Forget the cached values, for example after tags were edited
+     */
+    void invalidate() {
+        values.clear();
+        valid = false;
+    }
+
+    private void update() {
+        int current = playlist.getModCount();
+        if (valid && modCount == current)
+            return;
+        modCount = current;
+        valid = true;
+
+        int count = playlist.size();
+        size = 0;
+        if (expression == null || count == 0) {
+            values.clear();
+            return;
+        }
+
+        HashMap<Track, String> newValues = new HashMap<Track, String>(count * 4 / 3 + 1);
+        String groupName = null;
+        for (int i = 0; i < count; i++) {
+            Track track = playlist.get(i);
+            String value = values.get(track);
+            if (value == null)
+                value = eval(track);
+            newValues.put(track, value);
+
+            if (groupName == null || !value.equalsIgnoreCase(groupName)) {
+                if (groupName != null)
+                    addGroup(groupName, i);
+                groupName = value;
+                if (size == starts.length) {
+                    int capacity = Math.max(16, size * 2);
+                    starts = Arrays.copyOf(starts, capacity);
+                    separators = Arrays.copyOf(separators, capacity);
+                }
+                starts[size] = i;
+            }
+        }
+        addGroup(groupName, count);
+        Arrays.fill(separators, size, separators.length, null);
+        values = newValues;
+    }
+
+    private void addGroup(String groupName, int end) {
+        int start = starts[size];
+        SeparatorTrack separator = separators[size];
+        if (separator == null || separator.getGroupSize() != end - start
+                || !separator.getGroupName().equals(groupName))
+            separators[size] = new SeparatorTrack(groupName, end - start);
+        size++;
+    }
+
+    private String eval(Track track) {
+        Object o = null;
+        try {
+            o = expression.eval(track);
+        } catch (Exception ignored) {
+        }
+        String value = o == null ? null : o.toString();
+        return Util.isEmpty(value) ? UNKNOWN : value;
+    }
+
+    /**
+     * @return number of groups, 0 if the playlist is not grouped
+     */
+    public int size() {
+        update();
+        return size;
+    }
+
+    /**
+     * @return number of rows with group headers
+     */
+    public int getRowCount() {
+        update();
+        return playlist.size() + size;
+    }
+
+    /**
+     * @param row view row
+     * @return separator for header rows, track otherwise
+     */
+    public Track getRow(int row) {
+        update();
+        int group = findGroupOfRow(row);
+        if (group >= 0 && starts[group] + group == row)
+            return separators[group];
+        return playlist.get(row - group - 1);
+    }
+
+    /**
+     * @param row view row
+     * @return index of the track in the playlist, -1 for header rows
+     */
+    public int toIndex(int row) {
+        update();
+        int group = findGroupOfRow(row);
+        if (group >= 0 && starts[group] + group == row)
+            return -1;
+        return row - group - 1;
+    }
+
+    /**
+     * @param index index of the track in the playlist
+     * @return view row of the track, -1 if index is -1
+     */
+    public int toRow(int index) {
+        if (index < 0)
+            return index;
+        update();
+        return index + findGroup(index) + 1;
+    }
+
+    /**
+     * @param index index of the track in the playlist
+     * @return group of the track, -1 if the playlist is not grouped
+     */
+    public int findGroup(int index) {
+        update();
+        int group = Arrays.binarySearch(starts, 0, size, index);
+        return group >= 0 ? group : -group - 2;
+    }
+
+    private int findGroupOfRow(int row) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] + mid <= row)
+                low = mid + 1;
+            else
+                high = mid - 1;
+        }
+        return high;
+    }
+
+    /**
+     * @return index of the first track of the group
+     */
+    public int getStart(int group) {
+        update();
+        return group < 0 ? 0 : starts[group];
+    }
+
+    /**
+     * @return index after the last track of the group
+     */
+    public int getEnd(int group) {
+        update();
+        return group < 0 || group == size - 1 ? playlist.size() : starts[group + 1];
+    }
+
+    /**
+     * @return header of the group
+     */
+    public SeparatorTrack getSeparator(int group) {
+        update();
+        return separators[group];
+    }
+
+    /**
+     * @return headers of all groups, in order
+     */
+    public List<SeparatorTrack> getSeparators() {
+        update();
+        return Arrays.asList(separators).subList(0, size);
+    }
+}
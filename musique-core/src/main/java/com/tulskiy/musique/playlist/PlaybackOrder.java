@@ -17,6 +17,7 @@
 
 package com.tulskiy.musique.playlist;
 
+import com.tulskiy.musique.gui.playlist.SeparatorTrack;
 import com.tulskiy.musique.playlist.formatting.Parser;
 import com.tulskiy.musique.playlist.formatting.tokens.Expression;
 import com.tulskiy.musique.system.Application;
@@ -133,47 +134,30 @@ public class PlaybackOrder {
     }
 
     private Track getTrack(int index) {
-        if (index != -1) {
-            Track track = playlist.get(index);
-            // technically, separator can not be the last track
-            // so we just get the next track
-            if (track.getTrackData().getLocation() == null)
-                return playlist.get(index + 1);
-            return track;
-        } else {
-            return null;
-        }
+        return index != -1 ? playlist.get(index) : null;
     }
 
     private Track next(int index) {
-        index = index < playlist.size() - 1 ? index + 1 : -1;
-        if (index != -1) {
-            Track track = playlist.get(index);
-            // technically, separator can not be the last track
-            // so we just get the next track
-            if (track.getTrackData().getLocation() == null)
-                return next(index);
-            return track;
-        } else {
-            return null;
-        }
+        return index < playlist.size() - 1 ? playlist.get(index + 1) : null;
     }
 
     private Track prev(int index) {
-        index--;
-        if (index >= 0) {
-            Track track = playlist.get(index);
-            if (track.getTrackData().getLocation() == null)
-                return prev(index);
-            return track;
-        } else {
-            return null;
-        }
+        return index > 0 ? playlist.get(index - 1) : null;
     }
 
-    public Track next(Track currentTrack) {
-        int index;
+    /**
+     * @return first track of the group picked by the shuffle
+     */
+    private Track shuffleGroup(int group, boolean forward) {
+        GroupIndex groups = playlist.getGroups();
+        List<SeparatorTrack> separators = groups.getSeparators();
+        SeparatorTrack separator = groups.getSeparator(group);
+        Track next = forward ? nextShuffle(separator, separators, null)
+                : prevShuffle(separator, separators, null);
+        return playlist.get(groups.getStart(separators.indexOf(next)));
+    }
 
+    public Track next(Track currentTrack) {
         if (!queue.isEmpty()) {
             QueueTuple tuple = queue.remove(0);
             Track track = tuple.track;
@@ -194,6 +178,44 @@ public class PlaybackOrder {
             }
         }
 
+        return nextInPlaylist(currentTrack);
+    }
+
+    /**
+     * Tracks that {@link #next(Track)} is going to return after
+     * <code>currentTrack</code>, without touching the queue. Random
+     * order can not be predicted, so the list ends there.
+     *
+     * @param currentTrack track that is playing now
+     * @param count        maximum number of tracks
+     * @return upcoming tracks, may be empty
+     */
+    public List<Track> peekNext(Track currentTrack, int count) {
+        List<Track> tracks = new ArrayList<Track>();
+        for (int i = 0; i < queue.size() && tracks.size() < count; i++) {
+            tracks.add(queue.get(i).track);
+        }
+        // after the queue, playback continues in the playlist of its last track
+        if (!queue.isEmpty() || playlist == null || playlist.size() <= 0)
+            return tracks;
+
+        Track track = currentTrack;
+        if (lastPlayed != null && playlist.contains(lastPlayed) && count > 0) {
+            track = lastPlayed;
+            tracks.add(track);
+        }
+        while (tracks.size() < count && order != Order.RANDOM) {
+            track = nextInPlaylist(track);
+            if (track == null || tracks.contains(track))
+                break;
+            tracks.add(track);
+        }
+        return tracks;
+    }
+
+    private Track nextInPlaylist(Track currentTrack) {
+        int index;
+
         if (currentTrack == null) {
             return playlist.get(0);
         } else {
@@ -202,6 +224,7 @@ public class PlaybackOrder {
                 return playlist.get(0);
 
             Track track;
+            int group;
 
             switch (order) {
                 case DEFAULT:
@@ -214,42 +237,23 @@ public class PlaybackOrder {
                 case REPEAT_ALBUM:
                     return nextPatternMatch(currentTrack, index, albumFormat, false);
                 case REPEAT_GROUP:
-                    if (index + 1 < playlist.size()) {
-                        Track tr = playlist.get(index + 1);
-                        if (tr.getTrackData().getLocation() != null) {
-                            return tr;
-                        }
-                    }
-
-                    for (int i = index; i >= 0; i--) {
-                        if (playlist.get(i).getTrackData().getLocation() == null) {
-                            return playlist.get(i + 1);
-                        }
-                    }
-                    return playlist.get(0);
+                    group = playlist.getGroups().findGroup(index);
+                    if (index + 1 < playlist.getGroups().getEnd(group))
+                        return playlist.get(index + 1);
+                    return playlist.get(playlist.getGroups().getStart(group));
                 case SHUFFLE_ALBUMS:
                     return nextPatternMatch(currentTrack, index, albumFormat, true);
                 case SHUFFLE_GROUPS:
-                    if (index + 1 < playlist.size()) {
-                        Track tr = playlist.get(index + 1);
-                        if (tr.getTrackData().getLocation() != null) {
-                            return tr;
-                        }
-                    }
-
-                    for (int i = index; i >= 0; i--) {
-                        Track separator = playlist.get(i);
-                        if (separator.getTrackData().getLocation() == null) {
-                            separator = nextShuffle(separator, true, null);
-
-                            return next(playlist.indexOf(separator));
-                        }
-                    }
-                    return playlist.get(0);
+                    group = playlist.getGroups().findGroup(index);
+                    if (index + 1 < playlist.getGroups().getEnd(group))
+                        return playlist.get(index + 1);
+                    if (group == -1)
+                        return playlist.get(0);
+                    return shuffleGroup(group, true);
                 case RANDOM:
                     return nextRandom();
                 case SHUFFLE:
-                    return nextShuffle(currentTrack, false, null);
+                    return nextShuffle(currentTrack, playlist, null);
             }
         }
 
@@ -273,7 +277,7 @@ public class PlaybackOrder {
             if (!equals(result, pattern.eval(track))) {
                 Track next = next(i);
                 if (shuffle) {
-                    return nextShuffle(next, false, pattern);
+                    return nextShuffle(next, playlist, pattern);
                 } else {
                     return next;
                 }
@@ -294,6 +298,7 @@ public class PlaybackOrder {
         int size = playlist.size();
 
         Track track;
+        int group;
         switch (order) {
             case DEFAULT:
                 return prev(index);
@@ -305,43 +310,23 @@ public class PlaybackOrder {
             case REPEAT_ALBUM:
                 return prevPatternMatch(currentTrack, index, albumFormat, false);
             case REPEAT_GROUP:
-                if (index > 0) {
-                    Track tr = playlist.get(index - 1);
-                    if (tr.getTrackData().getLocation() != null) {
-                        return tr;
-                    }
-                }
-
-                for (int i = index + 1; i < size; i++) {
-                    if (playlist.get(i).getTrackData().getLocation() == null) {
-                        return playlist.get(i - 1);
-                    }
-                }
-
-                return playlist.get(size - 1);
+                group = playlist.getGroups().findGroup(index);
+                if (index > playlist.getGroups().getStart(group))
+                    return playlist.get(index - 1);
+                return playlist.get(playlist.getGroups().getEnd(group) - 1);
             case SHUFFLE_ALBUMS:
                 return prevPatternMatch(currentTrack, index, albumFormat, true);
             case SHUFFLE_GROUPS:
-                if (index > 0) {
-                    Track tr = playlist.get(index - 1);
-                    if (tr.getTrackData().getLocation() != null) {
-                        return tr;
-                    }
-                }
-
-                for (int i = index; i >= 0; i--) {
-                    Track separator = playlist.get(i);
-                    if (separator.getTrackData().getLocation() == null) {
-                        separator = prevShuffle(separator, true, null);
-
-                        return next(playlist.indexOf(separator));
-                    }
-                }
-                return playlist.get(0);
+                group = playlist.getGroups().findGroup(index);
+                if (index > playlist.getGroups().getStart(group))
+                    return playlist.get(index - 1);
+                if (group == -1)
+                    return playlist.get(0);
+                return shuffleGroup(group, false);
             case RANDOM:
                 return nextRandom();
             case SHUFFLE:
-                return prevShuffle(currentTrack, false, null);
+                return prevShuffle(currentTrack, playlist, null);
         }
 
         return getTrack(index);
@@ -368,7 +353,7 @@ public class PlaybackOrder {
         }
 
         if (shuffle) {
-            return prevShuffle(currentTrack, false, pattern);
+            return prevShuffle(currentTrack, playlist, pattern);
         }
 
         for (int i = index; i < playlist.size(); i++) {
@@ -381,14 +366,12 @@ public class PlaybackOrder {
         return track;
     }
 
-    private Track nextShuffle(Track currentTrack, boolean searchSeparators, Expression pattern) {
+    private Track nextShuffle(Track currentTrack, List<? extends Track> tracks, Expression pattern) {
         Track minRating = null;
         Track minGreater = null;
         Object patternValue = null;
-        for (Track track : playlist) {
-            if (track == currentTrack
-                    || (searchSeparators && track.getTrackData().getLocation() != null)
-                    || (!searchSeparators && track.getTrackData().getLocation() == null))
+        for (Track track : tracks) {
+            if (track == currentTrack)
                 continue;
 
             if (pattern != null) {
@@ -413,15 +396,13 @@ public class PlaybackOrder {
         return minGreater != null ? minGreater : minRating;
     }
 
-    private Track prevShuffle(Track currentTrack, boolean searchSeparators, Expression pattern) {
+    private Track prevShuffle(Track currentTrack, List<? extends Track> tracks, Expression pattern) {
         Track maxSmaller = null;
         Track maxRating = null;
         Object patternValue = null;
 
-        for (Track track: playlist) {
-            if (track == currentTrack
-                    || (searchSeparators && track.getTrackData().getLocation() != null)
-                    || (!searchSeparators && track.getTrackData().getLocation() == null))
+        for (Track track: tracks) {
+            if (track == currentTrack)
                 continue;
 
             if (pattern != null) {
@@ -46,9 +46,9 @@ import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.datatype.Pair;
 
 import com.tulskiy.musique.audio.AudioFileReader;
+import com.tulskiy.musique.audio.replaygain.ReplayGain;
 import com.tulskiy.musique.gui.model.FieldValues;
 import com.tulskiy.musique.gui.playlist.PlaylistColumn;
-import com.tulskiy.musique.gui.playlist.SeparatorTrack;
 import com.tulskiy.musique.playlist.formatting.Parser;
 import com.tulskiy.musique.playlist.formatting.tokens.Expression;
 import com.tulskiy.musique.system.TrackIO;
@@ -86,7 +86,11 @@ public class Playlist extends ArrayList<Track> {
     private boolean sortAscending = true;
     private String sortBy;
     private String groupBy;
-    private Expression groupExpression;
+    private final GroupIndex groups = new GroupIndex(this);
+    private final SearchIndex searchIndex = new SearchIndex(this);
+    // set() does not change modCount, but it moves tracks around
+    private int replaced;
+    private int firedModCount;
     private boolean libraryView;
 
     private List<PlaylistColumn> columns;
@@ -107,19 +111,8 @@ public class Playlist extends ArrayList<Track> {
 
     }
 
-    public void cleanUp() {
-        Iterator<Track> it = iterator();
-        while (it.hasNext()) {
-            Track next = it.next();
-            if (next instanceof SeparatorTrack)
-                it.remove();
-        }
-    }
-
     public void save(File file) {
         try {
-            //remove the garbage
-            cleanUp();
             logger.fine("Saving playlist: " + file.getName());
             DataOutputStream dos = new DataOutputStream(
                     new BufferedOutputStream(new FileOutputStream(file)));
@@ -154,6 +147,11 @@ public class Playlist extends ArrayList<Track> {
                 if (!Util.isEmpty(trackData.getEncoder())) {
                 	meta.add(new Pair(META_KEY_ENCODER, trackData.getEncoder()));
                 }
+                for (String key : ReplayGain.KEYS) {
+                    String value = ReplayGain.getTagValue(trackData, key);
+                    if (value != null)
+                        meta.add(new Pair(key, value));
+                }
                 Iterator<Entry<FieldKey, FieldValues>> fields = trackData.getAllTagFieldValuesIterator();
                 if (fields != null) {
 	                while (fields.hasNext()) {
@@ -173,7 +171,6 @@ public class Playlist extends ArrayList<Track> {
             }
 
             dos.close();
-            regroup();
         } catch (IOException e) {
             logger.warning("Failed to save playlist " + file.getName() + ": " + e.getMessage());
         }
@@ -235,7 +232,8 @@ public class Playlist extends ArrayList<Track> {
 	                    else if (key.equals(META_KEY_ENCODER)) {
 	                        trackData.setEncoder(value);
 	                    }
-	                	else {
+	                    // replay gain is stored as meta, not as a tag field
+	                	else if (!ReplayGain.setTagValue(trackData, key, value)) {
 	                        trackData.addTagFieldValues(FieldKey.valueOf(key), value);
 	                    }
                     }
@@ -527,79 +525,57 @@ public class Playlist extends ArrayList<Track> {
             sortBy = expression;
         }
 
-        final Expression e = Parser.parse(expression);
-        TrackComparator trackComparator = new TrackComparator(e);
-        if (sortAscending)
-            Collections.sort(this, trackComparator);
-        else
-            Collections.sort(this, Collections.reverseOrder(trackComparator));
+        TrackSorter.sort(this, Parser.parse(expression), sortAscending);
     }
 
     public void setGroupBy(String expression) {
         groupBy = expression;
         logger.fine("Grouping playlist with expression: " + expression);
-        groupExpression = Util.isEmpty(expression) ? null : Parser.parse(expression);
+        groups.setExpression(Util.isEmpty(expression) ? null : Parser.parse(expression));
 
         firePlaylistChanged();
     }
 
     public void firePlaylistChanged() {
-        regroup();
+        // nothing was added, removed or moved since the last time,
+        // so it is the tracks themselves that changed
+        if (getModCount() == firedModCount)
+            regroup();
+        firedModCount = getModCount();
         for (PlaylistListener listener : listeners) {
             listener.playlistUpdated(this);
         }
     }
 
+    /**
+     * Evaluate the group expression for all tracks again
+     */
     public void regroup() {
-        cleanUp();
-
-        if (groupExpression == null)
-            return;
-
-        int start = 0;
-        int size = 0;
-        final String unknown = "?";
-        String groupName = null;
-        for (int i = 0; i < size(); i++) {
-            Track track = get(i);
-            Object o = groupExpression.eval(track);
-            String value = null;
-            if (o != null)
-                value = o.toString();
-
-            if (Util.isEmpty(value))
-                value = unknown;
-
-            if (groupName == null) {
-                groupName = value;
-                start = i;
-                size = 1;
-                continue;
-            }
-
-            //noinspection ConstantConditions
-            boolean sameGroup = value.equalsIgnoreCase(groupName);
-            if (sameGroup)
-                size++;
+        groups.invalidate();
+    }
 
-            if (!sameGroup) {
-                if (size > 0) {
-                    addGroup(groupName, start, size);
-                } else {
-                    i--;
-                }
+    /**
+     * @return group boundaries and the mapping between table rows and tracks
+     */
+    public GroupIndex getGroups() {
+        return groups;
+    }
 
-                groupName = null;
-            }
-        }
+    /**
+     * @return full text index of the tags of the tracks
+     */
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
 
-        if (groupName != null)
-            addGroup(groupName, start, size);
+    int getModCount() {
+        return modCount + replaced;
     }
 
-    private void addGroup(String groupName, int start, int size) {
-        SeparatorTrack group = new SeparatorTrack(groupName, size);
-        add(start, group);
+    @Override
+    public Track set(int index, Track element) {
+        replaced++;
+        return super.set(index, element);
     }
 
     @Override
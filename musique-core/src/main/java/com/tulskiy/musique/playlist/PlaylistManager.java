@@ -107,8 +107,6 @@ public class PlaylistManager {
             order.setLastPlayed(activePlaylist.get(lastPlayed));
         }
 
-        //need to do it here because lastPlayed index gets shifted
-        //after regrouping
         for (Playlist playlist : playlists) {
             playlist.firePlaylistChanged();
         }
@@ -139,7 +137,6 @@ public class PlaylistManager {
 
             Track lastPlayed = app.getPlayer().getTrack();
             if (lastPlayed != null) {
-                activePlaylist.cleanUp();
                 int index = activePlaylist.indexOf(lastPlayed);
                 config.setInt("player.lastPlayed", index);
             }
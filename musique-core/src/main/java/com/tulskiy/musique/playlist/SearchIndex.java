@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.playlist;
+
+import com.tulskiy.musique.gui.model.FieldValues;
+import com.tulskiy.musique.util.Util;
+import org.jaudiotagger.tag.FieldKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Full text index of the tags of a playlist.
+ * <p/>
+ * Every tag value is split into lower case words, and every word points
+ * to the sorted list of ids of the tracks that have it. A search matches
+ * tracks that have, for each word of the query, a word that starts with
+ * it. Prefixes are looked up in the sorted dictionary and the results
+ * for different words are intersected.
+ * <p/>
+ * The index is brought up to date when it is searched: new tracks are
+ * added, tracks that left the playlist are dropped and tracks whose
+ * tags changed are indexed again. Dropped ids stay in the lists until
+ * there are more of them than live ones, then the ids are renumbered.
+ * A track that is in the playlist several times has one id, its rows
+ * are chained from its first row.
+ */
+public class SearchIndex {
+    // TODO apply correct search metas, looking through all fields at the moment
+    private static final FieldKey[] FIELDS = FieldKey.values();
+
+    private final Playlist playlist;
+    private TreeMap<String, Postings> terms = new TreeMap<String, Postings>();
+    private HashMap<Track, Integer> ids = new HashMap<Track, Integer>();
+    private int modCount = -1;
+    private int tagsVersion;
+
+    // by track id
+    private Track[] tracks = new Track[0];
+    private int[] versions = new int[0];
+    private int[] positions = new int[0];
+    private int count;
+    // by row, next row of the same track or -1
+    private int[] nextRows = new int[0];
+    private int removed;
+
+    SearchIndex(Playlist playlist) {
+        this.playlist = playlist;
+    }
+
+    /**
+     * Find tracks that match every word of the text
+     *
+     * @param text words to look for, case does not matter
+     * @return indexes of matching tracks in the playlist, in ascending order
+     */
+    public synchronized int[] search(String text) {
+        String[] words = split(text.toLowerCase());
+        if (words.length == 0)
+            return new int[0];
+
+        update();
+        BitSet result = null;
+        for (String word : words) {
+            BitSet found = new BitSet(count);
+            for (Map.Entry<String, Postings> entry : terms.tailMap(word).entrySet()) {
+                if (!entry.getKey().startsWith(word))
+                    break;
+                Postings postings = entry.getValue();
+                for (int i = 0; i < postings.size; i++) {
+                    found.set(postings.ids[i]);
+                }
+            }
+
+            if (result == null)
+                result = found;
+            else
+                result.and(found);
+            if (result.isEmpty())
+                return new int[0];
+        }
+
+        int[] indexes = new int[result.cardinality()];
+        int size = 0;
+        for (int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1)) {
+            if (tracks[id] == null)
+                continue;
+            for (int row = positions[id]; row != -1; row = nextRows[row]) {
+                if (size == indexes.length)
+                    indexes = Arrays.copyOf(indexes, size * 2);
+                indexes[size++] = row;
+            }
+        }
+        indexes = Arrays.copyOf(indexes, size);
+        Arrays.sort(indexes);
+        return indexes;
+    }
+
+    /**
+     * @return number of distinct words in the index
+     */
+    public synchronized int getTermCount() {
+        update();
+        return terms.size();
+    }
+
+    private void update() {
+        int current = playlist.getModCount();
+        if (current != modCount) {
+            modCount = current;
+            Arrays.fill(positions, 0, count, -1);
+            int size = playlist.size();
+            if (nextRows.length < size || nextRows.length > size * 4)
+                nextRows = new int[size];
+            // backwards, so that the chains are in ascending order
+            for (int i = size - 1; i >= 0; i--) {
+                Track track = playlist.get(i);
+                Integer id = ids.get(track);
+                if (id == null)
+                    id = add(track);
+                nextRows[i] = positions[id];
+                positions[id] = i;
+            }
+
+            for (int id = 0; id < count; id++) {
+                if (tracks[id] != null && positions[id] == -1)
+                    remove(id);
+            }
+        }
+
+        int latest = TrackData.getLatestTagsVersion();
+        if (latest != tagsVersion) {
+            tagsVersion = latest;
+            for (int id = 0, size = count; id < size; id++) {
+                Track track = tracks[id];
+                if (track != null && track.getTrackData().getTagsVersion() != versions[id]) {
+                    int position = positions[id];
+                    remove(id);
+                    int newId = add(track);
+                    positions[newId] = position;
+                }
+            }
+        }
+
+        if (removed > count - removed)
+            compact();
+    }
+
+    private int add(Track track) {
+        int id = count++;
+        if (id == tracks.length) {
+            int capacity = Math.max(16, id * 2);
+            tracks = Arrays.copyOf(tracks, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        TrackData trackData = track.getTrackData();
+        tracks[id] = track;
+        versions[id] = trackData.getTagsVersion();
+        positions[id] = -1;
+        ids.put(track, id);
+
+        for (FieldKey field : FIELDS) {
+            FieldValues values = trackData.getTagFieldValues(field);
+            if (values == null)
+                continue;
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                if (Util.isEmpty(value))
+                    continue;
+                for (String word : split(value.toLowerCase())) {
+                    Postings postings = terms.get(word);
+                    if (postings == null) {
+                        postings = new Postings();
+                        terms.put(word, postings);
+                    }
+                    postings.add(id);
+                }
+            }
+        }
+        return id;
+    }
+
+    private void remove(int id) {
+        ids.remove(tracks[id]);
+        tracks[id] = null;
+        removed++;
+    }
+
+    /**
+     * Renumber live tracks and drop removed ids from the lists
+     */
+    private void compact() {
+        int[] newIds = new int[count];
+        int size = 0;
+        for (int id = 0; id < count; id++) {
+            Track track = tracks[id];
+            if (track == null) {
+                newIds[id] = -1;
+                continue;
+            }
+            newIds[id] = size;
+            tracks[size] = track;
+            versions[size] = versions[id];
+            positions[size] = positions[id];
+            ids.put(track, size);
+            size++;
+        }
+        Arrays.fill(tracks, size, count, null);
+        count = size;
+        removed = 0;
+
+        Iterator<Postings> it = terms.values().iterator();
+        while (it.hasNext()) {
+            Postings postings = it.next();
+            postings.renumber(newIds);
+            if (postings.size == 0)
+                it.remove();
+        }
+    }
+
+    /**
+     * Split text into words separated by whitespace
+     */
+    static String[] split(String text) {
+        List<String> words = new ArrayList<String>();
+        int start = -1;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            if (isWhitespace(text.charAt(i))) {
+                if (start != -1)
+                    words.add(text.substring(start, i));
+                start = -1;
+            } else if (start == -1) {
+                start = i;
+            }
+        }
+        if (start != -1)
+            words.add(text.substring(start));
+        return words.toArray(new String[words.size()]);
+    }
+
+    // same characters as \s in regular expressions
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Ascending ids of the tracks that have a word
+     */
+    private static class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int id) {
+            // ids only grow, so a repeated word of the same track is the last one
+            if (size > 0 && ids[size - 1] == id)
+                return;
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        void renumber(int[] newIds) {
+            int newSize = 0;
+            for (int i = 0; i < size; i++) {
+                int id = newIds[ids[i]];
+                if (id != -1)
+                    ids[newSize++] = id;
+            }
+            size = newSize;
+            if (size < ids.length / 4)
+                ids = Arrays.copyOf(ids, Math.max(2, size));
+        }
+    }
+}
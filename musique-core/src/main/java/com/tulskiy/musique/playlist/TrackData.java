@@ -23,6 +23,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jaudiotagger.tag.FieldKey;
 
@@ -35,8 +36,14 @@ import com.tulskiy.musique.util.Util;
  */
 public class TrackData implements Cloneable {
 
-	// generic jaudiotagger tag field values
-	private Map<FieldKey, FieldValues> tagFields = new HashMap<FieldKey, FieldValues>(5, 1f);
+	// generic jaudiotagger tag field values, sorted by key. a library has
+	// hundreds of thousands of tracks, so two small arrays are used
+	// instead of a map with an entry object per field. a value is kept
+	// as a String when there is only one, otherwise as FieldValues
+	private static final FieldKey[] NO_KEYS = new FieldKey[0];
+	private static final Object[] NO_VALUES = new Object[0];
+	private FieldKey[] tagKeys = NO_KEYS;
+	private Object[] tagValues = NO_VALUES;
 	
 	// common tag fields (to be displayed in TrackInfoDialog even if missed)
 	private static final FieldKey[] COMMON_TAG_FIELDS = {
@@ -56,18 +63,31 @@ public class TrackData implements Cloneable {
 		FieldKey.RATING
 	};
 
-    private static Set<FieldKey> INTERNED_FIELDS = new LinkedHashSet<FieldKey>() {{
-        add(FieldKey.ARTIST);
-        add(FieldKey.ALBUM_ARTIST);
-        add(FieldKey.YEAR);
-        add(FieldKey.GENRE);
-        add(FieldKey.TRACK);
-        add(FieldKey.TRACK_TOTAL);
-        add(FieldKey.DISC_NO);
-        add(FieldKey.DISC_TOTAL);
-        add(FieldKey.RECORD_LABEL);
-        add(FieldKey.RATING);
-    }};
+    // fields that usually have the same value for a whole album or artist,
+    // their values are shared between tracks
+    private static final Set<FieldKey> INTERNED_FIELDS = EnumSet.of(
+            FieldKey.ARTIST,
+            FieldKey.ARTIST_SORT,
+            FieldKey.ALBUM_ARTIST,
+            FieldKey.ALBUM_ARTIST_SORT,
+            FieldKey.ALBUM,
+            FieldKey.ALBUM_SORT,
+            FieldKey.BAND,
+            FieldKey.COMPOSER,
+            FieldKey.CONDUCTOR,
+            FieldKey.YEAR,
+            FieldKey.ORIGINAL_YEAR,
+            FieldKey.GENRE,
+            FieldKey.GROUPING,
+            FieldKey.LANGUAGE,
+            FieldKey.MEDIA,
+            FieldKey.TRACK,
+            FieldKey.TRACK_TOTAL,
+            FieldKey.DISC_NO,
+            FieldKey.DISC_TOTAL,
+            FieldKey.RECORD_LABEL,
+            FieldKey.RATING
+    );
 	
     // song info
     private int sampleRate;
@@ -82,6 +102,11 @@ public class TrackData implements Cloneable {
     private String cueLocation;
     private String codec;
     private String encoder;
+    // replay gain in dB and peak, NaN if unknown
+    private float trackGain = Float.NaN;
+    private float trackPeak = Float.NaN;
+    private float albumGain = Float.NaN;
+    private float albumPeak = Float.NaN;
 
     // runtime stuff
     private String cueSheet;
@@ -92,6 +117,10 @@ public class TrackData implements Cloneable {
     private long dateAdded;
     private long lastModified;
 
+    // a new value every time the tags change, see getTagsVersion()
+    private static final AtomicInteger versions = new AtomicInteger();
+    private int tagsVersion = versions.incrementAndGet();
+
     public TrackData() {
     }
 
@@ -103,7 +132,8 @@ public class TrackData implements Cloneable {
     public TrackData copy() {
         try {
         	TrackData copy = (TrackData) this.clone();
-        	copy.tagFields = new EnumMap<FieldKey, FieldValues>(copy.tagFields);
+        	copy.tagKeys = tagKeys.clone();
+        	copy.tagValues = tagValues.clone();
             return copy;
         } catch (CloneNotSupportedException ignored) {
             return null;
@@ -122,7 +152,7 @@ public class TrackData implements Cloneable {
         for (Field field : fields) {
             try {
                 Object value = field.get(newData);
-                if (value != null && !(value instanceof Map<?, ?>)) {
+                if (value != null && !field.getType().isArray()) {
             		field.set(this, value);
                 }
             }
@@ -141,18 +171,117 @@ public class TrackData implements Cloneable {
     }
 
     public void clearTags() {
-    	tagFields.clear();
+    	tagKeys = NO_KEYS;
+    	tagValues = NO_VALUES;
+    	tagsVersion = versions.incrementAndGet();
     	setCodec("");
+    	trackGain = trackPeak = albumGain = albumPeak = Float.NaN;
     }
 
     // ------------------- meta methods ------------------- //
 
+    /**
+     * @return value that changes whenever tag fields are set or removed,
+     *         so that cached tag data can be checked without reading the tags
+     */
+    public int getTagsVersion() {
+        return tagsVersion;
+    }
+
+    /**
+     * @return the newest tags version of all tracks, it stays the same
+     *         while no tags change anywhere
+     */
+    public static int getLatestTagsVersion() {
+        return versions.get();
+    }
+
     public Iterator<Entry<FieldKey, FieldValues>> getAllTagFieldValuesIterator() {
-		return tagFields.entrySet().iterator();
+        final FieldKey[] keys = tagKeys;
+        final Object[] values = tagValues;
+        return new Iterator<Entry<FieldKey, FieldValues>>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < keys.length;
+            }
+
+            @Override
+            public Entry<FieldKey, FieldValues> next() {
+                if (index >= keys.length)
+                    throw new NoSuchElementException();
+                Entry<FieldKey, FieldValues> entry = new AbstractMap.SimpleImmutableEntry<FieldKey, FieldValues>(
+                        keys[index], toFieldValues(values[index]));
+                index++;
+                return entry;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 
+    /**
+     * @return values of the field, or null if there are none. A field with
+     *         one value is stored as a string, so changing the returned values
+     *         does not change the track, use {@link #setTagFieldValues} for that
+     */
     public FieldValues getTagFieldValues(FieldKey key) {
-    	return tagFields.get(key);
+        int index = indexOf(key);
+        return index < 0 ? null : toFieldValues(tagValues[index]);
+    }
+
+    private static FieldValues toFieldValues(Object value) {
+        if (value instanceof String)
+            return new FieldValues((String) value);
+        return (FieldValues) value;
+    }
+
+    /**
+     * @return position of the key in tagKeys, or -(insertion point) - 1
+     */
+    private int indexOf(FieldKey key) {
+        int low = 0;
+        int high = tagKeys.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = tagKeys[mid].compareTo(key);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -(low + 1);
+    }
+
+    private void putTagField(FieldKey key, FieldValues values) {
+        Object value = values;
+        if (values.size() == 1 && values.get(0) != null)
+            value = values.get(0);
+
+        int index = indexOf(key);
+        if (index >= 0) {
+            tagValues[index] = value;
+            return;
+        }
+
+        index = -index - 1;
+        int size = tagKeys.length;
+        FieldKey[] keys = new FieldKey[size + 1];
+        Object[] newValues = new Object[size + 1];
+        System.arraycopy(tagKeys, 0, keys, 0, index);
+        System.arraycopy(tagValues, 0, newValues, 0, index);
+        keys[index] = key;
+        newValues[index] = value;
+        System.arraycopy(tagKeys, index, keys, index + 1, size - index);
+        System.arraycopy(tagValues, index, newValues, index + 1, size - index);
+        tagKeys = keys;
+        tagValues = newValues;
     }
 
     public FieldValues getTagFieldValuesSafe(FieldKey key) {
@@ -169,6 +298,7 @@ public class TrackData implements Cloneable {
     	if (values.isEmpty()) {
     		return;
     	}
+    	tagsVersion = versions.incrementAndGet();
 
     	// handle additional business logic
     	if (FieldKey.TRACK.equals(key)) {
@@ -192,10 +322,10 @@ public class TrackData implements Cloneable {
     				String value = values.get(i);
 					valuesOptimized.add(value == null ? null : value.intern());
     			}
-        		tagFields.put(key, valuesOptimized);
+        		putTagField(key, valuesOptimized);
     		}
     		else {
-        		tagFields.put(key, values);
+        		putTagField(key, values);
     		}
     	}
     }
@@ -217,17 +347,35 @@ public class TrackData implements Cloneable {
     }
     
     public String getFirstTagFieldValue(FieldKey key) {
-    	FieldValues values = getTagFieldValues(key);
-    	
-    	if (!FieldValues.isEmptyEx(values)) {
-    		return values.get(0);
-    	}
-    	
-    	return null;
+        int index = indexOf(key);
+        if (index < 0)
+            return null;
+        Object value = tagValues[index];
+        if (value instanceof String)
+            return (String) value;
+
+        FieldValues values = (FieldValues) value;
+        if (!FieldValues.isEmptyEx(values)) {
+            return values.get(0);
+        }
+
+        return null;
     }
     
     public void removeTagField(FieldKey key) {
-    	tagFields.remove(key);
+        int index = indexOf(key);
+        if (index >= 0) {
+            int size = tagKeys.length - 1;
+            FieldKey[] keys = new FieldKey[size];
+            Object[] values = new Object[size];
+            System.arraycopy(tagKeys, 0, keys, 0, index);
+            System.arraycopy(tagValues, 0, values, 0, index);
+            System.arraycopy(tagKeys, index + 1, keys, index, size - index);
+            System.arraycopy(tagValues, index + 1, values, index, size - index);
+            tagKeys = size == 0 ? NO_KEYS : keys;
+            tagValues = size == 0 ? NO_VALUES : values;
+        }
+    	tagsVersion = versions.incrementAndGet();
     }
 
     // ------------------- common methods ------------------- //
@@ -485,7 +633,7 @@ public class TrackData implements Cloneable {
 
     public String getLength() {
         if (length == null)
-            length = Util.samplesToTime(totalSamples, sampleRate, 0);
+            length = Util.samplesToTime(totalSamples, sampleRate, 0).intern();
         return length;
     }
 
@@ -623,9 +771,41 @@ public class TrackData implements Cloneable {
         this.encoder= encoder.intern();
     }
 
+    public float getTrackGain() {
+        return trackGain;
+    }
+
+    public void setTrackGain(float trackGain) {
+        this.trackGain = trackGain;
+    }
+
+    public float getTrackPeak() {
+        return trackPeak;
+    }
+
+    public void setTrackPeak(float trackPeak) {
+        this.trackPeak = trackPeak;
+    }
+
+    public float getAlbumGain() {
+        return albumGain;
+    }
+
+    public void setAlbumGain(float albumGain) {
+        this.albumGain = albumGain;
+    }
+
+    public float getAlbumPeak() {
+        return albumPeak;
+    }
+
+    public void setAlbumPeak(float albumPeak) {
+        this.albumPeak = albumPeak;
+    }
+
     public String getDirectory() {
         if (directory == null) {
-            directory = getFile().getParentFile().getName();
+            directory = getFile().getParentFile().getName().intern();
         }
         return directory;
     }
@@ -672,6 +852,7 @@ public class TrackData implements Cloneable {
     				values.remove(i);
     			}
     		}
+    		putTagField(key, values);
     	}
     }
 
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.playlist;
+
+import com.tulskiy.musique.playlist.formatting.tokens.Expression;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Sorts tracks by the value of a formatting expression.
+ * <p/>
+ * The expression is evaluated once per track into a sort key, then
+ * the keys are sorted and the tracks are put back in the new order.
+ * Keys ignore case and compare runs of digits as numbers, so track 2
+ * goes before track 10. Tracks without a value sort as an empty string.
+ *
+ * Author: Denis Tulskiy
+ * Date: 6/3/11
+ */
+class TrackSorter {
+    private static final char DIGITS = '0';
+
+    private static class Entry {
+        private final Track track;
+        private final String key;
+
+        Entry(Track track, String key) {
+            this.track = track;
+            this.key = key;
+        }
+    }
+
+    private static final Comparator<Entry> COMPARATOR = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return o1.key.compareTo(o2.key);
+        }
+    };
+
+    /**
+     * Sort tracks in place. The sort is stable
+     *
+     * @param tracks     tracks to sort
+     * @param expression sort expression
+     * @param ascending  false to sort in reverse order
+     */
+    public static void sort(List<Track> tracks, Expression expression, boolean ascending) {
+        Entry[] entries = new Entry[tracks.size()];
+        int i = 0;
+        for (Track track : tracks) {
+            Object value = null;
+            try {
+                value = expression.eval(track);
+            } catch (Exception ignored) {
+            }
+            entries[i++] = new Entry(track, toKey(value == null ? "" : value.toString()));
+        }
+
+        Arrays.sort(entries, ascending ? COMPARATOR : Collections.reverseOrder(COMPARATOR));
+
+        ListIterator<Track> it = tracks.listIterator();
+        for (Entry entry : entries) {
+            it.next();
+            it.set(entry.track);
+        }
+    }
+
+    /**
+     * Turn a string into a key that can be compared with
+     * {@link String#compareTo(String)}. Characters are folded like in
+     * {@link String#compareToIgnoreCase(String)}, and every run of digits
+     * becomes a marker, the length of the number and its digits without
+     * leading zeros. The marker sorts against other characters the same
+     * way a digit would.
+     */
+    static String toKey(String value) {
+        int length = value.length();
+        StringBuilder sb = new StringBuilder(length + 4);
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                int start = i;
+                while (i < length && value.charAt(i) == '0')
+                    i++;
+                int first = i;
+                while (i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9')
+                    i++;
+                if (first == i && first > start)
+                    first--; // keep a single zero
+                sb.append(DIGITS).append((char) (i - first)).append(value, first, i);
+            } else {
+                sb.append(Character.toLowerCase(Character.toUpperCase(c)));
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+}
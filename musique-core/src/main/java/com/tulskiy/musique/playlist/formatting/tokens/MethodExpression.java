@@ -19,9 +19,8 @@ package com.tulskiy.musique.playlist.formatting.tokens;
 
 import com.tulskiy.musique.playlist.Track;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * @Author: Denis Tulskiy
@@ -30,16 +29,77 @@ import java.util.ArrayList;
 public class MethodExpression implements Expression {
     private static Methods methods = new Methods();
 
-    private Method method;
+    /**
+     * Calls one of the {@link Methods}
+     */
+    private static abstract class Function {
+        abstract Object call(Track track, ArrayList<Expression> args);
+    }
+
+    private static final HashMap<String, Function> functions = new HashMap<String, Function>();
+
+    static {
+        functions.put("if3", new Function() {
+            Object call(Track track, ArrayList<Expression> args) {
+                return methods.if3(track, args);
+            }
+        });
+        functions.put("if1", new Function() {
+            Object call(Track track, ArrayList<Expression> args) {
+                return methods.if1(track, args);
+            }
+        });
+        functions.put("strcmp", new Function() {
+            Object call(Track track, ArrayList<Expression> args) {
+                return methods.strcmp(track, args);
+            }
+        });
+        functions.put("greater", new Function() {
+            Object call(Track track, ArrayList<Expression> args) {
+                return methods.greater(track, args);
+            }
+        });
+        functions.put("eval", new Function() {
+            Object call(Track track, ArrayList<Expression> args) {
+                return methods.eval(track, args);
+            }
+        });
+        functions.put("notNull", new Function() {
+            Object call(Track track, ArrayList<Expression> args) {
+                return methods.notNull(track, args);
+            }
+        });
+        functions.put("isPlaying", new Function() {
+            Object call(Track track, ArrayList<Expression> args) {
+                return methods.isPlaying(track, args);
+            }
+        });
+        functions.put("playingTime", new Function() {
+            Object call(Track track, ArrayList<Expression> args) {
+                return methods.playingTime(track, args);
+            }
+        });
+        functions.put("combine", new Function() {
+            Object call(Track track, ArrayList<Expression> args) {
+                return methods.combine(track, args);
+            }
+        });
+        functions.put("escape", new Function() {
+            Object call(Track track, ArrayList<Expression> args) {
+                return methods.escape(track, args);
+            }
+        });
+    }
+
+    private String name;
+    private Function function;
     private ArrayList<Expression> expressions;
 
     public MethodExpression(String name) {
-        try {
-            method = Methods.class.getDeclaredMethod(name, Track.class, ArrayList.class);
+        this.name = name;
+        function = functions.get(name);
+        if (function != null)
             expressions = new ArrayList<Expression>();
-        } catch (NoSuchMethodException e) {
-//            e.printStackTrace();
-        }
     }
 
     public void addExpression(Expression expression) {
@@ -52,11 +112,9 @@ public class MethodExpression implements Expression {
 
     public Object eval(Track track) {
         try {
-            if (method != null)
-                return method.invoke(methods, track, expressions);
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
+            if (function != null)
+                return function.call(track, expressions);
+        } catch (RuntimeException e) {
             e.printStackTrace();
         }
         return null;
@@ -65,7 +123,7 @@ public class MethodExpression implements Expression {
     @Override
     public String toString() {
         return "MethodExpression{" +
-               "method=" + method +
+               "name=" + name +
                '}';
 
     }
@@ -17,11 +17,8 @@
 
 package com.tulskiy.musique.playlist.formatting.tokens;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Set;
+import java.util.HashMap;
 
-import com.tulskiy.musique.gui.model.FieldValues;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.musique.playlist.TrackData;
 
@@ -30,33 +27,262 @@ import com.tulskiy.musique.playlist.TrackData;
  * @Date: Feb 6, 2010
  */
 public class ParameterExpression implements Expression {
-    private Method method;
+    /**
+     * Reads one field of the track. Strings and multi-valued
+     * tag fields are returned as is, everything else as a string
+     */
+    private static abstract class Getter {
+        abstract Object get(TrackData trackData);
+    }
 
-    public ParameterExpression(String name) {
-        try {
-            method = TrackData.class.getDeclaredMethod("get" + name);
-        } catch (NoSuchMethodException e) {
-//            e.printStackTrace();
-            try {
-                method = TrackData.class.getDeclaredMethod("is" + name);
-            } catch (NoSuchMethodException e1) {
-//                e.printStackTrace();
+    private static final HashMap<String, Getter> getters = new HashMap<String, Getter>();
+
+    static {
+        getters.put("Artist", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getArtist();
             }
-        }
+        });
+        getters.put("Album", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getAlbum();
+            }
+        });
+        getters.put("Title", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getTitle();
+            }
+        });
+        getters.put("AlbumArtist", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getAlbumArtist();
+            }
+        });
+        getters.put("Year", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getYear();
+            }
+        });
+        getters.put("Genre", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getGenre();
+            }
+        });
+        getters.put("Comment", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getComment();
+            }
+        });
+        getters.put("Track", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getTrack();
+            }
+        });
+        getters.put("TrackNumber", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getTrackNumber();
+            }
+        });
+        getters.put("TrackTotal", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getTrackTotal();
+            }
+        });
+        getters.put("Disc", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getDisc();
+            }
+        });
+        getters.put("DiscTotal", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getDiscTotal();
+            }
+        });
+        getters.put("RecordLabel", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getRecordLabel();
+            }
+        });
+        getters.put("CatalogNo", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getCatalogNo();
+            }
+        });
+        getters.put("Rating", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getRating();
+            }
+        });
+        getters.put("CueSheet", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getCueSheet();
+            }
+        });
+        getters.put("CueLocation", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getCueLocation();
+            }
+        });
+        getters.put("Length", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getLength();
+            }
+        });
+        getters.put("FileName", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getFileName();
+            }
+        });
+        getters.put("ChannelsAsString", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getChannelsAsString();
+            }
+        });
+        getters.put("Codec", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getCodec();
+            }
+        });
+        getters.put("Encoder", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getEncoder();
+            }
+        });
+        getters.put("Directory", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getDirectory();
+            }
+        });
+        getters.put("Genres", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getGenres();
+            }
+        });
+        getters.put("RecordLabels", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getRecordLabels();
+            }
+        });
+        getters.put("CatalogNos", new Getter() {
+            Object get(TrackData trackData) {
+                return trackData.getCatalogNos();
+            }
+        });
+        getters.put("CueEmbedded", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.isCueEmbedded());
+            }
+        });
+        getters.put("Cue", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.isCue());
+            }
+        });
+        getters.put("SampleRate", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getSampleRate());
+            }
+        });
+        getters.put("Channels", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getChannels());
+            }
+        });
+        getters.put("Bps", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getBps());
+            }
+        });
+        getters.put("Bitrate", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getBitrate());
+            }
+        });
+        getters.put("SubsongIndex", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getSubsongIndex());
+            }
+        });
+        getters.put("StartPosition", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getStartPosition());
+            }
+        });
+        getters.put("TotalSamples", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getTotalSamples());
+            }
+        });
+        getters.put("DateAdded", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getDateAdded());
+            }
+        });
+        getters.put("LastModified", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getLastModified());
+            }
+        });
+        getters.put("Stream", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.isStream());
+            }
+        });
+        getters.put("TrackGain", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getTrackGain());
+            }
+        });
+        getters.put("TrackPeak", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getTrackPeak());
+            }
+        });
+        getters.put("AlbumGain", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getAlbumGain());
+            }
+        });
+        getters.put("AlbumPeak", new Getter() {
+            Object get(TrackData trackData) {
+                return String.valueOf(trackData.getAlbumPeak());
+            }
+        });
+        getters.put("Location", new Getter() {
+            Object get(TrackData trackData) {
+                return asString(trackData.getLocation());
+            }
+        });
+        getters.put("File", new Getter() {
+            Object get(TrackData trackData) {
+                return asString(trackData.getFile());
+            }
+        });
+        getters.put("AllTagFieldValuesIterator", new Getter() {
+            Object get(TrackData trackData) {
+                return asString(trackData.getAllTagFieldValuesIterator());
+            }
+        });
+    }
+
+    private final String name;
+    private final Getter getter;
+
+    public ParameterExpression(String name) {
+        this.name = name;
+        getter = getters.get(name);
+    }
+
+    private static String asString(Object o) {
+        return o == null ? null : o.toString();
     }
 
     public Object eval(Track track) {
-        if (method == null)
+        if (getter == null)
             return null;
         try {
-            Object o = method.invoke(track.getTrackData());
-            if (o == null)
-                return null;
-            // hack for multi-valued tag fields
-            return o instanceof FieldValues ? o : o.toString();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
-        } catch (InvocationTargetException e) {
+            return getter.get(track.getTrackData());
+        } catch (RuntimeException e) {
             e.printStackTrace();
         }
 
@@ -66,7 +292,7 @@ public class ParameterExpression implements Expression {
     @Override
     public String toString() {
         return "ParameterExpression{" +
-               "method=" + method +
+               "name=" + name +
                '}';
     }
 }
@@ -168,6 +168,13 @@ public class Application {
 
         AudioOutput audioOutput = player.getAudioOutput();
         audioOutput.setVolume(configuration.getFloat("player.volume", 1));
+        configuration.addPropertyChangeListener("player.lineBufferSize", true, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                player.getAudioOutput().setBufferSize(
+                        configuration.getInt(evt.getPropertyName(), AudioOutput.BUFFER_SIZE));
+            }
+        });
         String mixer = configuration.getString("player.mixer", null);
         if (mixer != null) {
             Mixer.Info[] infos = AudioSystem.getMixerInfo();
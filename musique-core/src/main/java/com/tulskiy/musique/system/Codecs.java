@@ -37,20 +37,33 @@ import com.tulskiy.musique.audio.formats.wavpack.WavPackEncoder;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.musique.util.Util;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Registry of decoders and encoders.
+ * <p/>
+ * Decoders are picked by the extension. The first bytes of the file are
+ * only looked at when the extension is unknown or its decoder can not
+ * open the file, so that files with a wrong extension still play.
+ * Streams are opened once to look at the content type and the first
+ * bytes, and the same connection is handed to the decoder.
+ *
  * Author: Denis Tulskiy
  * Date: 24.06.2009
  */
 public class Codecs {
     private static HashMap<String, Decoder> decoders = new HashMap<String, Decoder>();
     private static HashMap<String, Encoder> encoders = new HashMap<String, Encoder>();
+    private static HashMap<String, String> contentTypes = new HashMap<String, String>();
     private static final Logger logger = Logger.getLogger(Codecs.class.getName());
+    private static final int SNIFF_SIZE = 64;
 
     static {
         decoders.put("mp3", new MP3Decoder());
@@ -68,6 +81,15 @@ public class Codecs {
         decoders.put("tta", new TTADecoder());
         decoders.put("aac", new AACDecoder());
 
+        contentTypes.put("audio/mpeg", "mp3");
+        contentTypes.put("audio/mp3", "mp3");
+        contentTypes.put("audio/x-mpeg", "mp3");
+        contentTypes.put("application/ogg", "ogg");
+        contentTypes.put("audio/ogg", "ogg");
+        contentTypes.put("audio/aac", "aac");
+        contentTypes.put("audio/aacp", "aac");
+        contentTypes.put("audio/x-aac", "aac");
+
         encoders.put("wav", new PCMEncoder());
         encoders.put("ape", new APEEncoder());
         encoders.put("ogg", new VorbisEncoder());
@@ -81,35 +103,135 @@ public class Codecs {
             return null;
         }
         if (track.getTrackData().isStream()) {
-            IcyInputStream inputStream = IcyInputStream.create(track);
-            String contentType = inputStream.getContentType().trim();
-            try {
-                inputStream.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            return getStreamDecoder(track);
+        }
+        String ext = Util.getFileExt(location.toString()).toLowerCase();
+        Decoder decoder = decoders.get(ext);
+        if (decoder == null)
+            decoder = detectDecoder(track);
+        return decoder;
+    }
 
-            if ("audio/mpeg".equals(contentType)) {
-                return decoders.get("mp3");
-            }
+    /**
+     * @return decoder for the first bytes of a file, or null if they are not recognized
+     */
+    private static Decoder detectDecoder(Track track) {
+        if (!track.getTrackData().isFile())
+            return null;
+        String format = detectFormat(track.getTrackData().getFile());
+        if (format == null)
+            return null;
+        logger.fine("File " + track.getTrackData().getLocation() + " looks like " + format);
+        return decoders.get(format);
+    }
 
-            if ("application/ogg".equals(contentType)) {
-                return decoders.get("ogg");
-            }
+    /**
+     * Find a decoder and open the track with it. If the decoder picked by
+     * the extension fails, the one for the first bytes of the file is tried
+     *
+     * @param track track to open
+     * @return shared decoder instance, opened, or null if nothing could open the track
+     */
+    public static Decoder openDecoder(Track track) {
+        return open(track, false);
+    }
+
+    /**
+     * Same as {@link #openDecoder(Track)}, but returns a new instance
+     * of the decoder
+     */
+    public static Decoder openNewDecoder(Track track) {
+        return open(track, true);
+    }
+
+    private static Decoder open(Track track, boolean newInstance) {
+        Decoder decoder = getDecoder(track);
+        if (decoder == null)
+            return null;
+        if (newInstance)
+            decoder = newInstance(decoder);
+        if (tryOpen(decoder, track))
+            return decoder;
+        if (track.getTrackData().isStream())
+            return null;
+
+        Decoder detected = detectDecoder(track);
+        if (detected == null || (decoder != null && detected.getClass() == decoder.getClass()))
+            return null;
+        if (newInstance)
+            detected = newInstance(detected);
+        if (tryOpen(detected, track))
+            return detected;
+        return null;
+    }
 
-            if ("audio/aac".equals(contentType)) {
-                return decoders.get("aac");
+    /**
+     * Open the track, a decoder that fails is closed so that it does
+     * not keep the file open
+     */
+    private static boolean tryOpen(Decoder decoder, Track track) {
+        if (decoder == null)
+            return false;
+        boolean opened = false;
+        try {
+            opened = decoder.open(track);
+        } catch (RuntimeException e) {
+            logger.log(Level.FINE, "Could not open " + track.getTrackData().getLocation(), e);
+        } finally {
+            if (!opened) {
+                try {
+                    decoder.close();
+                } catch (RuntimeException e) {
+                    logger.log(Level.FINE, "Could not close decoder", e);
+                }
             }
-            logger.warning("Unsupported ContentType: " + contentType);
+        }
+        return opened;
+    }
+
+    private static Decoder getStreamDecoder(Track track) {
+        IcyInputStream in = IcyInputStream.create(track);
+        if (in == null) {
             return null;
         }
-        String ext = Util.getFileExt(location.toString()).toLowerCase();
-        return decoders.get(ext);
+
+        String contentType = in.getContentType();
+        String format = null;
+        try {
+            byte[] buf = new byte[SNIFF_SIZE];
+            format = detectFormat(buf, in.peek(buf, buf.length));
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Could not read stream header", e);
+        }
+        if (format == null && contentType != null) {
+            format = contentTypes.get(contentType.split(";")[0].trim().toLowerCase());
+        }
+
+        Decoder decoder = format == null ? null : decoders.get(format);
+        if (decoder != null) {
+            // the decoder will get this connection back from IcyInputStream.create()
+            in.prime();
+        } else {
+            logger.warning("Unsupported ContentType: " + contentType);
+            try {
+                in.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return decoder;
     }
 
     public static Decoder getNewDecoder(Track track) {
+        Decoder decoder = getDecoder(track);
+        if (decoder == null)
+            return null;
+        return newInstance(decoder);
+    }
+
+    private static Decoder newInstance(Decoder decoder) {
         try {
-            return getDecoder(track).getClass().newInstance();
+            return decoder.getClass().newInstance();
         } catch (InstantiationException e) {
             e.printStackTrace();
         } catch (IllegalAccessException e) {
@@ -123,7 +245,128 @@ public class Codecs {
         return encoders.get(format);
     }
 
+    public static Encoder getNewEncoder(String format) {
+        Encoder encoder = getEncoder(format);
+        if (encoder == null)
+            return null;
+        try {
+            return encoder.getClass().newInstance();
+        } catch (InstantiationException e) {
+            e.printStackTrace();
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        }
+
+        return null;
+    }
+
     public static Set<String> getFormats() {
         return decoders.keySet();
     }
+
+    /**
+     * Find out the format of a file from its first bytes. ID3v2 tags
+     * in front of the audio data are skipped.
+     *
+     * @param file file to check
+     * @return format key of a decoder, or null if it is not recognized
+     */
+    public static String detectFormat(File file) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                byte[] buf = new byte[SNIFF_SIZE];
+                int len = raf.read(buf);
+                long offset = getID3Size(buf, len);
+                if (offset == 0)
+                    return detectFormat(buf, len);
+
+                raf.seek(offset);
+                String format = detectFormat(buf, raf.read(buf));
+                // ID3v2 tags are used by mp3 files
+                return format != null ? format : "mp3";
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Find out the format from the first bytes of a file or stream
+     *
+     * @param buf first bytes
+     * @param len number of valid bytes in buf
+     * @return format key of a decoder, or null if it is not recognized
+     */
+    public static String detectFormat(byte[] buf, int len) {
+        if (len < 4)
+            return null;
+        if (startsWith(buf, len, 0, "fLaC"))
+            return "flac";
+        if (startsWith(buf, len, 0, "OggS")) {
+            // only vorbis is supported in ogg, the first packet
+            // starts after the segment table
+            int packet = len > 26 ? 27 + (buf[26] & 0xFF) : len;
+            return startsWith(buf, len, packet + 1, "vorbis") ? "ogg" : null;
+        }
+        if (startsWith(buf, len, 0, "RIFF") && startsWith(buf, len, 8, "WAVE"))
+            return "wav";
+        if (startsWith(buf, len, 0, "FORM") &&
+                (startsWith(buf, len, 8, "AIFF") || startsWith(buf, len, 8, "AIFC")))
+            return "aiff";
+        if (startsWith(buf, len, 0, ".snd"))
+            return "au";
+        if (startsWith(buf, len, 0, "MAC "))
+            return "ape";
+        if (startsWith(buf, len, 0, "wvpk"))
+            return "wv";
+        if (startsWith(buf, len, 0, "TTA1"))
+            return "tta";
+        if (startsWith(buf, len, 4, "ftyp"))
+            return "mp4";
+        if (startsWith(buf, len, 0, "ID3"))
+            return "mp3";
+
+        int b0 = buf[0] & 0xFF;
+        int b1 = buf[1] & 0xFF;
+        int b2 = buf[2] & 0xFF;
+        if (b0 == 0xFF && (b1 & 0xF6) == 0xF0)
+            return "aac";
+        if (b0 == 0xFF && (b1 & 0xE0) == 0xE0
+                && (b1 & 0x18) != 0x08 // version
+                && (b1 & 0x06) != 0    // layer
+                && (b2 & 0xF0) != 0xF0 // bitrate
+                && (b2 & 0x0C) != 0x0C // sample rate
+                )
+            return "mp3";
+        return null;
+    }
+
+    private static boolean startsWith(byte[] buf, int len, int offset, String magic) {
+        if (offset < 0 || offset + magic.length() > len)
+            return false;
+        for (int i = 0; i < magic.length(); i++) {
+            if (buf[offset + i] != magic.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return size of the ID3v2 tag at the start of buf, or 0 if there is none
+     */
+    private static long getID3Size(byte[] buf, int len) {
+        if (len < 10 || !startsWith(buf, len, 0, "ID3"))
+            return 0;
+        long size = 10;
+        for (int i = 6; i < 10; i++) {
+            size += (buf[i] & 0x7F) << (7 * (9 - i));
+        }
+        // footer
+        if ((buf[5] & 0x10) != 0)
+            size += 10;
+        return size;
+    }
 }
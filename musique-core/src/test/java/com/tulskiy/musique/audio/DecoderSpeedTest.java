@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio;
+
+import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.system.Codecs;
+import com.tulskiy.musique.system.TrackIO;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * Decoding speed of sample files, with and without mapped input
+ */
+public class DecoderSpeedTest {
+    private static final String[] FILES = {
+            "testfiles/mp3/sample.mp3",
+            "testfiles/flac/sample.flac",
+            "testfiles/ape/sample.ape",
+            "testfiles/wavpack/sample.wv",
+            "testfiles/aac/sample.mp4",
+            "testfiles/tta/sample.tta",
+    };
+
+    @Test public void dummy(){}
+    //    @Test
+    public void testMappedInput() throws Exception {
+        byte[] buf = new byte[65536];
+        for (String name : FILES) {
+            File file = new File(getClass().getClassLoader().getResource(name).toURI());
+            Track track = TrackIO.getAudioFileReader(file.getName()).read(file);
+            // first round is warm-up
+            for (boolean mapped : new boolean[]{false, true, false, true}) {
+                MappedAudioSource.setEnabled(mapped);
+                long bytes = 0;
+                long time = System.nanoTime();
+                for (int i = 0; i < 100; i++) {
+                    Decoder decoder = Codecs.getDecoder(track);
+                    decoder.open(track);
+                    int len;
+                    while ((len = decoder.decode(buf)) != -1) {
+                        bytes += len;
+                    }
+                    decoder.close();
+                }
+                time = System.nanoTime() - time;
+                System.out.printf("%-30s mapped: %-5s %8.1f MB/s%n", name, mapped,
+                        bytes / 1048576. / (time / 1e9));
+            }
+        }
+        MappedAudioSource.setEnabled(true);
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio;
+
+import com.tulskiy.musique.audio.formats.mp3.MP3Decoder;
+import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.playlist.TrackData;
+import com.tulskiy.musique.system.Codecs;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class IcyInputStreamTest {
+    private static final int META_INT = 1000;
+
+    /**
+     * Serves <code>data</code> as an Icy stream. Every connection but the
+     * last one is dropped after the next of <code>dropAt</code> bytes, the
+     * last one sends the rest with a Content-Length, so the stream ends
+     * after it.
+     */
+    private static class Server extends Thread {
+        private final ServerSocket socket;
+        private final String contentType;
+        private final byte[] data;
+        private final int[] dropAt;
+        private volatile int connections;
+
+        Server(String contentType, byte[] data, int... dropAt) throws IOException {
+            this.contentType = contentType;
+            this.data = data;
+            this.dropAt = dropAt;
+            socket = new ServerSocket(0);
+            setDaemon(true);
+        }
+
+        int getPort() {
+            return socket.getLocalPort();
+        }
+
+        int getConnections() {
+            return connections;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int from = 0;
+                for (int to : dropAt) {
+                    serve(from, to, false);
+                    from = to;
+                }
+                serve(from, data.length, true);
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private void serve(int from, int to, boolean finite) throws IOException {
+            Socket client = socket.accept();
+            connections++;
+            InputStream in = client.getInputStream();
+            // skip the request
+            int last = 0, ch;
+            while ((ch = in.read()) != -1) {
+                if (ch == '\n' && last == '\n')
+                    break;
+                if (ch != '\r')
+                    last = ch;
+            }
+            OutputStream out = client.getOutputStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (int pos = from; pos < to; pos += META_INT) {
+                body.write(data, pos, Math.min(META_INT, to - pos));
+                if (pos + META_INT <= to) {
+                    byte[] meta = new byte[32];
+                    byte[] title = "StreamTitle='Artist - Title';".getBytes("UTF-8");
+                    System.arraycopy(title, 0, meta, 0, title.length);
+                    body.write(2);
+                    body.write(meta);
+                }
+            }
+            String headers = "HTTP/1.0 200 OK\r\n" +
+                    "Content-Type: " + contentType + "\r\n" +
+                    "icy-metaint: " + META_INT + "\r\n" +
+                    "icy-genre: Rock\r\n" +
+                    "icy-name: Station\r\n" +
+                    (finite ? "Content-Length: " + body.size() + "\r\n" : "") +
+                    "\r\n";
+            out.write(headers.getBytes("ASCII"));
+            body.writeTo(out);
+            out.flush();
+            client.close();
+        }
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        byte[] data = new byte[20000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        Server server = new Server("audio/mpeg", data, 7000);
+        server.start();
+
+        Track track = new Track(new TrackData(new URI("http://localhost:" + server.getPort() + "/"), 0));
+        long reconnects = StreamStats.getInstance().getReconnects();
+        IcyInputStream in = IcyInputStream.create(track);
+        assertNotNull(in);
+        assertEquals("audio/mpeg", in.getContentType());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[777];
+        int len;
+        while ((len = in.read(buf, 0, buf.length)) != -1) {
+            out.write(buf, 0, len);
+        }
+        in.close();
+
+        assertTrue(Arrays.equals(data, out.toByteArray()));
+        assertEquals(reconnects + 1, StreamStats.getInstance().getReconnects());
+        assertEquals("Title", track.getTrackData().getTitle());
+        assertEquals("Artist", track.getTrackData().getArtist());
+        assertEquals("Rock", track.getTrackData().getGenres().toString());
+        assertEquals("Station", track.getTrackData().getAlbum());
+    }
+
+    /**
+     * Serves <code>data</code> as a plain file. The first connection is
+     * dropped after <code>dropAt</code> bytes, later ones answer range
+     * requests if <code>ranges</code> is set.
+     */
+    private static class FileServer extends Thread {
+        private final ServerSocket socket;
+        private final byte[] data;
+        private final int dropAt;
+        private final boolean ranges;
+        private volatile String lastRequest;
+
+        FileServer(byte[] data, int dropAt, boolean ranges) throws IOException {
+            this.data = data;
+            this.dropAt = dropAt;
+            this.ranges = ranges;
+            socket = new ServerSocket(0);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                serve(true);
+                serve(false);
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private void serve(boolean drop) throws IOException {
+            Socket client = socket.accept();
+            InputStream in = client.getInputStream();
+            StringBuilder request = new StringBuilder();
+            int last = 0, ch;
+            while ((ch = in.read()) != -1) {
+                if (ch == '\n' && last == '\n')
+                    break;
+                request.append((char) ch);
+                if (ch != '\r')
+                    last = ch;
+            }
+            lastRequest = request.toString();
+
+            int from = 0;
+            String range = "Range: bytes=";
+            int index = lastRequest.indexOf(range);
+            if (ranges && index != -1) {
+                int end = lastRequest.indexOf('-', index);
+                from = Integer.parseInt(lastRequest.substring(index + range.length(), end));
+            }
+            String headers = (from > 0 ? "HTTP/1.0 206 Partial Content\r\n" +
+                    "Content-Range: bytes " + from + "-" + (data.length - 1) + "/" + data.length + "\r\n"
+                    : "HTTP/1.0 200 OK\r\n") +
+                    "Content-Type: audio/mpeg\r\n" +
+                    "Content-Length: " + (data.length - from) + "\r\n" +
+                    "\r\n";
+            OutputStream out = client.getOutputStream();
+            out.write(headers.getBytes("ASCII"));
+            out.write(data, from, (drop ? dropAt : data.length) - from);
+            out.flush();
+            client.close();
+        }
+    }
+
+    private byte[] readFile(boolean ranges) throws Exception {
+        byte[] data = new byte[20000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        FileServer server = new FileServer(data, 7000, ranges);
+        server.start();
+
+        Track track = new Track(new TrackData(new URI("http://localhost:" + server.socket.getLocalPort() + "/"), 0));
+        IcyInputStream in = IcyInputStream.create(track);
+        assertNotNull(in);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[777];
+        int len;
+        while ((len = in.read(buf, 0, buf.length)) != -1) {
+            out.write(buf, 0, len);
+        }
+        in.close();
+        if (ranges)
+            assertTrue(server.lastRequest, server.lastRequest.contains("Range: bytes=7000-"));
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        byte[] data = readFile(true);
+        assertEquals(20000, data.length);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals((byte) (i * 31), data[i]);
+        }
+    }
+
+    @Test
+    public void testNoResume() throws Exception {
+        // the server can only start over, the part that was read is not repeated
+        byte[] data = readFile(false);
+        assertEquals(7000, data.length);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals((byte) (i * 31), data[i]);
+        }
+    }
+
+    @Test
+    public void testSingleConnection() throws Exception {
+        File file = new File(getClass().getClassLoader().getResource("testfiles/mp3/sample.mp3").toURI());
+        byte[] data = new byte[(int) file.length()];
+        DataInputStream fis = new DataInputStream(new FileInputStream(file));
+        fis.readFully(data);
+        fis.close();
+
+        // the content type does not tell anything, the decoder is found by the first bytes
+        Server server = new Server("application/octet-stream", data);
+        server.start();
+
+        Track track = new Track(new TrackData(new URI("http://localhost:" + server.getPort() + "/"), 0));
+        Decoder decoder = Codecs.getNewDecoder(track);
+        assertTrue(decoder instanceof MP3Decoder);
+        assertTrue(decoder.open(track));
+        byte[] buf = new byte[65536];
+        int total = 0;
+        int len;
+        while ((len = decoder.decode(buf)) != -1) {
+            total += len;
+        }
+        decoder.close();
+
+        assertTrue(total > 0);
+        assertEquals(1, server.getConnections());
+    }
+}
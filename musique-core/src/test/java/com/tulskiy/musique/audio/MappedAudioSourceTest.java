@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MappedAudioSourceTest {
+    private File createFile(byte[] data) throws IOException {
+        File file = File.createTempFile("mapped", null);
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        fos.write(data);
+        fos.close();
+        return file;
+    }
+
+    private byte[] randomData(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        byte[] data = randomData(100000);
+        File file = createFile(data);
+        for (boolean enabled : new boolean[]{true, false}) {
+            MappedAudioSource.setEnabled(enabled);
+            MappedAudioSource source = MappedAudioSource.open(file);
+            try {
+                assertEquals(enabled, source.isMapped());
+                assertEquals(data.length, source.length());
+                assertEquals(data[1234] & 0xFF, source.get(1234));
+                assertEquals(-1, source.get(data.length));
+
+                byte[] b = new byte[1000];
+                assertEquals(1000, source.read(5000, b, 0, 1000));
+                assertArrayEquals(Arrays.copyOfRange(data, 5000, 6000), b);
+                assertEquals(100, source.read(data.length - 100, b, 0, 1000));
+                assertEquals(-1, source.read(data.length, b, 0, 1000));
+
+                ByteBuffer slice = source.slice(10, 20);
+                assertEquals(20, slice.remaining());
+                assertEquals(data[10], slice.get(0));
+                assertEquals(data[29], slice.get(19));
+            } finally {
+                source.close();
+            }
+        }
+        MappedAudioSource.setEnabled(true);
+    }
+
+    @Test
+    public void testInputStream() throws IOException {
+        byte[] data = randomData(10000);
+        MappedAudioSource source = MappedAudioSource.open(createFile(data));
+        try {
+            InputStream in = source.newInputStream(100);
+            assertEquals(data[100] & 0xFF, in.read());
+            in.mark(0);
+            byte[] b = new byte[50];
+            assertEquals(50, in.read(b));
+            assertArrayEquals(Arrays.copyOfRange(data, 101, 151), b);
+            in.reset();
+            assertEquals(data[101] & 0xFF, in.read());
+            assertEquals(1000, in.skip(1000));
+            assertEquals(data.length - 1102, in.available());
+            assertEquals(data.length - 1102, in.skip(Long.MAX_VALUE));
+            assertEquals(-1, in.read());
+            assertEquals(-1, in.read(b));
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test
+    public void testRandomAccessFile() throws IOException {
+        byte[] data = randomData(10000);
+        MappedAudioSource source = MappedAudioSource.open(createFile(data));
+        RandomAccessFile raf = source.newRandomAccessFile();
+        DataInputStream expected = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            assertEquals(data.length, raf.length());
+            assertEquals(expected.readInt(), raf.readInt());
+            assertEquals(expected.readLong(), raf.readLong());
+            assertEquals(12, raf.getFilePointer());
+
+            raf.seek(9000);
+            byte[] b = new byte[1000];
+            raf.readFully(b);
+            assertArrayEquals(Arrays.copyOfRange(data, 9000, 10000), b);
+            assertEquals(-1, raf.read());
+            try {
+                raf.readInt();
+                fail("Expected EOF");
+            } catch (EOFException ignored) {
+            }
+
+            raf.seek(0);
+            assertEquals(100, raf.skipBytes(100));
+            assertEquals(data[100] & 0xFF, raf.read());
+        } finally {
+            raf.close();
+            source.close();
+        }
+    }
+
+    @Test
+    public void testClosed() throws IOException {
+        MappedAudioSource source = MappedAudioSource.open(createFile(randomData(100)));
+        InputStream in = source.newInputStream(0);
+        source.close();
+        try {
+            in.read();
+            fail("Read after close");
+        } catch (IOException ignored) {
+        }
+    }
+}
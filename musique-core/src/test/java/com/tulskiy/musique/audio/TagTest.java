@@ -65,6 +65,10 @@ public class TagTest {
     // TODO add multiline check
     private final String COMMENT = "comment";
     private final String RATING = "6";
+    private final float TRACK_GAIN = -6.5f;
+    private final float TRACK_PEAK = 0.988f;
+    private final float ALBUM_GAIN = -7.25f;
+    private final float ALBUM_PEAK = 1.0f;
 
     @Test
     public void testMP3() {
@@ -211,6 +215,10 @@ public class TagTest {
         addMulti(trackData, FieldKey.CATALOG_NO, CATALOG_NOS);
         trackData.addComment(COMMENT);
         trackData.addRating(RATING);
+        trackData.setTrackGain(TRACK_GAIN);
+        trackData.setTrackPeak(TRACK_PEAK);
+        trackData.setAlbumGain(ALBUM_GAIN);
+        trackData.setAlbumPeak(ALBUM_PEAK);
 
         try {
             File file = getFileFromResource(name);
@@ -219,6 +227,7 @@ public class TagTest {
             trackData.setLocation(fo.toURI().toString());
             getAudioFileWriter(fo.getName()).write(track);
             testRead(fo.getName());
+            testReplayGain(fo.getName());
         } catch (Exception e) {
             e.printStackTrace();
             fail();
@@ -243,6 +252,10 @@ public class TagTest {
         trackData.addCatalogNo(CATALOG_NO);
         trackData.addComment(COMMENT);
         trackData.addRating(RATING);
+        trackData.setTrackGain(TRACK_GAIN);
+        trackData.setTrackPeak(TRACK_PEAK);
+        trackData.setAlbumGain(ALBUM_GAIN);
+        trackData.setAlbumPeak(ALBUM_PEAK);
 
         File file = getFileFromResource(name);
         File fo = createTempFile(name, file.getParentFile().getParentFile().getParentFile());
@@ -255,6 +268,15 @@ public class TagTest {
         }
 
         testReadApe(fo.getName());
+        testReplayGain(fo.getName());
+    }
+
+    private void testReplayGain(String file) {
+        TrackData trackData = getAudioFileReader(file).read(getFileFromResource(file)).getTrackData();
+        assertEquals(TRACK_GAIN, trackData.getTrackGain(), 1e-6);
+        assertEquals(TRACK_PEAK, trackData.getTrackPeak(), 1e-6);
+        assertEquals(ALBUM_GAIN, trackData.getAlbumGain(), 1e-6);
+        assertEquals(ALBUM_PEAK, trackData.getAlbumPeak(), 1e-6);
     }
 
     private File createTempFile(String name, File directory) {
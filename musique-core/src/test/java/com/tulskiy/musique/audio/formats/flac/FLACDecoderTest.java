@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.formats.flac;
+
+import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.playlist.TrackData;
+import com.tulskiy.musique.system.configuration.Configuration;
+import org.junit.Test;
+import org.kc7bfi.jflac.metadata.Metadata;
+import org.kc7bfi.jflac.metadata.StreamInfo;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FLACDecoderTest {
+    /**
+     * Stereo test signal: a few sines and some noise, loud enough to use
+     * all bits
+     */
+    private byte[] getSamples(AudioFormat format, int seconds) {
+        int bytes = format.getSampleSizeInBits() / 8;
+        int samples = (int) format.getSampleRate() * seconds;
+        double amplitude = (1 << (format.getSampleSizeInBits() - 1)) * 0.3;
+        Random random = new Random(1);
+        byte[] pcm = new byte[samples * format.getFrameSize()];
+        int pos = 0;
+        for (int i = 0; i < samples; i++) {
+            for (int ch = 0; ch < format.getChannels(); ch++) {
+                double t = (double) i / format.getSampleRate();
+                double value = Math.sin(2 * Math.PI * 440 * (ch + 1) * t) +
+                        0.5 * Math.sin(2 * Math.PI * 3000 * t) +
+                        0.3 * random.nextGaussian();
+                int sample = (int) (value * amplitude);
+                for (int b = 0; b < bytes; b++) {
+                    pcm[pos++] = (byte) (sample >> (8 * b));
+                }
+            }
+        }
+        return pcm;
+    }
+
+    private File encode(byte[] pcm, AudioFormat format, int level) throws IOException {
+        Configuration config = new Configuration();
+        config.setInt("encoder.flac.level", level);
+        config.setInt("encoder.flac.threads", 1);
+        File file = File.createTempFile("musique", ".flac");
+        file.deleteOnExit();
+
+        FLACEncoder encoder = new FLACEncoder();
+        assertTrue(encoder.open(file, format, config));
+        int chunk = 65536 / format.getFrameSize() * format.getFrameSize();
+        for (int pos = 0; pos < pcm.length; pos += chunk) {
+            int len = Math.min(chunk, pcm.length - pos);
+            encoder.encode(Arrays.copyOfRange(pcm, pos, pos + len), len);
+        }
+        encoder.close();
+        return file;
+    }
+
+    private byte[] decode(File file, int bufferSize) throws Exception {
+        Track track = new Track(new TrackData(file.toURI(), 0));
+        FLACDecoder decoder = new FLACDecoder();
+        assertTrue(decoder.open(track));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[bufferSize];
+        int len;
+        while ((len = decoder.decode(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+        decoder.close();
+        return out.toByteArray();
+    }
+
+    private StreamInfo readStreamInfo(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            for (Metadata metadata : new org.kc7bfi.jflac.FLACDecoder(in).readMetadata()) {
+                if (metadata instanceof StreamInfo)
+                    return (StreamInfo) metadata;
+            }
+        } finally {
+            in.close();
+        }
+        return null;
+    }
+
+    /**
+     * MD5 in the stream info is computed over signed samples
+     */
+    private byte[] md5(byte[] pcm, int bitsPerSample) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        if (bitsPerSample == 8) {
+            byte[] signed = new byte[pcm.length];
+            for (int i = 0; i < pcm.length; i++) {
+                signed[i] = (byte) (pcm[i] - 0x80);
+            }
+            pcm = signed;
+        }
+        return md.digest(pcm);
+    }
+
+    @Test
+    public void testMD5() throws Exception {
+        File file = new File(getClass().getClassLoader().getResource("testfiles/flac/sample.flac").toURI());
+        StreamInfo info = readStreamInfo(file);
+        assertTrue(Arrays.equals(info.getMD5Sum(), md5(decode(file, 65536), info.getBitsPerSample())));
+    }
+
+    @Test
+    public void testBitDepths() throws Exception {
+        for (int bits : new int[]{8, 16, 24}) {
+            AudioFormat format = new AudioFormat(44100, bits, 2, true, false);
+            byte[] pcm = getSamples(format, 2);
+            for (int level : new int[]{0, 3, 5, 8}) {
+                String message = bits + " bits, level " + level;
+                File file = encode(pcm, format, level);
+                StreamInfo info = readStreamInfo(file);
+                byte[] decoded = decode(file, 65536);
+                assertTrue(message, Arrays.equals(info.getMD5Sum(), md5(decoded, bits)));
+                if (bits > 8)
+                    assertTrue(message, Arrays.equals(pcm, decoded));
+
+                // frames that do not fit into the buffer are split
+                assertTrue(message, Arrays.equals(decoded, decode(file, 1000 * format.getFrameSize())));
+            }
+        }
+    }
+
+    //    @Test
+    public void testSpeed() throws Exception {
+        for (int bits : new int[]{16, 24}) {
+            AudioFormat format = new AudioFormat(44100, bits, 2, true, false);
+            File file = encode(getSamples(format, 60), format, 5);
+            // first round is warm-up
+            for (int round = 0; round < 6; round++) {
+                long time = System.nanoTime();
+                int length = decode(file, 65536).length;
+                time = System.nanoTime() - time;
+                System.out.printf("%d bits: %.1f MB/s%n", bits, length / 1e6 / (time / 1e9));
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.formats.flac;
+
+import com.tulskiy.musique.audio.Decoder;
+import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.system.Codecs;
+import com.tulskiy.musique.system.TrackIO;
+import com.tulskiy.musique.system.configuration.Configuration;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class FLACEncoderTest {
+    private AudioFormat format;
+
+    private byte[] decode(File file) throws Exception {
+        Track track = TrackIO.getAudioFileReader(file.getName()).read(file);
+        Decoder decoder = Codecs.getNewDecoder(track);
+        assertTrue(decoder.open(track));
+        format = decoder.getAudioFormat();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[65536];
+        int len;
+        while ((len = decoder.decode(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+        decoder.close();
+        return out.toByteArray();
+    }
+
+    private File encode(byte[] pcm, int level, int threads) throws IOException {
+        Configuration config = new Configuration();
+        config.setInt("encoder.flac.level", level);
+        config.setInt("encoder.flac.threads", threads);
+        File file = File.createTempFile("musique", ".flac");
+        file.deleteOnExit();
+
+        FLACEncoder encoder = new FLACEncoder();
+        assertTrue(encoder.open(file, format, config));
+        // odd chunk size, so that blocks never line up with the input
+        int chunk = 10000 * format.getFrameSize();
+        for (int pos = 0; pos < pcm.length; pos += chunk) {
+            int len = Math.min(chunk, pcm.length - pos);
+            encoder.encode(Arrays.copyOfRange(pcm, pos, pos + len), len);
+        }
+        encoder.close();
+        return file;
+    }
+
+    private byte[] read(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int pos = 0;
+            while (pos < data.length) {
+                pos += in.read(data, pos, data.length - pos);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private byte[] getSamples() throws Exception {
+        File file = new File(getClass().getClassLoader().getResource("testfiles/uncompressed/sample.wav").toURI());
+        byte[] pcm = decode(file);
+        // a few copies, so that there is work for several threads
+        byte[] samples = new byte[pcm.length * 3];
+        for (int i = 0; i < 3; i++) {
+            System.arraycopy(pcm, 0, samples, i * pcm.length, pcm.length);
+        }
+        return samples;
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+        byte[] pcm = getSamples();
+        for (int level : new int[]{0, 5}) {
+            File serial = encode(pcm, level, 1);
+            File threaded = encode(pcm, level, 3);
+            assertTrue("level " + level, Arrays.equals(read(serial), read(threaded)));
+            assertTrue("level " + level, Arrays.equals(pcm, decode(threaded)));
+        }
+    }
+
+    //    @Test
+    public void testSpeed() throws Exception {
+        byte[] pcm = getSamples();
+        int cores = Runtime.getRuntime().availableProcessors();
+        // first round is warm-up
+        for (int round = 0; round < 3; round++) {
+            for (int threads : new int[]{1, cores}) {
+                long time = System.nanoTime();
+                encode(pcm, 5, threads);
+                time = System.nanoTime() - time;
+                System.out.printf("%d threads: %.0f ms%n", threads, time / 1e6);
+            }
+        }
+    }
+}
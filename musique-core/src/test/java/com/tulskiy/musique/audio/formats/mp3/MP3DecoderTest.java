@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.formats.mp3;
+
+import javazoom.jl.decoder.*;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+
+import static org.junit.Assert.*;
+
+public class MP3DecoderTest {
+    private static final String[] FILES = {
+            "testfiles/mp3/sample.mp3",
+            "testfiles/mp3/sample_notag.mp3",
+            "testfiles/mp3/sample_apev2.mp3",
+    };
+
+    private File getFile(String name) throws Exception {
+        return new File(getClass().getClassLoader().getResource(name).toURI());
+    }
+
+    @Test
+    public void testByteOutput() throws Exception {
+        for (String name : FILES) {
+            File file = getFile(name);
+            Bitstream shortStream = new Bitstream(new FileInputStream(file));
+            Bitstream byteStream = new Bitstream(new FileInputStream(file));
+            Decoder shortDecoder = new Decoder();
+            Decoder byteDecoder = new Decoder();
+            // odd offset to make sure nothing assumes alignment
+            byte[] buf = new byte[Obuffer.OBUFFERSIZE * 2 + 3];
+            int frames = 0;
+
+            Header header;
+            while ((header = shortStream.readFrame()) != null) {
+                SampleBuffer output = (SampleBuffer) shortDecoder.decodeFrame(header, shortStream);
+                shortStream.closeFrame();
+
+                Header byteHeader = byteStream.readFrame();
+                assertNotNull(byteHeader);
+                int len = byteDecoder.decodeFrame(byteHeader, byteStream, buf, 3);
+                byteStream.closeFrame();
+
+                assertEquals(name + ", frame " + frames, output.getBufferLength() * 2, len);
+                short[] samples = output.getBuffer();
+                for (int i = 0; i < output.getBufferLength(); i++) {
+                    short s = (short) ((buf[3 + 2 * i] & 0xFF) | (buf[4 + 2 * i] << 8));
+                    assertEquals(name + ", frame " + frames + ", sample " + i, samples[i], s);
+                }
+                frames++;
+            }
+            assertNull(byteStream.readFrame());
+            assertTrue(frames > 0);
+            shortStream.close();
+            byteStream.close();
+        }
+    }
+
+    @Test
+    public void testWrongOutputBuffer() throws Exception {
+        Bitstream bitstream = new Bitstream(new FileInputStream(getFile(FILES[0])));
+        Decoder decoder = new Decoder();
+        Header header = bitstream.readFrame();
+        decoder.decodeFrame(header, bitstream);
+        bitstream.closeFrame();
+        try {
+            decoder.decodeFrame(bitstream.readFrame(), bitstream, new byte[Obuffer.OBUFFERSIZE * 2], 0);
+            fail("decoder already writes to a SampleBuffer");
+        } catch (IllegalStateException ignored) {
+        } finally {
+            bitstream.close();
+        }
+    }
+
+    //    @Test
+    public void testSpeed() throws Exception {
+        File file = getFile(FILES[0]);
+        byte[] buf = new byte[Obuffer.OBUFFERSIZE * 2];
+        // first round is warm-up
+        for (int round = 0; round < 4; round++) {
+            long time = System.nanoTime();
+            int frames = 0;
+            for (int i = 0; i < 200; i++) {
+                Bitstream bitstream = new Bitstream(new FileInputStream(file));
+                Decoder decoder = new Decoder();
+                Header header;
+                while ((header = bitstream.readFrame()) != null) {
+                    decoder.decodeFrame(header, bitstream, buf, 0);
+                    bitstream.closeFrame();
+                    frames++;
+                }
+                bitstream.close();
+            }
+            time = System.nanoTime() - time;
+            System.out.printf("%d frames, %.0f frames/s%n", frames, frames / (time / 1e9));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.formats.mp3;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Header;
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class MP3FrameIndexTest {
+    private File getFile(String name) throws Exception {
+        return new File(getClass().getClassLoader().getResource(name).toURI());
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        for (String name : new String[]{"testfiles/mp3/sample.mp3", "testfiles/mp3/sample_notag.mp3"}) {
+            File file = getFile(name);
+            MP3FrameIndex index = MP3FrameIndex.scan(file);
+            assertNotNull(index);
+            assertTrue(index.isValid(file));
+
+            // same frames as the decoder sees them
+            Bitstream bitstream = new Bitstream(new FileInputStream(file));
+            int frames = 0;
+            Header header;
+            while ((header = bitstream.readFrame()) != null) {
+                if (frames < index.size() && frames + 1 < index.size()) {
+                    long size = index.getOffset(frames + 1) - index.getOffset(frames);
+                    assertEquals(name + ", frame " + frames, header.calculate_framesize() + 4, size);
+                }
+                bitstream.closeFrame();
+                frames++;
+            }
+            bitstream.close();
+            assertEquals(name, frames, index.size());
+        }
+    }
+
+    @Test
+    public void testFrameStart() throws Exception {
+        File file = getFile("testfiles/mp3/sample.mp3");
+        MP3FrameIndex index = MP3FrameIndex.scan(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            for (int i = 0; i < index.size(); i++) {
+                raf.seek(index.getOffset(i));
+                int header = raf.readInt();
+                assertEquals(0xFFE00000, header & 0xFFE00000);
+                assertEquals(MP3FrameIndex.frameSize(header), i + 1 < index.size() ?
+                        index.getOffset(i + 1) - index.getOffset(i) : MP3FrameIndex.frameSize(header));
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void testFFBytes() throws Exception {
+        // 0xFFFFFFFF between frames used to look like the end of file
+        File file = getFile("testfiles/mp3/sample_notag.mp3");
+        MP3FrameIndex index = MP3FrameIndex.scan(file);
+        byte[] data = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+
+        File copy = File.createTempFile("index", ".mp3");
+        try {
+            int offset = (int) index.getOffset(10);
+            OutputStream out = new FileOutputStream(copy);
+            try {
+                out.write(data, 0, offset);
+                out.write(new byte[]{-1, -1, -1, -1, 12, 12, 12, 12});
+                out.write(data, offset, data.length - offset);
+            } finally {
+                out.close();
+            }
+            MP3FrameIndex copyIndex = MP3FrameIndex.scan(copy);
+            assertNotNull(copyIndex);
+            assertEquals(index.size(), copyIndex.size());
+            assertEquals(index.getOffset(10) + 8, copyIndex.getOffset(10));
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            copy.delete();
+        }
+    }
+
+    @Test
+    public void testPersist() throws Exception {
+        File file = getFile("testfiles/mp3/sample.mp3");
+        MP3FrameIndex index = MP3FrameIndex.scan(file);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(bytes));
+        MP3FrameIndex copy = MP3FrameIndex.read(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())));
+        assertNotNull(copy);
+        assertTrue(copy.isValid(file));
+        assertEquals(index.size(), copy.size());
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(index.getOffset(i), copy.getOffset(i));
+        }
+        // about two bytes per frame
+        assertTrue(bytes.size() < 64 + index.size() * 3);
+    }
+}
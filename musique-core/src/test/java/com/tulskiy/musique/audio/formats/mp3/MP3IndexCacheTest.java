@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.formats.mp3;
+
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class MP3IndexCacheTest {
+    private File getFile(String name) throws Exception {
+        return new File(getClass().getClassLoader().getResource(name).toURI());
+    }
+
+    private void copy(File from, File to) throws IOException {
+        FileInputStream in = new FileInputStream(from);
+        FileOutputStream out = new FileOutputStream(to);
+        try {
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    private File createDir() throws IOException {
+        File dir = File.createTempFile("mp3index", "");
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+        assertTrue(dir.mkdir());
+        return dir;
+    }
+
+    @SuppressWarnings({"ResultOfMethodCallIgnored"})
+    private void delete(File dir, File... files) {
+        for (File file : files) {
+            file.delete();
+        }
+        File[] indexes = dir.listFiles();
+        if (indexes != null) {
+            for (File file : indexes) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testPrune() throws Exception {
+        File dir = createDir();
+        File[] files = new File[3];
+        try {
+            for (int i = 0; i < files.length; i++) {
+                files[i] = File.createTempFile("index", ".mp3");
+                copy(getFile("testfiles/mp3/sample.mp3"), files[i]);
+            }
+
+            new MP3IndexCache(dir).get(files[0], true);
+            File[] indexes = dir.listFiles();
+            assertEquals(1, indexes.length);
+            long size = indexes[0].length();
+
+            // room for two indexes
+            MP3IndexCache cache = new MP3IndexCache(dir, size * 2);
+            //noinspection ResultOfMethodCallIgnored
+            indexes[0].setLastModified(System.currentTimeMillis() - 60000);
+            assertNotNull(cache.get(files[1], true));
+            assertNotNull(cache.get(files[2], true));
+            assertEquals(2, dir.listFiles().length);
+        } finally {
+            delete(dir, files);
+        }
+    }
+
+    @Test
+    public void testStale() throws Exception {
+        File dir = createDir();
+        File file = File.createTempFile("index", ".mp3");
+        try {
+            copy(getFile("testfiles/mp3/sample.mp3"), file);
+            new MP3IndexCache(dir).get(file, true);
+            assertEquals(1, dir.listFiles().length);
+
+            // the file is gone, nobody is going to need its index
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            assertNull(new MP3IndexCache(dir).get(file, true));
+            assertEquals(0, dir.listFiles().length);
+        } finally {
+            delete(dir, file);
+        }
+    }
+}
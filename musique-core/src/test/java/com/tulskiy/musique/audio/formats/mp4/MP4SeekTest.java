@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.formats.mp4;
+
+import com.tulskiy.musique.audio.Decoder;
+import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.system.Codecs;
+import com.tulskiy.musique.system.TrackIO;
+import net.sourceforge.jaad.mp4.MP4Container;
+import net.sourceforge.jaad.mp4.api.AudioTrack;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MP4SeekTest {
+    private static final String[] FILES = {
+            "testfiles/aac/sample.mp4",
+            "testfiles/aac/sample_faac.mp4",
+            "testfiles/aac/sample_itunes.m4a",
+            "testfiles/aac/sample_nero.mp4",
+    };
+
+    private File getFile(String name) throws Exception {
+        return new File(getClass().getClassLoader().getResource(name).toURI());
+    }
+
+    @Test
+    public void testFrameStarts() throws Exception {
+        for (String name : FILES) {
+            RandomAccessFile in = new RandomAccessFile(getFile(name), "r");
+            try {
+                MP4Container container = new MP4Container(in);
+                AudioTrack track = (AudioTrack) container.getMovie()
+                        .getTracks(AudioTrack.AudioCodec.AAC).get(0);
+                long[] starts = track.getFrameStarts();
+                assertEquals(name, track.getFrameCount() + 1, starts.length);
+
+                long start = 0;
+                for (int i = 0; i < track.getFrameCount(); i++) {
+                    assertEquals(name + ", frame " + i, start, starts[i]);
+                    start += track.getSampleDuration(i);
+                }
+                assertEquals(name, start, starts[starts.length - 1]);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    //    @Test
+    public void testSeekSpeed() throws Exception {
+        byte[] buf = new byte[65536];
+        for (String name : new String[]{"testfiles/aac/sample_itunes.m4a", "testfiles/alac/sample_ffmpeg.m4a"}) {
+            File file = getFile(name);
+            Track track = TrackIO.getAudioFileReader(file.getName()).read(file);
+            Decoder decoder = Codecs.getDecoder(track);
+            decoder.open(track);
+            long total = track.getTrackData().getTotalSamples();
+            Random random = new Random(1);
+            // first round is warm-up
+            for (int round = 0; round < 3; round++) {
+                int seeks = 2000;
+                long time = System.nanoTime();
+                for (int i = 0; i < seeks; i++) {
+                    decoder.seekSample((long) (random.nextDouble() * total));
+                    decoder.decode(buf);
+                }
+                time = System.nanoTime() - time;
+                System.out.printf("%-35s %8.1f us/seek%n", name, time / 1e3 / seeks);
+            }
+            decoder.close();
+        }
+    }
+}
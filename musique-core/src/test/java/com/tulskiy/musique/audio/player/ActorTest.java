@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player;
+
+import com.tulskiy.musique.audio.player.Actor.Message;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ActorTest {
+    private static class RecordingActor extends Actor {
+        final List<Message> messages = Collections.synchronizedList(new ArrayList<Message>());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done;
+        final AtomicInteger running = new AtomicInteger();
+        volatile boolean overlapped;
+
+        RecordingActor(int expected) {
+            super("Test");
+            done = new CountDownLatch(expected);
+        }
+
+        @Override
+        protected void process(Message message) {
+            if (running.incrementAndGet() > 1)
+                overlapped = true;
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            messages.add(message);
+            running.decrementAndGet();
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws InterruptedException {
+        RecordingActor actor = new RecordingActor(5);
+        actor.send(Message.PLAY);
+        assertTrue(actor.started.await(5, TimeUnit.SECONDS));
+        // actor is busy, these wait in the queue
+        for (int i = 0; i < 10; i++) {
+            actor.send(Message.seek(i * 100));
+        }
+        actor.send(Message.PAUSE);
+        actor.send(Message.PAUSE);
+        actor.send(Message.seek(5));
+        assertEquals(4, actor.getQueueDepth());
+        actor.release.countDown();
+        assertTrue(actor.done.await(5, TimeUnit.SECONDS));
+
+        List<Message> messages = actor.messages;
+        assertEquals(5, messages.size());
+        assertSame(Message.PLAY, messages.get(0));
+        assertEquals(Message.Type.SEEK, messages.get(1).getType());
+        assertEquals(900, messages.get(1).getSample());
+        // pause toggles, so it is not coalesced
+        assertSame(Message.PAUSE, messages.get(2));
+        assertSame(Message.PAUSE, messages.get(3));
+        assertEquals(5, messages.get(4).getSample());
+
+        assertEquals(9, actor.getCoalescedCount());
+        assertEquals(4, actor.getMaxQueueDepth());
+        assertEquals(0, actor.getQueueDepth());
+    }
+
+    @Test
+    public void testConcurrentSend() throws InterruptedException {
+        final int threads = 8;
+        final int messages = 1000;
+        final RecordingActor actor = new RecordingActor(threads * messages);
+        actor.release.countDown();
+        Thread[] senders = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            senders[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < messages; i++) {
+                        // open is not coalesced with pause between
+                        actor.send(Message.open(null));
+                        actor.send(Message.PAUSE);
+                    }
+                }
+            };
+        }
+        for (Thread sender : senders) {
+            sender.start();
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        assertTrue(actor.done.await(10, TimeUnit.SECONDS));
+
+        // nothing is lost, only opens can be coalesced
+        long total = actor.getProcessedCount() + actor.getCoalescedCount();
+        while (total < threads * messages * 2) {
+            Thread.sleep(10);
+            total = actor.getProcessedCount() + actor.getCoalescedCount();
+        }
+        assertEquals(threads * messages * 2, total);
+        int pauses = 0;
+        synchronized (actor.messages) {
+            for (Message message : actor.messages) {
+                if (message == Message.PAUSE)
+                    pauses++;
+            }
+        }
+        assertEquals(threads * messages, pauses);
+        assertFalse(actor.overlapped);
+    }
+
+    @Test
+    public void testMessages() {
+        Message seek = Message.seek(42);
+        assertEquals(Message.Type.SEEK, seek.getType());
+        assertEquals(42, seek.getSample());
+        assertTrue(seek.isCoalescing());
+        assertFalse(Message.STOP.isCoalescing());
+        assertNull(Message.open(null).getTrack());
+        assertEquals("SEEK 42", seek.toString());
+    }
+}
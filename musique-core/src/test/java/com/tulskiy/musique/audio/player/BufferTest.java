@@ -18,6 +18,7 @@
 package com.tulskiy.musique.audio.player;
 
 import com.tulskiy.musique.audio.player.io.Buffer;
+import com.tulskiy.musique.audio.player.io.LockFreeRingBuffer;
 import com.tulskiy.musique.playlist.Track;
 import com.tulskiy.musique.util.AudioMath;
 import org.junit.Test;
@@ -78,6 +79,193 @@ public class BufferTest {
         assertEquals(-1, buffer.read(buf, 0, 100));
     }
 
+    @Test
+    public void testRingWrap() {
+        LockFreeRingBuffer ring = new LockFreeRingBuffer(10);
+        assertEquals(16, ring.size());
+
+        byte[] in = new byte[12];
+        for (int i = 0; i < in.length; i++) {
+            in[i] = (byte) i;
+        }
+        byte[] out = new byte[12];
+        ring.put(in, 0, 12);
+        assertEquals(12, ring.get(out, 0, 12));
+        assertArrayEquals(in, out);
+
+        // this one wraps around the end of the array
+        ring.put(in, 0, 12);
+        assertEquals(4, ring.putAvailable());
+        assertEquals(12, ring.get(out, 0, 12));
+        assertArrayEquals(in, out);
+
+        ring.put(in, 0, 5);
+        ring.empty();
+        assertEquals(0, ring.getAvailable());
+        assertEquals(-1, ring.get(out, 0, 12));
+    }
+
+    @Test
+    public void testRingConcurrent() throws InterruptedException {
+        final LockFreeRingBuffer ring = new LockFreeRingBuffer(1024);
+        final int total = 1000000;
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                byte[] buf = new byte[777];
+                int written = 0;
+                while (written < total) {
+                    int len = Math.min(buf.length, total - written);
+                    for (int i = 0; i < len; i++) {
+                        buf[i] = (byte) (written + i);
+                    }
+                    ring.put(buf, 0, len);
+                    written += len;
+                }
+                ring.setEOF(true);
+            }
+        };
+        producer.start();
+
+        byte[] buf = new byte[500];
+        int read = 0;
+        int len;
+        while ((len = ring.get(buf, 0, buf.length)) != -1) {
+            for (int i = 0; i < len; i++) {
+                assertEquals((byte) (read + i), buf[i]);
+            }
+            read += len;
+        }
+        producer.join();
+        assertEquals(total, read);
+    }
+
+    @Test
+    public void testRingSlices() {
+        testSlices(new LockFreeRingBuffer(16, false));
+        testSlices(new LockFreeRingBuffer(16, true));
+    }
+
+    private void testSlices(LockFreeRingBuffer ring) {
+        byte[] out = new byte[12];
+        // move positions close to the end of the ring
+        ring.put(out, 0, 12);
+        assertEquals(12, ring.get(out, 0, 12));
+
+        ByteBuffer slice = ring.reserve(8);
+        assertEquals(8, slice.remaining());
+        for (int i = 0; i < 8; i++) {
+            slice.put((byte) i);
+        }
+        ring.commit(8);
+        assertEquals(8, ring.getAvailable());
+
+        // first slice ends at the end of the ring, the rest wrapped to the start
+        slice = ring.getSlice(100);
+        assertEquals(4, slice.remaining());
+        assertEquals(0, slice.get(slice.position()));
+        assertEquals(3, slice.get(slice.position() + 3));
+        ring.release(4);
+        slice = ring.getSlice(100);
+        assertEquals(4, slice.remaining());
+        assertEquals(4, slice.get(slice.position()));
+        assertEquals(7, slice.get(slice.position() + 3));
+        ring.release(4);
+        assertEquals(0, ring.getAvailable());
+
+        ring.empty();
+        assertNull(ring.getSlice(100));
+    }
+
+    @Test
+    public void testRingResize() {
+        LockFreeRingBuffer ring = new LockFreeRingBuffer(16);
+        byte[] buf = new byte[100];
+        ring.put(buf, 0, 10);
+        ring.resize(50);
+        // not empty yet, so the old storage is still used
+        ring.put(buf, 0, 1);
+        assertEquals(16, ring.size());
+        assertEquals(11, ring.get(buf, 0, 100));
+
+        ring.put(buf, 0, 40);
+        assertEquals(64, ring.size());
+        assertEquals(40, ring.get(buf, 0, 100));
+    }
+
+    @Test
+    public void testUnderruns() throws InterruptedException {
+        final Buffer buffer = new Buffer(1024);
+        final byte[] buf = new byte[100];
+        buffer.addNextTrack(new Track(), null, 0, false);
+        buffer.pollNextTrack();
+
+        // buffer was never filled, so this is not an underrun
+        buffer.write(buf, 0, 100);
+        assertNotNull(buffer.readSlice(100));
+        buffer.release(100);
+        assertEquals(0, buffer.getUnderruns());
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ignored) {
+                }
+                buffer.write(buf, 0, 100);
+            }
+        };
+        writer.start();
+        assertNotNull(buffer.readSlice(100));
+        buffer.release(100);
+        writer.join();
+        assertEquals(1, buffer.getUnderruns());
+        assertEquals(2, buffer.getFillHistogram()[0]);
+
+        buffer.flush();
+        buffer.resetStatistics();
+        assertEquals(0, buffer.getUnderruns());
+        assertEquals(0, buffer.getFillHistogram()[0]);
+    }
+
+    @Test
+    public void testFrameAlignedSlices() {
+        Buffer buffer = new Buffer(16);
+        buffer.addNextTrack(new Track(), null, 0, false);
+        buffer.pollNextTrack();
+        byte[] buf = new byte[12];
+        buffer.write(buf, 0, 12);
+        assertEquals(12, buffer.read(buf, 0, 12));
+
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = (byte) i;
+        }
+        buffer.write(buf, 0, 12);
+        // only 4 bytes left before the end of the ring, frame is copied out
+        ByteBuffer slice = buffer.readSlice(100, 6);
+        assertEquals(6, slice.remaining());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i, slice.get(slice.position() + i));
+        }
+        buffer.release(6);
+        slice = buffer.readSlice(100, 6);
+        assertEquals(6, slice.remaining());
+        assertEquals(6, slice.get(slice.position()));
+        buffer.release(6);
+        assertEquals(0, buffer.available());
+
+        // partial frames at the end of the ring are left for the next slice
+        buffer.write(buf, 0, 12);
+        slice = buffer.readSlice(100, 4);
+        assertEquals(8, slice.remaining());
+        buffer.release(8);
+        slice = buffer.readSlice(100, 4);
+        assertEquals(4, slice.remaining());
+        assertEquals(8, slice.get(slice.position()));
+        buffer.release(4);
+    }
+
     @Test
     public void testConvert() {
         byte[] input = new byte[]{
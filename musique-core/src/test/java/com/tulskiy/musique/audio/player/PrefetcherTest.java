@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.audio.player;
+
+import com.tulskiy.musique.audio.Decoder;
+import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.playlist.TrackData;
+import com.tulskiy.musique.system.Codecs;
+import com.tulskiy.musique.system.TrackIO;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PrefetcherTest {
+    private Track getTrack(String name) throws Exception {
+        File file = new File(getClass().getClassLoader().getResource(name).toURI());
+        return TrackIO.getAudioFileReader(file.getName()).read(file);
+    }
+
+    private byte[] decodeAll(Decoder decoder, byte[] start, int length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(start, 0, length);
+        byte[] buf = new byte[65536];
+        int len;
+        while ((len = decoder.decode(buf)) != -1) {
+            out.write(buf, 0, len);
+        }
+        decoder.close();
+        return out.toByteArray();
+    }
+
+    private void waitForCache(Prefetcher prefetcher, int tracks) throws InterruptedException {
+        for (int i = 0; i < 500 && prefetcher.getCachedTracks() < tracks; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(tracks, prefetcher.getCachedTracks());
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        Prefetcher prefetcher = new Prefetcher();
+        prefetcher.setSeconds(1);
+        for (String name : new String[]{"testfiles/flac/sample.flac", "testfiles/mp3/sample.mp3"}) {
+            Track track = getTrack(name);
+            prefetcher.prefetch(Collections.singletonList(track));
+            waitForCache(prefetcher, 1);
+
+            Prefetcher.Entry entry = prefetcher.take(track);
+            assertNotNull(name, entry);
+            assertTrue(name, entry.getLength() > 0);
+            assertEquals(0, prefetcher.getCachedBytes());
+            byte[] prefetched = decodeAll(entry.getDecoder(), entry.getData(), entry.getLength());
+
+            Decoder decoder = Codecs.getNewDecoder(track);
+            assertTrue(decoder.open(track));
+            byte[] expected = decodeAll(decoder, new byte[0], 0);
+            assertTrue(name, Arrays.equals(expected, prefetched));
+        }
+        assertEquals(2, prefetcher.getHits());
+        assertNull(prefetcher.take(getTrack("testfiles/flac/sample.flac")));
+        assertEquals(1, prefetcher.getMisses());
+    }
+
+    @Test
+    public void testSkipStreams() throws Exception {
+        Prefetcher prefetcher = new Prefetcher();
+        prefetcher.setTrackCount(2);
+        prefetcher.setSeconds(1);
+        Track radio = new Track(new TrackData(new URI("http://localhost:1/"), 0));
+        Track file = getTrack("testfiles/uncompressed/sample.wav");
+        prefetcher.prefetch(Arrays.asList(radio, file));
+        waitForCache(prefetcher, 1);
+        assertNull(prefetcher.take(radio));
+        assertNotNull(prefetcher.take(file));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        Prefetcher prefetcher = new Prefetcher();
+        prefetcher.setTrackCount(2);
+        prefetcher.setSeconds(1);
+        Track first = getTrack("testfiles/flac/sample.flac");
+        Track second = getTrack("testfiles/uncompressed/sample.wav");
+        prefetcher.prefetch(Arrays.asList(first, second));
+        waitForCache(prefetcher, 2);
+
+        // only tracks that are still upcoming are kept
+        prefetcher.prefetch(Collections.singletonList(second));
+        assertEquals(1, prefetcher.getCachedTracks());
+        assertNull(prefetcher.take(first));
+
+        prefetcher.setMaxMemory(prefetcher.getCachedBytes());
+        prefetcher.prefetch(Arrays.asList(second, first));
+        for (int i = 0; i < 500 && prefetcher.getEvictions() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, prefetcher.getEvictions());
+        assertEquals(1, prefetcher.getCachedTracks());
+        assertNotNull(prefetcher.take(first));
+
+        prefetcher.clear();
+        assertEquals(0, prefetcher.getCachedTracks());
+        assertEquals(0, prefetcher.getCachedBytes());
+    }
+}
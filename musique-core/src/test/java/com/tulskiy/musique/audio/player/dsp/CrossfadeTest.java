@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.dsp;
+
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class CrossfadeTest {
+    private final AudioFormat format = new AudioFormat(44100, 16, 2, true, false);
+
+    @Test
+    public void testMix() {
+        int frames = 10000;
+        Crossfade crossfade = new Crossfade();
+        crossfade.init(format, frames);
+        assertEquals(frames * 4, crossfade.getCapacity());
+        assertFalse(crossfade.isHolding());
+        assertFalse(crossfade.isMixing());
+
+        crossfade.startHolding();
+        assertTrue(crossfade.isHolding());
+        // tail comes in several pieces, one of them direct
+        ByteBuffer tail = pcm(frames, 0.5f);
+        tail.limit(tail.capacity() / 2);
+        crossfade.hold(tail);
+        assertEquals(0, tail.position());
+        ByteBuffer direct = ByteBuffer.allocateDirect(tail.capacity() / 2);
+        tail.limit(tail.capacity()).position(tail.capacity() / 2);
+        direct.put(tail).flip();
+        crossfade.hold(direct);
+
+        crossfade.startMixing();
+        assertTrue(crossfade.isMixing());
+        ByteBuffer head = pcm(frames * 2, -0.5f);
+        crossfade.mix(head);
+        assertFalse(crossfade.isMixing());
+        assertEquals(0, head.position());
+
+        float[][] out = new float[2][frames * 2];
+        SampleConverter.toFloat(head.array(), 0, out, frames * 2, format);
+        for (int ch = 0; ch < 2; ch++) {
+            assertEquals(0.5f, out[ch][0], 1e-3);
+            // equal power, both at -3 dB
+            assertEquals(0, out[ch][frames / 2], 1e-3);
+            assertEquals(0.5f * Math.cos(Math.PI / 8) - 0.5f * Math.sin(Math.PI / 8),
+                    out[ch][frames / 4], 1e-3);
+            assertEquals(-0.5f, out[ch][frames - 1], 1e-3);
+            // after the crossfade, next track is not touched
+            assertEquals(-0.5f, out[ch][frames], 0);
+            assertEquals(-0.5f, out[ch][frames * 2 - 1], 0);
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        Crossfade crossfade = new Crossfade();
+        crossfade.init(format, 0);
+        assertEquals(0, crossfade.getCapacity());
+        crossfade.startHolding();
+        assertFalse(crossfade.isHolding());
+
+        crossfade.init(format, 100);
+        crossfade.startHolding();
+        crossfade.hold(pcm(50, 0.5f));
+        crossfade.reset();
+        assertFalse(crossfade.isHolding());
+        assertFalse(crossfade.isMixing());
+    }
+
+    private ByteBuffer pcm(int frames, float value) {
+        float[][] samples = new float[2][frames];
+        for (float[] channel : samples) {
+            for (int i = 0; i < frames; i++) {
+                channel[i] = value;
+            }
+        }
+        byte[] pcm = new byte[frames * 4];
+        SampleConverter.fromFloat(samples, pcm, 0, frames, format);
+        return ByteBuffer.wrap(pcm);
+    }
+}
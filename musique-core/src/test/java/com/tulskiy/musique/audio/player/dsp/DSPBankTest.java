@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.dsp;
+
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DSPBankTest {
+    private static final AudioFormat[] FORMATS = {
+            new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 44100, 8, 2, 2, 44100, false),
+            new AudioFormat(44100, 8, 2, true, false),
+            new AudioFormat(44100, 16, 2, true, false),
+            new AudioFormat(44100, 16, 2, true, true),
+            new AudioFormat(44100, 24, 2, true, false),
+            new AudioFormat(44100, 24, 2, true, true),
+            new AudioFormat(44100, 32, 1, true, false),
+            new AudioFormat(44100, 32, 1, true, true),
+            new AudioFormat(44100, 16, 6, true, false),
+    };
+
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(0);
+        for (AudioFormat fmt : FORMATS) {
+            int frames = 1000;
+            byte[] pcm = new byte[frames * fmt.getFrameSize()];
+            random.nextBytes(pcm);
+            if (fmt.getSampleSizeInBits() == 32) {
+                // float only keeps 24 bits
+                for (int i = fmt.isBigEndian() ? 3 : 0; i < pcm.length; i += 4) {
+                    pcm[i] = 0;
+                }
+            }
+            float[][] samples = new float[fmt.getChannels()][frames];
+            byte[] out = new byte[pcm.length];
+            SampleConverter.toFloat(pcm, 0, samples, frames, fmt);
+            for (float[] channel : samples) {
+                for (float v : channel) {
+                    assertTrue(v >= -1 && v < 1);
+                }
+            }
+            SampleConverter.fromFloat(samples, out, 0, frames, fmt);
+            assertArrayEquals(fmt.toString(), pcm, out);
+        }
+    }
+
+    @Test
+    public void testValues() {
+        AudioFormat fmt = new AudioFormat(44100, 16, 2, true, false);
+        byte[] pcm = {0, 0x40, 0, (byte) 0x80};
+        float[][] samples = new float[2][1];
+        SampleConverter.toFloat(pcm, 0, samples, 1, fmt);
+        assertEquals(0.5f, samples[0][0], 0);
+        assertEquals(-1f, samples[1][0], 0);
+
+        fmt = new AudioFormat(44100, 24, 2, true, true);
+        pcm = new byte[]{0x40, 0, 0, (byte) 0xC0, 0, 0};
+        SampleConverter.toFloat(pcm, 0, samples, 1, fmt);
+        assertEquals(0.5f, samples[0][0], 0);
+        assertEquals(-0.5f, samples[1][0], 0);
+
+        fmt = new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 44100, 8, 2, 2, 44100, false);
+        pcm = new byte[]{(byte) 0xC0, 0};
+        SampleConverter.toFloat(pcm, 0, samples, 1, fmt);
+        assertEquals(0.5f, samples[0][0], 0);
+        assertEquals(-1f, samples[1][0], 0);
+    }
+
+    @Test
+    public void testClipping() {
+        for (AudioFormat fmt : FORMATS) {
+            float[][] samples = new float[fmt.getChannels()][2];
+            for (float[] channel : samples) {
+                channel[0] = 2;
+                channel[1] = -2;
+            }
+            byte[] out = new byte[2 * fmt.getFrameSize()];
+            SampleConverter.fromFloat(samples, out, 0, 2, fmt);
+            SampleConverter.toFloat(out, 0, samples, 2, fmt);
+            for (float[] channel : samples) {
+                assertEquals(fmt.toString(), 1, channel[0], 1e-2);
+                assertEquals(fmt.toString(), -1, channel[1], 0);
+            }
+        }
+    }
+
+    @Test
+    public void testProcess() {
+        AudioFormat fmt = new AudioFormat(44100, 16, 2, true, false);
+        int frames = DSPBank.CHUNK_FRAMES * 2 + 10;
+        byte[] pcm = new byte[frames * 4];
+        for (int i = 0; i < frames; i++) {
+            pcm[i * 4 + 1] = 0x40;
+            pcm[i * 4 + 3] = (byte) 0xC0;
+        }
+
+        DSPBank bank = new DSPBank();
+        bank.init(fmt);
+        CountingProcessor counter = new CountingProcessor();
+        VolumeControl volume = new VolumeControl();
+        volume.setVolume(0.5);
+        bank.addProcessor(volume);
+        bank.addProcessor(counter);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(pcm.length + 4);
+        direct.put(new byte[4]).put(pcm).position(4);
+        bank.process(ByteBuffer.wrap(pcm));
+        bank.process(direct);
+
+        assertEquals(1, counter.inits);
+        assertEquals(frames * 2, counter.frames);
+        assertEquals(4, direct.position());
+        for (int i = 0; i < frames; i++) {
+            assertEquals(0x20, pcm[i * 4 + 1]);
+            assertEquals((byte) 0xE0, pcm[i * 4 + 3]);
+            assertEquals(0x20, direct.get(4 + i * 4 + 1));
+            assertEquals((byte) 0xE0, direct.get(4 + i * 4 + 3));
+        }
+
+        bank.removeProcessor(volume);
+        bank.removeProcessor(counter);
+        bank.process(ByteBuffer.wrap(pcm));
+        assertEquals(frames * 2, counter.frames);
+        assertEquals(0x20, pcm[1]);
+    }
+
+    @Test
+    public void testVolume() {
+        AudioFormat fmt = new AudioFormat(44100, 16, 1, true, false);
+        DSPBank bank = new DSPBank();
+        VolumeControl volume = bank.getVolumeControl();
+        bank.init(fmt);
+
+        // unity volume and no processors, data is not touched
+        byte[] pcm = {1, 0};
+        bank.process(pcm, 0, 2);
+        assertArrayEquals(new byte[]{1, 0}, pcm);
+
+        volume.setVolume(0.5);
+        bank.init(fmt);
+        float[][] samples = new float[1][DSPBank.CHUNK_FRAMES];
+        fill(samples[0], 1);
+        volume.process(samples, 1, 100);
+        assertEquals(0.5f, samples[0][0], 0);
+
+        // volume change is ramped
+        int ramp = 44100 * VolumeControl.RAMP_MILLIS / 1000;
+        volume.setVolume(0);
+        fill(samples[0], 1);
+        volume.process(samples, 1, 1000);
+        fill(samples[0], 1);
+        volume.process(samples, 1, DSPBank.CHUNK_FRAMES);
+        float prev = samples[0][0];
+        assertEquals(0.5f * (ramp - 1001) / ramp, prev, 1e-3);
+        for (int i = 1; i < ramp - 1000; i++) {
+            assertTrue(samples[0][i] < prev);
+            assertTrue(prev - samples[0][i] < 0.5f / ramp * 1.01f);
+            prev = samples[0][i];
+        }
+        for (int i = ramp - 1000; i < DSPBank.CHUNK_FRAMES; i++) {
+            assertEquals(0, samples[0][i], 1e-6);
+        }
+        assertTrue(volume.isActive());
+
+        volume.setVolume(1);
+        volume.process(samples, 1, DSPBank.CHUNK_FRAMES);
+        assertFalse(volume.isActive());
+    }
+
+    private static void fill(float[] a, float value) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] = value;
+        }
+    }
+
+    private static class CountingProcessor implements Processor {
+        int inits;
+        int frames;
+
+        public String getName() {
+            return "Counter";
+        }
+
+        public void init(AudioFormat format) {
+            inits++;
+        }
+
+        public void process(float[][] samples, int channels, int frames) {
+            assertEquals(2, channels);
+            assertTrue(frames <= DSPBank.CHUNK_FRAMES);
+            this.frames += frames;
+        }
+    }
+}
@@ -19,7 +19,9 @@ package com.tulskiy.musique.audio.player.dsp;
 
 import org.junit.Test;
 
+import javax.sound.sampled.AudioFormat;
 import java.util.ArrayList;
+import java.util.Random;
 
 /**
  * Author: Denis Tulskiy
@@ -49,4 +51,116 @@ public class DSPSpeedTest {
         }
         System.out.println(System.currentTimeMillis() - time);
     }
+
+    //    @Test
+    public void testConversion() {
+        AudioFormat[] formats = {
+                new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 44100, 8, 2, 2, 44100, false),
+                new AudioFormat(44100, 16, 2, true, false),
+                new AudioFormat(44100, 16, 2, true, true),
+                new AudioFormat(44100, 24, 2, true, false),
+                new AudioFormat(44100, 24, 2, true, true),
+                new AudioFormat(44100, 32, 2, true, false),
+                new AudioFormat(44100, 32, 2, true, true),
+        };
+        int frames = DSPBank.CHUNK_FRAMES;
+        int iterations = 20000;
+        float[][] samples = new float[2][frames];
+        for (AudioFormat fmt : formats) {
+            byte[] pcm = new byte[frames * fmt.getFrameSize()];
+            new Random(0).nextBytes(pcm);
+            // warm up
+            for (int i = 0; i < iterations / 10; i++) {
+                SampleConverter.toFloat(pcm, 0, samples, frames, fmt);
+                SampleConverter.fromFloat(samples, pcm, 0, frames, fmt);
+            }
+
+            long time = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                SampleConverter.toFloat(pcm, 0, samples, frames, fmt);
+            }
+            long toFloat = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                SampleConverter.fromFloat(samples, pcm, 0, frames, fmt);
+            }
+            long fromFloat = System.nanoTime() - time;
+
+            double mb = (double) pcm.length * iterations / (1 << 20);
+            System.out.printf("%d bit %s: to float %.0f MB/s, from float %.0f MB/s%n",
+                    fmt.getSampleSizeInBits(), fmt.isBigEndian() ? "BE" : "LE",
+                    mb / toFloat * 1e9, mb / fromFloat * 1e9);
+        }
+    }
+
+    /**
+     * Worst case with all bands active, should be at least 100x real time
+     */
+    //    @Test
+    public void testEqualizer() {
+        testEqualizer(Equalizer.BANDS_10);
+        testEqualizer(Equalizer.BANDS_31);
+    }
+
+    private void testEqualizer(float[] bands) {
+        int frames = DSPBank.CHUNK_FRAMES;
+        for (int rate : new int[]{44100, 96000}) {
+            Equalizer eq = new Equalizer(bands);
+            float[] gains = new float[eq.getBandCount()];
+            for (int i = 0; i < gains.length; i++) {
+                gains[i] = i % 2 == 0 ? 3 : -3;
+            }
+            eq.setGains(gains);
+            eq.init(new AudioFormat(rate, 16, 2, true, false));
+            float[][] samples = new float[2][frames];
+            Random random = new Random(0);
+            for (float[] channel : samples) {
+                for (int i = 0; i < frames; i++) {
+                    channel[i] = random.nextFloat() - 0.5f;
+                }
+            }
+
+            int iterations = 5000;
+            for (int i = 0; i < iterations / 10; i++) {
+                eq.process(samples, 2, frames);
+            }
+            long time = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                eq.process(samples, 2, frames);
+            }
+            time = System.nanoTime() - time;
+            double seconds = (double) frames * iterations / rate;
+            System.out.printf("Equalizer %d bands, %d Hz stereo: %.0fx real time%n",
+                    bands.length, rate, seconds / time * 1e9);
+        }
+    }
+
+    //    @Test
+    public void testResampler() {
+        int frames = DSPBank.CHUNK_FRAMES;
+        float[][] in = new float[2][frames];
+        Random random = new Random(0);
+        for (float[] channel : in) {
+            for (int i = 0; i < frames; i++) {
+                channel[i] = random.nextFloat() - 0.5f;
+            }
+        }
+        for (Resampler.Quality quality : Resampler.Quality.values()) {
+            Resampler resampler = new Resampler(44100, 48000, 2, frames, quality);
+            float[][] out = new float[2][resampler.getMaxOutput(frames)];
+            int iterations = 10000;
+            for (int i = 0; i < iterations / 10; i++) {
+                resampler.process(in, frames, out);
+            }
+            long time = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                resampler.process(in, frames, out);
+            }
+            time = System.nanoTime() - time;
+            double seconds = (double) frames * iterations / 44100;
+            System.out.printf("Resampler %s 44100 -> 48000 stereo: %.0fx real time%n",
+                    quality, seconds / time * 1e9);
+        }
+    }
 }
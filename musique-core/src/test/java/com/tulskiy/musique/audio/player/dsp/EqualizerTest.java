@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.dsp;
+
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+
+import static org.junit.Assert.*;
+
+public class EqualizerTest {
+    private static final int RATE = 44100;
+
+    @Test
+    public void testFlat() {
+        Equalizer eq = new Equalizer(Equalizer.BANDS_10);
+        eq.init(new AudioFormat(RATE, 16, 2, true, false));
+        float[][] samples = sine(1000, RATE, 2, 4096);
+        float[][] expected = sine(1000, RATE, 2, 4096);
+        eq.process(samples, 2, 4096);
+        assertArrayEquals(expected[0], samples[0], 0);
+        assertArrayEquals(expected[1], samples[1], 0);
+    }
+
+    @Test
+    public void testResponse() {
+        for (int rate : new int[]{RATE, 96000, 12345}) {
+            Equalizer eq = new Equalizer(Equalizer.BANDS_10);
+            eq.init(new AudioFormat(rate, 16, 1, true, false));
+            eq.setGain(5, 6);
+            // center of the band gets full gain
+            assertEquals(6, response(eq, 1000, rate), 0.1);
+            // a few octaves away it is almost untouched
+            assertEquals(0, response(eq, 62.5f, rate), 0.1);
+
+            eq.setGain(5, -12);
+            assertEquals(-12, response(eq, 1000, rate), 0.1);
+        }
+    }
+
+    @Test
+    public void testThirdOctave() {
+        Equalizer eq = new Equalizer(Equalizer.BANDS_31);
+        assertEquals(Equalizer.bandwidthToQ(1 / 3.), eq.getQ(0), 0.05);
+        eq.init(new AudioFormat(48000, 16, 1, true, false));
+        eq.setGain(17, 10);
+        assertEquals(10, response(eq, 1000, 48000), 0.1);
+        assertEquals(0, response(eq, 2000, 48000), 0.5);
+    }
+
+    @Test
+    public void testPreamp() {
+        Equalizer eq = new Equalizer(Equalizer.BANDS_10);
+        eq.init(new AudioFormat(RATE, 16, 1, true, false));
+        eq.setPreamp(-6);
+        assertEquals(-6, response(eq, 440, RATE), 0.01);
+    }
+
+    @Test
+    public void testSettings() {
+        Equalizer eq = new Equalizer(Equalizer.BANDS_10);
+        eq.setGains(new float[]{1, 2, 100});
+        assertEquals(1, eq.getGain(0), 0);
+        assertEquals(Equalizer.MAX_GAIN, eq.getGain(2), 0);
+        assertEquals(0, eq.getGain(3), 0);
+
+        float[] gains = Equalizer.parseGains(Equalizer.formatGains(eq.getGains()));
+        assertArrayEquals(eq.getGains(), gains, 0);
+        assertEquals(0, Equalizer.parseGains("").length);
+
+        // bands above Nyquist are not used
+        eq.setGain(9, 3);
+        assertEquals(4, eq.getSection(44100).bands.length);
+        assertEquals(3, eq.getSection(22050).bands.length);
+    }
+
+    private float response(Equalizer eq, float frequency, int rate) {
+        int frames = rate;
+        float[][] samples = sine(frequency, rate, 1, frames);
+        eq.init(new AudioFormat(rate, 16, 1, true, false));
+        for (int i = 0; i < frames; i += DSPBank.CHUNK_FRAMES) {
+            float[][] chunk = {new float[DSPBank.CHUNK_FRAMES]};
+            int len = Math.min(DSPBank.CHUNK_FRAMES, frames - i);
+            System.arraycopy(samples[0], i, chunk[0], 0, len);
+            eq.process(chunk, 1, len);
+            System.arraycopy(chunk[0], 0, samples[0], i, len);
+        }
+        // skip the transient
+        double sum = 0;
+        for (int i = frames / 2; i < frames; i++) {
+            sum += samples[0][i] * samples[0][i];
+        }
+        double rms = Math.sqrt(sum / (frames - frames / 2));
+        return (float) (20 * Math.log10(rms * Math.sqrt(2) / 0.5));
+    }
+
+    private static float[][] sine(float frequency, int rate, int channels, int frames) {
+        float[][] samples = new float[channels][frames];
+        for (int ch = 0; ch < channels; ch++) {
+            for (int i = 0; i < frames; i++) {
+                samples[ch][i] = (float) (0.5 * Math.sin(2 * Math.PI * frequency * i / rate));
+            }
+        }
+        return samples;
+    }
+}
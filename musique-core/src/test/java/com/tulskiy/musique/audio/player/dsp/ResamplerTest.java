@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.dsp;
+
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class ResamplerTest {
+    @Test
+    public void testSine() {
+        assertEquals(0, error(44100, 48000, 1000, Resampler.Quality.SINC), 1e-3);
+        assertEquals(0, error(48000, 44100, 1000, Resampler.Quality.SINC), 1e-3);
+        assertEquals(0, error(44100, 96000, 10000, Resampler.Quality.SINC), 1e-3);
+        assertEquals(0, error(22050, 44100, 5000, Resampler.Quality.SINC), 1e-3);
+        // linear is good enough for low frequencies only
+        assertEquals(0, error(44100, 48000, 1000, Resampler.Quality.LINEAR), 1e-2);
+    }
+
+    @Test
+    public void testAliasing() {
+        // 30 kHz does not fit into 44.1 kHz and should be removed
+        int frames = 96000;
+        float[][] in = sine(30000, 96000, frames, 0);
+        float[][] out = new float[1][frames];
+        Resampler resampler = new Resampler(96000, 44100, 1, frames, Resampler.Quality.SINC);
+        int n = resampler.process(in, frames, out);
+        assertEquals(44100, n, Resampler.SINC_TAPS);
+        double sum = 0;
+        for (int i = 100; i < n - 100; i++) {
+            sum += out[0][i] * out[0][i];
+        }
+        assertTrue(Math.sqrt(sum / (n - 200)) < 1e-3);
+    }
+
+    @Test
+    public void testStreaming() {
+        for (Resampler.Quality quality : Resampler.Quality.values()) {
+            int frames = 10000;
+            float[][] in = sine(440, 44100, frames, 0);
+            Resampler whole = new Resampler(44100, 48000, 1, frames, quality);
+            float[][] expected = new float[1][whole.getMaxOutput(frames)];
+            int total = whole.process(in, frames, expected);
+
+            Resampler chunked = new Resampler(44100, 48000, 1, 1000, quality);
+            float[][] chunk = new float[1][1000];
+            float[][] out = new float[1][chunked.getMaxOutput(1000)];
+            int produced = 0;
+            int pos = 0;
+            int size = 1;
+            while (pos < frames) {
+                int len = Math.min(size, frames - pos);
+                System.arraycopy(in[0], pos, chunk[0], 0, len);
+                int n = chunked.process(chunk, len, out);
+                for (int i = 0; i < n; i++) {
+                    assertEquals(expected[0][produced + i], out[0][i], 0);
+                }
+                produced += n;
+                pos += len;
+                size = size * 3 % 997 + 1;
+            }
+            assertEquals(total, produced);
+            assertEquals(frames * 48000 / 44100, produced, Resampler.SINC_TAPS);
+        }
+    }
+
+    @Test
+    public void testConverter() {
+        AudioFormat mono = new AudioFormat(44100, 16, 1, true, false);
+        AudioFormat stereo = new AudioFormat(48000, 24, 2, true, true);
+        FormatConverter converter = new FormatConverter();
+        converter.init(mono, stereo, Resampler.Quality.SINC);
+        assertEquals(DSPBank.CHUNK_FRAMES * 2, converter.getMaxInput());
+
+        int frames = 4000;
+        float[][] samples = new float[1][frames];
+        for (int i = 0; i < frames; i++) {
+            samples[0][i] = 0.25f;
+        }
+        byte[] pcm = new byte[frames * 2];
+        SampleConverter.fromFloat(samples, pcm, 0, frames, mono);
+        ByteBuffer out = converter.convert(ByteBuffer.wrap(pcm));
+        int outFrames = out.remaining() / stereo.getFrameSize();
+        assertEquals(frames * 48000 / 44100, outFrames, Resampler.SINC_TAPS);
+
+        float[][] result = new float[2][outFrames];
+        SampleConverter.toFloat(out.array(), 0, result, outFrames, stereo);
+        for (int i = 100; i < outFrames; i++) {
+            assertEquals(0.25f, result[0][i], 1e-4);
+            assertEquals(0.25f, result[1][i], 1e-4);
+        }
+    }
+
+    @Test
+    public void testDownmix() {
+        float[][] src = new float[6][1];
+        for (int ch = 0; ch < 6; ch++) {
+            src[ch][0] = 0.1f * (ch + 1);
+        }
+        float[][] dst = new float[2][1];
+        FormatConverter.mapChannels(src, 6, dst, 2, 1);
+        double c = Math.sqrt(0.5);
+        double scale = 1 / (1 + 2 * c);
+        assertEquals((0.1 + 0.3 * c + 0.5 * c) * scale, dst[0][0], 1e-6);
+        assertEquals((0.2 + 0.3 * c + 0.6 * c) * scale, dst[1][0], 1e-6);
+
+        FormatConverter.mapChannels(src, 2, dst, 1, 1);
+        assertEquals(0.15, dst[0][0], 1e-6);
+    }
+
+    private static double error(int inRate, int outRate, float frequency, Resampler.Quality quality) {
+        int frames = inRate / 2;
+        float[][] in = sine(frequency, inRate, frames, 0);
+        Resampler resampler = new Resampler(inRate, outRate, 1, frames, quality);
+        float[][] out = new float[1][resampler.getMaxOutput(frames)];
+        int n = resampler.process(in, frames, out);
+        float[][] expected = sine(frequency, outRate, n, 0);
+        double max = 0;
+        // skip edges where the filter sees zeros
+        for (int i = 200; i < n - 200; i++) {
+            max = Math.max(max, Math.abs(out[0][i] - expected[0][i]));
+        }
+        return max;
+    }
+
+    private static float[][] sine(float frequency, int rate, int frames, int offset) {
+        float[][] samples = new float[1][frames];
+        for (int i = 0; i < frames; i++) {
+            samples[0][i] = (float) (0.5 * Math.sin(2 * Math.PI * frequency * (i + offset) / rate));
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.player.io;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Compares {@link RingBuffer} and {@link LockFreeRingBuffer}: throughput
+ * with the chunk sizes the player uses and wake-up latency of a reader
+ * blocked on an empty buffer.
+ * <p/>
+ * Not run by default, enable the test method to get the numbers.
+ */
+public class RingBufferSpeedTest {
+    private static final int SIZE = 1 << 18;
+    private static final long TOTAL = 1L << 30;
+    private static final int LATENCY_ROUNDS = 20000;
+
+    interface Ring {
+        void put(byte[] b, int off, int len);
+
+        int get(byte[] b, int off, int len);
+    }
+
+    @Test public void dummy(){}
+    //    @Test
+    public void test() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.out.println("--- Round " + i);
+            throughput("RingBuffer", monitorRing());
+            throughput("LockFreeRingBuffer", lockFreeRing());
+            latency("RingBuffer", monitorRing());
+            latency("LockFreeRingBuffer", lockFreeRing());
+        }
+    }
+
+    private Ring monitorRing() {
+        final RingBuffer ring = new RingBuffer(SIZE);
+        return new Ring() {
+            public void put(byte[] b, int off, int len) {
+                ring.put(b, off, len);
+            }
+
+            public int get(byte[] b, int off, int len) {
+                return ring.get(b, off, len);
+            }
+        };
+    }
+
+    private Ring lockFreeRing() {
+        final LockFreeRingBuffer ring = new LockFreeRingBuffer(SIZE);
+        return new Ring() {
+            public void put(byte[] b, int off, int len) {
+                ring.put(b, off, len);
+            }
+
+            public int get(byte[] b, int off, int len) {
+                return ring.get(b, off, len);
+            }
+        };
+    }
+
+    private void throughput(String name, final Ring ring) throws InterruptedException {
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                byte[] buf = new byte[65536];
+                for (long written = 0; written < TOTAL; written += buf.length) {
+                    ring.put(buf, 0, buf.length);
+                }
+            }
+        };
+
+        byte[] buf = new byte[AudioOutput.BUFFER_SIZE];
+        long time = System.nanoTime();
+        producer.start();
+        long read = 0;
+        while (read < TOTAL) {
+            read += ring.get(buf, 0, buf.length);
+        }
+        time = System.nanoTime() - time;
+        producer.join();
+        System.out.printf("%s throughput: %.1f MB/s%n", name, TOTAL / 1048576.0 / (time / 1e9));
+    }
+
+    private void latency(String name, final Ring ring) throws InterruptedException {
+        final long[] sent = new long[LATENCY_ROUNDS];
+        final Object echo = new Object();
+        final boolean[] received = new boolean[1];
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                byte[] buf = new byte[4];
+                for (int i = 0; i < LATENCY_ROUNDS; i++) {
+                    // let the reader block on an empty buffer first
+                    try {
+                        Thread.sleep(0, 50000);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    sent[i] = System.nanoTime();
+                    ring.put(buf, 0, buf.length);
+                    synchronized (echo) {
+                        while (!received[0]) {
+                            try {
+                                echo.wait();
+                            } catch (InterruptedException e) {
+                                return;
+                            }
+                        }
+                        received[0] = false;
+                    }
+                }
+            }
+        };
+        producer.start();
+
+        long[] latency = new long[LATENCY_ROUNDS];
+        byte[] buf = new byte[4];
+        for (int i = 0; i < LATENCY_ROUNDS; i++) {
+            ring.get(buf, 0, buf.length);
+            latency[i] = System.nanoTime() - sent[i];
+            synchronized (echo) {
+                received[0] = true;
+                echo.notify();
+            }
+        }
+        producer.join();
+
+        Arrays.sort(latency);
+        System.out.printf("%s wake-up latency: p50 %d us, p99 %d us, max %d us%n", name,
+                latency[LATENCY_ROUNDS / 2] / 1000,
+                latency[LATENCY_ROUNDS * 99 / 100] / 1000,
+                latency[LATENCY_ROUNDS - 1] / 1000);
+    }
+}
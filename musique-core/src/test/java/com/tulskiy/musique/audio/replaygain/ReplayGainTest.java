@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.tulskiy.musique.audio.replaygain;
+
+import com.tulskiy.musique.audio.player.dsp.ReplayGainProcessor;
+import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.playlist.TrackData;
+import com.tulskiy.musique.system.TrackIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplayGainTest {
+    @Test
+    public void testSineLoudness() {
+        // EBU Tech 3341 case: stereo 1 kHz sine at -23 dBFS is -23 LUFS
+        for (int rate : new int[]{44100, 48000, 96000}) {
+            LoudnessMeter meter = measureSine(rate, 20, Math.pow(10, -23.0 / 20));
+            assertEquals(-23, meter.getIntegratedLoudness(), 0.1);
+            assertEquals(Math.pow(10, -23.0 / 20), meter.getPeak(), 1e-3);
+        }
+    }
+
+    @Test
+    public void testGating() {
+        LoudnessMeter loud = measureSine(48000, 10, Math.pow(10, -20.0 / 20));
+        LoudnessMeter quiet = measureSine(48000, 10, Math.pow(10, -40.0 / 20));
+        LoudnessMeter silence = measureSine(48000, 10, 0);
+
+        assertTrue(Double.isInfinite(silence.getIntegratedLoudness()));
+        assertEquals(-20, loud.getIntegratedLoudness(), 0.1);
+        // quiet part is below relative gate, silence is below absolute gate
+        assertEquals(-20, LoudnessMeter.getIntegratedLoudness(loud, quiet, silence, null), 0.1);
+        assertEquals(loud.getPeak(), LoudnessMeter.getPeak(loud, quiet, silence), 0);
+        assertEquals(ReplayGain.MAX_GAIN, ReplayGain.loudnessToGain(silence.getIntegratedLoudness()), 0);
+        assertEquals(2, ReplayGain.loudnessToGain(loud.getIntegratedLoudness()), 0.1);
+    }
+
+    @Test
+    public void testTagValues() {
+        TrackData trackData = new TrackData();
+        assertNull(ReplayGain.getTagValue(trackData, ReplayGain.TRACK_GAIN));
+        assertTrue(ReplayGain.setTagValue(trackData, "replaygain_track_gain", "-6.48 dB"));
+        assertTrue(ReplayGain.setTagValue(trackData, ReplayGain.ALBUM_PEAK, " 0.988 "));
+        assertFalse(ReplayGain.setTagValue(trackData, "ARTIST", "1"));
+        assertEquals(-6.48f, trackData.getTrackGain(), 0);
+        assertEquals(0.988f, trackData.getAlbumPeak(), 0);
+        assertEquals("-6.48 dB", ReplayGain.getTagValue(trackData, ReplayGain.TRACK_GAIN));
+        assertEquals("0.988000", ReplayGain.getTagValue(trackData, ReplayGain.ALBUM_PEAK));
+        assertTrue(Float.isNaN(ReplayGain.parse("garbage")));
+    }
+
+    @Test
+    public void testProcessor() {
+        ReplayGainProcessor processor = new ReplayGainProcessor();
+        Track track = new Track();
+        TrackData trackData = track.getTrackData();
+        processor.setTrack(track);
+        assertEquals(1, processor.getScale(), 0);
+
+        trackData.setTrackGain(-6);
+        trackData.setTrackPeak(0.5f);
+        trackData.setAlbumGain(6);
+        trackData.setAlbumPeak(0.9f);
+        processor.setTrack(track);
+        assertEquals(0.501f, processor.getScale(), 1e-3);
+
+        float[][] samples = {{1, -1}, {0.5f, 0}};
+        processor.process(samples, 2, 2);
+        assertEquals(0.501f, samples[0][0], 1e-3);
+        assertEquals(-0.501f, samples[0][1], 1e-3);
+        assertEquals(0.25f, samples[1][0], 1e-3);
+
+        processor.setMode(ReplayGainProcessor.Mode.ALBUM);
+        // +6 dB would clip the 0.9 peak
+        assertEquals(1 / 0.9f, processor.getScale(), 1e-6);
+        processor.setPreventClipping(false);
+        assertEquals(1.995f, processor.getScale(), 1e-3);
+        processor.setPreamp(-6);
+        assertEquals(1, processor.getScale(), 1e-3);
+    }
+
+    @Test
+    public void testScanner() throws Exception {
+        List<Track> tracks = new ArrayList<Track>();
+        String[] files = {"testfiles/uncompressed/sample.wav", "testfiles/flac/sample.flac"};
+        for (String name : files) {
+            File file = new File(getClass().getClassLoader().getResource(name).toURI());
+            tracks.add(TrackIO.getAudioFileReader(name).read(file));
+        }
+        // put both tracks to the same album
+        for (Track track : tracks) {
+            track.getTrackData().setTagFieldValues(FieldKey.ALBUM, "replaygain test");
+            track.getTrackData().setTagFieldValues(FieldKey.ALBUM_ARTIST, "replaygain test");
+        }
+
+        ReplayGainScanner scanner = new ReplayGainScanner(2, false);
+        scanner.scan(tracks, false);
+        assertEquals(2, scanner.getTotal());
+        assertEquals(2, scanner.getScanned());
+
+        float albumGain = tracks.get(0).getTrackData().getAlbumGain();
+        assertFalse(Float.isNaN(albumGain));
+        for (Track track : tracks) {
+            TrackData trackData = track.getTrackData();
+            assertFalse(Float.isNaN(trackData.getTrackGain()));
+            assertTrue(trackData.getTrackPeak() > 0 && trackData.getTrackPeak() <= 1);
+            assertEquals(albumGain, trackData.getAlbumGain(), 0);
+        }
+
+        // already scanned albums are skipped
+        scanner.scan(tracks, false);
+        assertEquals(0, scanner.getTotal());
+        scanner.scan(tracks, true);
+        assertEquals(2, scanner.getScanned());
+        assertEquals(albumGain, tracks.get(0).getTrackData().getAlbumGain(), 1e-3);
+    }
+
+    private LoudnessMeter measureSine(int rate, int seconds, double amplitude) {
+        LoudnessMeter meter = new LoudnessMeter(rate, 2);
+        float[][] buf = new float[2][4096];
+        long n = 0;
+        for (int i = 0; i < rate * seconds / 4096; i++) {
+            for (int j = 0; j < 4096; j++, n++) {
+                float v = (float) (amplitude * Math.sin(2 * Math.PI * 1000 * n / rate));
+                buf[0][j] = v;
+                buf[1][j] = v;
+            }
+            meter.process(buf, 4096);
+        }
+        return meter;
+    }
+}
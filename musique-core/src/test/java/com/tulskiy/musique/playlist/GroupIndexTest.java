@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2008, 2009, 2010 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.playlist;
+
+import com.tulskiy.musique.gui.playlist.SeparatorTrack;
+import org.jaudiotagger.tag.FieldKey;
+import com.tulskiy.musique.playlist.formatting.Parser;
+import com.tulskiy.musique.playlist.formatting.tokens.Expression;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class GroupIndexTest {
+    private Playlist playlist;
+    private int evaluations;
+
+    private Track newTrack(String album, String title) {
+        Track track = new Track();
+        track.getTrackData().setLocation(new File("/music/" + title + ".flac").toURI().toString());
+        if (album != null)
+            track.getTrackData().addAlbum(album);
+        track.getTrackData().addTitle(title);
+        return track;
+    }
+
+    @Before
+    public void setUp() {
+        playlist = new Playlist();
+        playlist.add(newTrack("A", "1"));
+        playlist.add(newTrack("a", "2"));
+        playlist.add(newTrack("B", "3"));
+        playlist.add(newTrack(null, "4"));
+        playlist.add(newTrack("", "5"));
+        playlist.setGroupBy("%album%");
+
+        final Expression album = Parser.parse("%album%");
+        evaluations = 0;
+        playlist.getGroups().setExpression(new Expression() {
+            @Override
+            public Object eval(Track track) {
+                evaluations++;
+                return album.eval(track);
+            }
+        });
+    }
+
+    private String rows() {
+        StringBuilder sb = new StringBuilder();
+        GroupIndex groups = playlist.getGroups();
+        for (int i = 0; i < groups.getRowCount(); i++) {
+            Track track = groups.getRow(i);
+            if (track instanceof SeparatorTrack) {
+                SeparatorTrack separator = (SeparatorTrack) track;
+                sb.append("[").append(separator.getGroupName())
+                        .append(":").append(separator.getGroupSize()).append("]");
+                assertEquals(-1, groups.toIndex(i));
+            } else {
+                sb.append(track.getTrackData().getTitle());
+                assertEquals(i, groups.toRow(playlist.indexOf(track)));
+                assertEquals(playlist.indexOf(track), groups.toIndex(i));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testGroups() {
+        assertEquals("[A:2]12[B:1]3[?:2]45", rows());
+        GroupIndex groups = playlist.getGroups();
+        assertEquals(3, groups.size());
+        assertEquals(1, groups.findGroup(2));
+        assertEquals(2, groups.getStart(1));
+        assertEquals(3, groups.getEnd(1));
+        assertEquals(5, groups.getEnd(2));
+        assertEquals(null, groups.getRow(8));
+
+        playlist.setGroupBy(null);
+        assertEquals("12345", rows());
+        assertEquals(0, groups.size());
+        assertEquals(-1, groups.findGroup(3));
+        assertEquals(0, groups.getStart(-1));
+        assertEquals(5, groups.getEnd(-1));
+    }
+
+    @Test
+    public void testIncremental() {
+        assertEquals("[A:2]12[B:1]3[?:2]45", rows());
+        assertEquals(5, evaluations);
+
+        playlist.add(1, newTrack("B", "6"));
+        assertEquals("[A:1]1[B:1]6[a:1]2[B:1]3[?:2]45", rows());
+        assertEquals(6, evaluations);
+
+        playlist.remove(1);
+        playlist.firePlaylistChanged();
+        assertEquals("[A:2]12[B:1]3[?:2]45", rows());
+        assertEquals(6, evaluations);
+
+        Collections.reverse(playlist);
+        playlist.firePlaylistChanged();
+        assertEquals("[?:2]54[B:1]3[a:2]21", rows());
+        assertEquals(6, evaluations);
+
+        playlist.sort("%title%", false);
+        playlist.firePlaylistChanged();
+        assertEquals("[A:2]12[B:1]3[?:2]45", rows());
+        assertEquals(6, evaluations);
+
+        // nothing moved, so tags must have changed
+        playlist.get(2).getTrackData().setTagFieldValues(FieldKey.ALBUM, "a");
+        playlist.firePlaylistChanged();
+        assertEquals("[A:3]123[?:2]45", rows());
+        assertEquals(11, evaluations);
+    }
+
+    //    @Test
+    public void testSpeed() {
+        playlist = new Playlist();
+        for (int i = 0; i < 100000; i++) {
+            playlist.add(newTrack("Album " + i / 10, String.valueOf(i)));
+        }
+        playlist.setGroupBy("%album%");
+        // first round is warm-up
+        for (int round = 0; round < 3; round++) {
+            long time = System.nanoTime();
+            int rows = 0;
+            for (int i = 0; i < 100; i++) {
+                playlist.add(50000, newTrack("New", "new"));
+                playlist.firePlaylistChanged();
+                rows = playlist.getGroups().getRowCount();
+            }
+            time = System.nanoTime() - time;
+            System.out.printf("%d rows: %.2f ms/insert%n", rows, time / 1e6 / 100);
+        }
+    }
+}
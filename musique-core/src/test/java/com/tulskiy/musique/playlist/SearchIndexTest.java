@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.playlist;
+
+import com.tulskiy.musique.gui.model.FieldValues;
+import org.jaudiotagger.tag.FieldKey;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SearchIndexTest {
+    private static final String[] WORDS = {
+            "the", "then", "love", "lovely", "Rock", "rocket", "blue", "Blues", "moon", "mood", "one", "02"
+    };
+
+    private Playlist playlist;
+
+    private Track newTrack(String artist, String title) {
+        Track track = new Track();
+        track.getTrackData().addArtist(artist);
+        track.getTrackData().addTitle(title);
+        return track;
+    }
+
+    @Before
+    public void setUp() {
+        playlist = new Playlist();
+        playlist.add(newTrack("The Beatles", "Let It Be"));
+        playlist.add(newTrack("Pink Floyd", "The Wall"));
+        playlist.add(newTrack("Led Zeppelin", "Stairway  to\tHeaven"));
+        playlist.add(newTrack("The Doors", "Light My Fire"));
+    }
+
+    private String search(String text) {
+        return Arrays.toString(playlist.getSearchIndex().search(text));
+    }
+
+    @Test
+    public void testSearch() {
+        assertEquals("[0, 1, 3]", search("the"));
+        assertEquals("[0, 1, 3]", search("  THE "));
+        assertEquals("[1]", search("the wa"));
+        assertEquals("[0, 3]", search("l th"));
+        assertEquals("[2]", search("heaven"));
+        assertEquals("[]", search("the heaven"));
+        assertEquals("[]", search("ll"));
+        assertEquals("[]", search(""));
+        assertEquals("[]", search("   "));
+    }
+
+    @Test
+    public void testUpdate() {
+        assertEquals("[0, 3]", search("l th"));
+
+        playlist.add(1, newTrack("The Kinks", "Lola"));
+        assertEquals("[0, 1, 4]", search("l th"));
+
+        playlist.remove(0);
+        Collections.reverse(playlist);
+        assertEquals("[0, 3]", search("l th"));
+
+        playlist.get(0).getTrackData().setTagFieldValues(FieldKey.TITLE, "Break On Through");
+        assertEquals("[3]", search("l th"));
+        assertEquals("[0]", search("through"));
+
+        playlist.get(3).getTrackData().removeTagField(FieldKey.ARTIST);
+        assertEquals("[]", search("l th"));
+        assertEquals("[3]", search("lola"));
+
+        Track track = playlist.get(2);
+        track.setTrackData(new TrackData());
+        track.getTrackData().addArtist("Queen");
+        assertEquals("[2]", search("queen"));
+        assertEquals("[]", search("wall"));
+
+        // drop most of the tracks so that the ids are renumbered
+        int terms = playlist.getSearchIndex().getTermCount();
+        playlist.subList(1, 4).clear();
+        assertEquals("[0]", search("through"));
+        assertEquals("[]", search("queen"));
+        assertEquals(true, playlist.getSearchIndex().getTermCount() < terms);
+
+        playlist.clear();
+        assertEquals("[]", search("through"));
+    }
+
+    @Test
+    public void testDuplicates() {
+        Track track = playlist.get(1);
+        playlist.add(track);
+        playlist.add(0, track);
+        assertEquals("[0, 2, 5]", search("wall"));
+        assertEquals("[0, 1, 2, 4, 5]", search("the"));
+
+        track.getTrackData().setTagFieldValues(FieldKey.TITLE, "Money");
+        assertEquals("[]", search("wall"));
+        assertEquals("[0, 2, 5]", search("money"));
+
+        playlist.remove(2);
+        assertEquals("[0, 4]", search("money"));
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(1);
+        playlist.clear();
+        for (int i = 0; i < 1000; i++) {
+            playlist.add(newTrack(randomText(random), randomText(random)));
+        }
+
+        for (int round = 0; round < 50; round++) {
+            for (int i = 0; i < 5; i++) {
+                int index = random.nextInt(playlist.size());
+                switch (random.nextInt(5)) {
+                    case 0:
+                        playlist.remove(index);
+                        break;
+                    case 1:
+                        playlist.add(index, newTrack(randomText(random), randomText(random)));
+                        break;
+                    case 2:
+                        playlist.get(index).getTrackData().setTagFieldValues(FieldKey.TITLE, randomText(random));
+                        break;
+                    case 3:
+                        playlist.add(random.nextInt(playlist.size()), playlist.get(index));
+                        break;
+                    default:
+                        Collections.swap(playlist, index, random.nextInt(playlist.size()));
+                }
+            }
+
+            String text = randomText(random);
+            assertEquals(text, scan(text), search(text));
+        }
+    }
+
+    private String randomText(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int count = random.nextInt(3) + 1;
+        for (int i = 0; i < count; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sb.append(" ").append(word.substring(0, random.nextInt(word.length()) + 1));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The way search worked before the index
+     */
+    private String scan(String search) {
+        List<Integer> result = new ArrayList<Integer>();
+        String[] text = search.toLowerCase().trim().split("\\s+");
+        for (int i = 0; i < playlist.size(); i++) {
+            boolean[] hasText = new boolean[text.length];
+            for (FieldKey field : FieldKey.values()) {
+                FieldValues values = playlist.get(i).getTrackData().getTagFieldValues(field);
+                if (values == null)
+                    continue;
+                for (int k = 0; k < values.size(); k++) {
+                    for (String val : values.get(k).toLowerCase().split("\\s+")) {
+                        for (int j = 0; j < text.length; j++) {
+                            if (val.startsWith(text[j]))
+                                hasText[j] = true;
+                        }
+                    }
+                }
+            }
+
+            boolean toAdd = true;
+            for (boolean b : hasText) {
+                toAdd &= b;
+            }
+            if (toAdd)
+                result.add(i);
+        }
+        return result.toString();
+    }
+
+    //    @Test
+    public void testSpeed() {
+        Random random = new Random(1);
+        playlist = new Playlist();
+        for (int i = 0; i < 500000; i++) {
+            Track track = newTrack("Artist " + random.nextInt(5000), randomText(random) + " " + i);
+            track.getTrackData().addAlbum("Album " + random.nextInt(40000));
+            track.getTrackData().addGenre(WORDS[random.nextInt(WORDS.length)]);
+            playlist.add(track);
+        }
+
+        long time = System.nanoTime();
+        playlist.getSearchIndex().getTermCount();
+        System.out.printf("index: %.1f ms%n", (System.nanoTime() - time) / 1e6);
+
+        String[] queries = {"a", "artist 12", "lov roc", "album 3 blue", "the mood 4999"};
+        // first round is warm-up
+        for (int round = 0; round < 3; round++) {
+            for (String query : queries) {
+                time = System.nanoTime();
+                int found = playlist.getSearchIndex().search(query).length;
+                time = System.nanoTime() - time;
+                System.out.printf("%-15s %7d tracks %8.2f ms%n", query, found, time / 1e6);
+            }
+        }
+
+        time = System.nanoTime();
+        scan("lov roc");
+        System.out.printf("scan: %.1f ms%n", (System.nanoTime() - time) / 1e6);
+    }
+}
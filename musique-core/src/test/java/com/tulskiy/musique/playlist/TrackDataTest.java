@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.playlist;
+
+import com.tulskiy.musique.gui.model.FieldValues;
+import org.jaudiotagger.tag.FieldKey;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrackDataTest {
+    private String tags(TrackData trackData) {
+        StringBuilder sb = new StringBuilder();
+        Iterator<Map.Entry<FieldKey, FieldValues>> it = trackData.getAllTagFieldValuesIterator();
+        while (it.hasNext()) {
+            Map.Entry<FieldKey, FieldValues> entry = it.next();
+            sb.append(entry.getKey()).append("=").append(entry.getValue()).append(" ");
+        }
+        return sb.toString().trim();
+    }
+
+    @Test
+    public void testTags() {
+        TrackData trackData = new TrackData();
+        assertEquals("", tags(trackData));
+        assertEquals(null, trackData.getTagFieldValues(FieldKey.TITLE));
+
+        trackData.addTitle("title");
+        trackData.addArtist("artist");
+        trackData.addGenre("rock");
+        trackData.addGenre("pop");
+        trackData.addGenre("rock");
+        assertEquals("ARTIST=artist GENRE=[rock, pop] TITLE=title", tags(trackData));
+        assertEquals("artist", trackData.getArtist());
+        assertEquals("rock", trackData.getGenre());
+        assertEquals(2, trackData.getGenres().size());
+
+        trackData.setTagFieldValues(FieldKey.ARTIST, "other");
+        trackData.removeTagField(FieldKey.GENRE);
+        trackData.removeTagField(FieldKey.ALBUM);
+        assertEquals("ARTIST=other TITLE=title", tags(trackData));
+
+        TrackData copy = trackData.copy();
+        copy.addAlbum("album");
+        copy.removeTagField(FieldKey.TITLE);
+        assertEquals("ARTIST=other TITLE=title", tags(trackData));
+        assertEquals("ALBUM=album ARTIST=other", tags(copy));
+
+        TrackData merged = new TrackData();
+        merged.addTitle("old");
+        merged.addYear("2000");
+        merged.merge(copy);
+        assertEquals("ALBUM=album ARTIST=other TITLE=old YEAR=2000", tags(merged));
+
+        trackData.clearTags();
+        assertEquals("", tags(trackData));
+        assertEquals(null, trackData.getArtist());
+    }
+
+    @Test
+    public void testRuntimeFields() {
+        TrackData trackData = new TrackData();
+        trackData.setLocation(new File("/music/Album/01 - Title.flac").toURI().toString());
+        trackData.setSampleRate(44100);
+        trackData.setTotalSamples(44100 * 225);
+        trackData.setTrack(3);
+        assertEquals("01 - Title", trackData.getFileName());
+        assertEquals("Album", trackData.getDirectory());
+        assertEquals("3:45", trackData.getLength());
+        assertEquals("03", trackData.getTrackNumber());
+
+        trackData.setTotalSamples(44100 * 60);
+        assertEquals("1:00", trackData.getLength());
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //    @Test
+    public void testMemory() throws Exception {
+        int count = 300000;
+        List<TrackData> tracks = new ArrayList<TrackData>(count);
+        long before = usedMemory();
+        for (int i = 0; i < count; i++) {
+            int album = i / 12;
+            TrackData trackData = new TrackData();
+            trackData.setLocation(new File("/music/Artist " + album / 5 + "/Album " + album + "/" + i + ".flac").toURI().toString());
+            trackData.addArtist("Artist " + album / 5);
+            trackData.addAlbumArtist("Artist " + album / 5);
+            trackData.addAlbum("Album " + album);
+            trackData.addTitle("Title " + i);
+            trackData.addYear(String.valueOf(1960 + album % 50));
+            trackData.addGenre("Genre " + album % 20);
+            trackData.setTrack(i % 12 + 1);
+            trackData.setTrackTotal(12);
+            trackData.setTagFieldValues(FieldKey.ENCODER, "reference libFLAC 1.2.1");
+            trackData.setCodec("FLAC");
+            trackData.setSampleRate(44100);
+            trackData.setChannels(2);
+            trackData.setBps(16);
+            trackData.setTotalSamples(44100L * (180 + i % 120));
+            // what the playlist shows
+            trackData.getLength();
+            trackData.getFileName();
+            trackData.getDirectory();
+            tracks.add(trackData);
+        }
+        long after = usedMemory();
+        System.out.printf("%d tracks: %.1f MB, %d bytes/track%n", tracks.size(),
+                (after - before) / 1048576.0, (after - before) / count);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2008, 2009, 2010 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.playlist;
+
+import com.tulskiy.musique.playlist.formatting.Parser;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TrackSorterTest {
+    private Track newTrack(String title) {
+        Track track = new Track();
+        if (title != null)
+            track.getTrackData().addTitle(title);
+        track.getTrackData().setLocation(new File("/music/" + title + ".flac").toURI().toString());
+        return track;
+    }
+
+    private List<String> sort(boolean ascending, String... titles) {
+        List<Track> tracks = new ArrayList<Track>();
+        for (String title : titles) {
+            tracks.add(newTrack(title));
+        }
+        TrackSorter.sort(tracks, Parser.parse("%title%"), ascending);
+        List<String> result = new ArrayList<String>();
+        for (Track track : tracks) {
+            result.add(track.getTrackData().getTitle());
+        }
+        return result;
+    }
+
+    @Test
+    public void testNaturalOrder() {
+        assertEquals(Arrays.asList("1", "2", "02 b", "10", "100"),
+                sort(true, "100", "10", "2", "02 b", "1"));
+        assertEquals(Arrays.asList("a", "B", "c"), sort(true, "c", "a", "B"));
+        assertEquals(Arrays.asList("disc 1 - 9", "disc 1 - 10", "disc 2 - 1"),
+                sort(true, "disc 2 - 1", "disc 1 - 10", "disc 1 - 9"));
+        assertEquals(Arrays.asList("a 1", "a0x", "a1", "ab"), sort(true, "ab", "a1", "a 1", "a0x"));
+        assertEquals(Arrays.asList("100", "10", "2", "1"), sort(false, "1", "10", "100", "2"));
+    }
+
+    @Test
+    public void testStable() {
+        // equal keys keep their order in both directions
+        assertEquals(Arrays.asList("A", "a", "7", "007"), sort(false, "7", "A", "007", "a"));
+        assertEquals(Arrays.asList("007", "7", "A", "a"), sort(true, "A", "007", "a", "7"));
+    }
+
+    @Test
+    public void testKey() {
+        Random random = new Random(1);
+        String chars = "aZ09 -/:.";
+        for (int i = 0; i < 10000; i++) {
+            String s1 = randomString(random, chars);
+            String s2 = randomString(random, chars);
+            // without digits, the key orders like compareToIgnoreCase
+            if (!s1.matches(".*\\d.*") && !s2.matches(".*\\d.*")) {
+                assertEquals(s1 + " " + s2, Integer.signum(s1.compareToIgnoreCase(s2)),
+                        Integer.signum(TrackSorter.toKey(s1).compareTo(TrackSorter.toKey(s2))));
+            }
+        }
+    }
+
+    private String randomString(Random random, String chars) {
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+
+    //    @Test
+    public void testSpeed() {
+        List<Track> tracks = new ArrayList<Track>();
+        Random random = new Random(1);
+        for (int i = 0; i < 200000; i++) {
+            Track track = new Track();
+            track.getTrackData().setLocation(new File("/music/" + i + ".flac").toURI().toString());
+            track.getTrackData().addAlbumArtist("Artist " + random.nextInt(1000));
+            track.getTrackData().addYear(String.valueOf(1960 + random.nextInt(50)));
+            track.getTrackData().addAlbum("Album " + random.nextInt(10000));
+            track.getTrackData().setTrack(random.nextInt(12) + 1);
+            tracks.add(track);
+        }
+
+        // first round is warm-up
+        for (int round = 0; round < 3; round++) {
+            Collections.shuffle(tracks, random);
+            long time = System.nanoTime();
+            TrackSorter.sort(tracks, Parser.parse("%albumArtist% - %year% - %album% - %discNumber% - %trackNumber% - %fileName%"), true);
+            time = System.nanoTime() - time;
+            System.out.printf("%d tracks: %.1f ms%n", tracks.size(), time / 1e6);
+        }
+    }
+}
@@ -20,12 +20,19 @@ package com.tulskiy.musique.playlist.formatting;
 import static org.junit.Assert.assertEquals;
 
 import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import org.jaudiotagger.tag.FieldKey;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.tulskiy.musique.gui.model.FieldValues;
 import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.playlist.TrackData;
 import com.tulskiy.musique.playlist.formatting.tokens.Expression;
 
 /**
@@ -114,4 +121,91 @@ public class ParserTest {
 
 //        System.out.println(t.eval(s));
     }
+
+    @Test
+    public void testAllFields() throws Exception {
+        TrackData trackData = s.getTrackData();
+        trackData.addArtist("artist");
+        trackData.addTitle("title");
+        trackData.addGenre("genre");
+        trackData.setTrack(3);
+        trackData.setSampleRate(44100);
+        trackData.setTotalSamples(441000);
+        trackData.setCueEmbedded(true);
+
+        // every getter must be reachable and give what reflection used to
+        for (Method method : TrackData.class.getDeclaredMethods()) {
+            String name = method.getName();
+            if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())
+                    || method.getParameterTypes().length > 0 || method.getReturnType() == Iterator.class)
+                continue;
+            // bookkeeping for caches, not something to show
+            if (name.equals("getTagsVersion"))
+                continue;
+            if (name.startsWith("get"))
+                name = name.substring(3);
+            else if (name.startsWith("is") && !hasGetter(name.substring(2)))
+                name = name.substring(2);
+            else
+                continue;
+
+            Object value = method.invoke(trackData);
+            Object eval = Parser.parse("%" + name + "%").eval(s);
+            if (value instanceof FieldValues)
+                assertEquals(name, FieldValues.class, eval.getClass());
+            assertEquals(name, value == null ? null : value.toString(),
+                    eval == null ? null : eval.toString());
+        }
+        assertEquals(null, Parser.parse("%noSuchField%").eval(s));
+        assertEquals(null, Parser.parse("$noSuchMethod(%title%)").eval(s));
+    }
+
+    private boolean hasGetter(String name) {
+        try {
+            TrackData.class.getDeclaredMethod("get" + name);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    //    @Test
+    public void testSpeed() {
+        String[] formats = {
+                "[%artist% - ]%title%", "%length%", "%album%", "%year%",
+                "$if3(%albumArtist%,'?')|$if1(%album%,[[%year% - ]%album%],'?')$if1($greater(%discTotal%,1),[|Disc %disc%],'')|[%trackNumber%. ]%title%"
+        };
+        List<Track> tracks = new ArrayList<Track>();
+        for (int i = 0; i < 100000; i++) {
+            Track track = new Track();
+            TrackData trackData = track.getTrackData();
+            trackData.setLocation(new File("/music/" + i + ".flac").toURI().toString());
+            trackData.addArtist("Artist " + i % 1000);
+            trackData.addAlbum("Album " + i % 10000);
+            trackData.addYear(String.valueOf(1960 + i % 50));
+            trackData.addTitle("Title " + i);
+            trackData.setTrack(i % 12 + 1);
+            trackData.setDiscTotal(i % 3 + 1);
+            trackData.setDisc(1);
+            trackData.setSampleRate(44100);
+            trackData.setTotalSamples(44100L * (180 + i % 120));
+            tracks.add(track);
+        }
+
+        for (String format : formats) {
+            Expression expression = Parser.parse(format);
+            // first round is warm-up
+            for (int round = 0; round < 3; round++) {
+                long time = System.nanoTime();
+                int length = 0;
+                for (Track track : tracks) {
+                    Object value = expression.eval(track);
+                    if (value != null)
+                        length += value.toString().length();
+                }
+                time = System.nanoTime() - time;
+                System.out.printf("%-20.20s %8.1f ns/track (%d)%n", format, (double) time / tracks.size(), length);
+            }
+        }
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.system;
+
+import com.tulskiy.musique.audio.Decoder;
+import com.tulskiy.musique.playlist.Track;
+import com.tulskiy.musique.playlist.TrackData;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CodecsTest {
+    private static final String[][] FILES = {
+            {"testfiles/mp3/sample.mp3", "mp3"},
+            {"testfiles/mp3/sample_notag.mp3", "mp3"},
+            {"testfiles/mp3/sample_apev2.mp3", "mp3"},
+            {"testfiles/aac/sample.aac", "aac"},
+            {"testfiles/aac/sample.mp4", "mp4"},
+            {"testfiles/alac/sample_ffmpeg.m4a", "mp4"},
+            {"testfiles/ape/sample.ape", "ape"},
+            {"testfiles/flac/sample.flac", "flac"},
+            {"testfiles/ogg/sample.ogg", "ogg"},
+            {"testfiles/tta/sample.tta", "tta"},
+            {"testfiles/uncompressed/sample.aiff", "aiff"},
+            {"testfiles/uncompressed/sample.au", "au"},
+            {"testfiles/uncompressed/sample.wav", "wav"},
+            {"testfiles/wavpack/sample.wv", "wv"},
+    };
+
+    private File getFile(String name) throws Exception {
+        return new File(getClass().getClassLoader().getResource(name).toURI());
+    }
+
+    @Test
+    public void testDetectFormat() throws Exception {
+        for (String[] file : FILES) {
+            assertEquals(file[0], file[1], Codecs.detectFormat(getFile(file[0])));
+        }
+        // ogg flac is not supported
+        assertNull(Codecs.detectFormat(getFile("testfiles/flac/sample.oga")));
+        assertNull(Codecs.detectFormat(new byte[]{1, 2, 3, 4, 5, 6}, 6));
+        assertNull(Codecs.detectFormat(new byte[0], 0));
+    }
+
+    @Test
+    public void testWrongExtension() throws Exception {
+        byte[] buf = new byte[65536];
+        for (String[] file : FILES) {
+            // swap the extension for one of a different format
+            String ext = file[1].equals("mp3") ? "flac" : "mp3";
+            File copy = File.createTempFile("codecs", "." + ext);
+            try {
+                copy(getFile(file[0]), copy);
+                Track track = new Track(new TrackData(copy.toURI(), 0));
+                Decoder decoder = Codecs.openNewDecoder(track);
+                assertNotNull(file[0], decoder);
+                assertEquals(file[0], Codecs.getDecoder(new Track(new TrackData(getFile(file[0]).toURI(), 0))).getClass(),
+                        decoder.getClass());
+                assertTrue(file[0], decoder.decode(buf) >= 0);
+                decoder.close();
+            } finally {
+                //noinspection ResultOfMethodCallIgnored
+                copy.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testBrokenFile() throws Exception {
+        byte[] junk = new byte[16384];
+        new Random(1).nextBytes(junk);
+        for (String ext : new String[]{"mp3", "m4a", "ape", "tta", "flac", "wv"}) {
+            File file = File.createTempFile("codecs", "." + ext);
+            try {
+                FileOutputStream out = new FileOutputStream(file);
+                try {
+                    out.write(junk);
+                } finally {
+                    out.close();
+                }
+                // every decoder that fails has to let go of the file
+                assertNull(ext, Codecs.openNewDecoder(new Track(new TrackData(file.toURI(), 0))));
+            } finally {
+                assertTrue(ext, file.delete());
+            }
+        }
+    }
+
+    private void copy(File from, File to) throws IOException {
+        FileInputStream in = new FileInputStream(from);
+        FileOutputStream out = new FileOutputStream(to);
+        try {
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2008, 2009, 2010, 2011 Denis Tulskiy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * version 3 along with this work.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.tulskiy.musique.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testBuckets() {
+        for (long v = 0; v < 100000; v++) {
+            int b = LatencyHistogram.bucket(v);
+            assertTrue("value " + v, LatencyHistogram.lowerBound(b) <= v);
+            assertTrue("value " + v, LatencyHistogram.lowerBound(b + 1) > v);
+        }
+        assertTrue(LatencyHistogram.bucket(Long.MAX_VALUE) < 256);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getPercentile(50));
+
+        // 1..1000 ms
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 1000000L);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000000, h.getMax());
+        assertWithin(500000, h.getPercentile(50));
+        assertWithin(900000, h.getPercentile(90));
+        assertWithin(990000, h.getPercentile(99));
+        assertEquals(1000000, h.getPercentile(100));
+
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+        h.record(3000);
+        assertEquals(3, h.getPercentile(50));
+    }
+
+    private void assertWithin(long expected, long actual) {
+        assertTrue("expected " + expected + ", was " + actual,
+                actual >= expected && actual < expected * 1.25);
+    }
+}